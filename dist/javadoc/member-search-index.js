@@ -0,0 +1 @@
+memberSearchIndex = [{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"A_BOOLEAN"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"A_BYTE"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"A_CHAR"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"A_DOUBLE"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"A_FLOAT"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"A_INT"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"A_LONG"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"A_SHORT"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"ABIDecoder(byte[])","u":"%3Cinit%3E(byte[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIException","l":"ABIException()","u":"%3Cinit%3E()"},{"p":"org.aion.avm.userlib.abi","c":"ABIException","l":"ABIException(String)","u":"%3Cinit%3E(java.lang.String)"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"ABIStreamingEncoder()","u":"%3Cinit%3E()"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"ABIStreamingEncoder(byte[])","u":"%3Cinit%3E(byte[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"ABIToken()","u":"%3Cinit%3E()"},{"p":"org.aion.avm.userlib","c":"AionList","l":"add(E)"},{"p":"org.aion.avm.userlib","c":"AionList.AionListIterator","l":"add(E)"},{"p":"org.aion.avm.userlib","c":"AionSet","l":"add(E)"},{"p":"org.aion.avm.userlib","c":"AionList","l":"add(int, E)","u":"add(int,E)"},{"p":"org.aion.avm.userlib","c":"AionList","l":"addAll(Collection<? extends E>)","u":"addAll(java.util.Collection)"},{"p":"org.aion.avm.userlib","c":"AionSet","l":"addAll(Collection<? extends E>)","u":"addAll(java.util.Collection)"},{"p":"org.aion.avm.userlib","c":"AionList","l":"addAll(int, Collection<? extends E>)","u":"addAll(int,java.util.Collection)"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"ADDRESS"},{"p":"avm","c":"Address","l":"Address(byte[])","u":"%3Cinit%3E(byte[])"},{"p":"org.aion.avm.userlib","c":"AionList","l":"AionList()","u":"%3Cinit%3E()"},{"p":"org.aion.avm.userlib","c":"AionList.AionListIterator","l":"AionListIterator(int)","u":"%3Cinit%3E(int)"},{"p":"org.aion.avm.userlib","c":"AionMap","l":"AionMap()","u":"%3Cinit%3E()"},{"p":"org.aion.avm.userlib","c":"AionMap","l":"AionMap(int, float)","u":"%3Cinit%3E(int,float)"},{"p":"org.aion.avm.userlib","c":"AionSet","l":"AionSet()","u":"%3Cinit%3E()"},{"p":"org.aion.avm.userlib","c":"AionUtilities","l":"AionUtilities()","u":"%3Cinit%3E()"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"allocate(int)"},{"p":"avm","c":"AltBn128","l":"AltBn128()","u":"%3Cinit%3E()"},{"p":"org.aion.avm.embed","c":"AvmRule","l":"apply(Statement, Description)","u":"apply(org.junit.runners.model.Statement,org.junit.runner.Description)"},{"p":"org.aion.avm.userlib","c":"CodeAndArguments","l":"arguments"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"ARRAY"},{"p":"org.aion.avm.embed","c":"AvmRule","l":"avm"},{"p":"org.aion.avm.embed","c":"AvmRule","l":"AvmRule(boolean)","u":"%3Cinit%3E(boolean)"},{"p":"org.aion.avm.embed","c":"AvmRule","l":"balanceTransfer(Address, Address, BigInteger, long, long)","u":"balanceTransfer(avm.Address,avm.Address,java.math.BigInteger,long,long)"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"BIGINT"},{"p":"avm","c":"Blockchain","l":"blake2b(byte[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"BOOLEAN"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"BYTE"},{"p":"org.aion.avm.embed","c":"AvmRule","l":"call(Address, Address, BigInteger, byte[])","u":"call(avm.Address,avm.Address,java.math.BigInteger,byte[])"},{"p":"org.aion.avm.embed","c":"AvmRule","l":"call(Address, Address, BigInteger, byte[], long, long)","u":"call(avm.Address,avm.Address,java.math.BigInteger,byte[],long,long)"},{"p":"avm","c":"Blockchain","l":"call(Address, BigInteger, byte[], long)","u":"call(avm.Address,java.math.BigInteger,byte[],long)"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"CHAR"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"clear()"},{"p":"org.aion.avm.userlib","c":"AionList","l":"clear()"},{"p":"org.aion.avm.userlib","c":"AionMap","l":"clear()"},{"p":"org.aion.avm.userlib","c":"AionSet","l":"clear()"},{"p":"org.aion.avm.userlib","c":"CodeAndArguments","l":"code"},{"p":"org.aion.avm.userlib","c":"CodeAndArguments","l":"CodeAndArguments(byte[], byte[])","u":"%3Cinit%3E(byte[],byte[])"},{"p":"org.aion.avm.userlib","c":"AionList","l":"contains(Object)","u":"contains(java.lang.Object)"},{"p":"org.aion.avm.userlib","c":"AionSet","l":"contains(Object)","u":"contains(java.lang.Object)"},{"p":"org.aion.avm.userlib","c":"AionList","l":"containsAll(Collection<?>)","u":"containsAll(java.util.Collection)"},{"p":"org.aion.avm.userlib","c":"AionSet","l":"containsAll(Collection<?>)","u":"containsAll(java.util.Collection)"},{"p":"org.aion.avm.userlib","c":"AionMap","l":"containsKey(Object)","u":"containsKey(java.lang.Object)"},{"p":"org.aion.avm.userlib","c":"AionMap","l":"containsValue(Object)","u":"containsValue(java.lang.Object)"},{"p":"avm","c":"Blockchain","l":"create(BigInteger, byte[], long)","u":"create(java.math.BigInteger,byte[],long)"},{"p":"org.aion.avm.userlib","c":"CodeAndArguments","l":"decodeFromBytes(byte[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeMethodName()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOne2DBooleanArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOne2DByteArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOne2DCharacterArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOne2DDoubleArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOne2DFloatArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOne2DIntegerArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOne2DLongArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOne2DShortArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneAddress()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneAddressArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneBigInteger()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneBigIntegerArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneBoolean()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneBooleanArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneByte()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneByteArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneCharacter()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneCharacterArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneDouble()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneDoubleArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneFloat()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneFloatArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneInteger()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneIntegerArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneLong()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneLongArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneShort()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneShortArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneString()"},{"p":"org.aion.avm.userlib.abi","c":"ABIDecoder","l":"decodeOneStringArray()"},{"p":"org.aion.avm.embed","c":"AvmRule","l":"deploy(Address, BigInteger, byte[])","u":"deploy(avm.Address,java.math.BigInteger,byte[])"},{"p":"org.aion.avm.embed","c":"AvmRule","l":"deploy(Address, BigInteger, byte[], long, long)","u":"deploy(avm.Address,java.math.BigInteger,byte[],long,long)"},{"p":"org.aion.avm.embed","c":"AvmRule","l":"disableAutomaticBlockGeneration()"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"DOUBLE"},{"p":"avm","c":"Blockchain","l":"edVerify(byte[], byte[], byte[])","u":"edVerify(byte[],byte[],byte[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOne2DBooleanArray(boolean[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOne2DBooleanArray(boolean[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOne2DByteArray(byte[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOne2DByteArray(byte[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOne2DCharacterArray(char[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOne2DCharacterArray(char[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOne2DDoubleArray(double[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOne2DDoubleArray(double[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOne2DFloatArray(float[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOne2DFloatArray(float[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOne2DIntegerArray(int[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOne2DIntegerArray(int[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOne2DLongArray(long[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOne2DLongArray(long[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOne2DShortArray(short[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOne2DShortArray(short[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneAddress(Address)","u":"encodeOneAddress(avm.Address)"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneAddress(Address)","u":"encodeOneAddress(avm.Address)"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneAddressArray(Address[])","u":"encodeOneAddressArray(avm.Address[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneAddressArray(Address[])","u":"encodeOneAddressArray(avm.Address[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneBigInteger(BigInteger)","u":"encodeOneBigInteger(java.math.BigInteger)"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneBigInteger(BigInteger)","u":"encodeOneBigInteger(java.math.BigInteger)"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneBigIntegerArray(BigInteger[])","u":"encodeOneBigIntegerArray(java.math.BigInteger[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneBigIntegerArray(BigInteger[])","u":"encodeOneBigIntegerArray(java.math.BigInteger[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneBoolean(boolean)"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneBoolean(boolean)"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneBooleanArray(boolean[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneBooleanArray(boolean[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneByte(byte)"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneByte(byte)"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneByteArray(byte[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneByteArray(byte[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneCharacter(char)"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneCharacter(char)"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneCharacterArray(char[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneCharacterArray(char[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneDouble(double)"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneDouble(double)"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneDoubleArray(double[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneDoubleArray(double[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneFloat(float)"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneFloat(float)"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneFloatArray(float[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneFloatArray(float[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneInteger(int)"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneInteger(int)"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneIntegerArray(int[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneIntegerArray(int[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneLong(long)"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneLong(long)"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneLongArray(long[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneLongArray(long[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneShort(short)"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneShort(short)"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneShortArray(short[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneShortArray(short[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneString(String)","u":"encodeOneString(java.lang.String)"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneString(String)","u":"encodeOneString(java.lang.String)"},{"p":"org.aion.avm.userlib.abi","c":"ABIEncoder","l":"encodeOneStringArray(String[])","u":"encodeOneStringArray(java.lang.String[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"encodeOneStringArray(String[])","u":"encodeOneStringArray(java.lang.String[])"},{"p":"org.aion.avm.userlib","c":"CodeAndArguments","l":"encodeToBytes()"},{"p":"org.aion.avm.userlib","c":"AionMap","l":"entrySet()"},{"p":"avm","c":"Address","l":"equals(Object)","u":"equals(java.lang.Object)"},{"p":"avm","c":"Result","l":"equals(Object)","u":"equals(java.lang.Object)"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"equals(Object)","u":"equals(java.lang.Object)"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"flip()"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"FLOAT"},{"p":"avm","c":"AltBn128","l":"g1EcAdd(byte[], byte[])","u":"g1EcAdd(byte[],byte[])"},{"p":"avm","c":"AltBn128","l":"g1EcMul(byte[], BigInteger)","u":"g1EcMul(byte[],java.math.BigInteger)"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"get(byte[])"},{"p":"org.aion.avm.userlib","c":"AionList","l":"get(int)"},{"p":"org.aion.avm.userlib","c":"AionMap","l":"get(Object)","u":"get(java.lang.Object)"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"get32ByteInt()"},{"p":"avm","c":"Blockchain","l":"getAddress()"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"getAddress()"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"getArray()"},{"p":"avm","c":"Blockchain","l":"getBalance(Address)","u":"getBalance(avm.Address)"},{"p":"avm","c":"Blockchain","l":"getBalanceOfThisContract()"},{"p":"avm","c":"Blockchain","l":"getBlockCoinbase()"},{"p":"avm","c":"Blockchain","l":"getBlockDifficulty()"},{"p":"avm","c":"Blockchain","l":"getBlockEnergyLimit()"},{"p":"avm","c":"Blockchain","l":"getBlockNumber()"},{"p":"avm","c":"Blockchain","l":"getBlockTimestamp()"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"getBoolean()"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"getByte()"},{"p":"avm","c":"Blockchain","l":"getCaller()"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"getCapacity()"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"getChar()"},{"p":"avm","c":"Blockchain","l":"getCodeSize(Address)","u":"getCodeSize(avm.Address)"},{"p":"org.aion.avm.embed","c":"AvmRule.ResultWrapper","l":"getDappAddress()"},{"p":"org.aion.avm.embed","c":"AvmRule","l":"getDappBytes(Class<?>, byte[], Class<?>...)","u":"getDappBytes(java.lang.Class,byte[],java.lang.Class...)"},{"p":"org.aion.avm.embed","c":"AvmRule","l":"getDappBytes(Class<?>, byte[], int, Class<?>...)","u":"getDappBytes(java.lang.Class,byte[],int,java.lang.Class...)"},{"p":"org.aion.avm.embed","c":"AvmRule","l":"getDappBytesWithoutOptimization(Class<?>, byte[], Class<?>...)","u":"getDappBytesWithoutOptimization(java.lang.Class,byte[],java.lang.Class...)"},{"p":"avm","c":"Blockchain","l":"getData()"},{"p":"org.aion.avm.embed","c":"AvmRule.ResultWrapper","l":"getDecodedReturnData()"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"getDouble()"},{"p":"avm","c":"Blockchain","l":"getEnergyLimit()"},{"p":"avm","c":"Blockchain","l":"getEnergyPrice()"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"getFloat()"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"getInt()"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOne2DBooleanArray(boolean[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOne2DByteArray(byte[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOne2DCharacterArray(char[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOne2DDoubleArray(double[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOne2DFloatArray(float[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOne2DIntegerArray(int[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOne2DLongArray(long[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOne2DShortArray(short[][])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOneAddress(Address)","u":"getLengthOfOneAddress(avm.Address)"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOneBooleanArray(boolean[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOneByteArray(byte[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOneCharacterArray(char[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOneDoubleArray(double[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOneFloatArray(float[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOneIntegerArray(int[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOneLongArray(long[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOneShortArray(short[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOneString(String)","u":"getLengthOfOneString(java.lang.String)"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOneStringArray(Address[])","u":"getLengthOfOneStringArray(avm.Address[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"getLengthOfOneStringArray(String[])","u":"getLengthOfOneStringArray(java.lang.String[])"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"getLimit()"},{"p":"org.aion.avm.embed","c":"AvmRule.ResultWrapper","l":"getLogs()"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"getLong()"},{"p":"org.aion.avm.userlib","c":"AionMap","l":"getOrDefault(Object, V)","u":"getOrDefault(java.lang.Object,V)"},{"p":"avm","c":"Blockchain","l":"getOrigin()"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"getPosition()"},{"p":"org.aion.avm.embed","c":"AvmRule","l":"getPreminedAccount()"},{"p":"org.aion.avm.embed","c":"AvmRule","l":"getRandomAddress(BigInteger)","u":"getRandomAddress(java.math.BigInteger)"},{"p":"org.aion.avm.embed","c":"AvmRule.ResultWrapper","l":"getReceiptStatus()"},{"p":"avm","c":"Blockchain","l":"getRemainingEnergy()"},{"p":"avm","c":"Result","l":"getReturnData()"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"getShort()"},{"p":"avm","c":"Blockchain","l":"getStorage(byte[])"},{"p":"avm","c":"Blockchain","l":"getStorageBatch(byte[])"},{"p":"avm","c":"Blockchain","l":"getTransactionHash()"},{"p":"org.aion.avm.embed","c":"AvmRule.ResultWrapper","l":"getTransactionResult()"},{"p":"avm","c":"Blockchain","l":"getValue()"},{"p":"avm","c":"Address","l":"hashCode()"},{"p":"avm","c":"Result","l":"hashCode()"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"hashCode()"},{"p":"org.aion.avm.userlib","c":"AionList.AionListIterator","l":"hasNext()"},{"p":"org.aion.avm.userlib","c":"AionList.AionListIterator","l":"hasPrevious()"},{"p":"org.aion.avm.userlib","c":"AionList","l":"indexOf(Object)","u":"indexOf(java.lang.Object)"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"INT"},{"p":"avm","c":"Blockchain","l":"invalid()"},{"p":"avm","c":"Blockchain","l":"invokeTransaction(byte[], long)","u":"invokeTransaction(byte[],long)"},{"p":"org.aion.avm.userlib","c":"AionList","l":"isEmpty()"},{"p":"org.aion.avm.userlib","c":"AionMap","l":"isEmpty()"},{"p":"org.aion.avm.userlib","c":"AionSet","l":"isEmpty()"},{"p":"avm","c":"AltBn128","l":"isPairingProdEqualToOne(byte[], byte[])","u":"isPairingProdEqualToOne(byte[],byte[])"},{"p":"avm","c":"Result","l":"isSuccess()"},{"p":"org.aion.avm.userlib","c":"AionList","l":"iterator()"},{"p":"org.aion.avm.userlib","c":"AionSet","l":"iterator()"},{"p":"avm","c":"Blockchain","l":"keccak256(byte[])"},{"p":"org.aion.avm.embed","c":"AvmRule","l":"kernel"},{"p":"org.aion.avm.userlib","c":"AionMap","l":"keySet()"},{"p":"org.aion.avm.userlib","c":"AionList","l":"lastIndexOf(Object)","u":"lastIndexOf(java.lang.Object)"},{"p":"avm","c":"Address","l":"LENGTH"},{"p":"org.aion.avm.userlib","c":"AionList","l":"listIterator()"},{"p":"org.aion.avm.userlib","c":"AionList","l":"listIterator(int)"},{"p":"avm","c":"Blockchain","l":"log(byte[])"},{"p":"avm","c":"Blockchain","l":"log(byte[], byte[])","u":"log(byte[],byte[])"},{"p":"avm","c":"Blockchain","l":"log(byte[], byte[], byte[])","u":"log(byte[],byte[],byte[])"},{"p":"avm","c":"Blockchain","l":"log(byte[], byte[], byte[], byte[])","u":"log(byte[],byte[],byte[],byte[])"},{"p":"avm","c":"Blockchain","l":"log(byte[], byte[], byte[], byte[], byte[])","u":"log(byte[],byte[],byte[],byte[],byte[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"LONG"},{"p":"org.aion.avm.userlib","c":"AionList.AionListIterator","l":"next()"},{"p":"org.aion.avm.userlib","c":"AionList.AionListIterator","l":"nextIndex()"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"NULL"},{"p":"org.aion.avm.userlib","c":"AionUtilities","l":"padLeft(byte[])"},{"p":"org.aion.avm.userlib","c":"AionList.AionListIterator","l":"previous()"},{"p":"org.aion.avm.userlib","c":"AionList.AionListIterator","l":"previousIndex()"},{"p":"avm","c":"Blockchain","l":"print(String)","u":"print(java.lang.String)"},{"p":"avm","c":"Blockchain","l":"println(String)","u":"println(java.lang.String)"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"put(byte[])"},{"p":"org.aion.avm.userlib","c":"AionMap","l":"put(K, V)","u":"put(K,V)"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"put32ByteInt(BigInteger)","u":"put32ByteInt(java.math.BigInteger)"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"putAddress(Address)","u":"putAddress(avm.Address)"},{"p":"org.aion.avm.userlib","c":"AionMap","l":"putAll(Map<? extends K, ? extends V>)","u":"putAll(java.util.Map)"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"putBoolean(boolean)"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"putByte(byte)"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"putChar(char)"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"putDouble(double)"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"putFloat(float)"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"putInt(int)"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"putLong(long)"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"putShort(short)"},{"p":"avm","c":"Blockchain","l":"putStorage(byte[], byte[])","u":"putStorage(byte[],byte[])"},{"p":"avm","c":"Blockchain","l":"putStorageBatch(byte[], byte[])","u":"putStorageBatch(byte[],byte[])"},{"p":"org.aion.avm.userlib","c":"AionList.AionListIterator","l":"remove()"},{"p":"org.aion.avm.userlib","c":"AionList","l":"remove(int)"},{"p":"org.aion.avm.userlib","c":"AionList","l":"remove(Object)","u":"remove(java.lang.Object)"},{"p":"org.aion.avm.userlib","c":"AionMap","l":"remove(Object)","u":"remove(java.lang.Object)"},{"p":"org.aion.avm.userlib","c":"AionSet","l":"remove(Object)","u":"remove(java.lang.Object)"},{"p":"org.aion.avm.userlib","c":"AionList","l":"removeAll(Collection<?>)","u":"removeAll(java.util.Collection)"},{"p":"org.aion.avm.userlib","c":"AionSet","l":"removeAll(Collection<?>)","u":"removeAll(java.util.Collection)"},{"p":"avm","c":"Blockchain","l":"require(boolean)"},{"p":"avm","c":"Result","l":"Result(boolean, byte[])","u":"%3Cinit%3E(boolean,byte[])"},{"p":"org.aion.avm.userlib","c":"AionList","l":"retainAll(Collection<?>)","u":"retainAll(java.util.Collection)"},{"p":"org.aion.avm.userlib","c":"AionSet","l":"retainAll(Collection<?>)","u":"retainAll(java.util.Collection)"},{"p":"avm","c":"Blockchain","l":"revert()"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"rewind()"},{"p":"avm","c":"Blockchain","l":"selfDestruct(Address)","u":"selfDestruct(avm.Address)"},{"p":"org.aion.avm.userlib","c":"AionList.AionListIterator","l":"set(E)"},{"p":"org.aion.avm.userlib","c":"AionList","l":"set(int, E)","u":"set(int,E)"},{"p":"org.aion.avm.embed","c":"AvmRule","l":"setBlockchainPrintlnEnabled(boolean)"},{"p":"avm","c":"Blockchain","l":"sha256(byte[])"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"SHORT"},{"p":"org.aion.avm.userlib","c":"AionList","l":"size()"},{"p":"org.aion.avm.userlib","c":"AionMap","l":"size()"},{"p":"org.aion.avm.userlib","c":"AionSet","l":"size()"},{"p":"org.aion.avm.userlib.abi","c":"ABIToken","l":"STRING"},{"p":"org.aion.avm.userlib","c":"AionList","l":"subList(int, int)","u":"subList(int,int)"},{"p":"org.aion.avm.userlib","c":"AionList","l":"toArray()"},{"p":"org.aion.avm.userlib","c":"AionSet","l":"toArray()"},{"p":"org.aion.avm.userlib","c":"AionList","l":"toArray(T[])"},{"p":"org.aion.avm.userlib","c":"AionSet","l":"toArray(T[])"},{"p":"avm","c":"Address","l":"toByteArray()"},{"p":"org.aion.avm.userlib.abi","c":"ABIStreamingEncoder","l":"toBytes()"},{"p":"avm","c":"Address","l":"toString()"},{"p":"avm","c":"Result","l":"toString()"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"toString()"},{"p":"org.aion.avm.userlib","c":"AionList","l":"trimToSize()"},{"p":"org.aion.avm.userlib","c":"AionMap","l":"values()"},{"p":"org.aion.avm.userlib","c":"AionBuffer","l":"wrap(byte[])"}];updateSearchResults();
\ No newline at end of file
@@ -0,0 +1 @@
+packageSearchIndex = [{"l":"All Packages","u":"allpackages-index.html"},{"l":"avm"},{"l":"org.aion.avm.embed"},{"l":"org.aion.avm.userlib"},{"l":"org.aion.avm.userlib.abi"}];updateSearchResults();
\ No newline at end of file
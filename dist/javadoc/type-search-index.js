@@ -0,0 +1 @@
+typeSearchIndex = [{"p":"org.aion.avm.userlib.abi","l":"ABIDecoder"},{"p":"org.aion.avm.userlib.abi","l":"ABIEncoder"},{"p":"org.aion.avm.userlib.abi","l":"ABIException"},{"p":"org.aion.avm.userlib.abi","l":"ABIStreamingEncoder"},{"p":"org.aion.avm.userlib.abi","l":"ABIToken"},{"p":"avm","l":"Address"},{"p":"org.aion.avm.userlib","l":"AionBuffer"},{"p":"org.aion.avm.userlib","l":"AionList"},{"p":"org.aion.avm.userlib","l":"AionList.AionListIterator"},{"p":"org.aion.avm.userlib","l":"AionMap"},{"p":"org.aion.avm.userlib","l":"AionSet"},{"p":"org.aion.avm.userlib","l":"AionUtilities"},{"l":"All Classes and Interfaces","u":"allclasses-index.html"},{"p":"avm","l":"AltBn128"},{"p":"org.aion.avm.embed","l":"AvmRule"},{"p":"avm","l":"Blockchain"},{"p":"org.aion.avm.userlib","l":"CodeAndArguments"},{"p":"avm","l":"Result"},{"p":"org.aion.avm.embed","l":"AvmRule.ResultWrapper"}];updateSearchResults();
\ No newline at end of file
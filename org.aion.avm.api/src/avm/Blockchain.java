@@ -174,6 +174,30 @@ public final class Blockchain {
         return null;
     }
 
+    /**
+     * Returns the storage values of many keys, read at once (which costs less than calling getStorage() for each of them).
+     *
+     * @param keys the keys of the key-value data pairs, each 32 bytes, one after the other
+     * @return the values, in the order of the keys, each preceded by its length as a 4-byte big-endian int (or just a length of -1,
+     * if there is no value for that key)
+     * @throws IllegalArgumentException when the arguments are invalid, e.g. NULL keys or keys which aren't 32 bytes each
+     */
+    public static byte[] getStorageBatch(byte[] keys) throws IllegalArgumentException {
+        return null;
+    }
+
+    /**
+     * Puts the storage values of many keys at once.
+     * Each key costs the same as calling putStorage() for it.
+     *
+     * @param keys the keys of the key-value data pairs, each 32 bytes, one after the other
+     * @param values the values, in the order of the keys, each preceded by its length as a 4-byte big-endian int (or just a length of
+     * -1, to remove the value of that key), which is the format getStorageBatch() returns
+     * @throws IllegalArgumentException when the arguments are invalid, e.g. NULL keys or not as many values as keys
+     */
+    public static void putStorageBatch(byte[] keys, byte[] values) throws IllegalArgumentException {
+    }
+
     /**
      * Returns the balance of an account.
      *
@@ -15,6 +15,68 @@ public class AvmConfiguration {
      * of data hazards.  The transaction restarts caused by these aborts may reduce throughput on such highly connected blocks.
      */
     public int threadCount;
+    /**
+     * The strategy used by the concurrent executor to resolve data hazards between transactions in the same batch.
+     * ADDRESS_LOCK serializes all transactions touching the same address while SPECULATIVE runs them optimistically and
+     * re-executes only those which read state written by an earlier transaction in the batch.
+     */
+    public SchedulerType schedulerType;
+    /**
+     * If set to true, each batch is analyzed before it runs to predict which transactions depend on each other (by their sender
+     * and target addresses).  A transaction is then only handed to an executor thread once those it depends on have finished,
+     * and calls predicted to be plain balance transfers skip the DApp loading path.
+     * Data hazards the analysis can't see are still resolved by the scheduler, so this only changes performance.
+     */
+    public boolean enableDependencyPlanning;
+    /**
+     * If set to true, the balances, nonces, code and object graphs read from the kernel given to each run() are cached for the rest of
+     * that run, so the transactions of a block which call the same contracts (or come from the same senders) only read them from the
+     * kernel once.  The writes of the transactions are written through to the kernel, as they are committed.
+     * This assumes nothing else writes to the kernel while run() is executing the block.
+     */
+    public boolean enableBlockStateCache;
+    /**
+     * The maximum number of loaded DApps kept in the hot DApp cache, between transactions.
+     */
+    public int dappCacheMaxEntries;
+    /**
+     * The maximum total estimated size (code plus serialized graph) of the loaded DApps kept in the hot DApp cache.
+     */
+    public long dappCacheMaxBytes;
+    /**
+     * The maximum number of re-transformed code jars kept in the transformed code cache.
+     */
+    public int transformedCodeCacheMaxEntries;
+    /**
+     * The maximum total size of the re-transformed code jars kept in the transformed code cache.
+     */
+    public long transformedCodeCacheMaxBytes;
+    /**
+     * If set to true, the DApp and transformed code caches are unbounded and held by SoftReferences, ignoring the limits above.
+     * This means their size is only limited by the heap but they can be completely cleared by a single GC.
+     */
+    public boolean useSoftReferenceCaches;
+    /**
+     * If set to non-null, re-transformed code is also written to this directory so that it survives restarting the node.
+     * The entries are keyed by the code hash, transformation version and debuggability flag so the directory can be shared by
+     * AVM versions and never needs to be cleared (although it can be, at any time the AVM isn't running).
+     */
+    public File transformedCodeCacheDirectory;
+    /**
+     * The number of background threads used to re-transform and load the DApps called by each batch before the executor threads
+     * need them (0 disables this).  These threads run at minimum priority so they should only use otherwise idle cores.
+     */
+    public int warmupThreadCount;
+    /**
+     * The maximum number of DApps the warm-up threads prepare for each batch (the most frequently called ones are chosen).
+     */
+    public int warmupMaxDAppsPerBatch;
+    /**
+     * The number of threads shared by the executor threads to transform the classes of a DApp concurrently, when deploying or
+     * re-transforming it (0 means each executor thread transforms the classes itself, one at a time).
+     * The transformed code is the same either way, so this only changes how long a large DApp takes to deploy.
+     */
+    public int transformationThreadCount;
     /**
      * Decides if debug data and names need to be preserved during deployment transformation.
      * Note that this must be set to false as a requirement of the security model but that prohibits local debugging.  Hence, it
@@ -22,16 +84,34 @@ public class AvmConfiguration {
      * Some security violations will change into fatal assertion errors, instead of being rejected, if this is enabled.
      */
     public boolean preserveDebuggability;
+    /**
+     * If set to true, deployed classes are loaded (which is how they used to be verified), as well as analyzed (which is how they
+     * are verified, now), and a class which fails to load but passes the analysis is treated as an internal error.
+     * This makes deployment more expensive so it is only useful for checking the analysis, on a test network.
+     */
+    public boolean crossCheckVerification;
     /**
      * If set to true, will log details of uncaught contract exceptions to stderr.
      * Enabling this is useful for local debugging cases.
      */
     public boolean enableVerboseContractErrors;
     /**
-     * If set to true, will log more information about the state of the concurrent executor.
-     * Enabling this is only really useful when actively modifying the concurrent executor.
+     * No longer has any effect:  the concurrent executor's activity is always recorded in the execution trace (see
+     * executionTraceSpansPerThread), instead of being logged.
      */
+    @Deprecated
     public boolean enableVerboseConcurrentExecutor;
+    /**
+     * The number of spans (see org.aion.avm.core.metrics.SpanKind) each executor thread keeps for the execution trace of the last batch,
+     * which AvmImpl.getTracer() exports.  The trace is only complete if no thread recorded more than this in the batch.
+     * Must be a power of 2, or 0 to disable tracing.
+     */
+    public int executionTraceSpansPerThread;
+    /**
+     * If set to a positive number, the executor threads build a profile of the methods each DApp runs, by sampling the stack on every
+     * methodProfileSampleInterval-th method entry (see AvmImpl.getTracer()).  0 disables the profile.
+     */
+    public int methodProfileSampleInterval;
     /**
      * If set to true, will pass calls to Blockchain.println to the underlying stdout console.
      * If false, this call is still legal but will have no effect.
@@ -52,11 +132,35 @@ public class AvmConfiguration {
     public AvmConfiguration() {
         // 4 threads is generally a safe, yet useful, number.
         this.threadCount = 4;
+        // Address locking is the long-standing default.
+        this.schedulerType = SchedulerType.ADDRESS_LOCK;
+        // Dependency planning is new so it is opt-in.
+        this.enableDependencyPlanning = false;
+        // The block state cache is new so it is opt-in.
+        this.enableBlockStateCache = false;
+        // These limits are generous for the contracts active on a network while remaining a small part of a node's heap.
+        this.dappCacheMaxEntries = 1024;
+        this.dappCacheMaxBytes = 256L * 1024L * 1024L;
+        this.transformedCodeCacheMaxEntries = 1024;
+        this.transformedCodeCacheMaxBytes = 64L * 1024L * 1024L;
+        this.useSoftReferenceCaches = false;
+        // Persisting transformed code is opt-in since it requires the node to manage the directory.
+        this.transformedCodeCacheDirectory = null;
+        // The warm-up service is opt-in since it is only useful when the node has cores the executor threads don't use.
+        this.warmupThreadCount = 0;
+        this.warmupMaxDAppsPerBatch = 32;
+        // Concurrent transformation is opt-in since the pool competes with the executor threads for cores.
+        this.transformationThreadCount = 0;
+        // The analysis is trusted to verify the classes, by default.
+        this.crossCheckVerification = false;
         // By default, we MUST reparent user code and discard debug data!  This is part of the security model so it should only be enabled to enable local contract debugging.
         this.preserveDebuggability = false;
         // By default, none of our verbose options are enabled.
         this.enableVerboseContractErrors = false;
         this.enableVerboseConcurrentExecutor = false;
+        // Tracing is cheap enough to leave on (this is about 0.5 MB per thread) but the method profile costs a stack walk per sample.
+        this.executionTraceSpansPerThread = 16 * 1024;
+        this.methodProfileSampleInterval = 0;
         // While the system is still relatively new, we enable the Blockchain.println output, by default.
         this.enableBlockchainPrintln = true;
         // This is not a cheap bit of instrumentation so we disable it, by default.
@@ -1,26 +1,130 @@
 package org.aion.avm.core;
 
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import org.aion.avm.core.metrics.Histogram;
+import org.aion.avm.core.metrics.MetricsRegistry;
+import org.aion.avm.core.util.CacheStats;
+
 
 /**
  * Counters and timer data related to core AVM activities, more reflective of high-level usage than per-thread activities.
  * Mutable access to this structure is granted to all users since it is meant to be fast to access and has no internal
  * consistency requirements (although external consumers should take care to only make consistency assumptions when no
  * thread is in the AVM).
+ * The metrics registry exposes all of these (and the threads' histograms), for monitoring, and reads them when it is asked for them.
  */
 public class AvmCoreStats {
     public final AvmThreadStats[] threadStats;
+    // Empty if the warm-up service is disabled.
+    public final AvmThreadStats[] warmupThreadStats;
+    public final CacheStats dappCacheStats;
+    public final CacheStats transformedCodeCacheStats;
+    public final CacheStats persistentCodeCacheStats;
     public int transactionsConsumed;
     public int batchesConsumed;
+    // Only updated when dependency planning is enabled:  the shape of the last batch's predicted dependency graph.
+    public int lastBatchDependencyChains;
+    public int lastBatchCriticalPathLength;
+    public int lastBatchPredictedBalanceTransfers;
+    // Only updated when the block state cache is enabled:  the hits and misses of the last batch's cache (replaced by each batch).
+    public CacheStats lastBatchStateCacheStats;
+    public final MetricsRegistry metrics;
 
     public AvmCoreStats(AvmThreadStats[] threadStats) {
+        this(threadStats, new AvmThreadStats[0]);
+    }
+
+    public AvmCoreStats(AvmThreadStats[] threadStats, AvmThreadStats[] warmupThreadStats) {
         this.threadStats = threadStats;
+        this.warmupThreadStats = warmupThreadStats;
+        this.dappCacheStats = new CacheStats();
+        this.transformedCodeCacheStats = new CacheStats();
+        this.persistentCodeCacheStats = new CacheStats();
+        this.lastBatchStateCacheStats = new CacheStats();
+        this.metrics = new MetricsRegistry();
+        registerMetrics();
     }
 
     public void clear() {
         for (AvmThreadStats stat : this.threadStats) {
             stat.clear();
         }
+        for (AvmThreadStats stat : this.warmupThreadStats) {
+            stat.clear();
+        }
+        this.dappCacheStats.clear();
+        this.transformedCodeCacheStats.clear();
+        this.persistentCodeCacheStats.clear();
         this.transactionsConsumed = 0;
         this.batchesConsumed = 0;
+        this.lastBatchDependencyChains = 0;
+        this.lastBatchCriticalPathLength = 0;
+        this.lastBatchPredictedBalanceTransfers = 0;
+        this.lastBatchStateCacheStats = new CacheStats();
+    }
+
+
+    private void registerMetrics() {
+        this.metrics.registerCounter("avm_batches_total", "Batches of transactions run.", "", () -> this.batchesConsumed);
+        this.metrics.registerCounter("avm_transactions_total", "Transactions run.", "", () -> this.transactionsConsumed);
+        this.metrics.registerGauge("avm_last_batch_dependency_chains", "Independent chains in the last batch's dependency graph.", "", () -> this.lastBatchDependencyChains);
+        this.metrics.registerGauge("avm_last_batch_critical_path_length", "Longest chain in the last batch's dependency graph.", "", () -> this.lastBatchCriticalPathLength);
+
+        registerCacheMetrics("dapp", () -> this.dappCacheStats);
+        registerCacheMetrics("transformed_code", () -> this.transformedCodeCacheStats);
+        registerCacheMetrics("persistent_code", () -> this.persistentCodeCacheStats);
+        // (these are replaced by each batch so this reads the last batch's)
+        registerCacheMetrics("block_state", () -> this.lastBatchStateCacheStats);
+
+        registerThreadCounter("avm_thread_transactions_processed_total", "Transactions run by the thread.", (stats) -> stats.transactionsProcessed);
+        registerThreadCounter("avm_thread_running_nanoseconds_total", "Time the thread spent running transactions.", (stats) -> stats.nanosRunning);
+        registerThreadCounter("avm_thread_sleeping_nanoseconds_total", "Time the thread spent waiting for transactions.", (stats) -> stats.nanosSleeping);
+        registerThreadCounter("avm_thread_transaction_aborts_total", "Attempts to run a transaction which were aborted and retried.", (stats) -> stats.transactionsAborted);
+        registerThreadCounter("avm_thread_balance_transfers_fast_tracked_total", "Predicted balance transfers which skipped loading a DApp.", (stats) -> stats.balanceTransfersFastTracked);
+        registerThreadCounter("avm_thread_retransformations_from_warmup_total", "Re-transformations done by the warm-up service instead of the thread.", (stats) -> stats.retransformationsFromWarmup);
+        registerThreadCounter("avm_thread_dapp_loads_from_warmup_total", "DApp loads done by the warm-up service instead of the thread.", (stats) -> stats.dappLoadsFromWarmup);
+
+        registerThreadHistogram("avm_transformation_nanoseconds", "Time to transform a deployed DApp.", (stats) -> stats.transformationNanos);
+        registerThreadHistogram("avm_retransformation_nanoseconds", "Time to re-transform a DApp's code.", (stats) -> stats.retransformationNanos);
+        registerThreadHistogram("avm_graph_load_nanoseconds", "Time to deserialize a DApp's graph.", (stats) -> stats.graphLoadNanos);
+        registerThreadHistogram("avm_graph_store_nanoseconds", "Time to serialize a DApp's graph.", (stats) -> stats.graphStoreNanos);
+        registerThreadHistogram("avm_graph_size_bytes", "Size of each DApp graph stored.", (stats) -> stats.graphSizeBytes);
+        registerThreadHistogram("avm_call_main_nanoseconds", "Time in a DApp's main(), including the calls it makes.", (stats) -> stats.callMainNanos);
+        registerThreadHistogram("avm_commit_wait_nanoseconds", "Time a transaction waited for the transactions before it to commit.", (stats) -> stats.commitWaitNanos);
+        registerThreadHistogram("avm_aborted_attempt_nanoseconds", "Time spent on each attempt to run a transaction which was aborted.", (stats) -> stats.abortedAttemptNanos);
+    }
+
+    private void registerCacheMetrics(String cache, Supplier<CacheStats> stats) {
+        String labels = MetricsRegistry.labels("cache", cache);
+        this.metrics.registerCounter("avm_cache_hits_total", "Cache lookups which found a value.", labels, () -> stats.get().getHitCount());
+        this.metrics.registerCounter("avm_cache_misses_total", "Cache lookups which found nothing.", labels, () -> stats.get().getMissCount());
+        this.metrics.registerCounter("avm_cache_evictions_total", "Cached values dropped to make room for others.", labels, () -> stats.get().getEvictionCount());
+    }
+
+    private void registerThreadCounter(String name, String help, ToLongFunction<AvmThreadStats> reader) {
+        for (int i = 0; i < this.threadStats.length; ++i) {
+            AvmThreadStats stats = this.threadStats[i];
+            this.metrics.registerCounter(name, help, threadLabels("executor", i), () -> reader.applyAsLong(stats));
+        }
+        for (int i = 0; i < this.warmupThreadStats.length; ++i) {
+            AvmThreadStats stats = this.warmupThreadStats[i];
+            this.metrics.registerCounter(name, help, threadLabels("warmup", i), () -> reader.applyAsLong(stats));
+        }
+    }
+
+    private void registerThreadHistogram(String name, String help, Function<AvmThreadStats, Histogram> reader) {
+        for (int i = 0; i < this.threadStats.length; ++i) {
+            this.metrics.registerHistogram(name, help, threadLabels("executor", i), reader.apply(this.threadStats[i]));
+        }
+        for (int i = 0; i < this.warmupThreadStats.length; ++i) {
+            this.metrics.registerHistogram(name, help, threadLabels("warmup", i), reader.apply(this.warmupThreadStats[i]));
+        }
+    }
+
+    private static String threadLabels(String kind, int index) {
+        return MetricsRegistry.labels("thread", kind + "-" + index);
     }
 }
@@ -7,24 +7,38 @@ import org.aion.types.AionAddress;
 import org.aion.types.Transaction;
 import org.aion.kernel.*;
 
+import java.io.File;
 import java.io.IOException;
-import java.lang.ref.SoftReference;
 import java.math.BigInteger;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.function.Consumer;
-import java.util.function.Predicate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
+import org.aion.avm.core.metrics.ExecutionTracer;
+import org.aion.avm.core.metrics.MethodProfiler;
+import org.aion.avm.core.metrics.SpanKind;
+import org.aion.avm.core.metrics.TraceRing;
 import org.aion.avm.core.persistence.LoadedDApp;
+import org.aion.avm.core.util.BoundedCache;
 import org.aion.avm.core.util.ByteArrayWrapper;
+import org.aion.avm.core.util.CacheStats;
 import org.aion.avm.core.util.ContractCaptureTool;
+import org.aion.avm.core.util.ICheckoutCache;
+import org.aion.avm.core.util.PersistentCodeCache;
 import org.aion.avm.core.util.SoftCache;
+import i.CommonInstrumentation;
 import i.IInstrumentation;
 import i.IInstrumentationFactory;
 import i.InstrumentationHelpers;
+import i.InstrumentedThread;
 import i.JvmError;
 import i.RuntimeAssertionError;
+import org.aion.kernel.ReadWriteSet.StateKind;
 import org.aion.parallel.AddressResourceMonitor;
+import org.aion.parallel.IResourceMonitor;
+import org.aion.parallel.SpeculativeResourceMonitor;
+import org.aion.parallel.TransactionDependencyGraph;
 import org.aion.parallel.TransactionTask;
 
 
@@ -36,23 +50,42 @@ public class AvmImpl implements AvmInternal {
 
     // Long-lived state which is book-ended by the startup/shutdown calls.
     private static AvmImpl currentAvm;  // (only here for testing - makes sure that we properly clean these up between invocations)
-    private SoftCache<ByteArrayWrapper, LoadedDApp> hotCache;
-    private SoftCache<ByteArrayWrapper, byte[]> transformedCodeCache;
+    private ICheckoutCache<ByteArrayWrapper, LoadedDApp> hotCache;
+    private ICheckoutCache<ByteArrayWrapper, byte[]> transformedCodeCache;
+    private PersistentCodeCache persistentCodeCache;
+    private WarmupService warmupService;
+    private ForkJoinPool transformationPool;
     private HandoffMonitor handoff;
 
     // Short-lived state which is reset for each batch of transaction request.
-    private AddressResourceMonitor resourceMonitor;
+    private IResourceMonitor resourceMonitor;
 
     // Shared references to the stats structure - created when threads are started (since their stats are also held here).
     private AvmCoreStats stats;
+    // Created when threads are started (since it holds their trace rings).
+    private ExecutionTracer tracer;
 
     // Used in the case of a fatal JvmError in the background threads.  A shutdown() is the only option from this point.
     private AvmFailedException backgroundFatalError;
 
     private final int threadCount;
+    private final SchedulerType schedulerType;
+    private final boolean enableDependencyPlanning;
+    private final boolean enableBlockStateCache;
+    private final int dappCacheMaxEntries;
+    private final long dappCacheMaxBytes;
+    private final int transformedCodeCacheMaxEntries;
+    private final long transformedCodeCacheMaxBytes;
+    private final boolean useSoftReferenceCaches;
+    private final File transformedCodeCacheDirectory;
+    private final int warmupThreadCount;
+    private final int warmupMaxDAppsPerBatch;
+    private final int transformationThreadCount;
+    private final boolean crossCheckVerification;
     private final boolean preserveDebuggability;
     private final boolean enableVerboseContractErrors;
-    private final boolean enableVerboseConcurrentExecutor;
+    private final int executionTraceSpansPerThread;
+    private final int methodProfileSampleInterval;
     private final boolean enableBlockchainPrintln;
     private final HistogramDataCollector histogramDataCollector;
     private final ContractCaptureTool contractCaptureTool;
@@ -65,9 +98,38 @@ public class AvmImpl implements AvmInternal {
             throw new IllegalArgumentException("Thread count must be a positive integer");
         }
         this.threadCount = configuration.threadCount;
+        if (null == configuration.schedulerType) {
+            throw new IllegalArgumentException("Scheduler type must be specified");
+        }
+        this.schedulerType = configuration.schedulerType;
+        this.enableDependencyPlanning = configuration.enableDependencyPlanning;
+        this.enableBlockStateCache = configuration.enableBlockStateCache;
+        this.useSoftReferenceCaches = configuration.useSoftReferenceCaches;
+        if (!this.useSoftReferenceCaches) {
+            if ((configuration.dappCacheMaxEntries < 1) || (configuration.dappCacheMaxBytes < 1L)
+                    || (configuration.transformedCodeCacheMaxEntries < 1) || (configuration.transformedCodeCacheMaxBytes < 1L)) {
+                throw new IllegalArgumentException("Cache limits must be positive");
+            }
+        }
+        this.dappCacheMaxEntries = configuration.dappCacheMaxEntries;
+        this.dappCacheMaxBytes = configuration.dappCacheMaxBytes;
+        this.transformedCodeCacheMaxEntries = configuration.transformedCodeCacheMaxEntries;
+        this.transformedCodeCacheMaxBytes = configuration.transformedCodeCacheMaxBytes;
+        this.transformedCodeCacheDirectory = configuration.transformedCodeCacheDirectory;
+        if ((configuration.warmupThreadCount < 0) || (configuration.warmupMaxDAppsPerBatch < 0)) {
+            throw new IllegalArgumentException("Warm-up limits must not be negative");
+        }
+        this.warmupThreadCount = configuration.warmupThreadCount;
+        this.warmupMaxDAppsPerBatch = configuration.warmupMaxDAppsPerBatch;
+        if (configuration.transformationThreadCount < 0) {
+            throw new IllegalArgumentException("Transformation thread count must not be negative");
+        }
+        this.transformationThreadCount = configuration.transformationThreadCount;
+        this.crossCheckVerification = configuration.crossCheckVerification;
         this.preserveDebuggability = configuration.preserveDebuggability;
         this.enableVerboseContractErrors = configuration.enableVerboseContractErrors;
-        this.enableVerboseConcurrentExecutor = configuration.enableVerboseConcurrentExecutor;
+        this.executionTraceSpansPerThread = configuration.executionTraceSpansPerThread;
+        this.methodProfileSampleInterval = configuration.methodProfileSampleInterval;
         this.enableBlockchainPrintln = configuration.enableBlockchainPrintln;
         this.internalLogger = new InternalLogger(System.err);
         this.histogramDataCollector = (null != configuration.deploymentDataHistorgramOutput)
@@ -78,16 +140,24 @@ public class AvmImpl implements AvmInternal {
                 : null;
     }
 
-    private class AvmExecutorThread extends Thread{
+    private class AvmExecutorThread extends InstrumentedThread {
         public final AvmThreadStats stats = new AvmThreadStats();
+        public final TraceRing trace;
+        // Null unless method profiling is enabled.
+        public final MethodProfiler methodProfiler;
 
-        AvmExecutorThread(String name){
+        AvmExecutorThread(String name, TraceRing trace, MethodProfiler methodProfiler){
             super(name);
+            this.trace = trace;
+            this.methodProfiler = methodProfiler;
         }
 
         @Override
         public void run() {
             IInstrumentation instrumentation = AvmImpl.this.instrumentationFactory.createInstrumentation();
+            if ((null != this.methodProfiler) && (instrumentation instanceof CommonInstrumentation)) {
+                ((CommonInstrumentation) instrumentation).setMethodSampler(this.methodProfiler);
+            }
             InstrumentationHelpers.attachThread(instrumentation);
             try {
                 // Run as long as we have something to do (null means shutdown).
@@ -100,37 +170,31 @@ public class AvmImpl implements AvmInternal {
                 this.stats.nanosSleeping += (nanosSleepingStop - nanosSleepingStart);
 
                 while (null != incomingTask) {
-                    int abortCounter = 0;
-
+                    this.trace.record(SpanKind.QUEUE_WAIT, incomingTask.getIndex(), Math.min(AvmImpl.this.tracer.getBatchStartNanos(), nanosRunningStart), nanosRunningStart, null);
                     do {
-                        if (AvmImpl.this.enableVerboseConcurrentExecutor) {
-                            System.out.println(this.getName() + " start  " + incomingTask.getIndex());
-                        }
-
                         // Attach the IInstrumentation helper to the task to support asynchronous abort
                         // Instrumentation helper will abort the execution of the transaction by throwing an exception during chargeEnergy call
                         // Aborted transaction will be retried later
-                        incomingTask.startNewTransaction();
+                        long attemptStart = System.nanoTime();
+                        AvmImpl.this.resourceMonitor.startTransaction(incomingTask);
                         incomingTask.attachInstrumentationForThread();
                         outgoingResult = AvmImpl.this.backgroundProcessTransaction(incomingTask);
                         incomingTask.detachInstrumentationForThread();
+                        long attemptEnd = System.nanoTime();
 
                         if (outgoingResult.isAborted()) {
+                            this.stats.transactionsAborted += 1;
+                            this.stats.abortedAttemptNanos.record(attemptEnd - attemptStart);
+                            this.trace.record(SpanKind.ABORT, incomingTask.getIndex(), attemptStart, attemptEnd, null);
                             // If this was an abort, we want to clear the abort state on the instrumentation for this thread, since
                             // this is the point where that is "handled".
                             // Note that this is safe to do here since the instrumentation isn't exposed to any other threads.
                             instrumentation.clearAbortState();
-                            
-                            if (AvmImpl.this.enableVerboseConcurrentExecutor) {
-                                System.out.println(this.getName() + " abort  " + incomingTask.getIndex() + " counter " + (++abortCounter));
-                            }
+                        } else {
+                            this.trace.record(SpanKind.TRANSACTION, incomingTask.getIndex(), attemptStart, attemptEnd, null);
                         }
                     }while (outgoingResult.isAborted());
 
-                    if (AvmImpl.this.enableVerboseConcurrentExecutor) {
-                        System.out.println(this.getName() + " finish " + incomingTask.getIndex() + " " + outgoingResult);
-                    }
-
                     this.stats.transactionsProcessed += 1;
                     nanosRunningStop = System.nanoTime();
                     nanosSleepingStart = nanosRunningStop;
@@ -172,25 +236,61 @@ public class AvmImpl implements AvmInternal {
             this.contractCaptureTool.startup();
         }
         
-        RuntimeAssertionError.assertTrue(null == this.hotCache);
-        RuntimeAssertionError.assertTrue(null == this.transformedCodeCache);
-        this.hotCache = new SoftCache<>();
-        this.transformedCodeCache = new SoftCache<>();
-
         RuntimeAssertionError.assertTrue(null == this.resourceMonitor);
-        this.resourceMonitor = new AddressResourceMonitor();
+        this.resourceMonitor = (SchedulerType.SPECULATIVE == this.schedulerType)
+                ? new SpeculativeResourceMonitor()
+                : new AddressResourceMonitor();
+
+        String[] threadNames = new String[this.threadCount];
+        for (int i = 0; i < this.threadCount; i++){
+            threadNames[i] = "AVM Executor Thread " + i;
+        }
+        RuntimeAssertionError.assertTrue(null == this.tracer);
+        this.tracer = new ExecutionTracer(threadNames, this.executionTraceSpansPerThread, this.methodProfileSampleInterval);
 
         AvmThreadStats[] threadStats = new AvmThreadStats[this.threadCount];
         Set<Thread> executorThreads = new HashSet<>();
         for (int i = 0; i < this.threadCount; i++){
-            AvmExecutorThread thread = new AvmExecutorThread("AVM Executor Thread " + i);
+            AvmExecutorThread thread = new AvmExecutorThread(threadNames[i], this.tracer.getRing(i), this.tracer.newMethodProfiler());
             executorThreads.add(thread);
             threadStats[i] = thread.stats;
         }
-        this.stats = new AvmCoreStats(threadStats);
+        RuntimeAssertionError.assertTrue(null == this.warmupService);
+        if (this.warmupThreadCount > 0) {
+            this.warmupService = new WarmupService(this.warmupThreadCount, this.warmupMaxDAppsPerBatch, this.preserveDebuggability);
+            this.stats = new AvmCoreStats(threadStats, this.warmupService.getThreadStats());
+        } else {
+            this.stats = new AvmCoreStats(threadStats);
+        }
+
+        RuntimeAssertionError.assertTrue(null == this.transformationPool);
+        if (this.transformationThreadCount > 0) {
+            this.transformationPool = new ForkJoinPool(this.transformationThreadCount, (pool) -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("AVM Transformation Thread " + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+        }
+
+        RuntimeAssertionError.assertTrue(null == this.hotCache);
+        RuntimeAssertionError.assertTrue(null == this.transformedCodeCache);
+        this.hotCache = this.useSoftReferenceCaches
+                ? new SoftCache<>(this.stats.dappCacheStats)
+                : new BoundedCache<>(this.dappCacheMaxEntries, this.dappCacheMaxBytes, LoadedDApp::getEstimatedSizeInBytes, this.stats.dappCacheStats);
+        this.transformedCodeCache = this.useSoftReferenceCaches
+                ? new SoftCache<>(this.stats.transformedCodeCacheStats)
+                : new BoundedCache<>(this.transformedCodeCacheMaxEntries, this.transformedCodeCacheMaxBytes, (code) -> code.length, this.stats.transformedCodeCacheStats);
+        RuntimeAssertionError.assertTrue(null == this.persistentCodeCache);
+        if (null != this.transformedCodeCacheDirectory) {
+            this.persistentCodeCache = new PersistentCodeCache(this.transformedCodeCacheDirectory, CodeReTransformer.TRANSFORMATION_VERSION, this.stats.persistentCodeCacheStats);
+            this.persistentCodeCache.startup();
+        }
 
         RuntimeAssertionError.assertTrue(null == this.handoff);
         this.handoff = new HandoffMonitor(executorThreads);
+        if (null != this.warmupService) {
+            this.handoff.setBatchCompletionListener(this.warmupService::endBatch);
+        }
         this.handoff.startExecutorThreads();
     }
 
@@ -227,22 +327,53 @@ public class AvmImpl implements AvmInternal {
         }
         // Clear the states of resources
         this.resourceMonitor.clear();
+        this.tracer.startBatch();
+
+        // Everything this batch reads from the kernel (including the warm-up and planning) goes through the cache, if enabled.
+        IExternalState blockKernel = kernel;
+        if (this.enableBlockStateCache) {
+            BlockCachingState cache = new BlockCachingState(kernel);
+            this.stats.lastBatchStateCacheStats = cache.getStats();
+            blockKernel = cache;
+        }
 
         // Create tasks for these new transactions and send them off to be asynchronously executed.
         TransactionTask[] tasks = new TransactionTask[transactions.length];
         for (int i = 0; i < transactions.length; i++){
-            tasks[i] = new TransactionTask(kernel, transactions[i], i, transactions[i].senderAddress, executionType, commonMainchainBlockNumber);
+            tasks[i] = new TransactionTask(blockKernel, transactions[i], i, transactions[i].senderAddress, executionType, commonMainchainBlockNumber);
+        }
+
+        // Deep side-chains don't use the caches and are rare enough that we don't want them to influence what gets warmed up.
+        if ((null != this.warmupService) && (ExecutionType.ASSUME_DEEP_SIDECHAIN != executionType)) {
+            this.warmupService.startBatch(blockKernel, transactions, this.hotCache::containsKey);
         }
 
         this.stats.batchesConsumed += 1;
         this.stats.transactionsConsumed += transactions.length;
-        return this.handoff.sendTransactionsAsynchronously(tasks);
+        FutureResult[] results;
+        if (this.enableDependencyPlanning) {
+            TransactionDependencyGraph graph = TransactionDependencyGraph.build(blockKernel, this.capabilities, tasks);
+            this.stats.lastBatchDependencyChains = graph.chainCount;
+            this.stats.lastBatchCriticalPathLength = graph.criticalPathLength;
+            this.stats.lastBatchPredictedBalanceTransfers = graph.balanceTransferCount;
+            results = this.handoff.sendTransactionsAsynchronously(tasks, graph);
+        } else {
+            results = this.handoff.sendTransactionsAsynchronously(tasks);
+        }
+        return results;
     }
 
     public AvmCoreStats getStats() {
         return this.stats;
     }
 
+    /**
+     * @return The execution trace of the last batch and the method profiles of the DApps (null if the AVM hasn't been started).
+     */
+    public ExecutionTracer getTracer() {
+        return this.tracer;
+    }
+
     private AvmWrappedTransactionResult backgroundProcessTransaction(TransactionTask task) {
         // to capture any error during validation
         AvmInternalError error = AvmInternalError.NONE;
@@ -298,7 +429,12 @@ public class AvmImpl implements AvmInternal {
 
         // Task transactional kernel commits are serialized through address resource monitor
         // This should be done for all transaction result cases, including FAILED_ABORT, because one of the addresses might have been acquired
-        if (!this.resourceMonitor.commitKernelForTask(task, result.isRejected())) {
+        long commitStart = System.nanoTime();
+        boolean didCommit = this.resourceMonitor.commitKernelForTask(task, result.isRejected());
+        long commitEnd = System.nanoTime();
+        getCurrentThreadStats().commitWaitNanos.record(commitEnd - commitStart);
+        getCurrentTraceRing().record(SpanKind.COMMIT_WAIT, task.getIndex(), commitStart, commitEnd, null);
+        if (!didCommit) {
             // A transaction task can be aborted even after it has finished.
             result = TransactionResultUtil.newAbortedResultWithZeroEnergyUsed();
         }
@@ -329,6 +465,19 @@ public class AvmImpl implements AvmInternal {
         AvmImpl.currentAvm = null;
         this.hotCache = null;
         this.transformedCodeCache = null;
+        if (null != this.persistentCodeCache) {
+            this.persistentCodeCache.shutdown();
+            this.persistentCodeCache = null;
+        }
+        if (null != this.warmupService) {
+            this.warmupService.shutdown();
+            this.warmupService = null;
+        }
+        if (null != this.transformationPool) {
+            // The executor threads are stopped so nothing can still be using the pool.
+            this.transformationPool.shutdown();
+            this.transformationPool = null;
+        }
         
         // Note that we don't want to hide the background exception, if one happened, but we do want to complete the shutdown, so we do this at the end.
         if (null != errorDuringShutdown) {
@@ -364,7 +513,7 @@ public class AvmImpl implements AvmInternal {
         }
         RuntimeAssertionError.assertTrue(!task.isSideEffectsStackEmpty());
         task.pushSideEffects(new SideEffects());
-        AvmWrappedTransactionResult result = commonInvoke(parentKernel, task, senderAddress, isCreate, normalCallTarget, effectiveTransactionOrigin, transactionData, transactionHash, energyLimit, energyPrice, transactionValue, nonce, 0);
+        AvmWrappedTransactionResult result = commonInvoke(parentKernel, task, senderAddress, isCreate, normalCallTarget, effectiveTransactionOrigin, transactionData, transactionHash, energyLimit, energyPrice, transactionValue, nonce, 0, false);
         SideEffects txSideEffects = task.popSideEffects();
         if (!result.isSuccess()) {
             txSideEffects.getExecutionLogs().clear();
@@ -416,7 +565,7 @@ public class AvmImpl implements AvmInternal {
 
         // Run the common logic with the parent kernel as the top-level one.
         // (externally-originating transactions use sender as origin)
-        AvmWrappedTransactionResult result = commonInvoke(parentKernel, task, senderAddress, isCreate, normalCallTarget, senderAddress, transactionData, transactionHash, energyLimit, energyPrice, transactionValue, nonce, basicTransactionCost);
+        AvmWrappedTransactionResult result = commonInvoke(parentKernel, task, senderAddress, isCreate, normalCallTarget, senderAddress, transactionData, transactionHash, energyLimit, energyPrice, transactionValue, nonce, basicTransactionCost, task.isPredictedBalanceTransfer());
 
         // Refund energy for transaction
         BigInteger refund = BigInteger.valueOf(energyLimit - result.energyUsed()).multiply(BigInteger.valueOf(energyPrice));
@@ -447,6 +596,7 @@ public class AvmImpl implements AvmInternal {
             , BigInteger transactionValue
             , BigInteger nonce
             , long transactionBaseCost
+            , boolean isPredictedBalanceTransfer  // Only ever true for the external call.
     ) {
         // A create MUST provide a null target and non-creates must NOT have null targets.
         RuntimeAssertionError.assertTrue(isCreate == (null == normalCallTarget));
@@ -481,7 +631,11 @@ public class AvmImpl implements AvmInternal {
                     }
                 }
             }
-            result = DAppCreator.create(this.capabilities, thisTransactionKernel, this, task, senderAddress, recipient, effectiveTransactionOrigin, transactionData, transactionHash, energyLimit, energyPrice, transactionValue, result, this.preserveDebuggability, this.enableVerboseContractErrors, this.enableBlockchainPrintln);
+            result = DAppCreator.create(this.capabilities, thisTransactionKernel, this, task, senderAddress, recipient, effectiveTransactionOrigin, transactionData, transactionHash, energyLimit, energyPrice, transactionValue, result, this.transformationPool, this.crossCheckVerification, this.preserveDebuggability, this.enableVerboseContractErrors, this.enableBlockchainPrintln);
+        } else if (isPredictedBalanceTransfer && (null == thisTransactionKernel.getCode(recipient))) {
+            // The planner saw no code at the target and none has been deployed there since, so this is a plain balance transfer:
+            // there is no DApp to find on the call-stack, in the caches, or to load.
+            getCurrentThreadStats().balanceTransfersFastTracked += 1;
         } else { // call
             // See if this call is trying to reenter one already on this call-stack.  If so, we will need to partially resume its state.
             ReentrantDAppStack.ReentrantState stateToResume = task.getReentrantDAppStack().tryShareState(recipient);
@@ -522,6 +676,12 @@ public class AvmImpl implements AvmInternal {
                     }
                 }
 
+                // If the warm-up service may have done some of the work we still need to do, collect it.
+                WarmupService.PreparedDApp warmedUp = null;
+                if ((null != this.warmupService) && ((null == transformedCode) || (null == dappInHotCache))) {
+                    warmedUp = this.warmupService.take(addressWrapper);
+                }
+
                 if (task.executionType == ExecutionType.ASSUME_MAINCHAIN || task.executionType == ExecutionType.SWITCHING_MAINCHAIN) {
                     // cache has been validated for these two types before getting here
                     writeToCacheEnabled = true;
@@ -532,7 +692,7 @@ public class AvmImpl implements AvmInternal {
                         // Check if the code is valid at this height. The last valid block for code cache is the CommonMainchainBlockNumber
                         if (!dappInHotCache.hasValidCachedCode(task.commonMainchainBlockNumber + 1)) {
                             // if we cannot use the cache, put the dapp back and work with the database
-                            this.hotCache.checkin(addressWrapper, dappInHotCache);
+                            checkinToCache(task, this.hotCache, addressWrapper, dappInHotCache);
                             writeToCacheEnabled = false;
                             dappInHotCache = null;
                         } else {
@@ -562,12 +722,23 @@ public class AvmImpl implements AvmInternal {
                     byte[] code = thisTransactionKernel.getCode(recipient);
                     //'thisTransactionKernel.getCode(recipient) != null' means this recipient's DApp is not self-destructed.
                     if (code != null) {
-                        // if the transformed code was not in the cache, re-transform the code
+                        // if the transformed code was not in the cache, try the persistent cache before re-transforming the code
                         if (cachedTransformedCode == null) {
-                            transformedCode = CodeReTransformer.transformCode(code, thisTransactionKernel.getBlockTimestamp(), this.preserveDebuggability, this.enableVerboseContractErrors);
+                            if (null != this.persistentCodeCache) {
+                                transformedCode = this.persistentCodeCache.load(code, this.preserveDebuggability);
+                            }
+                            if ((transformedCode == null) && (null != warmedUp) && warmedUp.wasTransformedFrom(code)) {
+                                transformedCode = warmedUp.transformedCode;
+                                getCurrentThreadStats().retransformationsFromWarmup += 1;
+                            }
                             if (transformedCode == null) {
-                                // re-transformation failed. This dApp is no longer supported in the new version of AVM.
-                                result = TransactionResultUtil.setNonRevertedFailureAndEnergyUsed(result, AvmInternalError.FAILED_RETRANSFORMATION, energyLimit);
+                                transformedCode = CodeReTransformer.transformCode(code, thisTransactionKernel.getBlockTimestamp(), this.preserveDebuggability, this.enableVerboseContractErrors, this.transformationPool);
+                                if (transformedCode == null) {
+                                    // re-transformation failed. This dApp is no longer supported in the new version of AVM.
+                                    result = TransactionResultUtil.setNonRevertedFailureAndEnergyUsed(result, AvmInternalError.FAILED_RETRANSFORMATION, energyLimit);
+                                } else if (null != this.persistentCodeCache) {
+                                    this.persistentCodeCache.storeAsynchronously(code, this.preserveDebuggability, transformedCode);
+                                }
                             }
                         } else {
                             transformedCode = cachedTransformedCode;
@@ -588,7 +759,7 @@ public class AvmImpl implements AvmInternal {
                             // Write the transformed code back to the cache (regardless of the transaction result), if it was there to begin with.
                             // Mining and eth_call blocks should not change the state of the transformed code cache.
                             if (cachedTransformedCode != null) {
-                                this.transformedCodeCache.checkin(addressWrapper, cachedTransformedCode);
+                                checkinToCache(task, this.transformedCodeCache, addressWrapper, cachedTransformedCode);
                             }
                         }
                     }
@@ -596,6 +767,11 @@ public class AvmImpl implements AvmInternal {
                 // do not use the cache if the code has not been transformed for the latest version
                     dapp = dappInHotCache;
                 }
+                if ((null == dapp) && (null != warmedUp) && warmedUp.wasLoadedFrom(transformedCode)) {
+                    dapp = warmedUp.loadedDApp;
+                    dapp.setLoadedCodeBlockNum(currentBlockNumber);
+                    getCurrentThreadStats().dappLoadsFromWarmup += 1;
+                }
                 if (null == dapp) {
                     // If we didn't find it there, just load it.
                     try {
@@ -612,23 +788,27 @@ public class AvmImpl implements AvmInternal {
                 }
 
                 if (null != dapp) {
+                    if (readFromDataCacheEnabled && (null != task.getReadWriteSet())) {
+                        // The cached data stands in for reading the graph from the kernel, so that read still needs to be validated.
+                        task.getReadWriteSet().recordRead(recipient, StateKind.GRAPH);
+                    }
                     result = DAppExecutor.call(this.capabilities, thisTransactionKernel, this, dapp, stateToResume, task, senderAddress, recipient, effectiveTransactionOrigin, transactionData, transactionHash, energyLimit, energyPrice, transactionValue, result, this.enableVerboseContractErrors, readFromDataCacheEnabled, this.enableBlockchainPrintln);
 
                     if (writeToCacheEnabled) {
                         if (result.isSuccess() && updateDataCache) {
                             dapp.updateLoadedBlockForSuccessfulTransaction(currentBlockNumber);
-                            this.hotCache.checkin(addressWrapper, dapp);
+                            checkinToCache(task, this.hotCache, addressWrapper, dapp);
                         } else {
                             // For ASSUME_SIDECHAIN, ETH_CALL, MINING cases.
                             dapp.clearDataState();
-                            this.hotCache.checkin(addressWrapper, dapp);
+                            checkinToCache(task, this.hotCache, addressWrapper, dapp);
                         }
                     }
                     // Only add the transformed code to the cache if the transaction has failed and thisTransactionKernel.getTransformedCode(recipient) = null.
                     // This means the transformed code was either successfully retrieved from the cache or the consensus code was successfully re-transformed.
                     // This is only done for ASSUME_MAINCHAIN, SWITCHING_MAINCHAIN, and ASSUME_SIDECHAIN
                     if (!result.isSuccess() && writeToTransformedCodeCache) {
-                        this.transformedCodeCache.checkin(addressWrapper, transformedCode);
+                        checkinToCache(task, this.transformedCodeCache, addressWrapper, transformedCode);
                     }
                 }
             }
@@ -644,42 +824,66 @@ public class AvmImpl implements AvmInternal {
     }
 
     @Override
-    public AddressResourceMonitor getResourceMonitor() {
+    public IResourceMonitor getResourceMonitor() {
         if (null != this.backgroundFatalError) {
             throw this.backgroundFatalError;
         }
         return resourceMonitor;
     }
 
+    private <V> void checkinToCache(TransactionTask task, ICheckoutCache<ByteArrayWrapper, V> cache, ByteArrayWrapper key, V value) {
+        if (SchedulerType.SPECULATIVE == this.schedulerType) {
+            // A speculative attempt may still be discarded and other tasks may be using the same DApp concurrently, so the cache is only
+            // updated once this task commits.  Commits happen in index order so the last committed writer wins, just as in sequential execution.
+            task.addPostCommitAction(() -> {
+                cache.checkout(key);
+                cache.checkin(key, value);
+            });
+        } else {
+            cache.checkin(key, value);
+        }
+    }
+
     public static AvmThreadStats getCurrentThreadStats() {
-        return ((AvmExecutorThread) Thread.currentThread()).stats;
+        Thread currentThread = Thread.currentThread();
+        return (currentThread instanceof WarmupService.WarmupThread)
+                ? ((WarmupService.WarmupThread) currentThread).stats
+                : ((AvmExecutorThread) currentThread).stats;
+    }
+
+    /**
+     * @return The trace ring of the current executor thread (TraceRing.DISABLED if this isn't an executor thread).
+     */
+    public static TraceRing getCurrentTraceRing() {
+        Thread currentThread = Thread.currentThread();
+        return (currentThread instanceof AvmExecutorThread)
+                ? ((AvmExecutorThread) currentThread).trace
+                : TraceRing.DISABLED;
+    }
+
+    /**
+     * @return The method profiler of the current executor thread (null if this isn't an executor thread or profiling is disabled).
+     */
+    public static MethodProfiler getCurrentMethodProfiler() {
+        Thread currentThread = Thread.currentThread();
+        return (currentThread instanceof AvmExecutorThread)
+                ? ((AvmExecutorThread) currentThread).methodProfiler
+                : null;
     }
 
     private void validateCodeCache(long blockNum){
         // getLoadedDataBlockNum will always be either equal or less than getLoadedCodeBlockNum
-        Predicate<SoftReference<LoadedDApp>> condition = (v) -> {
-            LoadedDApp dapp = v.get();
-            // remove the map entry if the soft reference has been cleared and the referent is null, or dapp has been loaded after blockNum
-            return dapp == null || dapp.getLoadedCodeBlockNum() >= blockNum;
-        };
-        this.hotCache.removeValueIf(condition);
+        // remove the entry if the dapp has been loaded after blockNum
+        this.hotCache.removeValueIf((dapp) -> dapp.getLoadedCodeBlockNum() >= blockNum);
     }
 
     private void purgeDataCache(){
-        Consumer<SoftReference<LoadedDApp>> softReferenceConsumer = (value) -> {
-            LoadedDApp dapp = value.get();
-            if(dapp != null){
-                dapp.clearDataState();
-            }
-        };
-        this.hotCache.apply(softReferenceConsumer);
+        this.hotCache.apply(LoadedDApp::clearDataState);
     }
 
     private void cleanupTransformedCodeCache() {
-        Predicate<SoftReference<byte[]>> condition = (v) -> {
-            // remove the map entry if the soft reference has been cleared and the referent is null
-            return v.get() == null;
-        };
-        this.transformedCodeCache.removeValueIf(condition);
+        // Transformed code doesn't depend on the block number so nothing is invalidated here but this lets the cache drop anything
+        // which has already been released (cleared soft references).
+        this.transformedCodeCache.removeValueIf((code) -> false);
     }
 }
@@ -3,7 +3,7 @@ package org.aion.avm.core;
 import java.math.BigInteger;
 
 import org.aion.kernel.AvmWrappedTransactionResult;
-import org.aion.parallel.AddressResourceMonitor;
+import org.aion.parallel.IResourceMonitor;
 import org.aion.parallel.TransactionTask;
 import org.aion.types.AionAddress;
 
@@ -45,9 +45,9 @@ public interface AvmInternal {
     );
 
     /**
-     * Get the address resource monitor using by the current AVM.
+     * Get the resource monitor used by the current AVM.
      *
-     * @return The address resource monitor.
+     * @return The resource monitor.
      */
-    AddressResourceMonitor getResourceMonitor();
+    IResourceMonitor getResourceMonitor();
 }
\ No newline at end of file
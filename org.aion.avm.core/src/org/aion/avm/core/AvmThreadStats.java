@@ -1,5 +1,7 @@
 package org.aion.avm.core;
 
+import org.aion.avm.core.metrics.Histogram;
+
 
 /**
  * Counters and timer data written by the owning AvmThread.
@@ -7,11 +9,15 @@ package org.aion.avm.core;
  * consistency requirements (although external consumers should take care to only make consistency assumptions when
  * the thread is not running).
  * Note the average times might degrade after a while, if the total number of operations significantly increases.
+ * The histograms are the full distributions, which AvmCoreStats.metrics exposes (the averages and maximums are kept for compatibility).
  */
 public class AvmThreadStats {
     public int transactionsProcessed;
     public long nanosRunning;
     public long nanosSleeping;
+    public int balanceTransfersFastTracked;
+    // Attempts to run a transaction which were aborted (due to a data hazard with another thread) and retried.
+    public int transactionsAborted;
 
     public long transformationAvgTimeNanos;
     public long transformationMaxTimeNanos;
@@ -21,6 +27,25 @@ public class AvmThreadStats {
     public long retransformationMaxTimeNanos;
     public int retransformationCount;
 
+    // Re-transformations and DApp loads which were done by the warm-up service instead of this thread.
+    public int retransformationsFromWarmup;
+    public int dappLoadsFromWarmup;
+
+    // The distributions of these times, in nanoseconds (all written only by the owning thread).
+    public final Histogram transformationNanos = new Histogram();
+    public final Histogram retransformationNanos = new Histogram();
+    // Deserializing a DApp's graph (whether from the kernel or from the caller's state, in a reentrant call) and serializing it after a call.
+    public final Histogram graphLoadNanos = new Histogram();
+    public final Histogram graphStoreNanos = new Histogram();
+    // Including any calls it makes to other DApps.
+    public final Histogram callMainNanos = new Histogram();
+    // Waiting for the transactions before this one, in the batch, to commit.
+    public final Histogram commitWaitNanos = new Histogram();
+    // The time spent on each attempt to run a transaction which was then aborted, so had to be retried.
+    public final Histogram abortedAttemptNanos = new Histogram();
+    // The size of each DApp graph stored, in bytes.
+    public final Histogram graphSizeBytes = new Histogram();
+
     /**
      * updates the transformation count, max and average transformation times
      *
@@ -30,6 +55,7 @@ public class AvmThreadStats {
         transformationMaxTimeNanos = Long.max(transformationTime, transformationMaxTimeNanos);
         transformationCount++;
         transformationAvgTimeNanos += ((transformationTime - transformationAvgTimeNanos) / transformationCount);
+        transformationNanos.record(transformationTime);
     }
 
     /**
@@ -41,17 +67,30 @@ public class AvmThreadStats {
         retransformationMaxTimeNanos = Long.max(retransformationTime, retransformationMaxTimeNanos);
         retransformationCount++;
         retransformationAvgTimeNanos += ((retransformationTime - retransformationAvgTimeNanos) / retransformationCount);
+        retransformationNanos.record(retransformationTime);
     }
 
     public void clear() {
         this.transactionsProcessed = 0;
         this.nanosRunning = 0;
         this.nanosSleeping = 0;
+        this.balanceTransfersFastTracked = 0;
+        this.transactionsAborted = 0;
         this.transformationMaxTimeNanos = 0;
         this.transformationAvgTimeNanos = 0;
         this.transformationCount = 0;
         this.retransformationAvgTimeNanos = 0;
         this.retransformationCount = 0;
         this.retransformationMaxTimeNanos = 0;
+        this.retransformationsFromWarmup = 0;
+        this.dappLoadsFromWarmup = 0;
+        this.transformationNanos.clear();
+        this.retransformationNanos.clear();
+        this.graphLoadNanos.clear();
+        this.graphStoreNanos.clear();
+        this.callMainNanos.clear();
+        this.commitWaitNanos.clear();
+        this.abortedAttemptNanos.clear();
+        this.graphSizeBytes.clear();
     }
 }
@@ -2,6 +2,7 @@ package org.aion.avm.core;
 
 import java.math.BigInteger;
 import java.util.Arrays;
+import org.aion.avm.StorageBatchCodec;
 import org.aion.avm.core.util.TransactionResultUtil;
 import org.aion.types.AionAddress;
 import p.avm.Address;
@@ -194,6 +195,8 @@ public class BlockchainRuntimeImpl implements IBlockchainRuntime {
         require(key != null, "Key can't be NULL");
         require(key.getUnderlying().length == 32, "Key must be 32 bytes");
 
+        // The DApp can still modify its arrays so this is the one copy of them:  the state takes ownership of these copies and passes
+        // them down, to the kernel, without copying them again (see IExternalState.putStorage()).
         byte[] keyCopy = Arrays.copyOf(key.getUnderlying(), key.getUnderlying().length);
         byte[] valueCopy = (value == null) ? null : Arrays.copyOf(value.getUnderlying(), value.getUnderlying().length);
 
@@ -212,19 +215,74 @@ public class BlockchainRuntimeImpl implements IBlockchainRuntime {
         require(key != null, "Key can't be NULL");
         require(key.getUnderlying().length == 32, "Key must be 32 bytes");
 
+        // The state only reads the key, and the value is still owned by the state, so this is the one copy (given to the DApp).
         byte[] data = this.externalState.getStorage(this.transactionDestination, key.getUnderlying());
         return (null != data)
             ? new ByteArray(Arrays.copyOf(data, data.length))
             : null;
     }
 
+    @Override
+    public int avm_getStorageLength(ByteArray key) {
+        require(key != null, "Key can't be NULL");
+        require(key.getUnderlying().length == 32, "Key must be 32 bytes");
+
+        byte[] data = this.externalState.getStorage(this.transactionDestination, key.getUnderlying());
+        return (null != data)
+            ? data.length
+            : -1;
+    }
+
+    @Override
+    public ByteArray avm_getStorageBatch(ByteArray keys) {
+        require(keys != null, "Keys can't be NULL");
+
+        // As with avm_getStorage(), the encoded values are the one copy (given to the DApp).
+        byte[][] values = this.externalState.getStorageBatch(this.transactionDestination, StorageBatchCodec.splitKeys(keys.getUnderlying()));
+        return new ByteArray(StorageBatchCodec.encodeValues(values));
+    }
+
+    @Override
+    public int[] avm_getStorageLengthBatch(ByteArray keys) {
+        require(keys != null, "Keys can't be NULL");
+
+        byte[][] values = this.externalState.getStorageBatch(this.transactionDestination, StorageBatchCodec.splitKeys(keys.getUnderlying()));
+        int[] lengths = new int[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            lengths[i] = (null != values[i])
+                ? values[i].length
+                : StorageBatchCodec.ABSENT_LENGTH;
+        }
+        return lengths;
+    }
+
+    @Override
+    public void avm_putStorageBatch(ByteArray keys, ByteArray values, boolean[] requiresRefund) {
+        require(keys != null, "Keys can't be NULL");
+        require(values != null, "Values can't be NULL");
+
+        // As with avm_putStorage(), these are the copies the state takes ownership of.
+        byte[][] keyCopies = StorageBatchCodec.splitKeys(keys.getUnderlying());
+        byte[][] valueCopies = StorageBatchCodec.splitValues(values.getUnderlying(), keyCopies.length);
+        for (int i = 0; i < keyCopies.length; ++i) {
+            if (null == valueCopies[i]) {
+                externalState.removeStorage(this.transactionDestination, keyCopies[i]);
+            } else {
+                externalState.putStorage(this.transactionDestination, keyCopies[i], valueCopies[i]);
+            }
+            if (requiresRefund[i]) {
+                task.addResetStoragekey(this.transactionDestination, keyCopies[i]);
+            }
+        }
+    }
+
     @Override
     public s.java.math.BigInteger avm_getBalance(Address address) {
         require(null != address, "Address can't be NULL");
 
         // Acquire resource before reading
         // Returned result of acquire is not checked, since an abort exception will be thrown by IInstrumentation during chargeEnergy if the task has been aborted
-        avm.getResourceMonitor().acquire(address.toByteArray(), this.task);
+        avm.getResourceMonitor().acquireForRead(address.toByteArray(), this.task);
         return new s.java.math.BigInteger(this.externalState.getBalance(new AionAddress(address.toByteArray())));
     }
 
@@ -233,7 +291,7 @@ public class BlockchainRuntimeImpl implements IBlockchainRuntime {
         // This method can be called inside clinit so CREATE is a valid context.
         // Acquire resource before reading
         // Returned result of acquire is not checked, since an abort exception will be thrown by IInstrumentation during chargeEnergy if the task has been aborted
-        avm.getResourceMonitor().acquire(this.transactionDestination.toByteArray(), this.task);
+        avm.getResourceMonitor().acquireForRead(this.transactionDestination.toByteArray(), this.task);
         return new s.java.math.BigInteger(this.externalState.getBalance(this.transactionDestination));
     }
 
@@ -243,7 +301,7 @@ public class BlockchainRuntimeImpl implements IBlockchainRuntime {
 
         // Acquire resource before reading
         // Returned result of acquire is not checked, since an abort exception will be thrown by IInstrumentation during chargeEnergy if the task has been aborted
-        avm.getResourceMonitor().acquire(address.toByteArray(), this.task);
+        avm.getResourceMonitor().acquireForRead(address.toByteArray(), this.task);
         byte[] vc = this.externalState.getCode(new AionAddress(address.toByteArray()));
         return vc == null ? 0 : vc.length;
     }
@@ -8,6 +8,7 @@ import org.aion.avm.core.types.RawDappModule;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 /**
@@ -16,15 +17,27 @@ import java.util.stream.Collectors;
  * RevertException, InvalidException, UncaughtException, OutOfStackException, UncaughtException, EarlyAbortException.
  */
 public class CodeReTransformer {
+    /**
+     * Identifies the output of the transformation pipeline, for caches which outlive this process.
+     * This MUST be incremented whenever a change to the transformation changes the code it produces.
+     */
+    public static final int TRANSFORMATION_VERSION = 2;
 
     public static byte[] transformCode(byte[] code, long blockTimeStamp, boolean preserveDebuggability, boolean verboseErrors) {
+        return transformCode(code, blockTimeStamp, preserveDebuggability, verboseErrors, null);
+    }
+
+    /**
+     * Re-transforms the given code, running the passes which transform each class independently in the given pool (if not null).
+     */
+    public static byte[] transformCode(byte[] code, long blockTimeStamp, boolean preserveDebuggability, boolean verboseErrors, ForkJoinPool transformationPool) {
         byte[] transformedCode = null;
         try {
             RawDappModule rawDapp = RawDappModule.readFromJar(code, preserveDebuggability, verboseErrors);
 
             if (canRetransform(rawDapp)) {
                 long transformStartTime = System.nanoTime();
-                Map<String, byte[]> transformedClasses = DAppCreator.transformClasses(rawDapp.classes, rawDapp.classHierarchyForest, rawDapp.classHierarchy, rawDapp.classRenamer, preserveDebuggability);
+                Map<String, byte[]> transformedClasses = DAppCreator.transformClasses(rawDapp.classes, rawDapp.classHierarchyForest, rawDapp.classHierarchy, rawDapp.classRenamer, preserveDebuggability, transformationPool, false);
                 AvmImpl.getCurrentThreadStats().addRetransformationTimeToStats(System.nanoTime() - transformStartTime);
                 Map<String, byte[]> immortalClasses = DAppCreator.stripClinitFromClasses(transformedClasses);
                 ImmortalDappModule immortalDapp = ImmortalDappModule.fromImmortalClasses(immortalClasses, rawDapp.mainClass);
@@ -11,6 +11,7 @@ import org.aion.avm.core.arraywrapping.ArraysRequiringAnalysisClassVisitor;
 import org.aion.avm.core.exceptionwrapping.ExceptionWrapping;
 import org.aion.avm.core.instrument.ClassMetering;
 import org.aion.avm.core.instrument.HeapMemoryCostCalculator;
+import org.aion.avm.core.metrics.SpanKind;
 import org.aion.avm.core.miscvisitors.InterfaceFieldClassGeneratorVisitor;
 import org.aion.avm.core.persistence.AutomaticGraphVisitor;
 import org.aion.avm.core.persistence.LoadedDApp;
@@ -45,6 +46,11 @@ import org.objectweb.asm.ClassWriter;
 
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
 
 
 public class DAppCreator {
@@ -84,9 +90,27 @@ public class DAppCreator {
      * @return the transformed classes and any generated classes (names specified in .-style)
      */
     public static Map<String, byte[]> transformClasses(Map<String, byte[]> inputClasses, Forest<String, ClassInfo> oldPreRenameForest, ClassHierarchy classHierarchy, ClassRenamer classRenamer, boolean preserveDebuggability) {
+        return transformClasses(inputClasses, oldPreRenameForest, classHierarchy, classRenamer, preserveDebuggability, null, false);
+    }
+
+    /**
+     * The same as transformClasses(), above, except that the passes which transform each class independently of the others are
+     * run concurrently in the given pool.
+     * The result is identical to the sequential transformation:  each class is transformed by the same visitors, the results are
+     * merged in the same order, and a failure is reported for the same class.
+     *
+     * @param inputClasses The class of DApp (names specified in .-style)
+     * @param oldPreRenameForest The pre-rename forest of user-defined classes in the DApp (/-style).
+     * @param classHierarchy The class hierarchy of all classes in the system (.-style).
+     * @param preserveDebuggability Whether or not debug mode is enabled.
+     * @param transformationPool The pool to transform the classes in (null means they are transformed on the calling thread).
+     * @param crossCheckVerification Whether or not to also verify the classes by loading them, failing if the verifiers disagree.
+     * @return the transformed classes and any generated classes (names specified in .-style)
+     */
+    public static Map<String, byte[]> transformClasses(Map<String, byte[]> inputClasses, Forest<String, ClassInfo> oldPreRenameForest, ClassHierarchy classHierarchy, ClassRenamer classRenamer, boolean preserveDebuggability, ForkJoinPool transformationPool, boolean crossCheckVerification) {
         // Before anything, pass the list of classes through the verifier.
-        // (this will throw UncaughtException, on verification failure).
-        Verifier.verifyUntrustedClasses(inputClasses);
+        // (this will throw RejectedClassException, on verification failure).
+        verifyUntrustedClasses(inputClasses, classHierarchy, classRenamer, transformationPool, crossCheckVerification);
         // We need to run our rejection filter and static rename pass.
         Map<String, byte[]> safeClasses = rejectionAndRenameInputClasses(inputClasses, classHierarchy, classRenamer, preserveDebuggability);
         
@@ -107,11 +131,23 @@ public class DAppCreator {
         };
         Map<String, Integer> postRenameObjectSizes = computeAllPostRenameObjectSizes(oldPreRenameForest, preserveDebuggability);
 
-        Map<String, byte[]> transformedClasses = new HashMap<>();
-
         int parsingOptions = preserveDebuggability ? ClassReader.EXPAND_FRAMES : ClassReader.EXPAND_FRAMES | ClassReader.SKIP_DEBUG;
 
-        for (String name : safeClasses.keySet()) {
+        // The FIELDS classes generated for the interfaces (to hold their static fields) are named up-front, since every class needs
+        // to know them in order to map the field owners (the transformation doesn't add or remove interface fields or inner classes
+        // so the names are the same as they would be if chosen after the other visitors).
+        Map<String, String> interfaceFieldClassNames = InterfaceFieldClassGeneratorVisitor.chooseFieldsClassNames(safeClasses.values());
+        String javaLangObjectSlashName = PackageConstants.kShadowSlashPrefix + "java/lang/Object";
+
+        // Each class is transformed independently of the others, so we fix the order of the classes up-front and merge the results
+        // (including the classes generated along the way) in that order, whether or not they are transformed concurrently.
+        List<String> names = new ArrayList<>(safeClasses.keySet());
+        List<GeneratedClasses> generatedClasses = new ArrayList<>();
+        for (int i = 0; i < names.size(); ++i) {
+            generatedClasses.add(new GeneratedClasses());
+        }
+        List<byte[]> transformedBytecode = transformEach(names.size(), transformationPool, (index) -> {
+            String name = names.get(index);
             // Note that transformClasses requires that the input class names by the .-style names.
             RuntimeAssertionError.assertTrue(-1 == name.indexOf("/"));
 
@@ -119,52 +155,110 @@ public class DAppCreator {
             // We also add SKIP_DEBUG since we aren't using debug data and skipping it removes extraneous labels which would otherwise
             // cause the BlockBuildingMethodVisitor to build lots of small blocks instead of a few big ones (each block incurs a Helper
             // static call, which is somewhat expensive - this is how we bill for energy).
-            byte[] bytecode = new ClassToolchain.Builder(safeClasses.get(name), parsingOptions)
+            // The whole transformation is a single pass:  the class is parsed once and its frames are computed once, by the writer.
+            return new ClassToolchain.Builder(safeClasses.get(name), parsingOptions)
                     .addNextVisitor(new ClassMetering(postRenameObjectSizes))
                     .addNextVisitor(new ConstantVisitor(PackageConstants.kConstantClassName, constantClass.constantToFieldMap))
                     .addNextVisitor(new InvokedynamicShadower(PackageConstants.kShadowSlashPrefix))
                     .addNextVisitor(new ClassShadowing(PackageConstants.kShadowSlashPrefix))
                     .addNextVisitor(new StackWatcherClassAdapter())
-                    .addNextVisitor(new ExceptionWrapping(generatedClassesSink, classHierarchy))
+                    .addNextVisitor(new ExceptionWrapping(generatedClasses.get(index), classHierarchy))
                     .addNextVisitor(new AutomaticGraphVisitor())
                     .addNextVisitor(new StrictFPVisitor())
-                    .addWriter(new TypeAwareClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS, classHierarchy, classRenamer))
-                    .build()
-                    .runAndGetBytecode();
-            bytecode = new ClassToolchain.Builder(bytecode, parsingOptions)
                     .addNextVisitor(new ArraysRequiringAnalysisClassVisitor(classHierarchy))
                     .addNextVisitor(new ArraysWithKnownTypesClassVisitor())
+                    // Static fields in interfaces (note that all fields in interfaces are defined as static) are moved to a generated
+                    // class, which is written as the interface is visited, so it also needs its frames computed.
+                    .addNextVisitor(new InterfaceFieldClassGeneratorVisitor(generatedClasses.get(index), interfaceFieldClassNames, javaLangObjectSlashName
+                            , () -> new TypeAwareClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS, classHierarchy, classRenamer)))
+                    .addNextVisitor(new InterfaceFieldNameMappingVisitor(interfaceFieldClassNames))
                     .addWriter(new TypeAwareClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS, classHierarchy, classRenamer))
                     .build()
                     .runAndGetBytecode();
-            transformedClasses.put(name, bytecode);
+        });
+        for (int i = 0; i < names.size(); ++i) {
+            generatedClasses.get(i).drainTo(generatedClassesSink);
+            processedClasses.put(names.get(i), transformedBytecode.get(i));
         }
 
-        /*
-         * Another pass to deal with static fields in interfaces.
-         * Note that all fields in interfaces are defined as static.
-         */
-        // mapping between interface name and generated class name containing all the interface fields
-        Map<String, String> interfaceFieldClassNames = new HashMap<>();
+        return processedClasses;
+    }
 
-        String javaLangObjectSlashName = PackageConstants.kShadowSlashPrefix + "java/lang/Object";
-        for (String name : transformedClasses.keySet()) {
-            // This visitor does not modify the byte code of transformedClasses. It only generates a new class containing fields and clinit for each interface.
-            new ClassReader(transformedClasses.get(name))
-                    .accept(new InterfaceFieldClassGeneratorVisitor(generatedClassesSink, interfaceFieldClassNames, javaLangObjectSlashName), parsingOptions);
+    /**
+     * Verifies the untrusted classes by analyzing them (see Verifier.verifyUntrustedClass()), concurrently if given a pool.
+     * If crossCheckVerification is set, they are also loaded (which is how they used to be verified).  Loading them doesn't verify
+     * their code so the analysis is allowed to reject classes which load, but if they fail to load, the analysis should have rejected
+     * them:  if it didn't, that is a bug in the analysis so it is reported as a RuntimeAssertionError.  Otherwise, a failure to load
+     * them is thrown since that is how they used to fail.
+     */
+    private static void verifyUntrustedClasses(Map<String, byte[]> inputClasses, ClassHierarchy classHierarchy, ClassRenamer classRenamer, ForkJoinPool transformationPool, boolean crossCheckVerification) {
+        List<String> names = new ArrayList<>(inputClasses.keySet());
+        RejectedClassException analysisFailure = null;
+        try {
+            transformEach(names.size(), transformationPool, (index) -> {
+                Verifier.verifyUntrustedClass(names.get(index), inputClasses.get(names.get(index)), classHierarchy, classRenamer);
+                return null;
+            });
+        } catch (RejectedClassException e) {
+            if (!crossCheckVerification) {
+                throw e;
+            }
+            analysisFailure = e;
         }
 
-        for (String name : transformedClasses.keySet()) {
-            byte[] bytecode = new ClassToolchain.Builder(transformedClasses.get(name), parsingOptions)
-                    .addNextVisitor(new InterfaceFieldNameMappingVisitor(interfaceFieldClassNames))
-                    .addWriter(new TypeAwareClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS, classHierarchy, classRenamer))
-                    .build()
-                    .runAndGetBytecode();
-
-            processedClasses.put(name, bytecode);
+        if (crossCheckVerification) {
+            try {
+                Verifier.verifyUntrustedClasses(inputClasses);
+            } catch (UncaughtException e) {
+                if (null == analysisFailure) {
+                    throw RuntimeAssertionError.unreachable("Verification cross-check failed: analysis passed but loading failed with " + e.getCause());
+                }
+                throw e;
+            }
+            if (null != analysisFailure) {
+                throw analysisFailure;
+            }
         }
+    }
 
-        return processedClasses;
+    /**
+     * Runs the given transformation for each of the indices [0, count), returning the results in index order.
+     * If a pool is given, the transformations are run concurrently in it, otherwise they are run on the calling thread.  Either way,
+     * if any of them fail, the exception thrown by the lowest failing index is re-thrown, as is, just as the sequential loop would.
+     */
+    private static List<byte[]> transformEach(int count, ForkJoinPool transformationPool, IntFunction<byte[]> transformation) {
+        List<byte[]> results = new ArrayList<>(count);
+        if ((null == transformationPool) || (count < 2)) {
+            for (int i = 0; i < count; ++i) {
+                results.add(transformation.apply(i));
+            }
+        } else {
+            List<Callable<byte[]>> tasks = new ArrayList<>(count);
+            for (int i = 0; i < count; ++i) {
+                int index = i;
+                tasks.add(() -> transformation.apply(index));
+            }
+            // invokeAll() only returns once every task is done so none of these get() calls block.
+            for (Future<byte[]> future : transformationPool.invokeAll(tasks)) {
+                try {
+                    results.add(future.get());
+                } catch (InterruptedException e) {
+                    // We don't use interruption.
+                    throw RuntimeAssertionError.unexpected(e);
+                } catch (ExecutionException e) {
+                    // The transformation can only throw unchecked exceptions so re-throw it without wrapping (callers depend on its type).
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    } else {
+                        throw RuntimeAssertionError.unexpected(cause);
+                    }
+                }
+            }
+        }
+        return results;
     }
 
     public static AvmWrappedTransactionResult create(IExternalCapabilities capabilities
@@ -180,6 +274,8 @@ public class DAppCreator {
             , long energyPrice
             , BigInteger transactionValue
             , AvmWrappedTransactionResult internalResult
+            , ForkJoinPool transformationPool
+            , boolean crossCheckVerification
             , boolean preserveDebuggability
             , boolean verboseErrors
             , boolean enableBlockchainPrintln
@@ -217,7 +313,7 @@ public class DAppCreator {
 
             // transform
             long transformStartTime = System.nanoTime();
-            Map<String, byte[]> transformedClasses = transformClasses(rawDapp.classes, dappClassesForest, rawDapp.classHierarchy, rawDapp.classRenamer, preserveDebuggability);
+            Map<String, byte[]> transformedClasses = transformClasses(rawDapp.classes, dappClassesForest, rawDapp.classHierarchy, rawDapp.classRenamer, preserveDebuggability, transformationPool, crossCheckVerification);
             AvmImpl.getCurrentThreadStats().addTransformationTimeToStats(System.nanoTime() - transformStartTime);
             TransformedDappModule transformedDapp = TransformedDappModule.fromTransformedClasses(transformedClasses, rawDapp.mainClass);
 
@@ -434,7 +530,13 @@ public class DAppCreator {
             dapp.forceInitializeAllClasses();
 
             // Save back the state before we return.
+            long storeStart = System.nanoTime();
             byte[] rawGraphData = dapp.saveEntireGraph(threadInstrumentation.peekNextHashCode(), StorageFees.MAX_GRAPH_SIZE);
+            long storeEnd = System.nanoTime();
+            AvmThreadStats threadStats = AvmImpl.getCurrentThreadStats();
+            threadStats.graphStoreNanos.record(storeEnd - storeStart);
+            AvmImpl.getCurrentTraceRing().record(SpanKind.SERIALIZE, task.getIndex(), storeStart, storeEnd, dappAddress);
+            threadStats.graphSizeBytes.record(rawGraphData.length);
             // Bill for writing this size.
             threadInstrumentation.chargeEnergy(StorageFees.WRITE_PRICE_PER_BYTE * rawGraphData.length);
             externalState.putObjectGraph(dappAddress, rawGraphData);
@@ -487,4 +589,27 @@ public class DAppCreator {
 
         return resultToReturn;
     }
+
+    /**
+     * Records the classes generated while transforming one class so they can be handed to the real sink after the (possibly
+     * concurrent) transformation, in the order they were generated.
+     */
+    private static final class GeneratedClasses implements GeneratedClassConsumer {
+        private final List<String> superClassNames = new ArrayList<>();
+        private final List<String> classNames = new ArrayList<>();
+        private final List<byte[]> bytecodes = new ArrayList<>();
+
+        @Override
+        public void accept(String superClassName, String className, byte[] bytecode) {
+            this.superClassNames.add(superClassName);
+            this.classNames.add(className);
+            this.bytecodes.add(bytecode);
+        }
+
+        public void drainTo(GeneratedClassConsumer sink) {
+            for (int i = 0; i < this.classNames.size(); ++i) {
+                sink.accept(this.superClassNames.get(i), this.classNames.get(i), this.bytecodes.get(i));
+            }
+        }
+    }
 }
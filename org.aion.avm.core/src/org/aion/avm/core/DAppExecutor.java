@@ -4,6 +4,9 @@ import java.math.BigInteger;
 
 import org.aion.avm.RuntimeMethodFeeSchedule;
 import org.aion.avm.StorageFees;
+import org.aion.avm.core.metrics.MethodProfiler;
+import org.aion.avm.core.metrics.SpanKind;
+import org.aion.avm.core.metrics.TraceRing;
 import org.aion.avm.core.persistence.LoadedDApp;
 import org.aion.avm.core.persistence.ReentrantGraph;
 import org.aion.avm.core.util.Helpers;
@@ -59,11 +62,17 @@ public class DAppExecutor {
         // Used for deserialization billing
         int rawGraphDataLength;
 
+        AvmThreadStats threadStats = AvmImpl.getCurrentThreadStats();
+        TraceRing trace = AvmImpl.getCurrentTraceRing();
         if (readFromCache) {
             if (null != callerState) {
                 nextHashCode = stateToResume.getNextHashCode();
                 byte[] rawGraphData = callerState.rawState;
+                long loadStart = System.nanoTime();
                 dapp.loadEntireGraph(initialClassWrappers, rawGraphData);
+                long loadEnd = System.nanoTime();
+                threadStats.graphLoadNanos.record(loadEnd - loadStart);
+                trace.record(SpanKind.LOAD, task.getIndex(), loadStart, loadEnd, dappAddress);
                 rawGraphDataLength = rawGraphData.length;
 
             } else {
@@ -75,7 +84,11 @@ public class DAppExecutor {
             byte[] rawGraphData = (null != callerState)
                     ? callerState.rawState
                     : externalState.getObjectGraph(dappAddress);
+            long loadStart = System.nanoTime();
             nextHashCode = dapp.loadEntireGraph(initialClassWrappers, rawGraphData);
+            long loadEnd = System.nanoTime();
+            threadStats.graphLoadNanos.record(loadEnd - loadStart);
+            trace.record(SpanKind.LOAD, task.getIndex(), loadStart, loadEnd, dappAddress);
             rawGraphDataLength = rawGraphData.length;
         }
 
@@ -112,7 +125,22 @@ public class DAppExecutor {
             threadInstrumentation.chargeEnergy(StorageFees.READ_PRICE_PER_BYTE * rawGraphDataLength);
             
             // Call the main within the DApp.
-            byte[] ret = dapp.callMain();
+            MethodProfiler methodProfiler = AvmImpl.getCurrentMethodProfiler();
+            if (null != methodProfiler) {
+                methodProfiler.enterDApp(dappAddress, dapp.loader);
+            }
+            long callStart = System.nanoTime();
+            byte[] ret;
+            try {
+                ret = dapp.callMain();
+            } finally {
+                long callEnd = System.nanoTime();
+                threadStats.callMainNanos.record(callEnd - callStart);
+                trace.record(SpanKind.EXECUTE, task.getIndex(), callStart, callEnd, dappAddress);
+                if (null != methodProfiler) {
+                    methodProfiler.exitDApp();
+                }
+            }
 
             // Save back the state before we return.
             if (null != stateToResume) {
@@ -127,7 +155,12 @@ public class DAppExecutor {
             } else {
                 // We are at the "top" so write this back to disk.
                 int newHashCode = threadInstrumentation.peekNextHashCode();
+                long storeStart = System.nanoTime();
                 byte[] postCallGraphData = dapp.saveEntireGraph(newHashCode, StorageFees.MAX_GRAPH_SIZE);
+                long storeEnd = System.nanoTime();
+                threadStats.graphStoreNanos.record(storeEnd - storeStart);
+                trace.record(SpanKind.SERIALIZE, task.getIndex(), storeStart, storeEnd, dappAddress);
+                threadStats.graphSizeBytes.record(postCallGraphData.length);
                 // Bill for writing this size.
                 threadInstrumentation.chargeEnergy(StorageFees.WRITE_PRICE_PER_BYTE * postCallGraphData.length);
                 externalState.putObjectGraph(dappAddress, postCallGraphData);
@@ -34,8 +34,9 @@ public class DAppLoader {
         // parse the code
         ImmortalDappModule app = ImmortalDappModule.readFromJar(immortalDappJar);
         
-        // We now need all the classes which will loaded within the class loader for this DApp (includes Helper and userlib classes we add).
-        Map<String, byte[]> allClasses = Helpers.mapIncludingHelperBytecode(app.classes, Helpers.loadDefaultHelperBytecode());
+        // We now need all the classes which will loaded within the class loader for this DApp (includes the Blockchain class we add but not the
+        // Helper, which is shared).
+        Map<String, byte[]> allClasses = Helpers.mapIncludingBlockchainBytecode(app.classes);
         
         // Construct the per-contract class loader.
         AvmClassLoader classLoader = NodeEnvironment.singleton.createInvocationClassLoader(allClasses);
@@ -46,7 +47,9 @@ public class DAppLoader {
 
         // We now have all the information to describe the LoadedDApp.
         SplitClasses splitClasses = SplitClasses.splitAllSavedClasses(aphabeticalContractClasses);
-        return new LoadedDApp(classLoader, splitClasses.sortedUserClasses, splitClasses.constantClass, app.mainClass, preserveDebuggability);
+        LoadedDApp dapp = new LoadedDApp(classLoader, splitClasses.sortedUserClasses, splitClasses.constantClass, app.mainClass, preserveDebuggability);
+        dapp.setCodeSize(immortalDappJar.length);
+        return dapp;
     }
 
     /**
@@ -56,8 +59,9 @@ public class DAppLoader {
      * @return The DApp instance.
      */
     public static LoadedDApp fromTransformed(TransformedDappModule app, boolean preserveDebuggability) {
-        // We now need all the classes which will loaded within the class loader for this DApp (includes Helper and userlib classes we add).
-        Map<String, byte[]> allClasses = Helpers.mapIncludingHelperBytecode(app.classes, Helpers.loadDefaultHelperBytecode());
+        // We now need all the classes which will loaded within the class loader for this DApp (includes the Blockchain class we add but not the
+        // Helper, which is shared).
+        Map<String, byte[]> allClasses = Helpers.mapIncludingBlockchainBytecode(app.classes);
         
         // Construct the per-contract class loader.
         AvmClassLoader classLoader = NodeEnvironment.singleton.createInvocationClassLoader(allClasses);
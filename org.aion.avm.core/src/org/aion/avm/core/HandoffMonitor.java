@@ -7,9 +7,10 @@ import java.util.List;
 import org.aion.avm.core.util.TransactionResultUtil;
 import org.aion.kernel.AvmWrappedTransactionResult;
 import org.aion.kernel.SideEffects;
+import org.aion.parallel.TransactionDependencyGraph;
 import org.aion.parallel.TransactionTask;
 
-import java.util.LinkedList;
+import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
 import org.aion.types.AionAddress;
@@ -28,16 +29,31 @@ import org.aion.types.InternalTransaction.RejectedStatus;
 public class HandoffMonitor {
     private Set<Thread> internalThreads;
     private TransactionTask[] incomingTransactionTasks;
+    // Null unless the current batch was planned, in which case tasks are only queued once their predicted dependencies finish.
+    private TransactionDependencyGraph dependencyGraph;
 
+    // Ordered by task index so that the lowest ready task is always handed out first.
     private Queue<TransactionTask> taskQueue;
 
     private AvmWrappedTransactionResult[] outgoingResults;
     private Throwable backgroundThrowable;
+    // Run, under monitor, once the last result of a batch has been consumed.
+    private Runnable batchCompletionListener;
     //private int nextTransactionIndex;
 
     public HandoffMonitor(Set<Thread> threadSet) {
         this.internalThreads = threadSet;
-        this.taskQueue = new LinkedList<>();
+        this.taskQueue = new PriorityQueue<>();
+    }
+
+    /**
+     * Called by the external thread, before sending any transactions.
+     * Sets an action to run once all the results of a batch have been consumed (this must not call back into this monitor).
+     * 
+     * @param listener The action to run at the end of each batch.
+     */
+    public synchronized void setBatchCompletionListener(Runnable listener) {
+        this.batchCompletionListener = listener;
     }
 
     /**
@@ -48,6 +64,21 @@ public class HandoffMonitor {
      * @return The result of the transactions in the given tasks as a corresponding array of asynchronous futures.
      */
     public synchronized FutureResult[] sendTransactionsAsynchronously(TransactionTask[] tasks) {
+        return sendTransactionsAsynchronously(tasks, null);
+    }
+
+    /**
+     * Called by the external thread.
+     * Called to send new transactions to the internal thread, holding back each one until the transactions it is predicted to
+     * depend on have finished.
+     * This can't deadlock:  the lowest unfinished task only depends on finished ones so it is always queued or running, and the
+     * queue hands out the lowest index first.
+     * 
+     * @param tasks The tasks for each transaction to run.
+     * @param dependencyGraph The predicted dependencies between the tasks (null if all can be started immediately).
+     * @return The result of the transactions in the given tasks as a corresponding array of asynchronous futures.
+     */
+    public synchronized FutureResult[] sendTransactionsAsynchronously(TransactionTask[] tasks, TransactionDependencyGraph dependencyGraph) {
         // We lock-step these, so there can't already be a transaction in the hand-off.
         RuntimeAssertionError.assertTrue(this.taskQueue.isEmpty());
         RuntimeAssertionError.assertTrue(null == this.outgoingResults);
@@ -58,11 +89,14 @@ public class HandoffMonitor {
         }
 
         this.incomingTransactionTasks = new TransactionTask[tasks.length];
+        this.dependencyGraph = dependencyGraph;
 
-        // Enqueue the new tasks and wake up the background thread.
+        // Enqueue the new tasks which are ready to run and wake up the background thread.
         for (int i = 0; i < tasks.length; ++i ) {
             this.incomingTransactionTasks[i] = tasks[i];
-            this.taskQueue.add(tasks[i]);
+            if ((null == dependencyGraph) || dependencyGraph.isReady(i)) {
+                this.taskQueue.add(tasks[i]);
+            }
         }
 
         this.outgoingResults = new AvmWrappedTransactionResult[tasks.length];
@@ -109,6 +143,10 @@ public class HandoffMonitor {
         if ((index + 1) == this.outgoingResults.length) {
             this.incomingTransactionTasks = null;
             this.outgoingResults = null;
+            this.dependencyGraph = null;
+            if (null != this.batchCompletionListener) {
+                this.batchCompletionListener.run();
+            }
         }
         return result;
     }
@@ -128,6 +166,12 @@ public class HandoffMonitor {
         // First, write-back any results that we have and notify anyone listening for that, on the front.
         if (null != previousResult) {
             this.outgoingResults[previousTask.getIndex()] = previousResult;
+            // The result is final so anything which was only waiting on this task can now be handed out.
+            if (null != this.dependencyGraph) {
+                for (int index : this.dependencyGraph.markCompleted(previousTask.getIndex())) {
+                    this.taskQueue.add(this.incomingTransactionTasks[index]);
+                }
+            }
         }
         this.notifyAll();
         
@@ -103,6 +103,8 @@ public interface IExternalState {
      * If the specified key already exists as a key-value pairing for the given address, then that
      * pairing will be updated so that its old corresponding value is replaced by the new one.
      *
+     * The state takes ownership of the key and value arrays (it doesn't copy them) so the caller must not modify them afterward.
+     *
      * @param address The address.
      * @param key The key.
      * @param value The value.
@@ -113,6 +115,8 @@ public interface IExternalState {
      * Removes any key-value pairing corresponding to the specified key for the given address if
      * any such pairing exists.
      *
+     * As with putStorage(), the state takes ownership of the key array.
+     *
      * @param address The address.
      * @param key The key.
      */
@@ -124,12 +128,26 @@ public interface IExternalState {
      *
      * Returns {@code null} otherwise, if no such key corresponds to the address.
      *
+     * The returned array is still owned by the state (it isn't a copy) so the caller must not modify it.
+     *
      * @param address The address.
      * @param key The key.
      * @return the value or null if there is no such value.
      */
     public byte[] getStorage(AionAddress address, byte[] key);
 
+    /**
+     * Returns the values in the key-value pairings of many keys for the given address, as getStorage() would return each of them, so
+     * that they can be read together (with one multi-get from a database, for example).
+     *
+     * As with getStorage(), the returned arrays are still owned by the state so the caller must not modify them.
+     *
+     * @param address The address.
+     * @param keys The keys.
+     * @return the values, in the order of the keys (null where there is no such value).
+     */
+    public byte[][] getStorageBatch(AionAddress address, byte[][] keys);
+
     /**
      * Deletes the specified address and any state corresponding to it, if such an address exists.
      *
@@ -6,10 +6,12 @@ import org.aion.avm.core.classloading.AvmSharedClassLoader;
 import org.aion.avm.core.dappreading.LoadedJar;
 import org.aion.avm.core.instrument.JCLAndAPIHeapInstanceSize;
 import org.aion.avm.core.types.*;
+import org.aion.avm.core.util.Helpers;
 import org.aion.avm.core.util.MethodDescriptorCollector;
 import org.aion.avm.utilities.Utilities;
 import i.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
@@ -19,6 +21,7 @@ import p.avm.Address;
 import p.avm.AltBn128;
 import p.avm.Blockchain;
 import p.avm.Result;
+import org.objectweb.asm.ClassWriter;
 
 /**
  * Represents the long-lived global state of a specific "node" instance.
@@ -26,10 +29,14 @@ import p.avm.Result;
  * NodeEnvironment - that is, each AvmImpl instance).
  * Note that this is also responsible for any bootstrap initialization of the shared environment.  Specifically, this involves
  * eagerly loading the shadow JDK in order to run their <clinit> methods.
+ * What it derives from the AVM's own code (the generated shared classes, size maps, method descriptors and the hierarchy) can be read
+ * from a NodeEnvironmentSnapshot, instead of generated, if the SNAPSHOT_PROPERTY system property names the snapshot file.
  */
 public class NodeEnvironment {
     // NOTE:  This is only temporarily a singleton and will probably see its relationship inverted, in the future:  becoming the Avm factory.
     public static final NodeEnvironment singleton = new NodeEnvironment();
+    // The system property naming the snapshot file (which is written if it is missing or stale), if startup should use one.
+    public static final String SNAPSHOT_PROPERTY = "avm.nodeEnvironmentSnapshot";
 
     private final AvmSharedClassLoader sharedClassLoader;
     // Note that the constant map is a map of constant hashcodes to constant instances.  This is just provided so that reference deserialization
@@ -50,8 +57,14 @@ public class NodeEnvironment {
     private ClassHierarchy classHierarchy;
 
     private NodeEnvironment() {
-        Map<String, byte[]> generatedShadowJDK = CommonGenerators.generateShadowJDK();
-        this.sharedClassLoader = new AvmSharedClassLoader(generatedShadowJDK);
+        // If we have a snapshot matching our code (the shadow JDK, the API, the generators and ASM), we don't need to generate what it holds.
+        String snapshotPath = System.getProperty(SNAPSHOT_PROPERTY);
+        File snapshotFile = (null != snapshotPath) ? new File(snapshotPath) : null;
+        byte[] snapshotFingerprint = (null != snapshotFile) ? NodeEnvironmentSnapshot.fingerprintOf(NodeEnvironment.class, Helper.class, ClassWriter.class) : null;
+        NodeEnvironmentSnapshot snapshot = (null != snapshotFingerprint) ? NodeEnvironmentSnapshot.readAndVerify(snapshotFile, snapshotFingerprint) : null;
+
+        Map<String, byte[]> sharedClasses = (null != snapshot) ? snapshot.sharedClasses : generateSharedClasses();
+        this.sharedClassLoader = new AvmSharedClassLoader(sharedClasses);
         try {
 
             this.shadowApiClasses = new Class<?>[] {
@@ -180,36 +193,63 @@ public class NodeEnvironment {
         this.constantMap = Collections.unmodifiableMap(ConstantsHolder.getConstants());
         RuntimeAssertionError.assertTrue(this.constantMap.size() == 34);
 
-        // create the object size look-up maps
-        Map<String, Integer> rtObjectSizeMap = computeRuntimeObjectSizes();
-        // This is to ensure the JCLAndAPIHeapInstanceSize is updated with the correct instance size of a newly added JCL or API class
-        RuntimeAssertionError.assertTrue(rtObjectSizeMap.size() == 96);
-
-        Map<String, Integer> shadowObjectSizeMap = new HashMap<>(); // pre-rename; shadow objects and exceptions
-        Map<String, Integer> apiObjectSizeMap = new HashMap<>(); // post-rename; API objects
-
-        Map<String, Integer> preRenameObjectSizes = new HashMap<>();
-        Map<String, Integer> postRenameObjectSizes = new HashMap<>();
-        rtObjectSizeMap.forEach((k, v) -> {
-            // the shadowed object sizes; and change the class name to the non-shadowed version
-            if (k.startsWith(PackageConstants.kShadowSlashPrefix)) {
-                shadowObjectSizeMap.put(k.substring(PackageConstants.kShadowSlashPrefix.length()), v);
-                postRenameObjectSizes.put(k, v);
-            }
-            // the object size of API classes
-            if (k.startsWith(PackageConstants.kShadowApiSlashPrefix)) {
-                apiObjectSizeMap.put(k, v);
-                preRenameObjectSizes.put(k.substring(PackageConstants.kShadowApiSlashPrefix.length()), v);
-            }
-        });
-        preRenameObjectSizes.putAll(shadowObjectSizeMap);
-        postRenameObjectSizes.putAll(apiObjectSizeMap);
+        Set<ClassInformation> hierarchyClassInfos;
+        if (null != snapshot) {
+            this.preRenameRuntimeObjectSizeMap = Collections.unmodifiableMap(snapshot.preRenameRuntimeObjectSizeMap);
+            this.postRenameRuntimeObjectSizeMap = Collections.unmodifiableMap(snapshot.postRenameRuntimeObjectSizeMap);
+            this.shadowClassSlashNameMethodDescriptorMap = Collections.unmodifiableMap(snapshot.shadowClassSlashNameMethodDescriptorMap);
+            hierarchyClassInfos = snapshot.hierarchyClassInfos;
+        } else {
+            // create the object size look-up maps
+            Map<String, Integer> rtObjectSizeMap = computeRuntimeObjectSizes();
+            // This is to ensure the JCLAndAPIHeapInstanceSize is updated with the correct instance size of a newly added JCL or API class
+            RuntimeAssertionError.assertTrue(rtObjectSizeMap.size() == 96);
+
+            Map<String, Integer> shadowObjectSizeMap = new HashMap<>(); // pre-rename; shadow objects and exceptions
+            Map<String, Integer> apiObjectSizeMap = new HashMap<>(); // post-rename; API objects
+
+            Map<String, Integer> preRenameObjectSizes = new HashMap<>();
+            Map<String, Integer> postRenameObjectSizes = new HashMap<>();
+            rtObjectSizeMap.forEach((k, v) -> {
+                // the shadowed object sizes; and change the class name to the non-shadowed version
+                if (k.startsWith(PackageConstants.kShadowSlashPrefix)) {
+                    shadowObjectSizeMap.put(k.substring(PackageConstants.kShadowSlashPrefix.length()), v);
+                    postRenameObjectSizes.put(k, v);
+                }
+                // the object size of API classes
+                if (k.startsWith(PackageConstants.kShadowApiSlashPrefix)) {
+                    apiObjectSizeMap.put(k, v);
+                    preRenameObjectSizes.put(k.substring(PackageConstants.kShadowApiSlashPrefix.length()), v);
+                }
+            });
+            preRenameObjectSizes.putAll(shadowObjectSizeMap);
+            postRenameObjectSizes.putAll(apiObjectSizeMap);
+
+            this.preRenameRuntimeObjectSizeMap = Collections.unmodifiableMap(preRenameObjectSizes);
+            this.postRenameRuntimeObjectSizeMap = Collections.unmodifiableMap(postRenameObjectSizes);
+
+            this.shadowClassSlashNameMethodDescriptorMap = Collections.unmodifiableMap(getShadowClassSlashNameMethodDescriptorMap());
+            hierarchyClassInfos = buildJCLAndAPIClassInfos();
+        }
+        this.classHierarchy = new ClassHierarchyBuilder()
+                .addPostRenameNonUserDefinedClasses(hierarchyClassInfos)
+                .build();
 
-        this.preRenameRuntimeObjectSizeMap = Collections.unmodifiableMap(preRenameObjectSizes);
-        this.postRenameRuntimeObjectSizeMap = Collections.unmodifiableMap(postRenameObjectSizes);
+        // If we had to generate everything, save it for next time.
+        if ((null != snapshotFingerprint) && (null == snapshot)) {
+            new NodeEnvironmentSnapshot(sharedClasses
+                    , this.preRenameRuntimeObjectSizeMap
+                    , this.postRenameRuntimeObjectSizeMap
+                    , this.shadowClassSlashNameMethodDescriptorMap
+                    , hierarchyClassInfos).write(snapshotFile, snapshotFingerprint);
+        }
+    }
 
-        this.shadowClassSlashNameMethodDescriptorMap = Collections.unmodifiableMap(getShadowClassSlashNameMethodDescriptorMap());
-        this.classHierarchy = buildJCLAndAPIClassHierarchy();
+    private static Map<String, byte[]> generateSharedClasses() {
+        Map<String, byte[]> sharedClasses = CommonGenerators.generateShadowJDK();
+        // The Helper ("H") has no state of its own (it calls the instrumentation attached to the thread) so every DApp shares this one copy.
+        sharedClasses.put(Helper.RUNTIME_HELPER_NAME, Helpers.renameHelperBytecode(Helpers.loadDefaultHelperBytecode()));
+        return sharedClasses;
     }
 
     // This is an example of the more "factory-like" nature of the NodeEnvironment.
@@ -415,7 +455,7 @@ public class NodeEnvironment {
         return objectHeapSizeMap;
     }
 
-    private ClassHierarchy buildJCLAndAPIClassHierarchy() {
+    private Set<ClassInformation> buildJCLAndAPIClassInfos() {
         Map<String, byte[]> classBytesByQualifiedNames = new HashMap<>();
         String mainClassName = "java.lang.Object";
 
@@ -433,13 +473,9 @@ public class NodeEnvironment {
         }
         LoadedJar runtimeJar = new LoadedJar(classBytesByQualifiedNames, mainClassName);
 
-        // Construct the full class hierarchy.
+        // Read the class information the full class hierarchy is built from.
         ClassInformationFactory classInfoFactory = new ClassInformationFactory();
-        Set<ClassInformation> classInfos = classInfoFactory.fromPostRenameJar(runtimeJar);
-
-        return new ClassHierarchyBuilder()
-                .addPostRenameNonUserDefinedClasses(classInfos)
-                .build();
+        return classInfoFactory.fromPostRenameJar(runtimeJar);
     }
 
     private Map<String, List<String>> getShadowClassSlashNameMethodDescriptorMap(){
@@ -0,0 +1,287 @@
+package org.aion.avm.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.aion.avm.core.types.ClassInformation;
+
+import i.RuntimeAssertionError;
+
+
+/**
+ * An on-disk snapshot of what the NodeEnvironment derives from the AVM's own code when it starts:  the generated shared classes (the shadow
+ * JDK exceptions and the Helper), the runtime object size maps, the shadow JCL method descriptors and the class information of the JCL and API
+ * hierarchy.  Loading these is much cheaper than generating them, which matters for short-lived processes (tools, tests) as much as for the node.
+ *
+ * A snapshot is only valid for the exact code it was generated from so each one records a fingerprint:  the SHA-256 of the jars the generating
+ * classes were loaded from (and the format version).  A snapshot with a different fingerprint, or whose payload doesn't match the SHA-256 in its
+ * header, is ignored (and overwritten, since the environment is then generated from scratch).
+ * If the fingerprint can't be computed (the classes weren't loaded from jars, for example), snapshots aren't used at all.
+ *
+ * Like the PersistentCodeCache, the file is memory-mapped to read it and written through a temporary file which is atomically renamed into place.
+ */
+public final class NodeEnvironmentSnapshot {
+    private static final int MAGIC = 0x41564d53;  // "AVMS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int DIGEST_LENGTH = 32;
+    private static final int HEADER_LENGTH = Integer.BYTES + Integer.BYTES + DIGEST_LENGTH + Integer.BYTES + DIGEST_LENGTH;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    public final Map<String, byte[]> sharedClasses;
+    public final Map<String, Integer> preRenameRuntimeObjectSizeMap;
+    public final Map<String, Integer> postRenameRuntimeObjectSizeMap;
+    public final Map<String, List<String>> shadowClassSlashNameMethodDescriptorMap;
+    public final Set<ClassInformation> hierarchyClassInfos;
+
+    public NodeEnvironmentSnapshot(Map<String, byte[]> sharedClasses
+            , Map<String, Integer> preRenameRuntimeObjectSizeMap
+            , Map<String, Integer> postRenameRuntimeObjectSizeMap
+            , Map<String, List<String>> shadowClassSlashNameMethodDescriptorMap
+            , Set<ClassInformation> hierarchyClassInfos) {
+        this.sharedClasses = sharedClasses;
+        this.preRenameRuntimeObjectSizeMap = preRenameRuntimeObjectSizeMap;
+        this.postRenameRuntimeObjectSizeMap = postRenameRuntimeObjectSizeMap;
+        this.shadowClassSlashNameMethodDescriptorMap = shadowClassSlashNameMethodDescriptorMap;
+        this.hierarchyClassInfos = hierarchyClassInfos;
+    }
+
+    /**
+     * Computes the fingerprint of the code which the snapshot is derived from.
+     *
+     * @param classes Classes from each of the jars the environment is generated from (each jar is only hashed once).
+     * @return The fingerprint or null if any of the classes wasn't loaded from a jar file.
+     */
+    public static byte[] fingerprintOf(Class<?>... classes) {
+        MessageDigest digest = newSha256();
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(FORMAT_VERSION).array());
+        Set<Path> jars = new LinkedHashSet<>();
+        for (Class<?> clazz : classes) {
+            CodeSource source = clazz.getProtectionDomain().getCodeSource();
+            Path jar = null;
+            try {
+                jar = (null != source) ? Paths.get(source.getLocation().toURI()) : null;
+            } catch (URISyntaxException e) {
+                jar = null;
+            }
+            if ((null == jar) || !Files.isRegularFile(jar)) {
+                return null;
+            }
+            jars.add(jar);
+        }
+        try {
+            for (Path jar : jars) {
+                digest.update(Files.readAllBytes(jar));
+            }
+        } catch (IOException e) {
+            // If we can't read the code, we can't tell if a snapshot matches it.
+            return null;
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Reads the snapshot in the given file, if it is valid for the given fingerprint.
+     *
+     * @param file The snapshot file.
+     * @param fingerprint The fingerprint of the current code (see fingerprintOf()).
+     * @return The snapshot or null if the file is missing, corrupt, or was generated from different code.
+     */
+    public static NodeEnvironmentSnapshot readAndVerify(File file, byte[] fingerprint) {
+        NodeEnvironmentSnapshot snapshot = null;
+        if (file.isFile()) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long size = channel.size();
+                if ((size >= HEADER_LENGTH) && (size <= Integer.MAX_VALUE)) {
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+                    int magic = mapped.getInt();
+                    int formatVersion = mapped.getInt();
+                    byte[] snapshotFingerprint = new byte[DIGEST_LENGTH];
+                    mapped.get(snapshotFingerprint);
+                    int length = mapped.getInt();
+                    byte[] expectedDigest = new byte[DIGEST_LENGTH];
+                    mapped.get(expectedDigest);
+                    if ((MAGIC == magic) && (FORMAT_VERSION == formatVersion) && Arrays.equals(fingerprint, snapshotFingerprint) && (length == (size - HEADER_LENGTH))) {
+                        byte[] payload = new byte[length];
+                        mapped.get(payload);
+                        if (Arrays.equals(expectedDigest, newSha256().digest(payload))) {
+                            snapshot = decode(payload);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // We treat an unreadable snapshot the same as a corrupt one.
+                snapshot = null;
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Writes the receiver to the given file, replacing any existing snapshot.
+     * Failures are ignored since this is only a cache:  the environment will just be generated, again, next time.
+     *
+     * @param file The snapshot file.
+     * @param fingerprint The fingerprint of the code the receiver was generated from.
+     */
+    public void write(File file, byte[] fingerprint) {
+        RuntimeAssertionError.assertTrue(DIGEST_LENGTH == fingerprint.length);
+        byte[] payload = encode();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + payload.length);
+        buffer.putInt(MAGIC);
+        buffer.putInt(FORMAT_VERSION);
+        buffer.put(fingerprint);
+        buffer.putInt(payload.length);
+        buffer.put(newSha256().digest(payload));
+        buffer.put(payload);
+        buffer.flip();
+
+        Path path = file.toPath();
+        Path temp = path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e2) {
+                // Nothing else we can do - it will be overwritten by the next attempt.
+            }
+        }
+    }
+
+    private byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream stream = new DataOutputStream(bytes)) {
+            // (maps are written in key order so the same environment always produces the same snapshot)
+            stream.writeInt(this.sharedClasses.size());
+            for (Map.Entry<String, byte[]> entry : new TreeMap<>(this.sharedClasses).entrySet()) {
+                stream.writeUTF(entry.getKey());
+                stream.writeInt(entry.getValue().length);
+                stream.write(entry.getValue());
+            }
+            writeSizeMap(stream, this.preRenameRuntimeObjectSizeMap);
+            writeSizeMap(stream, this.postRenameRuntimeObjectSizeMap);
+            stream.writeInt(this.shadowClassSlashNameMethodDescriptorMap.size());
+            for (Map.Entry<String, List<String>> entry : new TreeMap<>(this.shadowClassSlashNameMethodDescriptorMap).entrySet()) {
+                stream.writeUTF(entry.getKey());
+                stream.writeInt(entry.getValue().size());
+                for (String descriptor : entry.getValue()) {
+                    stream.writeUTF(descriptor);
+                }
+            }
+            stream.writeInt(this.hierarchyClassInfos.size());
+            for (ClassInformation info : this.hierarchyClassInfos) {
+                stream.writeBoolean(info.isInterface);
+                stream.writeUTF(info.dotName);
+                stream.writeBoolean(null != info.superClassDotName);
+                if (null != info.superClassDotName) {
+                    stream.writeUTF(info.superClassDotName);
+                }
+                String[] interfaces = info.getInterfaces();
+                stream.writeInt(interfaces.length);
+                for (String name : interfaces) {
+                    stream.writeUTF(name);
+                }
+            }
+        } catch (IOException e) {
+            // This is an in-memory stream.
+            throw RuntimeAssertionError.unexpected(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static NodeEnvironmentSnapshot decode(byte[] payload) throws IOException {
+        DataInputStream stream = new DataInputStream(new ByteArrayInputStream(payload));
+        int classCount = stream.readInt();
+        Map<String, byte[]> sharedClasses = new HashMap<>();
+        for (int i = 0; i < classCount; ++i) {
+            String name = stream.readUTF();
+            byte[] bytecode = new byte[stream.readInt()];
+            stream.readFully(bytecode);
+            sharedClasses.put(name, bytecode);
+        }
+        Map<String, Integer> preRenameSizes = readSizeMap(stream);
+        Map<String, Integer> postRenameSizes = readSizeMap(stream);
+        int descriptorClassCount = stream.readInt();
+        Map<String, List<String>> descriptors = new HashMap<>();
+        for (int i = 0; i < descriptorClassCount; ++i) {
+            String name = stream.readUTF();
+            int count = stream.readInt();
+            List<String> list = new ArrayList<>(count);
+            for (int j = 0; j < count; ++j) {
+                list.add(stream.readUTF());
+            }
+            descriptors.put(name, list);
+        }
+        int infoCount = stream.readInt();
+        Set<ClassInformation> infos = new HashSet<>();
+        for (int i = 0; i < infoCount; ++i) {
+            boolean isInterface = stream.readBoolean();
+            String dotName = stream.readUTF();
+            String superClassDotName = stream.readBoolean() ? stream.readUTF() : null;
+            String[] interfaces = new String[stream.readInt()];
+            for (int j = 0; j < interfaces.length; ++j) {
+                interfaces[j] = stream.readUTF();
+            }
+            infos.add(ClassInformation.postRenameInfoFor(isInterface, dotName, superClassDotName, interfaces));
+        }
+        return new NodeEnvironmentSnapshot(sharedClasses, preRenameSizes, postRenameSizes, descriptors, infos);
+    }
+
+    private static void writeSizeMap(DataOutputStream stream, Map<String, Integer> sizes) throws IOException {
+        stream.writeInt(sizes.size());
+        for (Map.Entry<String, Integer> entry : new TreeMap<>(sizes).entrySet()) {
+            stream.writeUTF(entry.getKey());
+            stream.writeInt(entry.getValue());
+        }
+    }
+
+    private static Map<String, Integer> readSizeMap(DataInputStream stream) throws IOException {
+        int count = stream.readInt();
+        Map<String, Integer> sizes = new HashMap<>();
+        for (int i = 0; i < count; ++i) {
+            String name = stream.readUTF();
+            sizes.put(name, stream.readInt());
+        }
+        return sizes;
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM is required to provide SHA-256.
+            throw RuntimeAssertionError.unexpected(e);
+        }
+    }
+}
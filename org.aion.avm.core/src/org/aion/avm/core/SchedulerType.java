@@ -0,0 +1,19 @@
+package org.aion.avm.core;
+
+/**
+ * Selects how the concurrent executor resolves data hazards between the transactions of a single batch.
+ * Both strategies commit results in transaction index order so they always produce the same result as sequential execution.
+ */
+public enum SchedulerType {
+    /**
+     * Each transaction acquires exclusive ownership of every address it touches before using it.
+     * A lower-index transaction waiting on an address owned by a higher-index one forces the owner to abort and restart.
+     */
+    ADDRESS_LOCK,
+    /**
+     * Transactions run without acquiring addresses, recording the state they read and write in their TransactionalState.
+     * At commit time, in index order, the read set is validated against everything committed since the transaction started
+     * and the transaction is re-executed only if one of those commits wrote something it read.
+     */
+    SPECULATIVE,
+}
@@ -0,0 +1,253 @@
+package org.aion.avm.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.aion.avm.core.persistence.LoadedDApp;
+import org.aion.avm.core.util.ByteArrayWrapper;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+
+import i.RuntimeAssertionError;
+
+
+/**
+ * Prepares the DApps a batch is about to call on background threads, so that the executor threads (which may be holding address
+ * locks other transactions are waiting on) don't have to re-transform or load them.
+ *
+ * The service keeps a decaying count of how often each contract was called, across batches.  When a batch starts, the most
+ * frequently called of its targets which are not already in the hot DApp cache are handed to the background threads, which
+ * re-transform the code, if the kernel doesn't yet have transformed code for it, and load the DApp.
+ * An executor thread needing one of these DApps takes the prepared result (waiting for it, if it is still being prepared), but
+ * only if it was prepared from exactly the same code the executor thread sees, so this can never change the result of a
+ * transaction.  Anything not taken by the end of the batch is dropped.
+ *
+ * The kernel is only read by the background threads while the batch is running, under a lock which the end of the batch waits on.
+ */
+public class WarmupService {
+    // Each batch, the call counts of all contracts are scaled by this amount, so the ranking favours recent activity.
+    private static final double DECAY = 0.5;
+    // Counts which decay below this are forgotten.
+    private static final double MINIMUM_COUNT = 0.1;
+
+    private final ExecutorService executor;
+    private final AvmThreadStats[] threadStats;
+    private final int maxDAppsPerBatch;
+    private final boolean preserveDebuggability;
+
+    // Only used by the calling thread (in startBatch).
+    private final Map<ByteArrayWrapper, Double> callCounts;
+
+    // The prepared DApps of the current batch, by address.
+    private final Map<ByteArrayWrapper, CompletableFuture<PreparedDApp>> prepared;
+
+    // The kernel of the running batch, null between batches.  Guarded by kernelLock.
+    private final Object kernelLock;
+    private IExternalState currentKernel;
+
+    public WarmupService(int threadCount, int maxDAppsPerBatch, boolean preserveDebuggability) {
+        RuntimeAssertionError.assertTrue(threadCount > 0);
+        this.threadStats = new AvmThreadStats[threadCount];
+        for (int i = 0; i < threadCount; ++i) {
+            this.threadStats[i] = new AvmThreadStats();
+        }
+        AtomicInteger nextThread = new AtomicInteger(0);
+        this.executor = Executors.newFixedThreadPool(threadCount, (runnable) -> {
+            int index = nextThread.getAndIncrement();
+            return new WarmupThread(runnable, "AVM Warm-up Thread " + index, this.threadStats[index]);
+        });
+        this.maxDAppsPerBatch = maxDAppsPerBatch;
+        this.preserveDebuggability = preserveDebuggability;
+        this.callCounts = new HashMap<>();
+        this.prepared = new ConcurrentHashMap<>();
+        this.kernelLock = new Object();
+        this.currentKernel = null;
+    }
+
+    /**
+     * Called by the calling thread, before the batch is handed to the executor threads.
+     * Records the calls made by the batch and starts preparing the most frequently called targets.
+     *
+     * @param kernel The kernel the batch will run against.
+     * @param transactions The transactions of the batch.
+     * @param isCached Returns true for any address whose DApp is already in the hot DApp cache.
+     */
+    public void startBatch(IExternalState kernel, Transaction[] transactions, Predicate<ByteArrayWrapper> isCached) {
+        endBatch();
+
+        // Decay the history then add the calls of this batch.
+        Iterator<Map.Entry<ByteArrayWrapper, Double>> iterator = this.callCounts.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<ByteArrayWrapper, Double> entry = iterator.next();
+            double count = entry.getValue() * DECAY;
+            if (count < MINIMUM_COUNT) {
+                iterator.remove();
+            } else {
+                entry.setValue(count);
+            }
+        }
+        Map<ByteArrayWrapper, AionAddress> batchTargets = new LinkedHashMap<>();
+        for (Transaction transaction : transactions) {
+            if (!transaction.isCreate) {
+                ByteArrayWrapper target = new ByteArrayWrapper(transaction.destinationAddress.toByteArray());
+                this.callCounts.merge(target, 1.0, Double::sum);
+                batchTargets.put(target, transaction.destinationAddress);
+            }
+        }
+
+        List<ByteArrayWrapper> targets = new ArrayList<>(batchTargets.keySet());
+        targets.removeIf(isCached);
+        targets.sort((left, right) -> Double.compare(this.callCounts.get(right), this.callCounts.get(left)));
+
+        synchronized (this.kernelLock) {
+            this.currentKernel = kernel;
+        }
+        for (ByteArrayWrapper target : targets.subList(0, Math.min(targets.size(), this.maxDAppsPerBatch))) {
+            AionAddress address = batchTargets.get(target);
+            CompletableFuture<PreparedDApp> future = CompletableFuture.supplyAsync(() -> prepare(kernel, address), this.executor);
+            this.prepared.put(target, future);
+        }
+    }
+
+    /**
+     * Called at the end of a batch (or before the next one).  Once this returns, the background threads will no longer read the
+     * kernel of the batch and anything which wasn't taken is dropped.
+     */
+    public void endBatch() {
+        synchronized (this.kernelLock) {
+            this.currentKernel = null;
+        }
+        this.prepared.clear();
+    }
+
+    /**
+     * Called by an executor thread which needs to re-transform or load the DApp at the given address.
+     * If the DApp is still being prepared, this waits for it:  that can't take longer than doing the same work on this thread.
+     *
+     * @param address The address of the DApp.
+     * @return The prepared DApp or null if it wasn't prepared (or preparing it failed).
+     */
+    public PreparedDApp take(ByteArrayWrapper address) {
+        CompletableFuture<PreparedDApp> future = this.prepared.remove(address);
+        PreparedDApp dapp = null;
+        if (null != future) {
+            try {
+                dapp = future.join();
+            } catch (CompletionException e) {
+                // The caller will just do the work itself (and observe the same failure, if it wasn't specific to this thread).
+                dapp = null;
+            }
+        }
+        return dapp;
+    }
+
+    public AvmThreadStats[] getThreadStats() {
+        return this.threadStats;
+    }
+
+    public void shutdown() {
+        endBatch();
+        this.executor.shutdownNow();
+        try {
+            this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            // We don't use interruption.
+            throw RuntimeAssertionError.unexpected(e);
+        }
+    }
+
+    private PreparedDApp prepare(IExternalState kernel, AionAddress address) {
+        byte[] code = null;
+        byte[] transformedCode = null;
+        long blockTimestamp = 0L;
+        synchronized (this.kernelLock) {
+            if (kernel == this.currentKernel) {
+                transformedCode = kernel.getTransformedCode(address);
+                if (null == transformedCode) {
+                    code = kernel.getCode(address);
+                    blockTimestamp = kernel.getBlockTimestamp();
+                }
+            }
+        }
+
+        PreparedDApp result = null;
+        if ((null != transformedCode) || (null != code)) {
+            if (null == transformedCode) {
+                transformedCode = CodeReTransformer.transformCode(code, blockTimestamp, this.preserveDebuggability, false);
+            }
+            LoadedDApp loadedDApp = null;
+            if (null != transformedCode) {
+                try {
+                    loadedDApp = DAppLoader.loadFromGraph(transformedCode, this.preserveDebuggability);
+                } catch (IOException e) {
+                    throw RuntimeAssertionError.unexpected(e); // the jar was created by AVM; IOException is unexpected
+                }
+            }
+            result = new PreparedDApp(code, transformedCode, loadedDApp);
+        }
+        return result;
+    }
+
+
+    /**
+     * The result of preparing a DApp in the background.
+     */
+    public static final class PreparedDApp {
+        // The original code, only set if it had to be re-transformed.
+        public final byte[] code;
+        // Null if re-transformation failed.
+        public final byte[] transformedCode;
+        public final LoadedDApp loadedDApp;
+
+        private PreparedDApp(byte[] code, byte[] transformedCode, LoadedDApp loadedDApp) {
+            this.code = code;
+            this.transformedCode = transformedCode;
+            this.loadedDApp = loadedDApp;
+        }
+
+        /**
+         * @param originalCode The code an executor thread needs to re-transform.
+         * @return True if this was successfully re-transformed from exactly that code.
+         */
+        public boolean wasTransformedFrom(byte[] originalCode) {
+            return (null != this.code) && (null != this.transformedCode) && Arrays.equals(this.code, originalCode);
+        }
+
+        /**
+         * @param expectedTransformedCode The transformed code an executor thread needs to load.
+         * @return True if the DApp was loaded from exactly that transformed code.
+         */
+        public boolean wasLoadedFrom(byte[] expectedTransformedCode) {
+            return (null != this.loadedDApp) && Arrays.equals(this.transformedCode, expectedTransformedCode);
+        }
+    }
+
+
+    /**
+     * The background threads carry their own stats so the transformation timings they record don't race with the executor threads.
+     */
+    static final class WarmupThread extends Thread {
+        public final AvmThreadStats stats;
+
+        private WarmupThread(Runnable runnable, String name, AvmThreadStats stats) {
+            super(runnable, name);
+            this.stats = stats;
+            this.setDaemon(true);
+            this.setPriority(Thread.MIN_PRIORITY);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.aion.avm.core.arraywrapping;
 
 import a.BooleanArray;
 import a.ByteArray;
+import org.aion.avm.core.rejection.ConsensusLimitConstants;
 import org.aion.avm.core.rejection.RejectedClassException;
 import org.aion.avm.core.types.ClassHierarchy;
 import org.aion.avm.utilities.Utilities;
@@ -10,10 +11,13 @@ import i.IObjectArray;
 import i.RuntimeAssertionError;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
 import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
 import org.objectweb.asm.tree.analysis.Analyzer;
 import org.objectweb.asm.tree.analysis.AnalyzerException;
 import org.objectweb.asm.tree.analysis.BasicValue;
@@ -35,8 +39,16 @@ import org.objectweb.asm.tree.analysis.Frame;
  * 
  * Note that this static analysis is the reason why only these bytecodes are handled here - they are the only ones which
  * require additional type knowledge not associated 1-to-1 with the specific opcode.
+ *
+ * This runs in the same visitor chain as the rest of the instrumentation, so the code we analyze hasn't been through a ClassWriter:
+ * the maxs we are given may be too small for the instrumented code and unreachable code hasn't been replaced (the final ClassWriter
+ * computes the maxs and frames, and replaces unreachable code, once).
  */
 class ArraysRequiringAnalysisMethodNode extends MethodNode {
+    // The stack used by the analysis if the maxStack we were given isn't enough:  the input code was limited to MAX_OPERAND_STACK_DEPTH
+    // and the instrumentation only ever uses a few more slots, so this is always enough for valid code.
+    private static final int ANALYSIS_MAX_STACK = 2 * ConsensusLimitConstants.MAX_OPERAND_STACK_DEPTH;
+
     private final ClassHierarchy hierarchy;
 
     private String className;
@@ -62,15 +74,18 @@ class ArraysRequiringAnalysisMethodNode extends MethodNode {
 
         Frame<BasicValue>[] frames = null;
         if (instructions.size() > 0) {
+            // The locals are easy to find from the instructions but the stack would need its own analysis so we only use a larger
+            // stack if the one we were given turns out to be too small.
+            this.maxLocals = Math.max(this.maxLocals, countLocals());
             try{
-                Analyzer<BasicValue> analyzer = new Analyzer<>(new ArrayWrappingInterpreter(this.hierarchy));
-                analyzer.analyze(this.className, this);
-                frames = analyzer.getFrames();
+                frames = analyze();
             }catch (AnalyzerException e){
-                // If we fail to run the analyzer, that is a serious internal error. It might be an actual bug
-                // in the AVM, or it might be the result of corrupt input.
-                // Since we're not sure, we "blame" the contract, and throw a Rejection Error.
-                throw new RejectedClassException("Something went wrong when trying to analyze a wrapped array: " + e.getMessage());
+                if ((e.getCause() instanceof IndexOutOfBoundsException) && (this.maxStack < ANALYSIS_MAX_STACK)) {
+                    this.maxStack = ANALYSIS_MAX_STACK;
+                    frames = analyzeOrReject();
+                } else {
+                    throw reject(e);
+                }
             }
         }
 
@@ -84,6 +99,11 @@ class ArraysRequiringAnalysisMethodNode extends MethodNode {
             AbstractInsnNode insn = insns[i];
             Frame<BasicValue> f = frames[i];
 
+            // Unreachable instructions have no frame (the ClassWriter will replace them so there is nothing to do).
+            if (null == f) {
+                continue;
+            }
+
             // We only handle aaload here since aastore is generic
             // the log is the following
             // check instruction -> check stack map frame -> replace instruction with invokeV and checkcast
@@ -189,4 +209,43 @@ class ArraysRequiringAnalysisMethodNode extends MethodNode {
 
         accept(mv);
     }
+
+    private Frame<BasicValue>[] analyze() throws AnalyzerException {
+        Analyzer<BasicValue> analyzer = new Analyzer<>(new ArrayWrappingInterpreter(this.hierarchy));
+        analyzer.analyze(this.className, this);
+        return analyzer.getFrames();
+    }
+
+    private Frame<BasicValue>[] analyzeOrReject() {
+        try {
+            return analyze();
+        } catch (AnalyzerException e) {
+            throw reject(e);
+        }
+    }
+
+    private static RejectedClassException reject(AnalyzerException e) {
+        // If we fail to run the analyzer, that is a serious internal error. It might be an actual bug
+        // in the AVM, or it might be the result of corrupt input.
+        // Since we're not sure, we "blame" the contract, and throw a Rejection Error.
+        return new RejectedClassException("Something went wrong when trying to analyze a wrapped array: " + e.getMessage());
+    }
+
+    private int countLocals() {
+        // The arguments (and "this") are always in the first locals.
+        int locals = Type.getArgumentsAndReturnSizes(this.desc) >> 2;
+        if (0 != (this.access & Opcodes.ACC_STATIC)) {
+            locals -= 1;
+        }
+        for (AbstractInsnNode insn : this.instructions.toArray()) {
+            if (insn instanceof VarInsnNode) {
+                int opcode = insn.getOpcode();
+                boolean isWide = (Opcodes.LLOAD == opcode) || (Opcodes.DLOAD == opcode) || (Opcodes.LSTORE == opcode) || (Opcodes.DSTORE == opcode);
+                locals = Math.max(locals, ((VarInsnNode) insn).var + (isWide ? 2 : 1));
+            } else if (insn instanceof IincInsnNode) {
+                locals = Math.max(locals, ((IincInsnNode) insn).var + 1);
+            }
+        }
+        return locals;
+    }
 }
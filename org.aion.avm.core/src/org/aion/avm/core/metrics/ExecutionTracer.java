@@ -0,0 +1,185 @@
+package org.aion.avm.core.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.aion.avm.core.util.Helpers;
+import org.aion.types.AionAddress;
+
+
+/**
+ * Records what the executor threads spend their time on, for each transaction of a batch (which is a block, when run by a kernel),
+ * so that a slow block can be understood after the fact:  each executor thread records spans (see SpanKind) into its own TraceRing,
+ * and the spans of the last batch can be exported in the Chrome trace-event format (which chrome://tracing, Perfetto and speedscope
+ * can open).  This only costs a few array writes per span so it is meant to be left on.
+ *
+ * Optionally, the executor threads also build a sampled profile of the methods each DApp runs (see MethodProfiler), which can be
+ * exported as folded stacks, to build a flame graph.
+ */
+public class ExecutionTracer {
+    private final TraceRing[] rings;
+    private final String[] threadNames;
+    // Null if method profiling is disabled.
+    private final Map<AionAddress, Map<String, LongAdder>> methodProfiles;
+    private final int methodSampleInterval;
+
+    // Set by startBatch():  when the last batch started and where it starts in each ring.
+    private volatile long batchStartNanos;
+    private volatile long[] batchStartSequences;
+
+    /**
+     * Creates the tracer for the given executor threads.
+     *
+     * @param threadNames The names of the executor threads (a thread's index, here, is the index of its ring).
+     * @param spansPerThread The number of spans each thread keeps (a power of 2, or 0 to disable tracing).
+     * @param methodSampleInterval The number of method entries between the samples of the method profile (0 to disable profiling).
+     */
+    public ExecutionTracer(String[] threadNames, int spansPerThread, int methodSampleInterval) {
+        this.threadNames = threadNames.clone();
+        this.rings = new TraceRing[threadNames.length];
+        for (int i = 0; i < this.rings.length; ++i) {
+            this.rings[i] = (spansPerThread > 0)
+                    ? new TraceRing(spansPerThread)
+                    : TraceRing.DISABLED;
+        }
+        this.methodProfiles = (methodSampleInterval > 0)
+                ? new ConcurrentHashMap<>()
+                : null;
+        this.methodSampleInterval = methodSampleInterval;
+        this.batchStartNanos = System.nanoTime();
+        this.batchStartSequences = new long[this.rings.length];
+    }
+
+    public TraceRing getRing(int threadIndex) {
+        return this.rings[threadIndex];
+    }
+
+    /**
+     * @return A new profiler, for one executor thread, or null if method profiling is disabled.
+     */
+    public MethodProfiler newMethodProfiler() {
+        return (null != this.methodProfiles)
+                ? new MethodProfiler(this.methodSampleInterval, this.methodProfiles)
+                : null;
+    }
+
+    /**
+     * Called when a batch starts, before any of its transactions are given to the executor threads.
+     */
+    public void startBatch() {
+        long[] sequences = new long[this.rings.length];
+        for (int i = 0; i < this.rings.length; ++i) {
+            sequences[i] = this.rings[i].getWritten();
+        }
+        this.batchStartSequences = sequences;
+        this.batchStartNanos = System.nanoTime();
+    }
+
+    /**
+     * @return When the last batch started (System.nanoTime()).
+     */
+    public long getBatchStartNanos() {
+        return this.batchStartNanos;
+    }
+
+    /**
+     * Writes the spans of the last batch in the Chrome trace-event (JSON) format, with one track per executor thread and the times in
+     * microseconds since the batch started.
+     * This should only be called once the results of the batch have been collected (otherwise, it is whatever was recorded so far).
+     * If a thread recorded more spans than its ring holds, only its newest spans are written.
+     *
+     * @param output Where to write the trace.
+     */
+    public void writeChromeTrace(Appendable output) {
+        long startNanos = this.batchStartNanos;
+        long[] startSequences = this.batchStartSequences;
+        List<String> events = new ArrayList<>();
+        for (int i = 0; i < this.rings.length; ++i) {
+            int threadId = i;
+            events.add("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + threadId + ",\"args\":{\"name\":\"" + this.threadNames[i] + "\"}}");
+            this.rings[i].forEachSince(startSequences[i], (kind, transactionIndex, spanStart, spanEnd, subject) -> {
+                StringBuilder event = new StringBuilder();
+                event.append("{\"name\":\"").append(kind.exposedName)
+                        .append("\",\"cat\":\"avm\",\"ph\":\"X\",\"pid\":1,\"tid\":").append(threadId)
+                        .append(",\"ts\":").append(microseconds(spanStart - startNanos))
+                        .append(",\"dur\":").append(microseconds(spanEnd - spanStart))
+                        .append(",\"args\":{\"transaction\":").append(transactionIndex);
+                if (null != subject) {
+                    String address = (subject instanceof byte[])
+                            ? Helpers.bytesToHexString((byte[]) subject)
+                            : subject.toString();
+                    event.append(",\"address\":\"").append(address).append('"');
+                }
+                events.add(event.append("}}").toString());
+            });
+        }
+        try {
+            output.append("{\"traceEvents\":[\n");
+            for (int i = 0; i < events.size(); ++i) {
+                output.append(events.get(i)).append((i < (events.size() - 1)) ? ",\n" : "\n");
+            }
+            output.append("]}\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The spans of the last batch in the Chrome trace-event format (see writeChromeTrace()).
+     */
+    public String getLastBatchTrace() {
+        StringBuilder builder = new StringBuilder();
+        writeChromeTrace(builder);
+        return builder.toString();
+    }
+
+    /**
+     * Writes the method profile of the given DApp, collected since the last clearMethodProfiles(), as folded stacks:  one line per
+     * distinct stack of the DApp's methods (outermost first, separated by ';') followed by the number of samples taken in it.
+     * This is the input format of the common flame graph tools.
+     *
+     * @param address The DApp.
+     * @param output Where to write the profile (nothing is written if the DApp wasn't sampled or profiling is disabled).
+     */
+    public void writeMethodProfile(AionAddress address, Appendable output) {
+        Map<String, LongAdder> profile = (null != this.methodProfiles)
+                ? this.methodProfiles.get(address)
+                : null;
+        if (null != profile) {
+            try {
+                for (Map.Entry<String, LongAdder> entry : profile.entrySet()) {
+                    output.append(entry.getKey()).append(' ').append(Long.toString(entry.getValue().sum())).append('\n');
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * @return The DApps which have a method profile (empty if profiling is disabled).
+     */
+    public List<AionAddress> getProfiledDApps() {
+        return (null != this.methodProfiles)
+                ? new ArrayList<>(this.methodProfiles.keySet())
+                : new ArrayList<>();
+    }
+
+    public void clearMethodProfiles() {
+        if (null != this.methodProfiles) {
+            this.methodProfiles.clear();
+        }
+    }
+
+
+    private static String microseconds(long nanos) {
+        long fraction = Math.abs(nanos % 1000L);
+        String digits = Long.toString(1000L + fraction).substring(1);
+        return ((nanos < 0L) && (nanos > -1000L) ? "-0" : Long.toString(nanos / 1000L)) + "." + digits;
+    }
+}
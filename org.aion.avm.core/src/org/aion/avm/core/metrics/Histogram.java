@@ -0,0 +1,125 @@
+package org.aion.avm.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A histogram of non-negative long values (typically durations in nanoseconds or sizes in bytes), in the style of HdrHistogram:
+ * values below 16 get their own bucket and every power of 2 above that is split into 16 linear buckets, so any value is recorded
+ * with a relative error of, at most, 1/16.  This needs 960 buckets to cover every long value, so there is no range to configure.
+ *
+ * Recording a value is a few atomic increments, with no allocation or locking, so it can be done on the hot path.  Each executor
+ * thread has its own histograms (see AvmThreadStats), which means the increments are almost never contended, and readers can read
+ * it at any time, concurrently with the writers (getting an approximate snapshot, as with CacheStats).
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // The values below SUB_BUCKET_COUNT each have a bucket, then each of the 59 remaining powers of 2 has SUB_BUCKET_COUNT buckets.
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0L);
+
+    /**
+     * Records one value (negative values are recorded as 0).
+     *
+     * @param value The value to record.
+     */
+    public void record(long value) {
+        long positive = Math.max(0L, value);
+        this.buckets.incrementAndGet(bucketIndex(positive));
+        this.count.increment();
+        this.sum.add(positive);
+        this.max.accumulate(positive);
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    public long getSum() {
+        return this.sum.sum();
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Finds the value at the given quantile, rounded up to the largest value in its bucket (but never above the largest recorded).
+     *
+     * @param quantile The quantile, from 0.0 to 1.0.
+     * @return The value at that quantile (0 if nothing has been recorded).
+     */
+    public long getValueAtQuantile(double quantile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0L;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            counts[i] = this.buckets.get(i);
+            total += counts[i];
+        }
+        long rank = Math.max(1L, (long) Math.ceil(quantile * total));
+        long seen = 0L;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), getMax());
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Adds everything recorded in the given histogram to this one (used to combine the histograms of several threads).
+     *
+     * @param other The histogram to add (which isn't changed).
+     */
+    public void add(Histogram other) {
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            long value = other.buckets.get(i);
+            if (0L != value) {
+                this.buckets.addAndGet(i, value);
+            }
+        }
+        this.count.add(other.getCount());
+        this.sum.add(other.getSum());
+        this.max.accumulate(other.getMax());
+    }
+
+    public void clear() {
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            this.buckets.set(i, 0L);
+        }
+        this.count.reset();
+        this.sum.reset();
+        this.max.reset();
+    }
+
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = (Long.SIZE - 1) - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        // The top bit is implied by the exponent so the sub-bucket is the next SUB_BUCKET_BITS bits.
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+        return ((shift + 1) * SUB_BUCKET_COUNT) + subBucket;
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index / SUB_BUCKET_COUNT) - 1;
+        long subBucket = index % SUB_BUCKET_COUNT;
+        long lowerBound = (SUB_BUCKET_COUNT + subBucket) << shift;
+        // (for the last bucket, this is exactly Long.MAX_VALUE)
+        return lowerBound + ((1L << shift) - 1L);
+    }
+}
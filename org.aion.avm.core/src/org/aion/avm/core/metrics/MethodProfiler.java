@@ -0,0 +1,101 @@
+package org.aion.avm.core.metrics;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import i.IMethodSampler;
+import i.PackageConstants;
+import org.aion.types.AionAddress;
+
+
+/**
+ * Builds a sampled profile of the methods each DApp runs, for one executor thread:  the StackWatcher notifies it on every method
+ * entry and, on every sampleInterval-th one, it captures the methods of the DApp currently running on this thread's stack.
+ * The samples are counted, by stack, in the profiles shared by all of the executor threads (see ExecutionTracer.writeMethodProfile()).
+ *
+ * Note that the samples are taken by count of method entries, not by time, so short methods which are called often are over-represented
+ * relative to the time they take (but it costs nothing between the samples and doesn't need another thread).
+ */
+public class MethodProfiler implements IMethodSampler {
+    private static final String METHOD_PREFIX = "avm_";
+
+    private final int sampleInterval;
+    private final Map<AionAddress, Map<String, LongAdder>> profiles;
+    // The DApps running on this thread, innermost last (since they can call each other).
+    private final ArrayDeque<RunningDApp> runningDApps;
+    private final StackWalker walker;
+    private int entriesUntilSample;
+
+    public MethodProfiler(int sampleInterval, Map<AionAddress, Map<String, LongAdder>> profiles) {
+        this.sampleInterval = sampleInterval;
+        this.profiles = profiles;
+        this.runningDApps = new ArrayDeque<>();
+        this.walker = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+        this.entriesUntilSample = sampleInterval;
+    }
+
+    /**
+     * Called when a DApp is about to run, on this thread, so that the samples taken until the matching exitDApp() are attributed to it.
+     *
+     * @param address The DApp's address.
+     * @param loader The class loader of the DApp's classes (only methods of these classes are captured).
+     */
+    public void enterDApp(AionAddress address, ClassLoader loader) {
+        this.runningDApps.addLast(new RunningDApp(address, loader));
+    }
+
+    public void exitDApp() {
+        this.runningDApps.removeLast();
+    }
+
+    @Override
+    public void onMethodEnter() {
+        this.entriesUntilSample -= 1;
+        if (0 == this.entriesUntilSample) {
+            this.entriesUntilSample = this.sampleInterval;
+            if (!this.runningDApps.isEmpty()) {
+                RunningDApp running = this.runningDApps.getLast();
+                String stack = captureStack(running.loader);
+                if (!stack.isEmpty()) {
+                    this.profiles.computeIfAbsent(running.address, (address) -> new ConcurrentHashMap<>())
+                            .computeIfAbsent(stack, (key) -> new LongAdder())
+                            .increment();
+                }
+            }
+        }
+    }
+
+
+    // Returns the DApp's methods on the stack, outermost first, separated by ';' (the "folded stack" a flame graph is built from).
+    private String captureStack(ClassLoader loader) {
+        return this.walker.walk((frames) -> frames
+                .filter((frame) -> frame.getDeclaringClass().getClassLoader() == loader)
+                .map((frame) -> {
+                    String className = frame.getClassName();
+                    if (className.startsWith(PackageConstants.kUserDotPrefix)) {
+                        className = className.substring(PackageConstants.kUserDotPrefix.length());
+                    }
+                    // (user methods are all renamed with this prefix)
+                    String methodName = frame.getMethodName();
+                    if (methodName.startsWith(METHOD_PREFIX)) {
+                        methodName = methodName.substring(METHOD_PREFIX.length());
+                    }
+                    return className + "." + methodName;
+                })
+                .reduce((inner, outer) -> outer + ";" + inner)
+                .orElse(""));
+    }
+
+
+    private static class RunningDApp {
+        public final AionAddress address;
+        public final ClassLoader loader;
+
+        public RunningDApp(AionAddress address, ClassLoader loader) {
+            this.address = address;
+            this.loader = loader;
+        }
+    }
+}
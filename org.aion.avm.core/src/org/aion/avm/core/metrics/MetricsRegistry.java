@@ -0,0 +1,208 @@
+package org.aion.avm.core.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+
+/**
+ * A registry of the metrics describing an AVM instance, which a monitoring system pulls, whenever it wants, either as a list of
+ * samples (see collect()) or in the Prometheus text exposition format (see writeText()), which most local scrapers can consume.
+ *
+ * Nothing is computed or copied when the metrics are updated:  the registry only holds a way to read each one (a LongSupplier
+ * reading an existing counter or a Histogram), so reading the metrics is the only time this costs anything.
+ * Each metric is a series of a named family, identified by its labels (for example, the thread which updates it), and all the
+ * series of a family must be the same type.
+ */
+public class MetricsRegistry {
+    // We only report these quantiles of each histogram, plus the maximum (as quantile 1).
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    public enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge"),
+        SUMMARY("summary"),
+        ;
+        private final String exposedName;
+        private Type(String exposedName) {
+            this.exposedName = exposedName;
+        }
+    }
+
+    // Families are reported in the order they were registered.
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    /**
+     * Formats the given name-value pairs as the labels of a series.
+     *
+     * @param namesAndValues The label names and values, alternating.
+     * @return The labels (the text between the braces of a series).
+     */
+    public static String labels(String... namesAndValues) {
+        if (0 != (namesAndValues.length % 2)) {
+            throw new IllegalArgumentException("Labels must be name-value pairs");
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            String value = namesAndValues[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+            builder.append(namesAndValues[i]).append("=\"").append(value).append('"');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Registers a counter:  a value which only ever increases (unless the underlying stats are cleared).
+     */
+    public synchronized void registerCounter(String name, String help, String labels, LongSupplier value) {
+        familyFor(name, help, Type.COUNTER).series.add(new Series(labels, value, null));
+    }
+
+    /**
+     * Registers a gauge:  a value which can go up and down.
+     */
+    public synchronized void registerGauge(String name, String help, String labels, LongSupplier value) {
+        familyFor(name, help, Type.GAUGE).series.add(new Series(labels, value, null));
+    }
+
+    /**
+     * Registers a histogram, which is reported as a summary:  its quantiles, sum and count.
+     */
+    public synchronized void registerHistogram(String name, String help, String labels, Histogram histogram) {
+        familyFor(name, help, Type.SUMMARY).series.add(new Series(labels, null, histogram));
+    }
+
+    /**
+     * Reads every registered metric.
+     *
+     * @return The samples, in the order their families were registered.
+     */
+    public synchronized List<Sample> collect() {
+        List<Sample> samples = new ArrayList<>();
+        for (Family family : this.families.values()) {
+            for (Series series : family.series) {
+                if (Type.SUMMARY == family.type) {
+                    for (double quantile : QUANTILES) {
+                        samples.add(new Sample(family.name, family.name, withQuantile(series.labels, Double.toString(quantile)), series.histogram.getValueAtQuantile(quantile)));
+                    }
+                    samples.add(new Sample(family.name, family.name, withQuantile(series.labels, "1.0"), series.histogram.getMax()));
+                    samples.add(new Sample(family.name, family.name + "_sum", series.labels, series.histogram.getSum()));
+                    samples.add(new Sample(family.name, family.name + "_count", series.labels, series.histogram.getCount()));
+                } else {
+                    samples.add(new Sample(family.name, family.name, series.labels, series.value.getAsLong()));
+                }
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Writes every registered metric in the Prometheus text exposition format (version 0.0.4).
+     *
+     * @param output Where to write the metrics.
+     */
+    public synchronized void writeText(Appendable output) {
+        try {
+            String currentFamily = null;
+            for (Sample sample : collect()) {
+                if (!sample.family.equals(currentFamily)) {
+                    Family family = this.families.get(sample.family);
+                    output.append("# HELP ").append(family.name).append(' ').append(family.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+                    output.append("# TYPE ").append(family.name).append(' ').append(family.type.exposedName).append('\n');
+                    currentFamily = sample.family;
+                }
+                output.append(sample.toString()).append('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return Every registered metric in the Prometheus text exposition format.
+     */
+    public String toText() {
+        StringBuilder builder = new StringBuilder();
+        writeText(builder);
+        return builder.toString();
+    }
+
+
+    private Family familyFor(String name, String help, Type type) {
+        Family family = this.families.get(name);
+        if (null == family) {
+            family = new Family(name, help, type);
+            this.families.put(name, family);
+        } else if (type != family.type) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    private static String withQuantile(String labels, String quantile) {
+        String label = labels("quantile", quantile);
+        return labels.isEmpty()
+                ? label
+                : (labels + "," + label);
+    }
+
+
+    /**
+     * One value read from the registry.
+     */
+    public static final class Sample {
+        public final String family;
+        // The family name, or that with a suffix (the _sum and _count of a summary).
+        public final String name;
+        // Empty if the series has no labels.
+        public final String labels;
+        public final long value;
+
+        public Sample(String family, String name, String labels, long value) {
+            this.family = family;
+            this.name = name;
+            this.labels = labels;
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return this.labels.isEmpty()
+                    ? (this.name + " " + this.value)
+                    : (this.name + "{" + this.labels + "} " + this.value);
+        }
+    }
+
+    private static final class Family {
+        public final String name;
+        public final String help;
+        public final Type type;
+        public final List<Series> series;
+
+        public Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.series = new ArrayList<>();
+        }
+    }
+
+    private static final class Series {
+        public final String labels;
+        // Exactly one of these is non-null, depending on the type of the family.
+        public final LongSupplier value;
+        public final Histogram histogram;
+
+        public Series(String labels, LongSupplier value, Histogram histogram) {
+            this.labels = labels;
+            this.value = value;
+            this.histogram = histogram;
+        }
+    }
+}
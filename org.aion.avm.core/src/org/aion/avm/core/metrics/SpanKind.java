@@ -0,0 +1,29 @@
+package org.aion.avm.core.metrics;
+
+
+/**
+ * The kinds of span recorded in an execution trace (see ExecutionTracer).
+ */
+public enum SpanKind {
+    // From the start of the batch until an executor thread took the transaction.
+    QUEUE_WAIT("queue wait"),
+    // One attempt to run the transaction, which wasn't aborted (everything below is within one of these, or an ABORT).
+    TRANSACTION("transaction"),
+    // Waiting for another transaction to release an address (the span's subject).
+    LOCK_WAIT("lock wait"),
+    // Deserializing a DApp's graph.
+    LOAD("load"),
+    // A DApp's main(), including the calls it makes.
+    EXECUTE("execute"),
+    // Serializing a DApp's graph.
+    SERIALIZE("serialize"),
+    // Waiting for the transactions before this one, in the batch, to commit.
+    COMMIT_WAIT("commit wait"),
+    // One attempt to run the transaction, which was aborted (due to a data hazard with another thread) so it will be retried.
+    ABORT("abort"),
+    ;
+    public final String exposedName;
+    private SpanKind(String exposedName) {
+        this.exposedName = exposedName;
+    }
+}
@@ -0,0 +1,107 @@
+package org.aion.avm.core.metrics;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A fixed-size ring buffer of the spans recorded by one executor thread (the newest spans overwrite the oldest).
+ *
+ * Recording a span only writes a few array slots and then publishes it, with an ordered (not volatile) write of the sequence number,
+ * so there is no allocation or locking on the executor thread.  Only the owning thread may record but any thread can read
+ * (see forEachSince()), which is how ExecutionTracer exports a batch's spans once its executor threads are done with it.
+ */
+public class TraceRing {
+    // Used when tracing is disabled:  it records nothing.
+    public static final TraceRing DISABLED = new TraceRing(0);
+
+    private final int mask;
+    private final SpanKind[] kinds;
+    private final int[] transactionIndices;
+    private final long[] startNanos;
+    private final long[] endNanos;
+    // The address the span was about (a byte[] or AionAddress, since we don't want to copy it), or null.
+    private final Object[] subjects;
+    // The sequence number of the next span to be recorded (so the number recorded since this ring was created).
+    private final AtomicLong written;
+
+    /**
+     * Creates a ring holding the given number of spans.
+     *
+     * @param capacity The number of spans to hold (must be a power of 2, or 0 to record nothing).
+     */
+    public TraceRing(int capacity) {
+        if ((capacity < 0) || (0 != (capacity & (capacity - 1)))) {
+            throw new IllegalArgumentException("Capacity must be a power of 2: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.kinds = new SpanKind[capacity];
+        this.transactionIndices = new int[capacity];
+        this.startNanos = new long[capacity];
+        this.endNanos = new long[capacity];
+        this.subjects = new Object[capacity];
+        this.written = new AtomicLong();
+    }
+
+    /**
+     * Records a span.  Must only be called by the thread which owns the ring.
+     *
+     * @param kind The kind of span.
+     * @param transactionIndex The index, in its batch, of the transaction the span was part of.
+     * @param startNanos When the span started (System.nanoTime()).
+     * @param endNanos When the span ended (System.nanoTime()).
+     * @param subject The address the span was about, or null.
+     */
+    public void record(SpanKind kind, int transactionIndex, long startNanos, long endNanos, Object subject) {
+        if (this.mask < 0) {
+            return;
+        }
+        long sequence = this.written.get();
+        int slot = (int) sequence & this.mask;
+        this.kinds[slot] = kind;
+        this.transactionIndices[slot] = transactionIndex;
+        this.startNanos[slot] = startNanos;
+        this.endNanos[slot] = endNanos;
+        this.subjects[slot] = subject;
+        // Publish the slot (this orders the writes above before it, for readers, without a full fence).
+        this.written.lazySet(sequence + 1L);
+    }
+
+    /**
+     * @return The number of spans recorded since the ring was created (the sequence number of the next span).
+     */
+    public long getWritten() {
+        return this.written.get();
+    }
+
+    /**
+     * Visits every span still in the ring, which was recorded at, or after, the given sequence number, oldest first.
+     * Spans which are being overwritten while this is reading them are skipped.
+     *
+     * @param fromSequence The sequence number of the first span to visit (see getWritten()).
+     * @param visitor Called for each span.
+     */
+    public void forEachSince(long fromSequence, SpanVisitor visitor) {
+        int capacity = this.mask + 1;
+        long end = this.written.get();
+        for (long sequence = Math.max(fromSequence, end - capacity); sequence < end; ++sequence) {
+            int slot = (int) sequence & this.mask;
+            SpanKind kind = this.kinds[slot];
+            int transactionIndex = this.transactionIndices[slot];
+            long startNanos = this.startNanos[slot];
+            long endNanos = this.endNanos[slot];
+            Object subject = this.subjects[slot];
+            // If the writer has since started to reuse this slot, what we read may be a mix of 2 spans (so we always skip the oldest
+            // slot, since the writer may be part-way through reusing it).
+            VarHandle.loadLoadFence();
+            if (this.written.get() < (sequence + capacity)) {
+                visitor.visit(kind, transactionIndex, startNanos, endNanos, subject);
+            }
+        }
+    }
+
+
+    public interface SpanVisitor {
+        void visit(SpanKind kind, int transactionIndex, long startNanos, long endNanos, Object subject);
+    }
+}
@@ -2,6 +2,8 @@ package org.aion.avm.core.miscvisitors;
 
 import org.aion.avm.core.ClassToolchain;
 import org.aion.avm.core.types.GeneratedClassConsumer;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
@@ -10,8 +12,11 @@ import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import static org.objectweb.asm.Opcodes.ACC_INTERFACE;
 import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
@@ -24,12 +29,17 @@ import static org.objectweb.asm.Opcodes.V1_6;
  * A visitor which generates a class containing all the declared fields and clinit method of an interface. (issue-208)
  * Name of the generated class is produced by concatenating the interface name and $FIELDS suffix.
  * If such class name has already been defined by the user, next available name is generated by adding a number to the suffix.
+ *
+ * The name only depends on the interface, and its inner classes, so it can be chosen for all the interfaces before any of them are
+ * visited (see chooseFieldsClassNames()).  In that case, this visitor uses the given names and never modifies the map, so all the
+ * classes can be visited concurrently, each one in a single pass which generates the FIELDS class and maps the field owners.
  */
 public class InterfaceFieldClassGeneratorVisitor extends ClassToolchain.ToolChainClassVisitor {
 
     private GeneratedClassConsumer consumer;
     private Map<String, String> interfaceFieldClassNames;
     private String javaLangObject;
+    private Supplier<ClassWriter> generatedClassWriterFactory;
 
     private boolean isInterface = false;
     private String className = null;
@@ -49,13 +59,76 @@ public class InterfaceFieldClassGeneratorVisitor extends ClassToolchain.ToolChai
      * @param javaLangObjectSlashName  The java/lang/Object class className, either pre-rename or post-rename
      */
     public InterfaceFieldClassGeneratorVisitor(GeneratedClassConsumer consumer, Map<String, String> interfaceFieldClassNames, String javaLangObjectSlashName) {
+        // The visited code already has its frames and maxs so they are just copied to the generated class.
+        this(consumer, interfaceFieldClassNames, javaLangObjectSlashName, () -> new ClassWriter(0));
+    }
+
+    /**
+     * Create an InterfaceFieldClassGeneratorVisitor instance which writes the generated class with a writer from the given factory.
+     * This is for the case where the visited code is still being transformed, so the writer must compute the frames and maxs.
+     *
+     * @param consumer                    A container to collect all the generated classes
+     * @param interfaceFieldClassNames    HashMap containing the mapping between class name and generated FIELDS class
+     * @param javaLangObjectSlashName     The java/lang/Object class className, either pre-rename or post-rename
+     * @param generatedClassWriterFactory Creates the writer for the generated class
+     */
+    public InterfaceFieldClassGeneratorVisitor(GeneratedClassConsumer consumer, Map<String, String> interfaceFieldClassNames, String javaLangObjectSlashName, Supplier<ClassWriter> generatedClassWriterFactory) {
         super(Opcodes.ASM6);
         this.consumer = consumer;
         this.interfaceFieldClassNames = interfaceFieldClassNames;
         this.javaLangObject = javaLangObjectSlashName;
+        this.generatedClassWriterFactory = generatedClassWriterFactory;
         this.innerClassNames = new ArrayList<>();
     }
 
+    /**
+     * Chooses the name of the FIELDS class generated for each interface, in the given classes, which declares fields.  These are the
+     * same names a visitor would choose, visiting each of the classes.
+     *
+     * @param classes The bytecode of the classes (those which aren't interfaces are ignored).
+     * @return The mapping between interface name and generated FIELDS class (both in slash form).
+     */
+    public static Map<String, String> chooseFieldsClassNames(Collection<byte[]> classes) {
+        Map<String, String> interfaceFieldClassNames = new HashMap<>();
+        for (byte[] bytecode : classes) {
+            new ClassReader(bytecode).accept(new ClassVisitor(Opcodes.ASM6) {
+                private String className = null;
+                private String prefix;
+                private boolean hasFields = false;
+                private List<String> innerClassNames = new ArrayList<>();
+
+                @Override
+                public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                    if ((access & ACC_INTERFACE) != 0) {
+                        this.className = name;
+                        this.prefix = name + "$FIELDS";
+                    }
+                }
+
+                @Override
+                public void visitInnerClass(String name, String outer, String innerName, int access) {
+                    if ((null != this.className) && name.startsWith(this.prefix)) {
+                        this.innerClassNames.add(name);
+                    }
+                }
+
+                @Override
+                public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                    this.hasFields = true;
+                    return null;
+                }
+
+                @Override
+                public void visitEnd() {
+                    if ((null != this.className) && this.hasFields) {
+                        interfaceFieldClassNames.put(this.className, getNextAvailableFieldsClassName(this.prefix, this.innerClassNames));
+                    }
+                }
+            }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        }
+        return interfaceFieldClassNames;
+    }
+
     @Override
     public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
         if ((access & ACC_INTERFACE) != 0) {
@@ -63,6 +136,8 @@ public class InterfaceFieldClassGeneratorVisitor extends ClassToolchain.ToolChai
             this.className = name;
             this.access = access;
             this.prefix = className + "$FIELDS";
+            // If the name was chosen up-front, use it.
+            this.generatedClassName = this.interfaceFieldClassNames.get(className);
         }
         super.visit(version, access, name, signature, superName, interfaces);
     }
@@ -79,7 +154,7 @@ public class InterfaceFieldClassGeneratorVisitor extends ClassToolchain.ToolChai
                 public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
                     if (className.equals(owner)) {
                         if (generatedClassName == null) {
-                            generatedClassName = getNextAvailableFieldsClassName();
+                            generatedClassName = getNextAvailableFieldsClassName(prefix, innerClassNames);
                         }
                         owner = generatedClassName;
                     }
@@ -123,14 +198,17 @@ public class InterfaceFieldClassGeneratorVisitor extends ClassToolchain.ToolChai
              So all the inner class names starting with FIELDS are collected so that the generated class name will not collide with any preexisting user classes.
             */
             if (generatedClassName == null) {
-                generatedClassName = getNextAvailableFieldsClassName();
+                generatedClassName = getNextAvailableFieldsClassName(prefix, innerClassNames);
+            }
+            // (if the name was chosen up-front, the map must not be modified since other classes may be reading it)
+            if (!interfaceFieldClassNames.containsKey(className)) {
+                interfaceFieldClassNames.put(className, generatedClassName);
             }
 
-            interfaceFieldClassNames.put(className, generatedClassName);
             String genSuperName = javaLangObject;
             int genAccess = access & ~ACC_INTERFACE;
 
-            ClassWriter cw = new ClassWriter(0);
+            ClassWriter cw = this.generatedClassWriterFactory.get();
 
             // class declaration
             cw.visit(V1_6, genAccess, generatedClassName, null, genSuperName, null);
@@ -158,11 +236,12 @@ public class InterfaceFieldClassGeneratorVisitor extends ClassToolchain.ToolChai
 
             consumer.accept(genSuperName, generatedClassName, cw.toByteArray());
         }
+        super.visitEnd();
     }
 
     // This method tries to find the next the available suffix to assign to the generated FIELDS class.
     // Looping over the classes is acceptable since there can only be small number of them in user code.
-    private String getNextAvailableFieldsClassName() {
+    private static String getNextAvailableFieldsClassName(String prefix, List<String> innerClassNames) {
         int suffix = 0;
         if (!innerClassNames.contains(prefix)) {
             return prefix;
@@ -1,6 +1,5 @@
 package org.aion.avm.core.persistence;
 
-import java.lang.reflect.Field;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
@@ -117,56 +116,53 @@ public class ByteBufferObjectDeserializer implements IObjectDeserializer {
         // This is called after any rootClass instance variables have been deserialized.
         // So, we just need to deserialize all the fields defined by other classes, excluding the root class.
         
-        // This means, we need to recursively walk to the root.
-        internalDeserializeFieldsFromRoot(rootClass, instance.getClass(), instance);
+        // The cache flattens the fields up to the root for us, superclasses first.
+        if (rootClass != instance.getClass()) {
+            deserializeFieldsToRoot(rootClass, instance);
+        }
     }
 
-
-    private void internalDeserializeFieldsFromRoot(Class<?> rootClass, Class<?> thisClass, Object instance) {
-        if (rootClass != thisClass) {
-            // We can deserialize this one, but first see if we need to call a superclass.
-            internalDeserializeFieldsFromRoot(rootClass, thisClass.getSuperclass(), instance);
-            
-            // Now, serialize the fields in this level.
-            try {
-                Field[] fields = this.cache.getInstanceFields(thisClass);
-                for (Field field : fields) {
-                    // We need to crack the type, here.
-                    Class<?> type = field.getType();
-                    if (boolean.class == type) {
-                        boolean val = this.readBoolean();
-                        field.setBoolean(instance, val);
-                    } else if (byte.class == type) {
-                        byte val = this.readByte();
-                        field.setByte(instance, val);
-                    } else if (short.class == type) {
-                        short val = this.readShort();
-                        field.setShort(instance, val);
-                    } else if (char.class == type) {
-                        char val = this.readChar();
-                        field.setChar(instance, val);
-                    } else if (int.class == type) {
-                        int val = this.readInt();
-                        field.setInt(instance, val);
-                    } else if (float.class == type) {
-                        float val = this.readFloat();
-                        field.setFloat(instance, val);
-                    } else if (long.class == type) {
-                        long val = this.readLong();
-                        field.setLong(instance, val);
-                    } else if (double.class == type) {
-                        double val = this.readDouble();
-                        field.setDouble(instance, val);
-                    } else {
+    private void deserializeFieldsToRoot(Class<?> rootClass, Object instance) {
+        FieldAccessor[] accessors = this.cache.getInstanceFieldAccessorsToRoot(rootClass, instance.getClass());
+        try {
+            for (FieldAccessor accessor : accessors) {
+                switch (accessor.kind) {
+                    case FieldAccessor.KIND_BOOLEAN:
+                        accessor.setter.invokeExact(instance, this.readBoolean());
+                        break;
+                    case FieldAccessor.KIND_BYTE:
+                        accessor.setter.invokeExact(instance, this.readByte());
+                        break;
+                    case FieldAccessor.KIND_SHORT:
+                        accessor.setter.invokeExact(instance, this.readShort());
+                        break;
+                    case FieldAccessor.KIND_CHAR:
+                        accessor.setter.invokeExact(instance, this.readChar());
+                        break;
+                    case FieldAccessor.KIND_INT:
+                        accessor.setter.invokeExact(instance, this.readInt());
+                        break;
+                    case FieldAccessor.KIND_FLOAT:
+                        accessor.setter.invokeExact(instance, this.readFloat());
+                        break;
+                    case FieldAccessor.KIND_LONG:
+                        accessor.setter.invokeExact(instance, this.readLong());
+                        break;
+                    case FieldAccessor.KIND_DOUBLE:
+                        accessor.setter.invokeExact(instance, this.readDouble());
+                        break;
+                    default:
                         // Object types require further logic.
-                        Object val = this.readObject();
-                        field.set(instance, val);
-                    }
+                        accessor.setter.invokeExact(instance, this.readObject());
+                        break;
                 }
-            } catch (IllegalAccessException e) {
-                // Reflection errors can't happen since we set this up so we could access it.
-                throw RuntimeAssertionError.unexpected(e);
             }
+        } catch (RuntimeException | Error e) {
+            // These are from reading (running off the end of the buffer, for example) so the caller needs to see them.
+            throw e;
+        } catch (Throwable t) {
+            // The setters can't throw anything else.
+            throw RuntimeAssertionError.unexpected(t);
         }
     }
 
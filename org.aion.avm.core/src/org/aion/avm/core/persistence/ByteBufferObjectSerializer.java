@@ -1,12 +1,16 @@
 package org.aion.avm.core.persistence;
 
-import java.lang.reflect.Field;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Queue;
 
 import i.IObjectSerializer;
+import i.OutOfEnergyException;
 import i.RuntimeAssertionError;
 
 
@@ -17,12 +21,22 @@ public class ByteBufferObjectSerializer implements IObjectSerializer {
     private final IPersistenceNameMapper classNameMapper;
     private final InstanceIndexMapper instanceMapper;
 
+    // While recording an instance (see startRecording()), the buffer position where it started and the references it writes.
+    private int recordingStart;
+    private int recordingClassNameLength;
+    private int[] recordedOffsets;
+    private int recordedCount;
+    private final List<Object> recordedReferences;
+
     public ByteBufferObjectSerializer(ByteBuffer buffer, Queue<Object> out_ToProcessQueue, SortedFieldCache cache, IGlobalResolver resolver, IPersistenceNameMapper classNameMapper) {
         this.buffer = buffer;
         this.cache = cache;
         this.resolver = resolver;
         this.classNameMapper = classNameMapper;
         this.instanceMapper = new InstanceIndexMapper(out_ToProcessQueue);
+        this.recordingStart = -1;
+        this.recordedOffsets = new int[16];
+        this.recordedReferences = new ArrayList<>();
     }
 
     @Override
@@ -92,6 +106,9 @@ public class ByteBufferObjectSerializer implements IObjectSerializer {
                 } else {
                     int instanceIndex = instanceMapper.getIndexForInstance(value);
                     this.buffer.put(ReferenceConstants.REF_NORMAL);
+                    if (-1 != this.recordingStart) {
+                        recordReference(value);
+                    }
                     this.buffer.putInt(instanceIndex);
                 }
             }
@@ -101,64 +118,138 @@ public class ByteBufferObjectSerializer implements IObjectSerializer {
     @Override
     public void writeClassName(String internalClassName) {
         internalWriteClassName(internalClassName);
+        if ((-1 != this.recordingStart) && (0 == this.recordingClassNameLength)) {
+            this.recordingClassNameLength = this.buffer.position() - this.recordingStart;
+        }
+    }
+
+    /**
+     * Starts recording the encoding of an instance, which must be written next (class name, first), so that it can be cached.
+     */
+    public void startRecording() {
+        RuntimeAssertionError.assertTrue(-1 == this.recordingStart);
+        this.recordingStart = this.buffer.position();
+        this.recordingClassNameLength = 0;
+        this.recordedCount = 0;
+        this.recordedReferences.clear();
+    }
+
+    /**
+     * Stops recording the instance started by startRecording().
+     * 
+     * @return The encoding of the instance, as written since recording started.
+     */
+    public EncodedInstance finishRecording() {
+        RuntimeAssertionError.assertTrue(-1 != this.recordingStart);
+        byte[] encoding = new byte[this.buffer.position() - this.recordingStart];
+        // Note that we read through a duplicate so we don't disturb the position of the buffer.
+        ByteBuffer source = this.buffer.duplicate();
+        source.position(this.recordingStart);
+        source.get(encoding);
+        EncodedInstance instance = new EncodedInstance(encoding, this.recordingClassNameLength, Arrays.copyOf(this.recordedOffsets, this.recordedCount), this.recordedReferences.toArray());
+        this.recordingStart = -1;
+        return instance;
+    }
+
+    /**
+     * Writes an instance by copying its previously recorded encoding.  The result is identical to writing the class name and calling
+     * serializeSelf(), so long as the instance hasn't changed since it was recorded.
+     * 
+     * @param instance The previously recorded encoding of the instance to write.
+     */
+    public void writeEncodedInstance(EncodedInstance instance) {
+        writeEncoding(instance.encoding, 0, instance.classNameLength, instance.encoding.length, instance.referenceOffsets, instance.references, instance.references.length);
+    }
+
+    /**
+     * Writes an instance by copying an existing encoding of it, assigning new indices to the instances it references.
+     * 
+     * @param source The array containing the encoding.
+     * @param start The offset of the encoding (its class name) in source.
+     * @param classNameLength The number of bytes of the encoding which are the class name.
+     * @param end The offset in source where the encoding ends.
+     * @param referenceOffsets The offset, relative to start, of each instance index in the encoding, in the order they were written.
+     * @param references The instance each of those indices refers to.
+     * @param referenceCount The number of references (the arrays may be longer).
+     */
+    public void writeEncoding(byte[] source, int start, int classNameLength, int end, int[] referenceOffsets, Object[] references, int referenceCount) {
+        int outputStart = this.buffer.position();
+        // Running out of space in the class name isn't reported as out of energy (see Serializer) so we preserve that distinction.
+        this.buffer.put(source, start, classNameLength);
+        try {
+            this.buffer.put(source, start + classNameLength, end - start - classNameLength);
+        } catch (BufferOverflowException e) {
+            throw new OutOfEnergyException();
+        }
+        // The references must be assigned indices in the same order writeObject() would have, since that is what enqueues them.
+        for (int i = 0; i < referenceCount; ++i) {
+            int instanceIndex = this.instanceMapper.getIndexForInstance(references[i]);
+            this.buffer.putInt(outputStart + referenceOffsets[i], instanceIndex);
+        }
     }
 
     @Override
     public void automaticallySerializeToRoot(Class<?> rootClass, Object instance) {
         // This is called after any root information has been serialized, including class name and root instance variables.
-        // So, we just need to serialize all the fields defined by other classes, excluding the root class.
-        
-        // This means, we need to recursively walk to the root.
-        internalSerializeFieldsToRoot(rootClass, instance.getClass(), instance);
-    }
-
-
-    private void internalSerializeFieldsToRoot(Class<?> rootClass, Class<?> thisClass, Object instance) {
-        if (rootClass != thisClass) {
-            // We can serialize this one, but first see if we need to call a superclass.
-            internalSerializeFieldsToRoot(rootClass, thisClass.getSuperclass(), instance);
-            
-            // Now, serialize the fields in this level.
-            try {
-                Field[] fields = this.cache.getInstanceFields(thisClass);
-                for (Field field : fields) {
-                    // We need to crack the type, here.
-                    Class<?> type = field.getType();
-                    if (boolean.class == type) {
-                        boolean val = field.getBoolean(instance);
-                        this.writeBoolean(val);
-                    } else if (byte.class == type) {
-                        byte val = field.getByte(instance);
-                        this.writeByte(val);
-                    } else if (short.class == type) {
-                        short val = field.getShort(instance);
-                        this.writeShort(val);
-                    } else if (char.class == type) {
-                        char val = field.getChar(instance);
-                        this.writeChar(val);
-                    } else if (int.class == type) {
-                        int val = field.getInt(instance);
-                        this.writeInt(val);
-                    } else if (float.class == type) {
-                        float actual = field.getFloat(instance);
-                        this.writeFloat(actual);
-                    } else if (long.class == type) {
-                        long val = field.getLong(instance);
-                        this.writeLong(val);
-                    } else if (double.class == type) {
-                        double actual = field.getDouble(instance);
-                        this.writeDouble(actual);
-                    } else {
+        // So, we just need to serialize all the fields defined by other classes, excluding the root class (the cache flattens these
+        // for us, superclasses first).
+        if (rootClass != instance.getClass()) {
+            serializeFieldsToRoot(rootClass, instance);
+        }
+    }
+
+    private void serializeFieldsToRoot(Class<?> rootClass, Object instance) {
+        FieldAccessor[] accessors = this.cache.getInstanceFieldAccessorsToRoot(rootClass, instance.getClass());
+        try {
+            for (FieldAccessor accessor : accessors) {
+                switch (accessor.kind) {
+                    case FieldAccessor.KIND_BOOLEAN:
+                        this.writeBoolean((boolean) accessor.getter.invokeExact(instance));
+                        break;
+                    case FieldAccessor.KIND_BYTE:
+                        this.writeByte((byte) accessor.getter.invokeExact(instance));
+                        break;
+                    case FieldAccessor.KIND_SHORT:
+                        this.writeShort((short) accessor.getter.invokeExact(instance));
+                        break;
+                    case FieldAccessor.KIND_CHAR:
+                        this.writeChar((char) accessor.getter.invokeExact(instance));
+                        break;
+                    case FieldAccessor.KIND_INT:
+                        this.writeInt((int) accessor.getter.invokeExact(instance));
+                        break;
+                    case FieldAccessor.KIND_FLOAT:
+                        this.writeFloat((float) accessor.getter.invokeExact(instance));
+                        break;
+                    case FieldAccessor.KIND_LONG:
+                        this.writeLong((long) accessor.getter.invokeExact(instance));
+                        break;
+                    case FieldAccessor.KIND_DOUBLE:
+                        this.writeDouble((double) accessor.getter.invokeExact(instance));
+                        break;
+                    default:
                         // Object types require further logic.
-                        Object target = field.get(instance);
-                        this.writeObject(target);
-                    }
+                        this.writeObject((Object) accessor.getter.invokeExact(instance));
+                        break;
                 }
-            } catch (IllegalAccessException e) {
-                // Reflection errors can't happen since we set this up so we could access it.
-                throw RuntimeAssertionError.unexpected(e);
             }
+        } catch (RuntimeException | Error e) {
+            // These are from writing (running out of buffer, for example) so the caller needs to see them.
+            throw e;
+        } catch (Throwable t) {
+            // The getters can't throw anything else.
+            throw RuntimeAssertionError.unexpected(t);
+        }
+    }
+
+
+    private void recordReference(Object value) {
+        if (this.recordedCount == this.recordedOffsets.length) {
+            this.recordedOffsets = Arrays.copyOf(this.recordedOffsets, 2 * this.recordedCount);
         }
+        this.recordedOffsets[this.recordedCount] = this.buffer.position() - this.recordingStart;
+        this.recordedCount += 1;
+        this.recordedReferences.add(value);
     }
 
     private void internalWriteClassName(String internalClassName) {
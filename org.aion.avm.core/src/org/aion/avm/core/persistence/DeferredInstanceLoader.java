@@ -0,0 +1,140 @@
+package org.aion.avm.core.persistence;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import i.IDeferredInstanceLoader;
+import i.RuntimeAssertionError;
+
+
+/**
+ * Loads the instances which the Deserializer left as stubs when it deserialized a graph, the first time each of them is accessed.
+ * A stub is an instance of a DApp-defined class which has been created (so it can be referenced) but not populated.  Every access
+ * to such an instance goes through lazyLoad(), which calls back into this (the transformation prepends it to every field access).
+ * We hold on to the entire serialized graph, and the instances read from it, since a stub is loaded exactly as the second pass of
+ * the Deserializer would have loaded it.
+ *
+ * A stub which is never accessed doesn't need to be loaded even when the graph is serialized, again:  its encoding in the original
+ * graph is still correct, other than the indices of the instances it references, so it is copied (see writeInstance()).
+ *
+ * Note that the instances are found by their readIndex, which is always their index in the graph since stubs are only created when
+ * loading a graph into new instances.
+ */
+public final class DeferredInstanceLoader implements IDeferredInstanceLoader {
+    private final byte[] graph;
+    // The offset of each instance (its class name) in the graph, indexed by readIndex, followed by the end of the last instance.
+    private final int[] instanceOffsets;
+    private final List<Object> instanceList;
+    private final SortedFieldCache cache;
+    private final IGlobalResolver resolver;
+    private final IPersistenceNameMapper classNameMapper;
+
+    public DeferredInstanceLoader(byte[] graph, int[] instanceOffsets, List<Object> instanceList, SortedFieldCache cache, IGlobalResolver resolver, IPersistenceNameMapper classNameMapper) {
+        this.graph = graph;
+        this.instanceOffsets = instanceOffsets;
+        this.instanceList = instanceList;
+        this.cache = cache;
+        this.resolver = resolver;
+        this.classNameMapper = classNameMapper;
+    }
+
+    @Override
+    public void loadInstance(s.java.lang.Object instance) {
+        ByteBuffer buffer = ByteBuffer.wrap(this.graph);
+        buffer.position(this.instanceOffsets[instance.readIndex]);
+        ByteBufferObjectDeserializer objectDeserializer = new ByteBufferObjectDeserializer(buffer, this.instanceList, this.cache, this.resolver, this.classNameMapper);
+        // Read the class name, but just to advance the cursor.
+        objectDeserializer.readClassName();
+        Deserializer.invokeDeserializeSelf(this.cache.getDeserializeSelfHandle(), instance, objectDeserializer);
+    }
+
+    /**
+     * Writes a stub, which hasn't been loaded, by copying its encoding from the graph it was read from.  The result is identical to
+     * loading it, writing its class name, and calling serializeSelf().
+     *
+     * @param instance The stub to write.
+     * @param objectSerializer The serializer to write it to.
+     */
+    public void writeInstance(s.java.lang.Object instance, ByteBufferObjectSerializer objectSerializer) {
+        int start = this.instanceOffsets[instance.readIndex];
+        int end = this.instanceOffsets[instance.readIndex + 1];
+        ByteBuffer buffer = ByteBuffer.wrap(this.graph, start, end - start);
+        int classNameLength = 1 + (0xff & buffer.get());
+        buffer.position(start + classNameLength);
+
+        // Find the instance references in the encoding so they can be re-indexed (there can't be more than there are object fields).
+        FieldAccessor[] accessors = this.cache.getInstanceFieldAccessorsToRoot(s.java.lang.Object.class, instance.getClass());
+        int[] referenceOffsets = new int[accessors.length];
+        Object[] references = new Object[accessors.length];
+        int referenceCount = walkInstance(buffer, accessors, referenceOffsets);
+        RuntimeAssertionError.assertTrue(end == buffer.position());
+        for (int i = 0; i < referenceCount; ++i) {
+            int oldIndex = buffer.getInt(referenceOffsets[i]);
+            references[i] = this.instanceList.get(oldIndex);
+            referenceOffsets[i] -= start;
+        }
+        objectSerializer.writeEncoding(this.graph, start, classNameLength, end, referenceOffsets, references, referenceCount);
+    }
+
+    /**
+     * Walks over the encoding of an instance of a DApp-defined class, following its class name, without reading it.  This is what
+     * the shadow Object's serializeSelf() writes:  the hashCode, followed by each of the fields.
+     *
+     * @param buffer The buffer, positioned after the class name.  On return, it is positioned after the instance.
+     * @param accessors The accessors for the instance fields of the class, up to the shadow Object.
+     * @param out_referenceOffsets If not null, receives the absolute position, in the buffer, of each instance index in the encoding.
+     * @return The number of instance references in the encoding.
+     */
+    public static int walkInstance(ByteBuffer buffer, FieldAccessor[] accessors, int[] out_referenceOffsets) {
+        // The hashCode.
+        int position = buffer.position() + Integer.BYTES;
+        int referenceCount = 0;
+        for (FieldAccessor accessor : accessors) {
+            switch (accessor.kind) {
+                case FieldAccessor.KIND_BOOLEAN:
+                case FieldAccessor.KIND_BYTE:
+                    position += Byte.BYTES;
+                    break;
+                case FieldAccessor.KIND_SHORT:
+                case FieldAccessor.KIND_CHAR:
+                    position += Short.BYTES;
+                    break;
+                case FieldAccessor.KIND_INT:
+                case FieldAccessor.KIND_FLOAT:
+                    position += Integer.BYTES;
+                    break;
+                case FieldAccessor.KIND_LONG:
+                case FieldAccessor.KIND_DOUBLE:
+                    position += Long.BYTES;
+                    break;
+                default: {
+                    // Object types are prefixed with the kind of reference (see ByteBufferObjectSerializer.writeObject()).
+                    byte refType = buffer.get(position);
+                    position += 1;
+                    switch (refType) {
+                        case ReferenceConstants.REF_NULL:
+                            break;
+                        case ReferenceConstants.REF_CLASS:
+                            position += 1 + (0xff & buffer.get(position));
+                            break;
+                        case ReferenceConstants.REF_CONSTANT:
+                            position += Integer.BYTES;
+                            break;
+                        case ReferenceConstants.REF_NORMAL:
+                            if (null != out_referenceOffsets) {
+                                out_referenceOffsets[referenceCount] = position;
+                            }
+                            referenceCount += 1;
+                            position += Integer.BYTES;
+                            break;
+                        default:
+                            throw RuntimeAssertionError.unreachable("Unknown byte");
+                    }
+                    break;
+                }
+            }
+        }
+        buffer.position(position);
+        return referenceCount;
+    }
+}
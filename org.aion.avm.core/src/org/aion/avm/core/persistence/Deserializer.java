@@ -1,14 +1,16 @@
 package org.aion.avm.core.persistence;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
+import i.IObjectDeserializer;
 import i.RuntimeAssertionError;
 
 
@@ -45,6 +47,45 @@ public class Deserializer {
         return nextHashCode;
     }
 
+    /**
+     * Deserializes an entire graph into new instances, like deserializeEntireGraphAndNextHashCode(), except that the instances of
+     * DApp-defined classes are only created, not populated.  They are left as stubs, which are loaded from the graph data when they
+     * are first accessed (see DeferredInstanceLoader), so only the instances the DApp actually reaches need to be loaded.
+     * Note that the stubs retain rawGraphData, so it must not be modified.
+     */
+    public static int deserializeEntireGraphDeferringDAppInstances(byte[] rawGraphData, IGlobalResolver resolver, SortedFieldCache cache, IPersistenceNameMapper classNameMapper, Class<?>[] sortedRoots, Class<?> constantClass) {
+        ByteBuffer inputBuffer = ByteBuffer.wrap(rawGraphData);
+        
+        // As with the full deserialization, we walk the data twice, but the first pass skips over the instances we will leave as stubs.
+        inputBuffer.getInt();
+        ByteBufferObjectDeserializer prePassDeserializer = new ByteBufferObjectDeserializer(inputBuffer, null, cache, resolver, classNameMapper);
+        deserializeClassStatics(prePassDeserializer, cache, sortedRoots, constantClass);
+        
+        List<Object> instanceList = new ArrayList<>();
+        BitSet deferredInstances = new BitSet();
+        int[] instanceOffsets = createAllInstancesDeferringDAppInstances(prePassDeserializer, inputBuffer, cache, instanceList, deferredInstances);
+        DeferredInstanceLoader loader = new DeferredInstanceLoader(rawGraphData, instanceOffsets, instanceList, cache, resolver, classNameMapper);
+        
+        inputBuffer.rewind();
+        int nextHashCode = inputBuffer.getInt();
+        ByteBufferObjectDeserializer objectDeserializer = new ByteBufferObjectDeserializer(inputBuffer, instanceList, cache, resolver, classNameMapper);
+        deserializeClassStatics(objectDeserializer, cache, sortedRoots, constantClass);
+        
+        // Populate everything other than the stubs, which are instead given the loader.
+        MethodHandle deserializeSelf = cache.getDeserializeSelfHandle();
+        for (int i = 0; i < instanceList.size(); ++i) {
+            Object instance = instanceList.get(i);
+            if (deferredInstances.get(i)) {
+                ((s.java.lang.Object) instance).cachedSerializedForm = loader;
+                inputBuffer.position(instanceOffsets[i + 1]);
+            } else {
+                objectDeserializer.readClassName();
+                invokeDeserializeSelf(deserializeSelf, instance, objectDeserializer);
+            }
+        }
+        return nextHashCode;
+    }
+
     public static void cleanClassStatics(SortedFieldCache cache, Class<?>[] sortedRoots, Class<?> constantClass) {
         cleanOneClass(cache, constantClass);
         for (Class<?> clazz : sortedRoots) {
@@ -105,7 +146,7 @@ public class Deserializer {
     }
 
     private static List<Object> createAllInstancesFromBuffer(ByteBufferObjectDeserializer objectDeserializer, List<Object> existingObjectIndex, SortedFieldCache cache, IPersistenceNameMapper classNameMapper) {
-        Method deserializeSelfMethod = cache.getDeserializeSelfMethod();
+        MethodHandle deserializeSelf = cache.getDeserializeSelfHandle();
         List<Object> instanceList = new ArrayList<>();
         // We want to tell each instance which index we read them as - this is useful in the case of reentrant calls so we can track the
         // instance we can write back into.
@@ -117,49 +158,84 @@ public class Deserializer {
         boolean isDeserializingIntoCallerObjects = (null != existingObjectIndex);
         
         // We walk the entire buffer, ending when we fall off the end (the exception).
-        try {
-            boolean keepRunning = true;
-            while (keepRunning) {
-                // We only expect the error when reading the class name, so only check it there (other cases would be errors).
-                String internalClassName = null;
-                try {
-                    internalClassName = objectDeserializer.readClassName();
-                } catch (BufferUnderflowException done) {
-                    // This was expected - means we fell off the end of the buffer.
-                    keepRunning = false;
-                }
-                if (keepRunning) {
-                    // Note that we might be re-using an old instance (if we are returning from a reentrant call).
-                    // Even if there is a different object instance we want to re-use, we still need to create the instance in order to advance the stream.
-                    Object instance = (isDeserializingIntoCallerObjects && (null != existingObjectIndex.get(readIndex)))
-                            ? existingObjectIndex.get(readIndex)
-                            : cache.getNewInstance(internalClassName, isDeserializingIntoCallerObjects ? -1 : readIndex);
-                    deserializeSelfMethod.invoke(instance, null, objectDeserializer);
-                    instanceList.add(instance);
-                    readIndex += 1;
-                }
+        boolean keepRunning = true;
+        while (keepRunning) {
+            // We only expect the error when reading the class name, so only check it there (other cases would be errors).
+            String internalClassName = null;
+            try {
+                internalClassName = objectDeserializer.readClassName();
+            } catch (BufferUnderflowException done) {
+                // This was expected - means we fell off the end of the buffer.
+                keepRunning = false;
+            }
+            if (keepRunning) {
+                // Note that we might be re-using an old instance (if we are returning from a reentrant call).
+                // Even if there is a different object instance we want to re-use, we still need to create the instance in order to advance the stream.
+                Object instance = (isDeserializingIntoCallerObjects && (null != existingObjectIndex.get(readIndex)))
+                        ? existingObjectIndex.get(readIndex)
+                        : cache.getNewInstance(internalClassName, isDeserializingIntoCallerObjects ? -1 : readIndex);
+                invokeDeserializeSelf(deserializeSelf, instance, objectDeserializer);
+                instanceList.add(instance);
+                readIndex += 1;
             }
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-            // Reflection errors can't happen since we set this up so we could access it.
-            throw RuntimeAssertionError.unexpected(e);
         }
         return instanceList;
     }
 
+    private static int[] createAllInstancesDeferringDAppInstances(ByteBufferObjectDeserializer objectDeserializer, ByteBuffer inputBuffer, SortedFieldCache cache, List<Object> out_instanceList, BitSet out_deferredInstances) {
+        MethodHandle deserializeSelf = cache.getDeserializeSelfHandle();
+        // We also record where each instance starts, and where the last one ends, so the stubs can be found in the data.
+        int[] instanceOffsets = new int[16];
+        int readIndex = 0;
+        
+        // We walk the entire buffer, ending when we fall off the end (the exception).
+        boolean keepRunning = true;
+        while (keepRunning) {
+            if (readIndex == instanceOffsets.length) {
+                instanceOffsets = Arrays.copyOf(instanceOffsets, 2 * readIndex);
+            }
+            instanceOffsets[readIndex] = inputBuffer.position();
+            String internalClassName = null;
+            try {
+                internalClassName = objectDeserializer.readClassName();
+            } catch (BufferUnderflowException done) {
+                // This was expected - means we fell off the end of the buffer.
+                keepRunning = false;
+            }
+            if (keepRunning) {
+                Object instance = cache.getNewInstance(internalClassName, readIndex);
+                Class<?> clazz = instance.getClass();
+                if (cache.isDeferrable(clazz)) {
+                    DeferredInstanceLoader.walkInstance(inputBuffer, cache.getInstanceFieldAccessorsToRoot(s.java.lang.Object.class, clazz), null);
+                    out_deferredInstances.set(readIndex);
+                } else {
+                    invokeDeserializeSelf(deserializeSelf, instance, objectDeserializer);
+                }
+                out_instanceList.add(instance);
+                readIndex += 1;
+            }
+        }
+        return instanceOffsets;
+    }
+
     private static void populateAllInstancesFromBuffer(ByteBufferObjectDeserializer objectDeserializer, List<Object> instanceList, SortedFieldCache cache) {
-        Method deserializeSelfMethod = cache.getDeserializeSelfMethod();
+        MethodHandle deserializeSelf = cache.getDeserializeSelfHandle();
         
         // We walk the entire instanceList, assuming that it is the full content of the storage.
+        for (Object instance : instanceList) {
+            // Read the class name, but just to advance the cursor.
+            objectDeserializer.readClassName();
+            // Now, deserialize the instance.
+            invokeDeserializeSelf(deserializeSelf, instance, objectDeserializer);
+        }
+    }
+
+    static void invokeDeserializeSelf(MethodHandle deserializeSelf, Object instance, ByteBufferObjectDeserializer objectDeserializer) {
         try {
-            for (Object instance : instanceList) {
-                // Read the class name, but just to advance the cursor.
-                objectDeserializer.readClassName();
-                // Now, deserialize the instance.
-                deserializeSelfMethod.invoke(instance, null, objectDeserializer);
-            }
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-            // Reflection errors can't happen since we set this up so we could access it.
-            throw RuntimeAssertionError.unexpected(e);
+            deserializeSelf.invokeExact(instance, (Class<?>) null, (IObjectDeserializer) objectDeserializer);
+        } catch (Throwable t) {
+            // We wrote this data so we can't fail to read it.
+            throw RuntimeAssertionError.unexpected(t);
         }
     }
 
@@ -0,0 +1,28 @@
+package org.aion.avm.core.persistence;
+
+
+/**
+ * The serialized form of one instance (its class name and everything written by its serializeSelf()), as last written by the
+ * Serializer.  This is cached on the instance so that, if the instance hasn't been touched since, it can be copied instead of
+ * re-encoded through reflection.
+ * Only the instance indices of the references can differ between serializations (they depend on the traversal order of the rest
+ * of the graph) so we keep the referenced instances, and where their indices are in the encoding, so they can be re-assigned and
+ * patched into the copy.
+ */
+public final class EncodedInstance {
+    // The encoding, starting with the class name.
+    public final byte[] encoding;
+    // The number of bytes of the encoding which are the class name.
+    public final int classNameLength;
+    // The offset, into encoding, of each instance index, in the order they were written.
+    public final int[] referenceOffsets;
+    // The instance each of those indices refers to.
+    public final Object[] references;
+
+    public EncodedInstance(byte[] encoding, int classNameLength, int[] referenceOffsets, Object[] references) {
+        this.encoding = encoding;
+        this.classNameLength = classNameLength;
+        this.referenceOffsets = referenceOffsets;
+        this.references = references;
+    }
+}
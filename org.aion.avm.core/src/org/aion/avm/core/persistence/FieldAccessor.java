@@ -0,0 +1,78 @@
+package org.aion.avm.core.persistence;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+import i.RuntimeAssertionError;
+
+
+/**
+ * Reads and writes one instance field for the serializer and deserializer.
+ * The type of the field is cracked once, when this is created, and the field is accessed through method handles adapted to a
+ * common shape for that type ((Object)T to get, (Object, T)void to set), so they can be called with invokeExact() from a single
+ * call site per type instead of going through reflection for every field of every instance.
+ */
+public final class FieldAccessor {
+    public static final int KIND_BOOLEAN = 0;
+    public static final int KIND_BYTE = 1;
+    public static final int KIND_SHORT = 2;
+    public static final int KIND_CHAR = 3;
+    public static final int KIND_INT = 4;
+    public static final int KIND_FLOAT = 5;
+    public static final int KIND_LONG = 6;
+    public static final int KIND_DOUBLE = 7;
+    public static final int KIND_OBJECT = 8;
+
+    public final int kind;
+    public final MethodHandle getter;
+    public final MethodHandle setter;
+
+    /**
+     * Creates the accessor for the given field.
+     *
+     * @param field The instance field (must already be accessible).
+     * @return The accessor.
+     */
+    public static FieldAccessor forField(Field field) {
+        Class<?> type = field.getType();
+        int kind;
+        if (boolean.class == type) {
+            kind = KIND_BOOLEAN;
+        } else if (byte.class == type) {
+            kind = KIND_BYTE;
+        } else if (short.class == type) {
+            kind = KIND_SHORT;
+        } else if (char.class == type) {
+            kind = KIND_CHAR;
+        } else if (int.class == type) {
+            kind = KIND_INT;
+        } else if (float.class == type) {
+            kind = KIND_FLOAT;
+        } else if (long.class == type) {
+            kind = KIND_LONG;
+        } else if (double.class == type) {
+            kind = KIND_DOUBLE;
+        } else {
+            // Object types are all accessed as Object.
+            kind = KIND_OBJECT;
+            type = Object.class;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle getter = lookup.unreflectGetter(field).asType(MethodType.methodType(type, Object.class));
+            MethodHandle setter = lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, type));
+            return new FieldAccessor(kind, getter, setter);
+        } catch (IllegalAccessException e) {
+            // Reflection errors can't happen since we set this up so we could access it.
+            throw RuntimeAssertionError.unexpected(e);
+        }
+    }
+
+    private FieldAccessor(int kind, MethodHandle getter, MethodHandle setter) {
+        this.kind = kind;
+        this.getter = getter;
+        this.setter = setter;
+    }
+}
@@ -88,12 +88,16 @@ public class LoadedDApp {
     public final InternedClasses internedClasses;
 
     private final ClassRenamer classRenamer;
+    // We keep the one name mapper, instead of creating it for each graph, since it caches the renamed class names.
+    private final StandardNameMapper classNameMapper;
     private final boolean preserveDebuggability;
 
     // Next hashcode which can be used to resume the state or serialize the DApp
     private int hashCode;
     // Used for billing
     private int serializedLength;
+    // The size of the jar this was loaded from (0 if it was built from in-memory classes).
+    private int codeSize;
 
     /**
      * Creates the LoadedDApp to represent the classes related to DApp at address.
@@ -131,12 +135,14 @@ public class LoadedDApp {
             .prohibitExceptionWrappers()
             .prohibitUnifyingArrayTypes()
             .build();
+        this.classNameMapper = new StandardNameMapper(this.classRenamer);
         
         // We also know that we need the runtimeSetup, meaning we also need the helperClass.
+        // (DApps share the one in the parent loader but tests can put their own into the DApp's loader)
         try {
             String helperClassName = Helper.RUNTIME_HELPER_NAME;
             this.helperClass = this.loader.loadClass(helperClassName);
-            RuntimeAssertionError.assertTrue(helperClass.getClassLoader() == this.loader);
+            RuntimeAssertionError.assertTrue((helperClass.getClassLoader() == this.loader) || (helperClass.getClassLoader() == this.loader.getParent()));
             this.runtimeSetup = (IRuntimeSetup) helperClass.getConstructor().newInstance();
         } catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException | NoSuchMethodException | SecurityException | ClassNotFoundException e) {
             // We require that this be instantiated in this way.
@@ -156,11 +162,9 @@ public class LoadedDApp {
      * @return The nextHashCode serialized within the graph.
      */
     public int loadEntireGraph(InternedClasses internedClassMap, byte[] rawGraphData) {
-        ByteBuffer inputBuffer = ByteBuffer.wrap(rawGraphData);
-        List<Object> existingObjectIndex = null;
         StandardGlobalResolver resolver = new StandardGlobalResolver(internedClassMap, this.loader);
-        StandardNameMapper classNameMapper = new StandardNameMapper(this.classRenamer);
-        int nextHashCode = Deserializer.deserializeEntireGraphAndNextHashCode(inputBuffer, existingObjectIndex, resolver, this.fieldCache, classNameMapper, this.sortedUserClasses, this.constantClass);
+        // The instances of the DApp's own classes are only loaded when the DApp first reaches them.
+        int nextHashCode = Deserializer.deserializeEntireGraphDeferringDAppInstances(rawGraphData, resolver, this.fieldCache, this.classNameMapper, this.sortedUserClasses, this.constantClass);
         return nextHashCode;
     }
 
@@ -177,8 +181,7 @@ public class LoadedDApp {
         List<Object> out_instanceIndex = null;
         List<Integer> out_calleeToCallerIndexMap = null;
         StandardGlobalResolver resolver = new StandardGlobalResolver(null, this.loader);
-        StandardNameMapper classNameMapper = new StandardNameMapper(this.classRenamer);
-        Serializer.serializeEntireGraph(outputBuffer, out_instanceIndex, out_calleeToCallerIndexMap, resolver, this.fieldCache, classNameMapper, nextHashCode, this.sortedUserClasses, this.constantClass);
+        Serializer.serializeEntireGraph(outputBuffer, out_instanceIndex, out_calleeToCallerIndexMap, resolver, this.fieldCache, this.classNameMapper, nextHashCode, this.sortedUserClasses, this.constantClass);
         
         byte[] finalBytes = new byte[outputBuffer.position()];
         System.arraycopy(outputBuffer.array(), 0, finalBytes, 0, finalBytes.length);
@@ -187,26 +190,22 @@ public class LoadedDApp {
 
     public ReentrantGraph captureStateAsCaller(int nextHashCode, int maxGraphSize) {
         StandardGlobalResolver resolver = new StandardGlobalResolver(null, this.loader);
-        StandardNameMapper classNameMapper = new StandardNameMapper(this.classRenamer);
-        return ReentrantGraph.captureCallerState(resolver, this.fieldCache, classNameMapper, maxGraphSize, nextHashCode, this.sortedUserClasses, this.constantClass);
+        return ReentrantGraph.captureCallerState(resolver, this.fieldCache, this.classNameMapper, maxGraphSize, nextHashCode, this.sortedUserClasses, this.constantClass);
     }
 
     public ReentrantGraph captureStateAsCallee(int updatedNextHashCode, int maxGraphSize) {
         StandardGlobalResolver resolver = new StandardGlobalResolver(null, this.loader);
-        StandardNameMapper classNameMapper = new StandardNameMapper(this.classRenamer);
-        return ReentrantGraph.captureCalleeState(resolver, this.fieldCache, classNameMapper, maxGraphSize, updatedNextHashCode, this.sortedUserClasses, this.constantClass);
+        return ReentrantGraph.captureCalleeState(resolver, this.fieldCache, this.classNameMapper, maxGraphSize, updatedNextHashCode, this.sortedUserClasses, this.constantClass);
     }
 
     public void commitReentrantChanges(InternedClasses internedClassMap, ReentrantGraph callerState, ReentrantGraph calleeState) {
         StandardGlobalResolver resolver = new StandardGlobalResolver(internedClassMap, this.loader);
-        StandardNameMapper classNameMapper = new StandardNameMapper(this.classRenamer);
-        callerState.commitChangesToState(resolver, this.fieldCache, classNameMapper, this.sortedUserClasses, this.constantClass, calleeState);
+        callerState.commitChangesToState(resolver, this.fieldCache, this.classNameMapper, this.sortedUserClasses, this.constantClass, calleeState);
     }
 
     public void revertToCallerState(InternedClasses internedClassMap, ReentrantGraph callerState) {
         StandardGlobalResolver resolver = new StandardGlobalResolver(internedClassMap, this.loader);
-        StandardNameMapper classNameMapper = new StandardNameMapper(this.classRenamer);
-        callerState.revertChangesToState(resolver, this.fieldCache, classNameMapper, this.sortedUserClasses, this.constantClass);
+        callerState.revertChangesToState(resolver, this.fieldCache, this.classNameMapper, this.sortedUserClasses, this.constantClass);
     }
 
     /**
@@ -432,6 +431,19 @@ public class LoadedDApp {
 
     public int getSerializedLength() { return serializedLength; }
 
+    public void setCodeSize(int codeSize) { this.codeSize = codeSize; }
+
+    /**
+     * A rough estimate of the memory retained by this DApp:  the code it was loaded from (as a proxy for the classes defined in
+     * its class loader) and its most recently serialized object graph, counted twice since the instances also hold on to their
+     * cached encodings (see EncodedInstance).
+     *
+     * @return The estimated size, in bytes.
+     */
+    public long getEstimatedSizeInBytes() {
+        return (long) this.codeSize + 2L * (long) this.serializedLength;
+    }
+
     private Set<String> fetchPreRenameSlashStyleJclExceptions() {
         Set<String> jclExceptions = new HashSet<>();
 
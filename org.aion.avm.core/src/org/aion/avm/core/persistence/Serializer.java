@@ -1,8 +1,7 @@
 package org.aion.avm.core.persistence;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -10,6 +9,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 
+import i.IObjectSerializer;
 import i.OutOfEnergyException;
 import i.RuntimeAssertionError;
 
@@ -68,16 +68,35 @@ public class Serializer {
     }
 
     private static void serializeGraphFromWorkQueue(List<Object> out_instanceIndex, List<Integer> out_calleeToCallerIndexMap, ByteBufferObjectSerializer objectSerializer, SortedFieldCache cache, Queue<Object> toProcessQueue) {
-        Method serializeSelfMethod = cache.getSerializeSelfMethod();
+        MethodHandle serializeSelf = cache.getSerializeSelfHandle();
         Field readIndexField = cache.getReadIndexField();
         
         try {
             while (!toProcessQueue.isEmpty()) {
                 Object instance = toProcessQueue.remove();
-                // We first need to serialize the class name.
-                String internalClassName = instance.getClass().getName();
-                objectSerializer.writeClassName(internalClassName);
-                serializeSelfMethod.invoke(instance, null, objectSerializer);
+                // (only tests serialize anything other than shadow objects)
+                s.java.lang.Object shadowInstance = (instance instanceof s.java.lang.Object) ? (s.java.lang.Object) instance : null;
+                Object form = (null != shadowInstance) ? shadowInstance.cachedSerializedForm : null;
+                if (form instanceof EncodedInstance) {
+                    // This instance hasn't been touched since we last serialized it so just copy that.
+                    objectSerializer.writeEncodedInstance((EncodedInstance) form);
+                } else if (form instanceof DeferredInstanceLoader) {
+                    // This is a stub which was never loaded so copy it from the graph it was read from.
+                    ((DeferredInstanceLoader) form).writeInstance(shadowInstance, objectSerializer);
+                } else {
+                    boolean shouldCache = (null != shadowInstance) && cache.isEncodingCacheable(instance.getClass());
+                    if (shouldCache) {
+                        objectSerializer.startRecording();
+                    }
+                    // We first need to serialize the class name.
+                    String internalClassName = instance.getClass().getName();
+                    objectSerializer.writeClassName(internalClassName);
+                    invokeSerializeSelf(serializeSelf, instance, objectSerializer);
+                    // (if either of those failed, this whole serialization is abandoned so there is no partial recording to clean up)
+                    if (shouldCache) {
+                        shadowInstance.cachedSerializedForm = objectSerializer.finishRecording();
+                    }
+                }
                 if (null != out_instanceIndex) {
                     out_instanceIndex.add(instance);
                 } else if (null != out_calleeToCallerIndexMap) {
@@ -85,24 +104,27 @@ public class Serializer {
                     out_calleeToCallerIndexMap.add(readIndex);
                 }
             }
-        } catch (InvocationTargetException e) {
-            Throwable cause = e.getCause();
-            if (cause instanceof OutOfEnergyException) {
-                // This can happen within our deserialization path for various reasons.
-                throw (OutOfEnergyException) cause;
-            } else if (cause instanceof BufferOverflowException) {
-                // This is if we run off the end of the buffer, which is an example of out of energy.
-                throw new OutOfEnergyException();
-            } else {
-                // This shouldn't happen but is distinct from reflection errors.
-                throw RuntimeAssertionError.unexpected(e);
-            }
         } catch (IllegalAccessException | IllegalArgumentException e) {
             // Reflection errors can't happen since we set this up so we could access it.
             throw RuntimeAssertionError.unexpected(e);
         }
     }
 
+    private static void invokeSerializeSelf(MethodHandle serializeSelf, Object instance, ByteBufferObjectSerializer objectSerializer) {
+        try {
+            serializeSelf.invokeExact(instance, (Class<?>) null, (IObjectSerializer) objectSerializer);
+        } catch (OutOfEnergyException e) {
+            // This can happen within our deserialization path for various reasons.
+            throw e;
+        } catch (BufferOverflowException e) {
+            // This is if we run off the end of the buffer, which is an example of out of energy.
+            throw new OutOfEnergyException();
+        } catch (Throwable t) {
+            // This shouldn't happen.
+            throw RuntimeAssertionError.unexpected(t);
+        }
+    }
+
     private static void serializeFieldsForClass(ByteBufferObjectSerializer objectSerializer, Field[] fields) {
         try {
             for (Field field : fields) {
@@ -1,14 +1,23 @@
 package org.aion.avm.core.persistence;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import i.IObjectDeserializer;
+import i.IObjectSerializer;
 import i.RuntimeAssertionError;
 
 
@@ -18,14 +27,32 @@ import i.RuntimeAssertionError;
  */
 public class SortedFieldCache {
     private static final String CONSTANT_FIELD_PREFIX = "const_";
+    // The shadow JDK classes whose instances can't change after construction (other than through deserialization).
+    private static final Set<Class<?>> IMMUTABLE_SHADOW_CLASSES = Set.of(
+            s.java.lang.Boolean.class,
+            s.java.lang.Byte.class,
+            s.java.lang.Character.class,
+            s.java.lang.Double.class,
+            s.java.lang.Float.class,
+            s.java.lang.Integer.class,
+            s.java.lang.Long.class,
+            s.java.lang.Short.class,
+            s.java.lang.String.class,
+            s.java.math.BigInteger.class,
+            p.avm.Address.class
+    );
 
     private final Map<String, Class<?>> internalNameClasses;
     private final Map<Class<?>, Field[]> constantFields;
     private final Map<Class<?>, Field[]> staticFields;
     private final Map<Class<?>, Field[]> instanceFields;
+    private final Map<Class<?>, Boolean> encodingCacheable;
+    private final Map<Class<?>, Boolean> deferrable;
+    // Keyed by the class of the instance, then by the root class the automatic serialization stops at.
+    private final Map<Class<?>, Map<Class<?>, FieldAccessor[]>> instanceFieldAccessors;
     private final ClassLoader dappClassLoader;
-    private final Method serializeSelf;
-    private final Method deserializeSelf;
+    private final MethodHandle serializeSelfHandle;
+    private final MethodHandle deserializeSelfHandle;
     private final Field readIndex;
 
     public SortedFieldCache(ClassLoader dappClassLoader, Method serializeSelf, Method deserializeSelf, Field readIndex) {
@@ -33,9 +60,19 @@ public class SortedFieldCache {
         this.constantFields = new HashMap<>();
         this.staticFields = new HashMap<>();
         this.instanceFields = new HashMap<>();
+        this.encodingCacheable = new HashMap<>();
+        this.deferrable = new HashMap<>();
+        this.instanceFieldAccessors = new HashMap<>();
         this.dappClassLoader = dappClassLoader;
-        this.serializeSelf = serializeSelf;
-        this.deserializeSelf = deserializeSelf;
+        // We also adapt these as method handles taking an Object receiver, so they can be called without reflection.
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            this.serializeSelfHandle = lookup.unreflect(serializeSelf).asType(MethodType.methodType(void.class, Object.class, Class.class, IObjectSerializer.class));
+            this.deserializeSelfHandle = lookup.unreflect(deserializeSelf).asType(MethodType.methodType(void.class, Object.class, Class.class, IObjectDeserializer.class));
+        } catch (IllegalAccessException e) {
+            // These are public methods so this can't happen.
+            throw RuntimeAssertionError.unexpected(e);
+        }
         this.readIndex = readIndex;
     }
 
@@ -83,12 +120,97 @@ public class SortedFieldCache {
         return result;
     }
 
-    public Method getSerializeSelfMethod() {
-        return this.serializeSelf;
+    /**
+     * Returns the accessors for all the instance fields which are automatically serialized for an instance of clazz:  those declared
+     * by clazz and its superclasses, stopping before rootClass, in the order they are serialized (superclasses first, each in the
+     * order of getInstanceFields()).
+     * 
+     * @param rootClass The class where the automatic serialization stops (not included).
+     * @param clazz The class of the instance.
+     * @return The accessors, in serialization order.
+     */
+    public FieldAccessor[] getInstanceFieldAccessorsToRoot(Class<?> rootClass, Class<?> clazz) {
+        Map<Class<?>, FieldAccessor[]> byRoot = this.instanceFieldAccessors.get(clazz);
+        if (null == byRoot) {
+            byRoot = new HashMap<>();
+            this.instanceFieldAccessors.put(clazz, byRoot);
+        }
+        FieldAccessor[] result = byRoot.get(rootClass);
+        if (null == result) {
+            // Walk up to the root, collecting each level, then reverse that so the superclasses come first.
+            List<Field[]> levels = new ArrayList<>();
+            for (Class<?> level = clazz; rootClass != level; level = level.getSuperclass()) {
+                levels.add(getInstanceFields(level));
+            }
+            Collections.reverse(levels);
+            result = levels.stream()
+                    .flatMap(Arrays::stream)
+                    .map(FieldAccessor::forField)
+                    .toArray(FieldAccessor[]::new);
+            byRoot.put(rootClass, result);
+        }
+        return result;
+    }
+
+    /**
+     * Determines if the Serializer can cache the encoding of instances of the given class on the instances, themselves.
+     * This is only safe for classes where any change to an instance goes through lazyLoad() or deserialization (which clear it):
+     * the classes defined by the DApp (the transformation prepends lazyLoad() to every field access) and the immutable shadow JDK
+     * classes.  Anything else (arrays, for example) is encoded from scratch, every time.
+     * 
+     * @param clazz The class of an instance being serialized.
+     * @return True if the encoding of its instances can be cached.
+     */
+    public boolean isEncodingCacheable(Class<?> clazz) {
+        Boolean result = this.encodingCacheable.get(clazz);
+        if (null == result) {
+            result = IMMUTABLE_SHADOW_CLASSES.contains(clazz) || isDefinedByDApp(clazz);
+            this.encodingCacheable.put(clazz, result);
+        }
+        return result;
+    }
+
+    /**
+     * Determines if the Deserializer can leave instances of the given class as stubs, to be loaded when first accessed.
+     * This is only safe for the classes defined by the DApp, since every access to their instances goes through lazyLoad() (the
+     * shadow JDK doesn't consistently do this).  These are also the only classes which are serialized by the shadow Object's
+     * serializeSelf(), so the DeferredInstanceLoader can walk their encoding from their fields.
+     * 
+     * @param clazz The class of an instance being deserialized.
+     * @return True if its instances can be left as stubs.
+     */
+    public boolean isDeferrable(Class<?> clazz) {
+        Boolean result = this.deferrable.get(clazz);
+        if (null == result) {
+            result = isDefinedByDApp(clazz);
+            this.deferrable.put(clazz, result);
+        }
+        return result;
+    }
+
+    private boolean isDefinedByDApp(Class<?> clazz) {
+        // The entire hierarchy, up to the shadow Object, must be DApp code, since shadow JDK superclasses could change their own fields.
+        boolean isDApp = true;
+        Class<?> current = clazz;
+        while (isDApp && (s.java.lang.Object.class != current)) {
+            isDApp = (this.dappClassLoader == current.getClassLoader());
+            current = current.getSuperclass();
+        }
+        return isDApp;
+    }
+
+    /**
+     * @return The serializeSelf method, as a handle of type (Object, Class, IObjectSerializer)void.
+     */
+    public MethodHandle getSerializeSelfHandle() {
+        return this.serializeSelfHandle;
     }
 
-    public Method getDeserializeSelfMethod() {
-        return this.deserializeSelf;
+    /**
+     * @return The deserializeSelf method, as a handle of type (Object, Class, IObjectDeserializer)void.
+     */
+    public MethodHandle getDeserializeSelfHandle() {
+        return this.deserializeSelfHandle;
     }
 
     public Field getReadIndexField() {
@@ -1,22 +1,40 @@
 package org.aion.avm.core.persistence;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.aion.avm.core.ClassRenamer;
 import org.aion.avm.core.ClassRenamer.ArrayType;
 
 public class StandardNameMapper implements IPersistenceNameMapper {
     private final ClassRenamer classRenamer;
+    // Renaming is relatively expensive and is done for every instance in a graph, for only a few distinct classes, so we cache it.
+    private final Map<String, String> storageClassNames;
+    private final Map<String, String> internalClassNames;
 
     public StandardNameMapper(ClassRenamer classRenamer) {
         this.classRenamer = classRenamer;
+        this.storageClassNames = new HashMap<>();
+        this.internalClassNames = new HashMap<>();
     }
 
     @Override
     public String getStorageClassName(String ourName) {
-        return this.classRenamer.toPreRename(ourName);
+        String result = this.storageClassNames.get(ourName);
+        if (null == result) {
+            result = this.classRenamer.toPreRename(ourName);
+            this.storageClassNames.put(ourName, result);
+        }
+        return result;
     }
 
     @Override
     public String getInternalClassName(String storageClassName) {
-        return this.classRenamer.toPostRename(storageClassName, ArrayType.PRECISE_TYPE);
+        String result = this.internalClassNames.get(storageClassName);
+        if (null == result) {
+            result = this.classRenamer.toPostRename(storageClassName, ArrayType.PRECISE_TYPE);
+            this.internalClassNames.put(storageClassName, result);
+        }
+        return result;
     }
 }
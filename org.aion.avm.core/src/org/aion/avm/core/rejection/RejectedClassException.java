@@ -93,6 +93,10 @@ public class RejectedClassException extends AvmException {
         throw new RejectedClassException("Class exceeds maximum number of constant pool entries: " + className);
     }
 
+    public static RejectedClassException failedVerification(String className, String reason) {
+        throw new RejectedClassException("Class failed verification: " + className + " (" + reason + ")");
+    }
+
     public RejectedClassException(String message) {
         super(message);
     }
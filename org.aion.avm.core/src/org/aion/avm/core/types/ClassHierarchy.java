@@ -34,6 +34,9 @@ import org.aion.avm.core.ClassRenamer.ArrayType;
  *
  * A means of producing a deep copy of the hierarchy is also provided.
  *
+ * None of the query methods modify the hierarchy, so once it is complete it can be queried by
+ * multiple threads at once (this is how DApp classes are transformed concurrently).
+ *
  * This hierarchy only accepts post-rename classes!
  */
 public final class ClassHierarchy {
@@ -267,14 +270,12 @@ public final class ClassHierarchy {
         }
 
         // Visit the ancestors of the two starting nodes and mark them differently.
-        visitAncestorsAndMarkGreen(class1);
-        visitAncestorsAndMarkRed(class2);
+        // The markings are kept in sets local to this call, rather than on the nodes, so that concurrent queries can't interfere.
+        Set<String> greenNodes = visitAncestors(class1);
+        Set<String> redNodes = visitAncestors(class2);
 
         // Now, starting at the root, discover all doubly marked leaf nodes.
-        Set<ClassInformation> leafNodes = discoverAllDoublyMarkedLeafNodesFromRoot();
-
-        // Clean up the mess we made.
-        clearAllMarkings();
+        Set<ClassInformation> leafNodes = discoverAllDoublyMarkedLeafNodesFromRoot(greenNodes, redNodes);
 
         // If these nodes have no super class in common something is very wrong.
         RuntimeAssertionError.assertTrue(!leafNodes.isEmpty());
@@ -443,32 +444,14 @@ public final class ClassHierarchy {
         return classInfos;
     }
 
-    /**
-     * Visits all ancestor nodes of the provided starting node and marks them green.
-     *
-     * ASSUMPTION: startingNode is non-null and exists in the hierarchy.
-     */
-    private void visitAncestorsAndMarkGreen(String startingNode) {
-        visitAncestors(startingNode, true);
-    }
-
-    /**
-     * Visits all ancestor nodes of the provided starting node and marks them red.
-     *
-     * ASSUMPTION: startingNode is non-null and exists in the hierarchy.
-     */
-    private void visitAncestorsAndMarkRed(String startingNode) {
-        visitAncestors(startingNode, false);
-    }
-
     /**
      * Visists all descendants of the root node in the hierarchy only if they are doubly marked
      * (that is, marked both green and red).
      *
      * Returns the list of all such doubly-marked nodes that are leaf nodes in this node subset.
      */
-    private Set<ClassInformation> discoverAllDoublyMarkedLeafNodesFromRoot() {
-        RuntimeAssertionError.assertTrue(this.root.isMarkedGreen() && this.root.isMarkedRed());
+    private Set<ClassInformation> discoverAllDoublyMarkedLeafNodesFromRoot(Set<String> greenNodes, Set<String> redNodes) {
+        RuntimeAssertionError.assertTrue(greenNodes.contains(this.root.getDotName()) && redNodes.contains(this.root.getDotName()));
 
         Queue<String> nodesToVisit = new LinkedList<>();
         nodesToVisit.add(this.root.getDotName());
@@ -483,11 +466,9 @@ public final class ClassHierarchy {
 
             for (IHierarchyNode child : nextNode.getChildren()) {
 
-                // The child pointers are not decorated, so we need to graph the node from the map.
-                DecoratedHierarchyNode decoratedChild = this.nameToNodeMapping.get(child.getDotName());
-
                 // Only visit a doubly-marked node.
-                if (decoratedChild.isMarkedGreen() && decoratedChild.isMarkedRed()) {
+                String childName = child.getDotName();
+                if (greenNodes.contains(childName) && redNodes.contains(childName)) {
                     foundChild = true;
                     nodesToVisit.add(child.getDotName());
                 }
@@ -504,15 +485,6 @@ public final class ClassHierarchy {
         return leafNodes;
     }
 
-    /**
-     * Clears all of the decorated nodes of any markings applied to them.
-     */
-    private void clearAllMarkings() {
-        for (DecoratedHierarchyNode node : this.nameToNodeMapping.values()) {
-            node.clearMarkings();
-        }
-    }
-
     /**
      * Replaces the ghost node with the real node.
      *
@@ -541,7 +513,13 @@ public final class ClassHierarchy {
         }
     }
 
-    private void visitAncestors(String startingNode, boolean markGreen) {
+    /**
+     * Visits all ancestor nodes of the provided starting node and returns the set of their names (including the starting node).
+     *
+     * ASSUMPTION: startingNode is non-null and exists in the hierarchy.
+     */
+    private Set<String> visitAncestors(String startingNode) {
+        Set<String> visited = new HashSet<>();
         Queue<String> nodesToVisit = new LinkedList<>();
         nodesToVisit.add(startingNode);
 
@@ -550,17 +528,13 @@ public final class ClassHierarchy {
             String next = nodesToVisit.poll();
 
             DecoratedHierarchyNode nextNode = this.nameToNodeMapping.get(next);
-
-            if (markGreen) {
-                nextNode.markGreen();
-            } else {
-                nextNode.markRed();
-            }
+            visited.add(next);
 
             for (IHierarchyNode child : nextNode.getParents()) {
                 nodesToVisit.add(child.getDotName());
             }
         }
+        return visited;
     }
 
     private void connectChildAndParent(IHierarchyNode child, IHierarchyNode parent) {
@@ -0,0 +1,220 @@
+package org.aion.avm.core.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+import i.RuntimeAssertionError;
+
+
+/**
+ * A concurrent cache bounded by both the number of entries and their total estimated size in bytes.
+ *
+ * Since values are removed while checked out, the order of the entries is the order in which they were last checked in, so the
+ * eldest entry is always the least-recently used one.  When there is no room for a value being checked in, the least-recently
+ * used entry is only evicted if the new value has been requested at least as often, recently, as the entry it would replace
+ * (otherwise, the new value is rejected).  This keeps a burst of contracts which are only called once from flushing the
+ * contracts which are called in every block.
+ * Request frequencies are tracked in a small count-min sketch whose counters are periodically halved, so they favour recent
+ * activity.
+ *
+ * Unlike {@link SoftCache}, values are never released by the garbage collector, so capacity must be set with the heap size in mind.
+ *
+ * @param <K> The key type (should have sensible hashCode() and equals() implementations).
+ * @param <V> The value type.
+ */
+public class BoundedCache<K, V> implements ICheckoutCache<K, V> {
+    private final int maxEntries;
+    private final long maxBytes;
+    private final ToLongFunction<V> sizeEstimator;
+    private final CacheStats stats;
+
+    // Guarded by this.
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final FrequencySketch frequencies;
+    private long totalBytes;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxEntries The maximum number of values to hold at once.
+     * @param maxBytes The maximum total estimated size of the values held at once.
+     * @param sizeEstimator Estimates the size of a value, in bytes, when it is checked in.
+     * @param stats The counters to update.
+     */
+    public BoundedCache(int maxEntries, long maxBytes, ToLongFunction<V> sizeEstimator, CacheStats stats) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache must allow at least one entry");
+        }
+        if (maxBytes < 1L) {
+            throw new IllegalArgumentException("Cache must allow at least one byte");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.sizeEstimator = sizeEstimator;
+        this.stats = stats;
+        this.entries = new LinkedHashMap<>();
+        this.frequencies = new FrequencySketch(maxEntries);
+        this.totalBytes = 0L;
+    }
+
+    @Override
+    public synchronized V checkout(K key) {
+        this.frequencies.increment(key.hashCode());
+        Entry<V> entry = this.entries.remove(key);
+        V value = null;
+        if (null != entry) {
+            this.totalBytes -= entry.sizeInBytes;
+            this.stats.recordHit();
+            value = entry.value;
+        } else {
+            this.stats.recordMiss();
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized void checkin(K key, V value) {
+        // We don't expect collisions in this cache - that would imply that consumers disagree about cache state.
+        RuntimeAssertionError.assertTrue(!this.entries.containsKey(key));
+
+        long sizeInBytes = this.sizeEstimator.applyAsLong(value);
+        boolean admit = (sizeInBytes <= this.maxBytes);
+        if (admit && !hasRoomFor(sizeInBytes)) {
+            // Only compete with the least-recently used entry:  if we beat that, we take as many entries as we need.
+            K victim = this.entries.keySet().iterator().next();
+            admit = this.frequencies.frequency(key.hashCode()) >= this.frequencies.frequency(victim.hashCode());
+        }
+
+        if (admit) {
+            Iterator<Entry<V>> eldest = this.entries.values().iterator();
+            while (!hasRoomFor(sizeInBytes)) {
+                this.totalBytes -= eldest.next().sizeInBytes;
+                eldest.remove();
+                this.stats.recordEviction();
+            }
+            this.entries.put(key, new Entry<>(value, sizeInBytes));
+            this.totalBytes += sizeInBytes;
+        } else {
+            this.stats.recordRejection();
+        }
+    }
+
+    @Override
+    public synchronized boolean containsKey(K key) {
+        return this.entries.containsKey(key);
+    }
+
+    @Override
+    public synchronized void removeValueIf(Predicate<V> condition) {
+        Iterator<Entry<V>> iterator = this.entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry<V> entry = iterator.next();
+            if (condition.test(entry.value)) {
+                this.totalBytes -= entry.sizeInBytes;
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void apply(Consumer<V> consumer) {
+        for (Entry<V> entry : this.entries.values()) {
+            consumer.accept(entry.value);
+        }
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return this.stats;
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public synchronized long sizeInBytes() {
+        return this.totalBytes;
+    }
+
+    private boolean hasRoomFor(long sizeInBytes) {
+        return (this.entries.size() < this.maxEntries) && ((this.totalBytes + sizeInBytes) <= this.maxBytes);
+    }
+
+
+    private static final class Entry<V> {
+        public final V value;
+        public final long sizeInBytes;
+
+        public Entry(V value, long sizeInBytes) {
+            this.value = value;
+            this.sizeInBytes = sizeInBytes;
+        }
+    }
+
+
+    /**
+     * A count-min sketch of 4 rows of small saturating counters, estimating how often each key hash was requested.
+     * Once the number of recorded requests reaches 10 times the width, all counters are halved so old activity fades.
+     */
+    private static final class FrequencySketch {
+        private static final int ROWS = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = { 0x97cb3127, 0x2f3c6e9b, 0x5bd1e995, 0x7feb352d };
+
+        private final byte[][] counters;
+        private final int indexShift;
+        private final int resetThreshold;
+        private int recordedSinceReset;
+
+        public FrequencySketch(int expectedEntries) {
+            // Use at least 8 counters per entry in each row, rounded up to a power of 2 (and enough that small caches still see
+            // many more distinct keys than they hold without their counters saturating).
+            int width = Integer.highestOneBit(Math.max(1023, (Math.min(expectedEntries, 1 << 16) * 8) - 1)) << 1;
+            this.counters = new byte[ROWS][width];
+            this.indexShift = Integer.numberOfLeadingZeros(width) + 1;
+            this.resetThreshold = 10 * width;
+            this.recordedSinceReset = 0;
+        }
+
+        public void increment(int hash) {
+            for (int row = 0; row < ROWS; ++row) {
+                int index = indexOf(hash, row);
+                if (this.counters[row][index] < MAX_COUNT) {
+                    this.counters[row][index] += 1;
+                }
+            }
+            this.recordedSinceReset += 1;
+            if (this.recordedSinceReset >= this.resetThreshold) {
+                halveAll();
+            }
+        }
+
+        public int frequency(int hash) {
+            int min = MAX_COUNT;
+            for (int row = 0; row < ROWS; ++row) {
+                min = Math.min(min, this.counters[row][indexOf(hash, row)]);
+            }
+            return min;
+        }
+
+        private int indexOf(int hash, int row) {
+            // Spread the hash over all bits then take the top bits of a different multiple for each row, so keys which only
+            // collide in one row are unlikely to collide in the others.
+            int spread = (hash ^ (hash >>> 16)) * 0x85ebca6b;
+            spread ^= spread >>> 13;
+            return (spread * SEEDS[row]) >>> this.indexShift;
+        }
+
+        private void halveAll() {
+            for (byte[] row : this.counters) {
+                for (int i = 0; i < row.length; ++i) {
+                    row[i] >>= 1;
+                }
+            }
+            this.recordedSinceReset /= 2;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.aion.avm.core.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Counters describing the effectiveness of an {@link ICheckoutCache}.
+ * These are updated concurrently by all the threads using the cache so reading them while the cache is in use only gives an
+ * approximate snapshot.
+ */
+public class CacheStats {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public void recordHit() {
+        this.hits.increment();
+    }
+
+    public void recordMiss() {
+        this.misses.increment();
+    }
+
+    /**
+     * Records that a cached value was dropped to make room for another (or released by the garbage collector).
+     */
+    public void recordEviction() {
+        this.evictions.increment();
+    }
+
+    /**
+     * Records that a value checked in was not admitted to the cache.
+     */
+    public void recordRejection() {
+        this.rejections.increment();
+    }
+
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return this.evictions.sum();
+    }
+
+    public long getRejectionCount() {
+        return this.rejections.sum();
+    }
+
+    public void clear() {
+        this.hits.reset();
+        this.misses.reset();
+        this.evictions.reset();
+        this.rejections.reset();
+    }
+}
@@ -11,6 +11,7 @@ import org.aion.avm.utilities.Utilities;
 
 import i.CommonInstrumentation;
 import i.Helper;
+import i.IInstrumentation;
 import i.RuntimeAssertionError;
 import i.StackWatcher;
 import org.objectweb.asm.ClassReader;
@@ -144,24 +145,44 @@ public class Helpers {
     /**
      * A common helper used to construct a map of visible class bytecode for an AvmClassLoader instance.
      * Typically, this is used right before "instantiateHelper()", below (this creates/adds the class it loads).
+     * Note that DApps don't need this since the Helper is loaded once, in the shared class loader (see mapIncludingBlockchainBytecode()).
      *
      * @param inputMap The initial map of class names to bytecodes.
      * @param helperBytes The bytecode of the Helper class (will be internally renamed to the appropriate name).
      * @return The inputMap with the Helper bytecode added.
      */
     public static Map<String, byte[]> mapIncludingHelperBytecode(Map<String, byte[]> inputMap, byte[] helperBytes) {
-        // First, rename the helper class to the runtime helper name.
-        byte[] renamedBytes = new ClassToolchain.Builder(helperBytes, ClassReader.SKIP_FRAMES | ClassReader.SKIP_DEBUG)
+        Map<String, byte[]> modifiedMap = mapIncludingBlockchainBytecode(inputMap);
+        modifiedMap.put(Helper.RUNTIME_HELPER_NAME, renameHelperBytecode(helperBytes));
+        return modifiedMap;
+    }
+
+    /**
+     * Constructs the map of class bytecode for a DApp's AvmClassLoader:  the DApp's own classes and its copy of the Blockchain class (which
+     * has a per-DApp static).
+     * The Helper isn't included since it is shared by all DApps (the NodeEnvironment loads it into the shared class loader).
+     *
+     * @param inputMap The initial map of class names to bytecodes.
+     * @return The inputMap with the Blockchain bytecode added.
+     */
+    public static Map<String, byte[]> mapIncludingBlockchainBytecode(Map<String, byte[]> inputMap) {
+        Map<String, byte[]> modifiedMap = new HashMap<>(inputMap);
+        modifiedMap.put(blockchainRuntimeClassName, blockchainRuntimeBytes);
+        return modifiedMap;
+    }
+
+    /**
+     * Renames the given Helper class bytecode to the name the instrumented code calls (RUNTIME_HELPER_NAME).
+     *
+     * @param helperBytes The bytecode of the Helper class.
+     * @return The bytecode of the renamed class.
+     */
+    public static byte[] renameHelperBytecode(byte[] helperBytes) {
+        return new ClassToolchain.Builder(helperBytes, ClassReader.SKIP_FRAMES | ClassReader.SKIP_DEBUG)
                         .addNextVisitor(new ClassRenameVisitor(Helper.RUNTIME_HELPER_NAME))
                         .addWriter(new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS))
                         .build()
                         .runAndGetBytecode();
-        
-        // Now, construct the map.
-        Map<String, byte[]> modifiedMap = new HashMap<>(inputMap);
-        modifiedMap.put(Helper.RUNTIME_HELPER_NAME, renamedBytes);
-        modifiedMap.put(blockchainRuntimeClassName, blockchainRuntimeBytes);
-        return modifiedMap;
     }
 
     public static byte[] loadDefaultHelperBytecode() {
@@ -191,14 +212,11 @@ public class Helpers {
     // for testing purpose
     public static void attachStackWatcher(AvmClassLoader contractLoader, StackWatcher stackWatcher) {
         try {
-            Class<?> helperClass = contractLoader.loadClass(Helper.RUNTIME_HELPER_NAME);
-            Field targetField = helperClass.getDeclaredField("target");
-            targetField.setAccessible(true);
             Field currentFrameField = contractLoader.loadClass(CommonInstrumentation.class.getName()).getDeclaredField("currentFrame");
             currentFrameField.setAccessible(true);
             Field stackWatcherField = contractLoader.loadClass(CommonInstrumentation.FrameState.class.getName()).getDeclaredField("stackWatcher");
             stackWatcherField.setAccessible(true);
-            stackWatcherField.set(currentFrameField.get(targetField.get(null)), stackWatcher);
+            stackWatcherField.set(currentFrameField.get(IInstrumentation.attachedThreadInstrumentation.get()), stackWatcher);
         } catch (Throwable t) {
             // Errors at this point imply something wrong with the installation so fail.
             throw RuntimeAssertionError.unexpected(t);
@@ -264,7 +282,8 @@ public class Helpers {
         try {
             String helperClassName = Helper.RUNTIME_HELPER_NAME;
             Class<?> clazz = loader.loadClass(helperClassName);
-            RuntimeAssertionError.assertTrue(clazz.getClassLoader() == loader);
+            // (this is either a copy the caller put into the loader or the one in the shared class loader, its parent)
+            RuntimeAssertionError.assertTrue((clazz.getClassLoader() == loader) || (clazz.getClassLoader() == loader.getParent()));
             return (IRuntimeSetup) clazz.getConstructor().newInstance();
         } catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException | NoSuchMethodException | SecurityException | ClassNotFoundException e) {
             // We require that this be instantiated in this way.
@@ -0,0 +1,59 @@
+package org.aion.avm.core.util;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+
+/**
+ * A concurrent cache of objects which can only be used by one consumer at a time:  a value is removed from the cache when it
+ * is checked out and only becomes visible to other consumers once it is checked back in.
+ * Implementations are free to drop any value which is checked in (it is always valid to miss).
+ *
+ * @param <K> The key type (should have sensible hashCode() and equals() implementations).
+ * @param <V> The value type.
+ */
+public interface ICheckoutCache<K, V> {
+    /**
+     * Removes the value associated with the given key from the cache and returns it.
+     *
+     * @param key The key.
+     * @return The value or null if there was nothing cached for this key.
+     */
+    V checkout(K key);
+
+    /**
+     * Makes the given value available in the cache.  There must not already be a value cached for this key.
+     *
+     * @param key The key.
+     * @param value The value.
+     */
+    void checkin(K key, V value);
+
+    /**
+     * Checks if a value is currently cached for the given key, without checking it out or counting as a request for it.
+     *
+     * @param key The key.
+     * @return True if a value is cached for this key.
+     */
+    boolean containsKey(K key);
+
+    /**
+     * Removes all the cached values which satisfy the given condition.
+     * Implementations may also take this opportunity to remove any values they had already released.
+     *
+     * @param condition The condition to check against each cached value.
+     */
+    void removeValueIf(Predicate<V> condition);
+
+    /**
+     * Applies the given consumer to every value currently in the cache.
+     *
+     * @param consumer The consumer to apply.
+     */
+    void apply(Consumer<V> consumer);
+
+    /**
+     * @return The hit/miss/eviction counters of this cache.
+     */
+    CacheStats getStats();
+}
@@ -0,0 +1,201 @@
+package org.aion.avm.core.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import i.RuntimeAssertionError;
+
+
+/**
+ * An on-disk cache of re-transformed code which survives restarting the node, so that each contract is only re-transformed once
+ * per version of the transformation, instead of once per process.
+ *
+ * Entries are content-addressed:  each is a file named by the SHA-256 of the original code, the transformation version and the
+ * debuggability flag, so there is nothing to invalidate when a contract is self-destructed or code is redeployed.
+ * Each file holds a header with a SHA-256 of the payload, checked on every load, and any entry which fails that check is deleted.
+ * Files are memory-mapped to read them and written on a single background thread, through a temporary file which is atomically
+ * renamed into place, so executor threads never wait for a write and never observe a partially written entry.
+ */
+public class PersistentCodeCache {
+    private static final int MAGIC = 0x41564d43;  // "AVMC"
+    private static final int FORMAT_VERSION = 1;
+    private static final int DIGEST_LENGTH = 32;
+    private static final int HEADER_LENGTH = Integer.BYTES + Integer.BYTES + Integer.BYTES + DIGEST_LENGTH;
+    private static final String FILE_SUFFIX = ".jar";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final int transformationVersion;
+    private final CacheStats stats;
+    private ExecutorService writer;
+
+    /**
+     * Creates the cache (it must be started before use).
+     *
+     * @param directory The directory holding the entries (created on startup, if missing).
+     * @param transformationVersion The version of the transformation producing the code (entries from other versions are ignored).
+     * @param stats The counters to update (evictions count the corrupt entries discarded).
+     */
+    public PersistentCodeCache(File directory, int transformationVersion, CacheStats stats) {
+        this.directory = directory;
+        this.transformationVersion = transformationVersion;
+        this.stats = stats;
+    }
+
+    public void startup() {
+        RuntimeAssertionError.assertTrue(null == this.writer);
+        if (!this.directory.exists()) {
+            this.directory.mkdirs();
+        }
+        RuntimeAssertionError.assertTrue(this.directory.isDirectory());
+        this.writer = Executors.newSingleThreadExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "AVM Persistent Code Cache Writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Waits for all pending writes to complete and stops the background writer.
+     */
+    public void shutdown() {
+        RuntimeAssertionError.assertTrue(null != this.writer);
+        this.writer.shutdown();
+        try {
+            this.writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            // We don't use interruption.
+            throw RuntimeAssertionError.unexpected(e);
+        }
+        this.writer = null;
+    }
+
+    /**
+     * Looks up the transformed code for the given original code.
+     *
+     * @param code The original code, as deployed.
+     * @param preserveDebuggability True if the transformed code must preserve debuggability.
+     * @return The transformed code or null if there is no valid entry.
+     */
+    public byte[] load(byte[] code, boolean preserveDebuggability) {
+        File file = fileFor(code, preserveDebuggability);
+        byte[] transformedCode = null;
+        if (file.isFile()) {
+            transformedCode = readAndVerify(file.toPath());
+            if (null == transformedCode) {
+                // Corrupt or truncated (possibly by a crash of an older writer) so drop it:  we will write it again.
+                file.delete();
+                this.stats.recordEviction();
+            }
+        }
+        if (null != transformedCode) {
+            this.stats.recordHit();
+        } else {
+            this.stats.recordMiss();
+        }
+        return transformedCode;
+    }
+
+    /**
+     * Requests that the transformed code for the given original code be written, on the background thread.
+     *
+     * @param code The original code, as deployed.
+     * @param preserveDebuggability True if the transformed code preserves debuggability.
+     * @param transformedCode The transformed code.
+     */
+    public void storeAsynchronously(byte[] code, boolean preserveDebuggability, byte[] transformedCode) {
+        // Hash the key now, since the caller may not hold the code stable once we return.
+        File file = fileFor(code, preserveDebuggability);
+        this.writer.execute(() -> write(file.toPath(), transformedCode));
+    }
+
+    private File fileFor(byte[] code, boolean preserveDebuggability) {
+        String name = Helpers.bytesToHexString(sha256(code))
+                + "-v" + this.transformationVersion
+                + (preserveDebuggability ? "-debug" : "")
+                + FILE_SUFFIX;
+        return new File(this.directory, name);
+    }
+
+    private static byte[] readAndVerify(Path path) {
+        byte[] payload = null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if ((size >= HEADER_LENGTH) && (size <= Integer.MAX_VALUE)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+                int magic = mapped.getInt();
+                int formatVersion = mapped.getInt();
+                int length = mapped.getInt();
+                byte[] expectedDigest = new byte[DIGEST_LENGTH];
+                mapped.get(expectedDigest);
+                if ((MAGIC == magic) && (FORMAT_VERSION == formatVersion) && (length == (size - HEADER_LENGTH))) {
+                    byte[] candidate = new byte[length];
+                    mapped.get(candidate);
+                    if (Arrays.equals(expectedDigest, sha256(candidate))) {
+                        payload = candidate;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // We treat an unreadable entry the same as a corrupt one.
+            payload = null;
+        }
+        return payload;
+    }
+
+    private void write(Path path, byte[] transformedCode) {
+        if (!Files.exists(path)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + transformedCode.length);
+            buffer.putInt(MAGIC);
+            buffer.putInt(FORMAT_VERSION);
+            buffer.putInt(transformedCode.length);
+            buffer.put(sha256(transformedCode));
+            buffer.put(transformedCode);
+            buffer.flip();
+
+            Path temp = path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+            try {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(false);
+                }
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                // This is only a cache so failing to write it just means we will transform this code again, next time.
+                deleteQuietly(temp);
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Nothing else we can do - it will be overwritten by the next attempt.
+        }
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM is required to provide SHA-256.
+            throw RuntimeAssertionError.unexpected(e);
+        }
+    }
+}
@@ -15,20 +15,34 @@ import i.RuntimeAssertionError;
  * @param <K> The key type (should have sensible hashCode() and equals() implementations).
  * @param <V> The value type.
  */
-public class SoftCache<K, V> {
+public class SoftCache<K, V> implements ICheckoutCache<K, V> {
     private final ConcurrentHashMap<K, SoftReference<V>> underlyingMap;
+    private final CacheStats stats;
 
     public SoftCache() {
+        this(new CacheStats());
+    }
+
+    public SoftCache(CacheStats stats) {
         this.underlyingMap = new ConcurrentHashMap<>();
+        this.stats = stats;
     }
 
+    @Override
     public V checkout(K key) {
         SoftReference<V> wrapper = this.underlyingMap.remove(key);
-        return (null != wrapper)
+        V value = (null != wrapper)
                 ? wrapper.get()
                 : null;
+        if (null != value) {
+            this.stats.recordHit();
+        } else {
+            this.stats.recordMiss();
+        }
+        return value;
     }
 
+    @Override
     public void checkin(K key, V value) {
         SoftReference<V> previous = this.underlyingMap.put(key, new SoftReference<>(value));
         // We don't expect collisions in this cache - that would imply that consumers disagree about cache state.
@@ -36,11 +50,36 @@ public class SoftCache<K, V> {
         RuntimeAssertionError.assertTrue(null == previous);
     }
 
-    public void removeValueIf(Predicate<SoftReference<V>> condition){
-        this.underlyingMap.values().removeIf(condition);
+    @Override
+    public boolean containsKey(K key) {
+        SoftReference<V> wrapper = this.underlyingMap.get(key);
+        return (null != wrapper) && (null != wrapper.get());
+    }
+
+    @Override
+    public void removeValueIf(Predicate<V> condition){
+        this.underlyingMap.values().removeIf((reference) -> {
+            V value = reference.get();
+            if (null == value) {
+                // The GC got to this one first.
+                this.stats.recordEviction();
+            }
+            return (null == value) || condition.test(value);
+        });
+    }
+
+    @Override
+    public void apply(Consumer<V> consumer){
+        this.underlyingMap.values().forEach((reference) -> {
+            V value = reference.get();
+            if (null != value) {
+                consumer.accept(value);
+            }
+        });
     }
 
-    public void apply(Consumer<SoftReference<V>> consumer){
-        this.underlyingMap.values().forEach(consumer);
+    @Override
+    public CacheStats getStats() {
+        return this.stats;
     }
 }
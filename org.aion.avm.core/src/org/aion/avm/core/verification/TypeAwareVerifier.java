@@ -0,0 +1,164 @@
+package org.aion.avm.core.verification;
+
+import org.aion.avm.core.ClassRenamer;
+import org.aion.avm.core.ClassRenamer.ArrayType;
+import org.aion.avm.core.types.ClassHierarchy;
+import org.aion.avm.utilities.Utilities;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.analysis.BasicValue;
+import org.objectweb.asm.tree.analysis.SimpleVerifier;
+
+import i.RuntimeAssertionError;
+
+
+/**
+ * We extend the SimpleVerifier to override its type queries (which load the classes) with implementations which answer them from
+ * the ClassHierarchy, before the classes can be loaded (much like the TypeAwareClassWriter does for the common super class).
+ *
+ * This verifier is given pre-rename (untrusted) code so the types it is asked about are pre-rename.  They are renamed to query the
+ * hierarchy, which only contains post-rename classes.
+ * If it is asked about a type which isn't in the hierarchy, it throws UnresolvableTypeException:  such a class can't be verified
+ * here but it will be rejected, later, since it refers to a class which isn't in the DApp or on the whitelist.
+ *
+ * Like the JVM's verifier, any reference type is considered assignable to an interface type (this is only checked when the interface
+ * is used).
+ */
+public class TypeAwareVerifier extends SimpleVerifier {
+    private static final Type JAVA_LANG_OBJECT = Type.getObjectType("java/lang/Object");
+    private static final Type NULL_TYPE = Type.getObjectType("null");
+
+    private final ClassHierarchy hierarchy;
+    private final ClassRenamer classRenamer;
+
+    public TypeAwareVerifier(ClassHierarchy hierarchy, ClassRenamer classRenamer) {
+        // We don't tell the SimpleVerifier about the current class since it is in the hierarchy, like any other user class.
+        super(Opcodes.ASM6, null, null, null, false);
+        this.hierarchy = hierarchy;
+        this.classRenamer = classRenamer;
+    }
+
+    @Override
+    protected boolean isSubTypeOf(BasicValue value, BasicValue expected) {
+        Type expectedType = expected.getType();
+        Type type = value.getType();
+        if (isReference(expectedType)) {
+            return NULL_TYPE.equals(type) || (isReference(type) && isJavaAssignable(expectedType, type));
+        } else {
+            // Primitives are handled the same way as the SimpleVerifier (which only needs the type for references).
+            return super.isSubTypeOf(value, expected);
+        }
+    }
+
+    @Override
+    protected boolean isInterface(Type type) {
+        return (Type.OBJECT == type.getSort())
+                && !JAVA_LANG_OBJECT.equals(type)
+                && this.hierarchy.postRenameTypeIsInterface(toPostRenameName(type));
+    }
+
+    @Override
+    protected Type getSuperClass(Type type) {
+        Type superClass;
+        if (JAVA_LANG_OBJECT.equals(type)) {
+            superClass = null;
+        } else if ((Type.ARRAY == type.getSort()) || isInterface(type)) {
+            superClass = JAVA_LANG_OBJECT;
+        } else {
+            String postRenameSuperName = this.hierarchy.getConcreteSuperClassDotName(toPostRenameName(type));
+            superClass = (null == postRenameSuperName)
+                    ? null
+                    : Type.getObjectType(Utilities.fulllyQualifiedNameToInternalName(this.classRenamer.toPreRename(postRenameSuperName)));
+        }
+        return superClass;
+    }
+
+    @Override
+    protected boolean isAssignableFrom(Type type, Type other) {
+        boolean isAssignable;
+        if (type.equals(other) || JAVA_LANG_OBJECT.equals(type)) {
+            isAssignable = true;
+        } else if (Type.ARRAY == other.getSort()) {
+            // Arrays are only assignable to arrays of an assignable element type, or the interfaces all arrays implement.
+            if (Type.ARRAY == type.getSort()) {
+                Type elementType = getComponentType(type);
+                Type otherElementType = getComponentType(other);
+                isAssignable = (isReference(elementType) && isReference(otherElementType))
+                        ? isAssignableFrom(elementType, otherElementType)
+                        : elementType.equals(otherElementType);
+            } else {
+                isAssignable = isArrayInterface(type);
+            }
+        } else if (Type.ARRAY == type.getSort()) {
+            isAssignable = false;
+        } else {
+            // Both are plain classes or interfaces so the hierarchy knows the answer.
+            isAssignable = this.hierarchy.isDescendantOfClass(toPostRenameName(other), toPostRenameName(type));
+        }
+        return isAssignable;
+    }
+
+    @Override
+    protected Class<?> getClass(Type type) {
+        // We override everything which would call this since loading the class is exactly what we are trying to avoid.
+        throw RuntimeAssertionError.unreachable("Verifier attempted to load " + type);
+    }
+
+    /**
+     * The JVM's assignability rule which, unlike isAssignableFrom(), treats interfaces like java.lang.Object.
+     */
+    private boolean isJavaAssignable(Type type, Type other) {
+        boolean isAssignable;
+        if ((Type.ARRAY == type.getSort()) && (Type.ARRAY == other.getSort())) {
+            Type elementType = getComponentType(type);
+            Type otherElementType = getComponentType(other);
+            isAssignable = (isReference(elementType) && isReference(otherElementType))
+                    ? isJavaAssignable(elementType, otherElementType)
+                    : elementType.equals(otherElementType);
+        } else if (Type.OBJECT == type.getSort() && isInterface(type)) {
+            isAssignable = true;
+        } else {
+            isAssignable = isAssignableFrom(type, other);
+        }
+        return isAssignable;
+    }
+
+    private String toPostRenameName(Type type) {
+        RuntimeAssertionError.assertTrue(Type.OBJECT == type.getSort());
+        String preRenameName = Utilities.internalNameToFulllyQualifiedName(type.getInternalName());
+        // (in debug mode, user classes aren't renamed, so we check for those first).
+        if (!this.hierarchy.isPreRenameUserDefinedClass(preRenameName) && !this.classRenamer.isPreRename(preRenameName)) {
+            throw new UnresolvableTypeException(preRenameName);
+        }
+        String postRenameName = this.classRenamer.toPostRename(preRenameName, ArrayType.NOT_ARRAY);
+        if (!this.hierarchy.contains(postRenameName)) {
+            throw new UnresolvableTypeException(preRenameName);
+        }
+        return postRenameName;
+    }
+
+    private static boolean isArrayInterface(Type type) {
+        String name = type.getInternalName();
+        return "java/lang/Cloneable".equals(name) || "java/io/Serializable".equals(name);
+    }
+
+    private static Type getComponentType(Type arrayType) {
+        return Type.getType(arrayType.getDescriptor().substring(1));
+    }
+
+    private static boolean isReference(Type type) {
+        return (null != type) && ((Type.OBJECT == type.getSort()) || (Type.ARRAY == type.getSort()));
+    }
+
+
+    /**
+     * Thrown when the verifier is asked about a type which isn't in the hierarchy.
+     */
+    public static final class UnresolvableTypeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public UnresolvableTypeException(String preRenameName) {
+            super("Type not in the hierarchy: " + preRenameName);
+        }
+    }
+}
@@ -2,14 +2,66 @@ package org.aion.avm.core.verification;
 
 import java.util.Map;
 
+import org.aion.avm.core.ClassRenamer;
+import org.aion.avm.core.rejection.RejectedClassException;
+import org.aion.avm.core.types.ClassHierarchy;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicValue;
+
 import i.UncaughtException;
 
 
 /**
  * The class which provides the high-level helpers for our pre-transformation class verification.
- * This, internally, loads classes without initialization, hence invoking the JVM's verifier but not calling &lt;clinit%gt;.
+ * There are 2 ways to verify the classes:
+ * 1) verifyUntrustedClass() analyzes the code of one class with ASM, answering the type questions from the ClassHierarchy.  This is
+ *   what the transformation normally uses since it doesn't define any classes.
+ * 2) verifyUntrustedClasses() loads the classes without initialization, hence invoking the JVM's class file checks but not calling
+ *   &lt;clinit%gt;.  Note that the classes aren't linked so this doesn't verify their code.  This is much more expensive (every
+ *   class is defined twice, since the transformed classes are defined, again, to run them) so it is only used to cross-check the
+ *   analysis.
+ * Either way, the hierarchy itself (missing or cyclic super classes, etc) has already been checked by the ClassHierarchyVerifier.
  */
 public class Verifier {
+    // (the JVM only allows the bootstrap and platform class loaders to define classes in this package)
+    private static final String PROHIBITED_PACKAGE_PREFIX = "java.";
+
+    /**
+     * Verifies the code of an untrusted class by analyzing each of its methods with a TypeAwareVerifier.
+     * If the class refers to a type which isn't in the hierarchy, it can't be analyzed, so its verification is left to the later
+     * stages of the transformation (which will reject it).
+     * Note that this doesn't look at the stack map frames of the class since the transformation computes them, from scratch.
+     * Classes in the "java" package are also rejected, here, since the JVM refuses to define them (which is how they were rejected when
+     * verification loaded the classes).
+     * 
+     * @param name The name of the class (dot-style), for error reporting.
+     * @param bytecode The bytecode of the class.
+     * @param hierarchy The class hierarchy of all classes in the system.
+     * @param classRenamer The renamer used to query the hierarchy about pre-rename types.
+     * @throws RejectedClassException Thrown when the code of the class fails verification.
+     */
+    public static void verifyUntrustedClass(String name, byte[] bytecode, ClassHierarchy hierarchy, ClassRenamer classRenamer) {
+        if (name.startsWith(PROHIBITED_PACKAGE_PREFIX)) {
+            throw RejectedClassException.failedVerification(name, "Prohibited package name");
+        }
+        ClassNode classNode = new ClassNode();
+        new ClassReader(bytecode).accept(classNode, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        Analyzer<BasicValue> analyzer = new Analyzer<>(new TypeAwareVerifier(hierarchy, classRenamer));
+        try {
+            for (MethodNode method : classNode.methods) {
+                analyzer.analyze(classNode.name, method);
+            }
+        } catch (AnalyzerException e) {
+            if (!isCausedByUnresolvableType(e)) {
+                throw RejectedClassException.failedVerification(name, e.getMessage());
+            }
+        }
+    }
+
     /**
      * Verifies the untrusted classes by loading them, without invoking &lt;clinit%gt;.
      * 
@@ -41,4 +93,12 @@ public class Verifier {
             throw new AssertionError("Not all pre-transform classes were loaded");
         }
     }
+
+    private static boolean isCausedByUnresolvableType(Throwable error) {
+        boolean isUnresolvable = false;
+        for (Throwable cause = error; (null != cause) && !isUnresolvable; cause = cause.getCause()) {
+            isUnresolvable = (cause instanceof TypeAwareVerifier.UnresolvableTypeException);
+        }
+        return isUnresolvable;
+    }
 }
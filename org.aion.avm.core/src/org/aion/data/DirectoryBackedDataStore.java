@@ -41,6 +41,11 @@ public class DirectoryBackedDataStore implements IDataStore {
         RuntimeAssertionError.assertTrue(didDelete);
     }
 
+    @Override
+    public void commit() {
+        // Every change is written to its file immediately so there is nothing to commit.
+    }
+
 
     private File getSubDirectory(byte[] address) {
         // We need to make sure that this address isn't going to hit some limit (we can tighten this to the specific address length but not all
@@ -28,4 +28,10 @@ public interface IDataStore {
      * @param address The address of the account.
      */
     public void deleteAccount(byte[] address);
+
+    /**
+     * Makes every change since the previous commit durable, as one atomic change.  Stores which write each change through, immediately,
+     * have nothing to do.
+     */
+    public void commit();
 }
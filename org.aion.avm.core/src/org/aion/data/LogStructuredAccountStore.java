@@ -0,0 +1,101 @@
+package org.aion.data;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import org.aion.avm.core.util.ByteArrayWrapper;
+
+
+/**
+ * An account in a LogStructuredDataStore:  just the account's address, since everything is read from (and written to) the store's log.
+ */
+public class LogStructuredAccountStore implements IAccountStore {
+    private static final byte[] NO_KEY = new byte[0];
+
+    private final LogStructuredDataStore store;
+    private final byte[] address;
+
+    public LogStructuredAccountStore(LogStructuredDataStore store, byte[] address) {
+        this.store = store;
+        this.address = address;
+    }
+
+    @Override
+    public byte[] getCode() {
+        return this.store.get(this.address, LogStructuredDataStore.FIELD_CODE, NO_KEY);
+    }
+
+    @Override
+    public void setCode(byte[] code) {
+        this.store.put(this.address, LogStructuredDataStore.FIELD_CODE, NO_KEY, code);
+    }
+
+    @Override
+    public byte[] getTransformedCode() {
+        return this.store.get(this.address, LogStructuredDataStore.FIELD_TRANSFORMED_CODE, NO_KEY);
+    }
+
+    @Override
+    public void setTransformedCode(byte[] code) {
+        this.store.put(this.address, LogStructuredDataStore.FIELD_TRANSFORMED_CODE, NO_KEY, code);
+    }
+
+    @Override
+    public BigInteger getBalance() {
+        byte[] data = this.store.get(this.address, LogStructuredDataStore.FIELD_BALANCE, NO_KEY);
+        // As in the DirectoryBackedAccountStore, an account which was never given a balance has zero.
+        return (null != data)
+                ? new BigInteger(data)
+                : BigInteger.ZERO;
+    }
+
+    @Override
+    public void setBalance(BigInteger balance) {
+        this.store.put(this.address, LogStructuredDataStore.FIELD_BALANCE, NO_KEY, balance.toByteArray());
+    }
+
+    @Override
+    public long getNonce() {
+        byte[] data = this.store.get(this.address, LogStructuredDataStore.FIELD_NONCE, NO_KEY);
+        return (null != data)
+                ? ByteBuffer.wrap(data).getLong()
+                : 0L;
+    }
+
+    @Override
+    public void setNonce(long nonce) {
+        byte[] data = ByteBuffer.allocate(Long.BYTES).putLong(nonce).array();
+        this.store.put(this.address, LogStructuredDataStore.FIELD_NONCE, NO_KEY, data);
+    }
+
+    @Override
+    public byte[] getData(byte[] key) {
+        return this.store.get(this.address, LogStructuredDataStore.FIELD_DATA, key);
+    }
+
+    @Override
+    public void setData(byte[] key, byte[] value) {
+        this.store.put(this.address, LogStructuredDataStore.FIELD_DATA, key, value);
+    }
+
+    @Override
+    public void removeData(byte[] key) {
+        this.store.remove(this.address, key);
+    }
+
+    @Override
+    public Map<ByteArrayWrapper, byte[]> getStorageEntries() {
+        return this.store.getStorageEntries(this.address);
+    }
+
+    @Override
+    public void setObjectGraph(byte[] data) {
+        this.store.put(this.address, LogStructuredDataStore.FIELD_GRAPH, NO_KEY, data);
+    }
+
+    @Override
+    public byte[] getObjectGraph() {
+        return this.store.get(this.address, LogStructuredDataStore.FIELD_GRAPH, NO_KEY);
+    }
+}
@@ -0,0 +1,473 @@
+package org.aion.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.aion.avm.core.util.ByteArrayWrapper;
+import i.RuntimeAssertionError;
+
+
+/**
+ * An IDataStore which keeps all of its accounts in a single append-only log file, instead of a file per value (as the
+ * DirectoryBackedDataStore does), so writing a value is a copy into memory, not a file system operation.
+ *
+ * The log is memory-mapped (read-write) and grows by doubling.  Each change is appended as a record, with a CRC32, and an in-memory index
+ * maps each account's fields and storage keys to the record holding their current value.  The index isn't stored:  it is rebuilt by
+ * scanning the log when the store is opened.
+ *
+ * Changes only become durable when commit() appends a commit record and forces the mapping to disk.  When the log is opened, anything
+ * after the last commit record (or after the first record which fails its CRC) is discarded so a crash loses the uncommitted changes but
+ * never exposes part of a commit.  TestingState commits whenever it generates a block, so each block's changes are committed atomically.
+ *
+ * Overwritten and removed values stay in the log until it is compacted:  once the log is larger than COMPACTION_MINIMUM_BYTES and at least
+ * half of it is dead, commit() copies the live records into a new log which then atomically replaces the old one.
+ *
+ * Like the other implementations, this is for testing and tooling:  the log must fit in a single mapping (2 GiB) and it is synchronized,
+ * rather than concurrent.
+ */
+public class LogStructuredDataStore implements IDataStore {
+    private static final String FILE_NAME_LOG = "data.log";
+    private static final String FILE_NAME_COMPACTION = "data.log.compact";
+    private static final int INITIAL_CAPACITY = 1024 * 1024;
+    private static final long COMPACTION_MINIMUM_BYTES = 16L * 1024L * 1024L;
+
+    // Record types.
+    private static final byte RECORD_CREATE_ACCOUNT = 1;
+    private static final byte RECORD_DELETE_ACCOUNT = 2;
+    private static final byte RECORD_PUT = 3;
+    private static final byte RECORD_REMOVE = 4;
+    private static final byte RECORD_COMMIT = 5;
+
+    // The values of an account (what a RECORD_PUT writes).
+    static final byte FIELD_CODE = 0;
+    static final byte FIELD_TRANSFORMED_CODE = 1;
+    static final byte FIELD_BALANCE = 2;
+    static final byte FIELD_NONCE = 3;
+    static final byte FIELD_GRAPH = 4;
+    static final byte FIELD_DATA = 5;
+
+    // A record is:  length (int, of the rest of the record), CRC32 (int, of everything after it), type, field, address length (byte), address,
+    // key length (byte), key, value length (int), value.
+    private static final int OFFSET_TYPE = Integer.BYTES + Integer.BYTES;
+    private static final int MINIMUM_RECORD_LENGTH = Integer.BYTES + Byte.BYTES + Byte.BYTES + Byte.BYTES + Byte.BYTES + Integer.BYTES;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final File directory;
+    private FileChannel channel;
+    private MappedByteBuffer log;
+    // The end of the records (the mapping, and the file, extend beyond this).
+    private int logEnd;
+    // The number of bytes in the log which are in records that have been overwritten or removed.
+    private long deadBytes;
+    private final Map<ByteArrayWrapper, AccountIndex> accounts;
+
+    /**
+     * Opens the store in the given directory, creating it if required, and recovers its last committed state.
+     *
+     * @param directory The directory holding the log.
+     */
+    public LogStructuredDataStore(File directory) {
+        this.directory = directory;
+        this.accounts = new HashMap<>();
+        directory.mkdirs();
+        RuntimeAssertionError.assertTrue(directory.isDirectory());
+        // A compaction which didn't finish never replaced the log so whatever it wrote can just be discarded.
+        new File(directory, FILE_NAME_COMPACTION).delete();
+        openLog(new File(directory, FILE_NAME_LOG).toPath());
+        recover();
+    }
+
+    @Override
+    public synchronized IAccountStore openAccount(byte[] address) {
+        return this.accounts.containsKey(new ByteArrayWrapper(address))
+                ? new LogStructuredAccountStore(this, address)
+                : null;
+    }
+
+    @Override
+    public synchronized IAccountStore createAccount(byte[] address) {
+        // We check this the same way as the DirectoryBackedDataStore, even though we have no file system limit, to accept the same addresses.
+        if ((null == address) || (address.length < 4) || (address.length > 32)) {
+            throw new IllegalArgumentException("Address length incorrect (must be between 4 and 32)");
+        }
+        ByteArrayWrapper wrapper = new ByteArrayWrapper(address);
+        LogStructuredAccountStore created = null;
+        if (!this.accounts.containsKey(wrapper)) {
+            long record = appendRecord(RECORD_CREATE_ACCOUNT, (byte) 0, address, EMPTY, EMPTY);
+            this.accounts.put(wrapper, new AccountIndex(record));
+            created = new LogStructuredAccountStore(this, address);
+        }
+        return created;
+    }
+
+    @Override
+    public synchronized void deleteAccount(byte[] address) {
+        AccountIndex removed = this.accounts.remove(new ByteArrayWrapper(address));
+        if (null != removed) {
+            long record = appendRecord(RECORD_DELETE_ACCOUNT, (byte) 0, address, EMPTY, EMPTY);
+            this.deadBytes += removed.liveBytes() + lengthOf(record);
+        }
+    }
+
+    @Override
+    public synchronized void commit() {
+        long record = appendRecord(RECORD_COMMIT, (byte) 0, EMPTY, EMPTY, EMPTY);
+        this.deadBytes += lengthOf(record);
+        this.log.force();
+        if ((this.logEnd > COMPACTION_MINIMUM_BYTES) && ((2L * this.deadBytes) >= this.logEnd)) {
+            compact();
+        }
+    }
+
+    /**
+     * Closes the log, discarding any uncommitted changes.  The store can't be used after this.
+     */
+    public synchronized void close() {
+        try {
+            // Drop our mapping and then truncate the unused end of the file (the mapping itself is released when the buffer is collected).
+            this.log = null;
+            this.channel.truncate(this.logEnd);
+            this.channel.close();
+            this.channel = null;
+        } catch (IOException e) {
+            // This implementation doesn't handle exceptions.
+            throw RuntimeAssertionError.unexpected(e);
+        }
+    }
+
+    /**
+     * @return The number of bytes of records in the log (live and dead).
+     */
+    public synchronized int getLogSize() {
+        return this.logEnd;
+    }
+
+
+    synchronized byte[] get(byte[] address, byte field, byte[] key) {
+        AccountIndex account = indexFor(address);
+        long record = (FIELD_DATA == field)
+                ? account.data.getOrDefault(new ByteArrayWrapper(key), 0L)
+                : account.fields[field];
+        return (0L != record)
+                ? readValue(this.log, record)
+                : null;
+    }
+
+    synchronized void put(byte[] address, byte field, byte[] key, byte[] value) {
+        AccountIndex account = indexFor(address);
+        long record = appendRecord(RECORD_PUT, field, address, key, value);
+        index(account, field, key, record);
+    }
+
+    synchronized void remove(byte[] address, byte[] key) {
+        AccountIndex account = indexFor(address);
+        Long removed = account.data.remove(new ByteArrayWrapper(key));
+        if (null != removed) {
+            long record = appendRecord(RECORD_REMOVE, FIELD_DATA, address, key, EMPTY);
+            this.deadBytes += lengthOf(removed) + lengthOf(record);
+        }
+    }
+
+    synchronized Map<ByteArrayWrapper, byte[]> getStorageEntries(byte[] address) {
+        Map<ByteArrayWrapper, byte[]> entries = new HashMap<>();
+        for (Map.Entry<ByteArrayWrapper, Long> entry : indexFor(address).data.entrySet()) {
+            entries.put(entry.getKey(), readValue(this.log, entry.getValue()));
+        }
+        return entries;
+    }
+
+
+    private AccountIndex indexFor(byte[] address) {
+        AccountIndex account = this.accounts.get(new ByteArrayWrapper(address));
+        // Account stores can't be used after their account is deleted.
+        RuntimeAssertionError.assertTrue(null != account);
+        return account;
+    }
+
+    private void index(AccountIndex account, byte field, byte[] key, long record) {
+        long previous;
+        if (FIELD_DATA == field) {
+            Long replaced = account.data.put(new ByteArrayWrapper(key), record);
+            previous = (null != replaced) ? replaced : 0L;
+        } else {
+            previous = account.fields[field];
+            account.fields[field] = record;
+        }
+        // The record this replaced is now dead.
+        this.deadBytes += lengthOf(previous);
+    }
+
+    private void openLog(Path path) {
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = this.channel.size();
+            RuntimeAssertionError.assertTrue(size < Integer.MAX_VALUE);
+            this.log = this.channel.map(FileChannel.MapMode.READ_WRITE, 0L, Math.max(INITIAL_CAPACITY, size));
+        } catch (IOException e) {
+            // This implementation doesn't handle exceptions.
+            throw RuntimeAssertionError.unexpected(e);
+        }
+    }
+
+    /**
+     * Finds the last commit record and then rebuilds the index from the records before it.
+     */
+    private void recover() {
+        int committedEnd = 0;
+        int position = 0;
+        while (isValidRecord(position)) {
+            boolean isCommit = (RECORD_COMMIT == this.log.get(position + OFFSET_TYPE));
+            position += Integer.BYTES + this.log.getInt(position);
+            if (isCommit) {
+                committedEnd = position;
+            }
+        }
+
+        position = 0;
+        while (position < committedEnd) {
+            position = applyRecord(position);
+        }
+        this.logEnd = committedEnd;
+
+        // Zero what was discarded so none of it can be mistaken for a record once we write over the start of it.
+        for (int i = committedEnd; i < this.log.capacity(); ++i) {
+            if (0 != this.log.get(i)) {
+                this.log.put(i, (byte) 0);
+            }
+        }
+        this.log.force();
+    }
+
+    private boolean isValidRecord(int position) {
+        boolean isValid = false;
+        if ((position + Integer.BYTES + MINIMUM_RECORD_LENGTH) <= this.log.capacity()) {
+            int length = this.log.getInt(position);
+            int end = position + Integer.BYTES + length;
+            // (the comparison of end and position is in case a corrupt length overflows)
+            isValid = (length >= MINIMUM_RECORD_LENGTH)
+                    && (end > position)
+                    && (end <= this.log.capacity())
+                    && (this.log.getInt(position + Integer.BYTES) == crcOf(position + OFFSET_TYPE, end));
+        }
+        return isValid;
+    }
+
+    /**
+     * Applies the record at position to the index.
+     *
+     * @return The position of the next record.
+     */
+    private int applyRecord(int position) {
+        long record = recordAt(position);
+        byte type = this.log.get(position + OFFSET_TYPE);
+        byte field = this.log.get(position + OFFSET_TYPE + 1);
+        int cursor = position + OFFSET_TYPE + 2;
+        byte[] address = new byte[this.log.get(cursor)];
+        readBytes(this.log, cursor + 1, address);
+        cursor += 1 + address.length;
+        byte[] key = new byte[this.log.get(cursor)];
+        readBytes(this.log, cursor + 1, key);
+
+        ByteArrayWrapper wrapper = new ByteArrayWrapper(address);
+        switch (type) {
+            case RECORD_CREATE_ACCOUNT:
+                this.accounts.put(wrapper, new AccountIndex(record));
+                break;
+            case RECORD_DELETE_ACCOUNT:
+                this.deadBytes += this.accounts.remove(wrapper).liveBytes() + lengthOf(record);
+                break;
+            case RECORD_PUT:
+                index(this.accounts.get(wrapper), field, key, record);
+                break;
+            case RECORD_REMOVE:
+                this.deadBytes += lengthOf(this.accounts.get(wrapper).data.remove(new ByteArrayWrapper(key))) + lengthOf(record);
+                break;
+            case RECORD_COMMIT:
+                this.deadBytes += lengthOf(record);
+                break;
+            default:
+                throw RuntimeAssertionError.unreachable("Unknown record type: " + type);
+        }
+        return position + lengthOf(record);
+    }
+
+    /**
+     * Appends a record to the end of the log, growing the log if required.
+     *
+     * @return The record written.
+     */
+    private long appendRecord(byte type, byte field, byte[] address, byte[] key, byte[] value) {
+        // We only have a byte for the lengths of the address and key.
+        RuntimeAssertionError.assertTrue(address.length <= Byte.MAX_VALUE);
+        // This is an AssertionError since it is a limitation of this testing implementation, not a usage error (as in DirectoryBackedAccountStore).
+        RuntimeAssertionError.assertTrue(key.length <= 32);
+        int length = MINIMUM_RECORD_LENGTH + address.length + key.length + value.length;
+        int start = this.logEnd;
+        ensureCapacity(start + Integer.BYTES + length);
+
+        int cursor = start + OFFSET_TYPE;
+        this.log.put(cursor, type);
+        this.log.put(cursor + 1, field);
+        cursor += 2;
+        this.log.put(cursor, (byte) address.length);
+        writeBytes(cursor + 1, address);
+        cursor += 1 + address.length;
+        this.log.put(cursor, (byte) key.length);
+        writeBytes(cursor + 1, key);
+        cursor += 1 + key.length;
+        this.log.putInt(cursor, value.length);
+        writeBytes(cursor + Integer.BYTES, value);
+        int end = cursor + Integer.BYTES + value.length;
+
+        this.log.putInt(start + Integer.BYTES, crcOf(start + OFFSET_TYPE, end));
+        this.log.putInt(start, length);
+        this.logEnd = end;
+        return recordAt(start);
+    }
+
+    private void ensureCapacity(int required) {
+        long capacity = this.log.capacity();
+        if (required > capacity) {
+            while (capacity < required) {
+                capacity *= 2L;
+            }
+            RuntimeAssertionError.assertTrue(capacity < Integer.MAX_VALUE);
+            try {
+                this.log = this.channel.map(FileChannel.MapMode.READ_WRITE, 0L, capacity);
+            } catch (IOException e) {
+                // This implementation doesn't handle exceptions.
+                throw RuntimeAssertionError.unexpected(e);
+            }
+        }
+    }
+
+    /**
+     * Copies the live records into a new log, as a single commit, which then atomically replaces the current log.
+     */
+    private void compact() {
+        Path logPath = new File(this.directory, FILE_NAME_LOG).toPath();
+        Path compactionPath = new File(this.directory, FILE_NAME_COMPACTION).toPath();
+        MappedByteBuffer oldLog = this.log;
+        FileChannel oldChannel = this.channel;
+
+        // The records are copied verbatim (so their CRCs are still valid) and the index updated to where they now are.
+        openLog(compactionPath);
+        this.logEnd = 0;
+        for (AccountIndex account : this.accounts.values()) {
+            account.created = copyRecord(oldLog, account.created);
+            for (int i = 0; i < account.fields.length; ++i) {
+                if (0L != account.fields[i]) {
+                    account.fields[i] = copyRecord(oldLog, account.fields[i]);
+                }
+            }
+            for (Map.Entry<ByteArrayWrapper, Long> entry : account.data.entrySet()) {
+                entry.setValue(copyRecord(oldLog, entry.getValue()));
+            }
+        }
+        long commit = appendRecord(RECORD_COMMIT, (byte) 0, EMPTY, EMPTY, EMPTY);
+        this.deadBytes = lengthOf(commit);
+        this.log.force();
+
+        try {
+            oldChannel.close();
+            Files.move(compactionPath, logPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // This implementation doesn't handle exceptions.
+            throw RuntimeAssertionError.unexpected(e);
+        }
+    }
+
+    private long copyRecord(MappedByteBuffer oldLog, long record) {
+        int length = lengthOf(record);
+        int start = this.logEnd;
+        ensureCapacity(start + length);
+        ByteBuffer source = oldLog.duplicate();
+        source.position(offsetOf(record)).limit(offsetOf(record) + length);
+        ByteBuffer destination = this.log.duplicate();
+        destination.position(start);
+        destination.put(source);
+        this.logEnd = start + length;
+        return recordAt(start);
+    }
+
+    private void writeBytes(int offset, byte[] bytes) {
+        ByteBuffer destination = this.log.duplicate();
+        destination.position(offset);
+        destination.put(bytes);
+    }
+
+    private static void readBytes(ByteBuffer log, int offset, byte[] bytes) {
+        ByteBuffer source = log.duplicate();
+        source.position(offset);
+        source.get(bytes);
+    }
+
+    private int crcOf(int start, int end) {
+        CRC32 crc = new CRC32();
+        ByteBuffer range = this.log.duplicate();
+        range.position(start).limit(end);
+        crc.update(range);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * A record is referenced by its offset in the log (upper 32 bits) and its total length, in bytes (lower 32 bits).  0 means "none" since
+     * the first record in a log always creates an account, which is never referenced as a value.
+     */
+    private long recordAt(int offset) {
+        return ((long) offset << 32) | (Integer.BYTES + this.log.getInt(offset));
+    }
+
+    private static int offsetOf(long record) {
+        return (int) (record >>> 32);
+    }
+
+    private static int lengthOf(long record) {
+        return (int) record;
+    }
+
+    private static byte[] readValue(MappedByteBuffer log, long record) {
+        int cursor = offsetOf(record) + OFFSET_TYPE + 2;
+        cursor += 1 + log.get(cursor);
+        cursor += 1 + log.get(cursor);
+        byte[] value = new byte[log.getInt(cursor)];
+        readBytes(log, cursor + Integer.BYTES, value);
+        return value;
+    }
+
+
+    /**
+     * The in-memory index of one account:  the records holding the current value of each of its fields and storage keys.
+     */
+    private static final class AccountIndex {
+        public long created;
+        // Indexed by field (FIELD_DATA values are in the map, instead).
+        public final long[] fields = new long[FIELD_DATA];
+        public final Map<ByteArrayWrapper, Long> data = new HashMap<>();
+
+        public AccountIndex(long created) {
+            this.created = created;
+        }
+
+        public long liveBytes() {
+            long bytes = lengthOf(this.created);
+            for (long record : this.fields) {
+                bytes += lengthOf(record);
+            }
+            for (long record : this.data.values()) {
+                bytes += lengthOf(record);
+            }
+            return bytes;
+        }
+    }
+}
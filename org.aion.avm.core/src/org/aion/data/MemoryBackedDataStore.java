@@ -30,4 +30,9 @@ public class MemoryBackedDataStore implements IDataStore {
     public void deleteAccount(byte[] address) {
         this.accounts.remove(new ByteArrayWrapper(address));
     }
+
+    @Override
+    public void commit() {
+        // Nothing is durable so there is nothing to commit.
+    }
 }
@@ -0,0 +1,289 @@
+package org.aion.kernel;
+
+import java.math.BigInteger;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aion.avm.core.IExternalState;
+import org.aion.avm.core.util.CacheStats;
+import org.aion.types.AionAddress;
+
+
+/**
+ * A read-through cache over the kernel given to one AvmImpl.run() call, so it lives for one block, shared by all of that block's
+ * transactions (and the warm-up and planning work done for them).
+ * It caches the reads every call makes, of its sender and target:  balance, nonce, code, transformed code and object graph.  Storage and
+ * the checks the kernel may apply its own logic to (accountNonceEquals(), for example) are passed straight through.
+ *
+ * Every write is written through to the kernel and then updates the cache.  The only writes come from the commits of the transactions,
+ * which the resource monitor serializes in transaction order (see IResourceMonitor.commitKernelForTask()), so the cache sees the writes
+ * in that order.
+ * Reads aren't serialized with those commits, though, so a read which misses only adds what it read from the kernel if a commit hasn't
+ * added something since (which would be newer), and writes never remove what the cache holds, only replace it.
+ */
+public class BlockCachingState implements IExternalState {
+    // Stands in for null (which a ConcurrentHashMap can't hold) so that we also cache that an account has no code, for example.
+    private static final byte[] ABSENT = new byte[0];
+
+    private final IExternalState kernel;
+    private final CacheStats stats;
+    private final ConcurrentHashMap<AionAddress, BigInteger> balances;
+    private final ConcurrentHashMap<AionAddress, BigInteger> nonces;
+    private final ConcurrentHashMap<AionAddress, byte[]> code;
+    private final ConcurrentHashMap<AionAddress, byte[]> transformedCode;
+    private final ConcurrentHashMap<AionAddress, byte[]> graphs;
+
+    /**
+     * Creates an empty cache over the given kernel.
+     *
+     * @param kernel The kernel to read through to and write back to.
+     */
+    public BlockCachingState(IExternalState kernel) {
+        this.kernel = kernel;
+        this.stats = new CacheStats();
+        this.balances = new ConcurrentHashMap<>();
+        this.nonces = new ConcurrentHashMap<>();
+        this.code = new ConcurrentHashMap<>();
+        this.transformedCode = new ConcurrentHashMap<>();
+        this.graphs = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return The hits and misses of this cache (updated concurrently, while the block runs).
+     */
+    public CacheStats getStats() {
+        return this.stats;
+    }
+
+    @Override
+    public IExternalState newChildExternalState() {
+        return new TransactionalState(this);
+    }
+
+    @Override
+    public void commit() {
+        this.kernel.commit();
+    }
+
+    @Override
+    public void commitTo(IExternalState target) {
+        this.kernel.commitTo(target);
+    }
+
+    @Override
+    public void createAccount(AionAddress address) {
+        this.kernel.createAccount(address);
+        refresh(address);
+    }
+
+    @Override
+    public boolean hasAccountState(AionAddress address) {
+        return this.kernel.hasAccountState(address);
+    }
+
+    @Override
+    public byte[] getCode(AionAddress address) {
+        byte[] value = lookup(this.code, address);
+        if (null == value) {
+            value = fill(this.code, address, orAbsent(this.kernel.getCode(address)));
+        }
+        return orNull(value);
+    }
+
+    @Override
+    public void putCode(AionAddress address, byte[] code) {
+        this.kernel.putCode(address, code);
+        this.code.put(address, orAbsent(code));
+    }
+
+    @Override
+    public byte[] getTransformedCode(AionAddress address) {
+        byte[] value = lookup(this.transformedCode, address);
+        if (null == value) {
+            value = fill(this.transformedCode, address, orAbsent(this.kernel.getTransformedCode(address)));
+        }
+        return orNull(value);
+    }
+
+    @Override
+    public void setTransformedCode(AionAddress address, byte[] code) {
+        this.kernel.setTransformedCode(address, code);
+        this.transformedCode.put(address, orAbsent(code));
+    }
+
+    @Override
+    public void putObjectGraph(AionAddress address, byte[] objectGraph) {
+        this.kernel.putObjectGraph(address, objectGraph);
+        this.graphs.put(address, orAbsent(objectGraph));
+    }
+
+    @Override
+    public byte[] getObjectGraph(AionAddress address) {
+        byte[] value = lookup(this.graphs, address);
+        if (null == value) {
+            value = fill(this.graphs, address, orAbsent(this.kernel.getObjectGraph(address)));
+        }
+        return orNull(value);
+    }
+
+    @Override
+    public void putStorage(AionAddress address, byte[] key, byte[] value) {
+        this.kernel.putStorage(address, key, value);
+    }
+
+    @Override
+    public void removeStorage(AionAddress address, byte[] key) {
+        this.kernel.removeStorage(address, key);
+    }
+
+    @Override
+    public byte[] getStorage(AionAddress address, byte[] key) {
+        return this.kernel.getStorage(address, key);
+    }
+
+    @Override
+    public byte[][] getStorageBatch(AionAddress address, byte[][] keys) {
+        return this.kernel.getStorageBatch(address, keys);
+    }
+
+    @Override
+    public void deleteAccount(AionAddress address) {
+        this.kernel.deleteAccount(address);
+        // A deleted account reads as empty (and reading it from the kernel could lazily create it again).
+        this.balances.put(address, BigInteger.ZERO);
+        this.nonces.put(address, BigInteger.ZERO);
+        this.code.put(address, ABSENT);
+        this.transformedCode.put(address, ABSENT);
+        this.graphs.put(address, ABSENT);
+    }
+
+    @Override
+    public BigInteger getBalance(AionAddress address) {
+        BigInteger value = lookup(this.balances, address);
+        if (null == value) {
+            value = fill(this.balances, address, this.kernel.getBalance(address));
+        }
+        return value;
+    }
+
+    @Override
+    public void adjustBalance(AionAddress address, BigInteger amount) {
+        this.kernel.adjustBalance(address, amount);
+        // We only hold balances the kernel gave us, and the commits are serialized, so we can apply the adjustment to what we hold.
+        BigInteger cached = this.balances.get(address);
+        this.balances.put(address, (null != cached) ? cached.add(amount) : this.kernel.getBalance(address));
+    }
+
+    @Override
+    public BigInteger getNonce(AionAddress address) {
+        BigInteger value = lookup(this.nonces, address);
+        if (null == value) {
+            value = fill(this.nonces, address, this.kernel.getNonce(address));
+        }
+        return value;
+    }
+
+    @Override
+    public void incrementNonce(AionAddress address) {
+        this.kernel.incrementNonce(address);
+        BigInteger cached = this.nonces.get(address);
+        this.nonces.put(address, (null != cached) ? cached.add(BigInteger.ONE) : this.kernel.getNonce(address));
+    }
+
+    @Override
+    public void refundAccount(AionAddress address, BigInteger refund) {
+        this.kernel.refundAccount(address, refund);
+        // The kernel may have special logic for refunds so we read back what it did.
+        this.balances.put(address, this.kernel.getBalance(address));
+    }
+
+    @Override
+    public byte[] getBlockHashByNumber(long blockNumber) {
+        return this.kernel.getBlockHashByNumber(blockNumber);
+    }
+
+    @Override
+    public boolean accountNonceEquals(AionAddress address, BigInteger nonce) {
+        return this.kernel.accountNonceEquals(address, nonce);
+    }
+
+    @Override
+    public boolean accountBalanceIsAtLeast(AionAddress address, BigInteger amount) {
+        return this.kernel.accountBalanceIsAtLeast(address, amount);
+    }
+
+    @Override
+    public boolean isValidEnergyLimitForCreate(long limit) {
+        return this.kernel.isValidEnergyLimitForCreate(limit);
+    }
+
+    @Override
+    public boolean isValidEnergyLimitForNonCreate(long limit) {
+        return this.kernel.isValidEnergyLimitForNonCreate(limit);
+    }
+
+    @Override
+    public boolean destinationAddressIsSafeForThisVM(AionAddress address) {
+        return this.kernel.destinationAddressIsSafeForThisVM(address);
+    }
+
+    @Override
+    public long getBlockNumber() {
+        return this.kernel.getBlockNumber();
+    }
+
+    @Override
+    public long getBlockTimestamp() {
+        return this.kernel.getBlockTimestamp();
+    }
+
+    @Override
+    public long getBlockEnergyLimit() {
+        return this.kernel.getBlockEnergyLimit();
+    }
+
+    @Override
+    public BigInteger getBlockDifficulty() {
+        return this.kernel.getBlockDifficulty();
+    }
+
+    @Override
+    public AionAddress getMinerAddress() {
+        return this.kernel.getMinerAddress();
+    }
+
+
+    /**
+     * Re-reads everything we cache for the account, after creating it (which may have replaced all of it).
+     */
+    private void refresh(AionAddress address) {
+        this.balances.put(address, this.kernel.getBalance(address));
+        this.nonces.put(address, this.kernel.getNonce(address));
+        this.code.put(address, orAbsent(this.kernel.getCode(address)));
+        this.transformedCode.put(address, orAbsent(this.kernel.getTransformedCode(address)));
+        this.graphs.put(address, orAbsent(this.kernel.getObjectGraph(address)));
+    }
+
+    private <T> T lookup(ConcurrentHashMap<AionAddress, T> cache, AionAddress address) {
+        T value = cache.get(address);
+        if (null != value) {
+            this.stats.recordHit();
+        } else {
+            this.stats.recordMiss();
+        }
+        return value;
+    }
+
+    private static <T> T fill(ConcurrentHashMap<AionAddress, T> cache, AionAddress address, T value) {
+        // A commit may have updated the cache since we read the kernel and, if it did, what it wrote is newer than what we read.
+        T existing = cache.putIfAbsent(address, value);
+        return (null != existing) ? existing : value;
+    }
+
+    private static byte[] orAbsent(byte[] value) {
+        return (null != value) ? value : ABSENT;
+    }
+
+    private static byte[] orNull(byte[] value) {
+        return (ABSENT != value) ? value : null;
+    }
+}
@@ -109,6 +109,18 @@ public class CachingState implements IExternalState {
                 : null;
     }
 
+    @Override
+    public byte[][] getStorageBatch(AionAddress address, byte[][] keys) {
+        IAccountStore account = this.dataStore.openAccount(address.toByteArray());
+        byte[][] values = new byte[keys.length][];
+        if (null != account) {
+            for (int i = 0; i < keys.length; ++i) {
+                values[i] = account.getData(keys[i]);
+            }
+        }
+        return values;
+    }
+
     @Override
     public void deleteAccount(AionAddress address) {
         this.dataStore.deleteAccount(address.toByteArray());
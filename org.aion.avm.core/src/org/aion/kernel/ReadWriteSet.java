@@ -0,0 +1,109 @@
+package org.aion.kernel;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aion.types.AionAddress;
+
+
+/**
+ * Records the pieces of state a transaction read from, and wrote to, the state below its top-level TransactionalState.
+ * This is used by the speculative scheduler to decide if a transaction observed a stale value and must be re-executed.
+ *
+ * The sets are populated by the executor thread running the transaction but may be inspected by another thread (the one
+ * committing a lower-index transaction, in order to abort it early) so they are backed by concurrent sets.
+ */
+public class ReadWriteSet {
+    private final Set<StateKey> reads;
+    private final Set<StateKey> writes;
+
+    public ReadWriteSet() {
+        this.reads = ConcurrentHashMap.newKeySet();
+        this.writes = ConcurrentHashMap.newKeySet();
+    }
+
+    public void recordRead(AionAddress address, StateKind kind) {
+        this.reads.add(new StateKey(address.toByteArray(), kind, null));
+    }
+
+    public void recordStorageRead(AionAddress address, byte[] key) {
+        this.reads.add(new StateKey(address.toByteArray(), StateKind.STORAGE, key));
+    }
+
+    public void recordWrite(AionAddress address, StateKind kind) {
+        this.writes.add(new StateKey(address.toByteArray(), kind, null));
+    }
+
+    public void recordStorageWrite(AionAddress address, byte[] key) {
+        this.writes.add(new StateKey(address.toByteArray(), StateKind.STORAGE, key));
+    }
+
+    public Set<StateKey> getReads() {
+        return this.reads;
+    }
+
+    public Set<StateKey> getWrites() {
+        return this.writes;
+    }
+
+
+    /**
+     * The granularity at which state is tracked.
+     * Note that ACCOUNT describes the existence of the account:  a write of it (create/delete) conflicts with any read of the
+     * same address and a read of it conflicts with any write to the same address.
+     */
+    public static enum StateKind {
+        ACCOUNT,
+        BALANCE,
+        NONCE,
+        CODE,
+        TRANSFORMED_CODE,
+        GRAPH,
+        STORAGE,
+    }
+
+
+    /**
+     * A single piece of state:  the address, what kind of state, and the storage key (null unless this is STORAGE).
+     */
+    public static final class StateKey {
+        public final byte[] address;
+        public final StateKind kind;
+        public final byte[] storageKey;
+        private final int hashCode;
+
+        private StateKey(byte[] address, StateKind kind, byte[] storageKey) {
+            this.address = address;
+            this.kind = kind;
+            this.storageKey = storageKey;
+            this.hashCode = (31 * Arrays.hashCode(address) + kind.ordinal()) * 31 + Arrays.hashCode(storageKey);
+        }
+
+        /**
+         * @return The key for the existence of the account this key belongs to.
+         */
+        public StateKey accountKey() {
+            return (StateKind.ACCOUNT == this.kind)
+                    ? this
+                    : new StateKey(this.address, StateKind.ACCOUNT, null);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            boolean isEqual = this == obj;
+            if (!isEqual && (obj instanceof StateKey)) {
+                StateKey other = (StateKey) obj;
+                isEqual = (this.kind == other.kind)
+                        && Arrays.equals(this.address, other.address)
+                        && Arrays.equals(this.storageKey, other.storageKey);
+            }
+            return isEqual;
+        }
+    }
+}
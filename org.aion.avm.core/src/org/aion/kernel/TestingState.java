@@ -88,6 +88,26 @@ public class TestingState implements IExternalState {
         this.blockCoinbase = block.getCoinbase();
     }
 
+    /**
+     * Creates an instance of the interface which is backed by the given data store.  The store is committed each time a block is generated.
+     * 
+     * @param dataStore The store holding the accounts (the premined account is created if it doesn't already exist).
+     * @param block The top block of the current state of this kernel.
+     */
+    public TestingState(IDataStore dataStore, TestingBlock block) {
+        this.dataStore = dataStore;
+        IAccountStore premined = this.dataStore.openAccount(PREMINED_ADDRESS.toByteArray());
+        if (null == premined) {
+            premined = this.dataStore.createAccount(PREMINED_ADDRESS.toByteArray());
+            premined.setBalance(PREMINED_AMOUNT);
+        }
+        this.blockDifficulty = block.getDifficulty();
+        this.blockNumber = block.getNumber();
+        this.blockTimestamp = block.getTimestamp();
+        this.blockNrgLimit = block.getEnergyLimit();
+        this.blockCoinbase = block.getCoinbase();
+    }
+
     @Override
     public IExternalState newChildExternalState() {
         return new TransactionalState(this);
@@ -169,6 +189,18 @@ public class TestingState implements IExternalState {
                 : null;
     }
 
+    @Override
+    public byte[][] getStorageBatch(AionAddress address, byte[][] keys) {
+        IAccountStore account = this.dataStore.openAccount(address.toByteArray());
+        byte[][] values = new byte[keys.length][];
+        if (null != account) {
+            for (int i = 0; i < keys.length; ++i) {
+                values[i] = account.getData(keys[i]);
+            }
+        }
+        return values;
+    }
+
     @Override
     public void deleteAccount(AionAddress address) {
         this.dataStore.deleteAccount(address.toByteArray());
@@ -270,6 +302,8 @@ public class TestingState implements IExternalState {
     }
 
     public void generateBlock() {
+        // Everything written in the previous block is committed together.
+        this.dataStore.commit();
         this.blockNumber ++;
         this.blockTimestamp += blockTimeMillis;
     }
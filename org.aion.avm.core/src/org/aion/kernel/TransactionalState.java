@@ -1,32 +1,38 @@
 package org.aion.kernel;
 
 import java.math.BigInteger;
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
-import java.util.function.Consumer;
 
 import org.aion.avm.core.IExternalState;
 import org.aion.types.AionAddress;
 import org.aion.avm.core.types.Pair;
 import org.aion.avm.core.util.ByteArrayWrapper;
+import org.aion.kernel.ReadWriteSet.StateKind;
 
 
 /**
  * A transactional implementation of the IExternalState which only writes back to its "parent" on commit.
  * 
- * This uses a relatively extensible pattern for its implementation, building a transaction log rather than its own actual direct implementation.
- * This means that changes to the interface should mostly just translate into a new kind of transaction log entry, in this implementation.
+ * The writes are applied to a cache (which is what reads see) and recorded in a write set, per account, which only keeps what the commit
+ * needs:  the last value of each field and storage key, the sum of the balance adjustments and the number of nonce increments.  This means
+ * that writing the same key many times only costs one write for each level of state the transaction is committed through.
+ * A deleted account drops what was written to it, until then, so the commit deletes it before writing anything written after the delete.
  * Special attention needs to be paid to read-and-write operations (such as adjustBalance()) and anything involving deletes.
+ * 
+ * If given a ReadWriteSet, every read which is satisfied by the parent and every write enqueued in the receiver is recorded
+ * in it.  Note that balance and nonce updates are written back as deltas so they don't, on their own, count as reads.
  */
 public class TransactionalState implements IExternalState {
     private final IExternalState parent;
     private final CachingState writeCache;
-    private final List<Consumer<IExternalState>> writeLog;
+    private final Map<ByteArrayWrapper, AccountWrites> writeSet;
     private final Set<ByteArrayWrapper> deletedAccountProjection;
     private final Set<ByteArrayWrapper> cachedAccountBalances;
     private final Set<Pair<AionAddress, ByteArrayWrapper>> deletedStorageKeys;
+    private final ReadWriteSet readWriteSet;
 
 
     private BigInteger blockDifficulty;
@@ -36,9 +42,21 @@ public class TransactionalState implements IExternalState {
     private AionAddress blockCoinbase;
 
     public TransactionalState(IExternalState parent) {
+        this(parent, null);
+    }
+
+    /**
+     * Creates a transactional state which records its accesses to the parent in the given readWriteSet.
+     * 
+     * @param parent The state to read through to and, on commit, write back to.
+     * @param readWriteSet The set where accesses are recorded (null if they don't need to be recorded).
+     */
+    public TransactionalState(IExternalState parent, ReadWriteSet readWriteSet) {
         this.parent = parent;
+        this.readWriteSet = readWriteSet;
         this.writeCache = new CachingState();
-        this.writeLog = new ArrayList<>();
+        // (linked so that accounts are committed in the order they were first written)
+        this.writeSet = new LinkedHashMap<>();
         this.deletedAccountProjection = new HashSet<>();
         this.cachedAccountBalances = new HashSet<>();
         this.blockDifficulty = parent.getBlockDifficulty();
@@ -60,8 +78,8 @@ public class TransactionalState implements IExternalState {
      */
     @Override
     public void commit() {
-        for (Consumer<IExternalState> mutation : this.writeLog) {
-            mutation.accept(this.parent);
+        for (AccountWrites writes : this.writeSet.values()) {
+            writes.commitTo(this.parent);
         }
     }
 
@@ -71,18 +89,16 @@ public class TransactionalState implements IExternalState {
      */
     @Override
     public void commitTo(IExternalState target) {
-        for (Consumer<IExternalState> mutation : this.writeLog) {
-            mutation.accept(target);
+        for (AccountWrites writes : this.writeSet.values()) {
+            writes.commitTo(target);
         }
     }
 
     @Override
     public void createAccount(AionAddress address) {
-        Consumer<IExternalState> write = (externalState) -> {
-            externalState.createAccount(address);
-        };
-        write.accept(writeCache);
-        writeLog.add(write);
+        this.writeCache.createAccount(address);
+        writesFor(address).isCreated = true;
+        recordWrite(address, StateKind.ACCOUNT);
         this.deletedAccountProjection.remove(new ByteArrayWrapper(address.toByteArray()));
         // Say that we have this cached so we don't go back to any old version in the parent (even though it is unlikely we will create over delete).
         this.cachedAccountBalances.add(new ByteArrayWrapper(address.toByteArray()));
@@ -94,6 +110,7 @@ public class TransactionalState implements IExternalState {
         if (!this.deletedAccountProjection.contains(new ByteArrayWrapper(address.toByteArray()))) {
             result = this.writeCache.hasAccountState(address);
             if (!result) {
+                recordRead(address, StateKind.ACCOUNT);
                 result = this.parent.hasAccountState(address);
             }
         }
@@ -106,6 +123,7 @@ public class TransactionalState implements IExternalState {
         if (!this.deletedAccountProjection.contains(new ByteArrayWrapper(address.toByteArray()))) {
             result = this.writeCache.getCode(address);
             if (null == result) {
+                recordRead(address, StateKind.CODE);
                 result = this.parent.getCode(address);
             }
         }
@@ -114,11 +132,9 @@ public class TransactionalState implements IExternalState {
 
     @Override
     public void putCode(AionAddress address, byte[] code) {
-        Consumer<IExternalState> write = (externalState) -> {
-            externalState.putCode(address, code);
-        };
-        write.accept(writeCache);
-        writeLog.add(write);
+        this.writeCache.putCode(address, code);
+        writesFor(address).code = code;
+        recordWrite(address, StateKind.CODE);
     }
 
     @Override
@@ -127,6 +143,7 @@ public class TransactionalState implements IExternalState {
         if (!this.deletedAccountProjection.contains(new ByteArrayWrapper(address.toByteArray()))) {
             result = this.writeCache.getTransformedCode(address);
             if (null == result) {
+                recordRead(address, StateKind.TRANSFORMED_CODE);
                 result = this.parent.getTransformedCode(address);
             }
         }
@@ -135,26 +152,23 @@ public class TransactionalState implements IExternalState {
 
     @Override
     public void setTransformedCode(AionAddress address, byte[] bytes) {
-        Consumer<IExternalState> write = (externalState) -> {
-            externalState.setTransformedCode(address, bytes);
-        };
-        write.accept(writeCache);
-        writeLog.add(write);
+        this.writeCache.setTransformedCode(address, bytes);
+        writesFor(address).transformedCode = bytes;
+        recordWrite(address, StateKind.TRANSFORMED_CODE);
     }
 
     @Override
     public void putObjectGraph(AionAddress address, byte[] bytes) {
-        Consumer<IExternalState> write = (externalState) -> {
-            externalState.putObjectGraph(address, bytes);
-        };
-        write.accept(writeCache);
-        writeLog.add(write);
+        this.writeCache.putObjectGraph(address, bytes);
+        writesFor(address).graph = bytes;
+        recordWrite(address, StateKind.GRAPH);
     }
 
     @Override
     public byte[] getObjectGraph(AionAddress address) {
         byte[] result = this.writeCache.getObjectGraph(address);
         if (null == result) {
+            recordRead(address, StateKind.GRAPH);
             result = this.parent.getObjectGraph(address);
         }
         return result;
@@ -162,14 +176,15 @@ public class TransactionalState implements IExternalState {
 
     @Override
     public void putStorage(AionAddress address, byte[] key, byte[] value) {
-        Consumer<IExternalState> write = (externalState) -> {
-            externalState.putStorage(address, key, value);
-        };
-        if(deletedStorageKeys.contains(Pair.of(address, new ByteArrayWrapper(key)))){
-            deletedStorageKeys.remove(Pair.of(address, new ByteArrayWrapper(key)));
+        ByteArrayWrapper wrappedKey = new ByteArrayWrapper(key);
+        if (!this.deletedStorageKeys.isEmpty()) {
+            this.deletedStorageKeys.remove(Pair.of(address, wrappedKey));
+        }
+        this.writeCache.putStorage(address, key, value);
+        writesFor(address).storage.put(wrappedKey, value);
+        if (null != this.readWriteSet) {
+            this.readWriteSet.recordStorageWrite(address, key);
         }
-        write.accept(writeCache);
-        writeLog.add(write);
     }
 
     @Override
@@ -178,19 +193,50 @@ public class TransactionalState implements IExternalState {
         // The direct reason why this happens is that DApps which are already running are permitted to continue running but may need to lazyLoad.
         byte[] result = this.writeCache.getStorage(address, key);
         // check if the key has not been deleted
-        if (null == result && !deletedStorageKeys.contains(Pair.of(address, new ByteArrayWrapper(key)))) {
+        // (most transactions never remove storage so we avoid building the pair to look for, in that case)
+        if (null == result && (this.deletedStorageKeys.isEmpty() || !this.deletedStorageKeys.contains(Pair.of(address, new ByteArrayWrapper(key))))) {
+            if (null != this.readWriteSet) {
+                this.readWriteSet.recordStorageRead(address, key);
+            }
             result = this.parent.getStorage(address, key);
         }
         return result;
     }
 
+    @Override
+    public byte[][] getStorageBatch(AionAddress address, byte[][] keys) {
+        // Answer what we can from our own writes and then read the rest from our parent, all at once.
+        byte[][] values = new byte[keys.length][];
+        int[] missingIndices = new int[keys.length];
+        int missing = 0;
+        for (int i = 0; i < keys.length; ++i) {
+            values[i] = this.writeCache.getStorage(address, keys[i]);
+            if (null == values[i] && (this.deletedStorageKeys.isEmpty() || !this.deletedStorageKeys.contains(Pair.of(address, new ByteArrayWrapper(keys[i]))))) {
+                missingIndices[missing] = i;
+                missing += 1;
+            }
+        }
+        if (missing > 0) {
+            byte[][] missingKeys = new byte[missing][];
+            for (int i = 0; i < missing; ++i) {
+                missingKeys[i] = keys[missingIndices[i]];
+                if (null != this.readWriteSet) {
+                    this.readWriteSet.recordStorageRead(address, missingKeys[i]);
+                }
+            }
+            byte[][] missingValues = this.parent.getStorageBatch(address, missingKeys);
+            for (int i = 0; i < missing; ++i) {
+                values[missingIndices[i]] = missingValues[i];
+            }
+        }
+        return values;
+    }
+
     @Override
     public void deleteAccount(AionAddress address) {
-        Consumer<IExternalState> write = (externalState) -> {
-            externalState.deleteAccount(address);
-        };
-        write.accept(writeCache);
-        writeLog.add(write);
+        this.writeCache.deleteAccount(address);
+        writesFor(address).delete();
+        recordWrite(address, StateKind.ACCOUNT);
         this.deletedAccountProjection.add(new ByteArrayWrapper(address.toByteArray()));
         this.cachedAccountBalances.remove(new ByteArrayWrapper(address.toByteArray()));
     }
@@ -198,6 +244,8 @@ public class TransactionalState implements IExternalState {
     @Override
     public BigInteger getBalance(AionAddress address) {
         BigInteger result = BigInteger.ZERO;
+        // The cached balance may have been seeded from the parent by adjustBalance() so this is always a read.
+        recordRead(address, StateKind.BALANCE);
         if (!this.deletedAccountProjection.contains(new ByteArrayWrapper(address.toByteArray()))) {
             result = this.writeCache.getBalance(address);
             if (result.equals(BigInteger.ZERO)) {
@@ -224,16 +272,19 @@ public class TransactionalState implements IExternalState {
         // If this was previously deleted, fake the lazy re-creation.
         this.deletedAccountProjection.remove(new ByteArrayWrapper(address.toByteArray()));
 
-        Consumer<IExternalState> write = (externalState) -> {
-            externalState.adjustBalance(address, delta);
-        };
-        write.accept(writeCache);
-        writeLog.add(write);
+        this.writeCache.adjustBalance(address, delta);
+        AccountWrites writes = writesFor(address);
+        writes.balanceDelta = (null != writes.balanceDelta)
+                ? writes.balanceDelta.add(delta)
+                : delta;
+        recordWrite(address, StateKind.BALANCE);
     }
 
     @Override
     public BigInteger getNonce(AionAddress address) {
         BigInteger result = BigInteger.ZERO;
+        // The cached nonce may have been seeded from the parent by incrementNonce() so this is always a read.
+        recordRead(address, StateKind.NONCE);
         // Note that nonce matters for deleted accounts since it is possible for a contract to self-destruct and continue running.
         // The number doesn't need to be preserved, though, as we only need to handle it consistently, here.
         if (!this.deletedAccountProjection.contains(new ByteArrayWrapper(address.toByteArray()))) {
@@ -260,17 +311,16 @@ public class TransactionalState implements IExternalState {
         }
         
         // Now proceed with normal operation.
-        Consumer<IExternalState> write = (externalState) -> {
-            externalState.incrementNonce(address);
-        };
-        write.accept(writeCache);
-        writeLog.add(write);
+        this.writeCache.incrementNonce(address);
+        writesFor(address).nonceIncrements += 1;
+        recordWrite(address, StateKind.NONCE);
     }
 
     @Override
     public boolean accountNonceEquals(AionAddress address, BigInteger nonce) {
         // Delegate the check to our parent. The actual KernelInterface given to us by the externalState
         // has an opportunity to do some special case logic here when it wishes.
+        recordRead(address, StateKind.NONCE);
         return this.parent.accountNonceEquals(address, nonce);
     }
 
@@ -278,6 +328,7 @@ public class TransactionalState implements IExternalState {
     public boolean accountBalanceIsAtLeast(AionAddress address, BigInteger amount) {
         // Delegate the check to our parent. The actual KernelInterface given to us by the externalState
         // has an opportunity to do some special case logic here when it wishes.
+        recordRead(address, StateKind.BALANCE);
         return this.parent.accountBalanceIsAtLeast(address, amount);
     }
 
@@ -308,19 +359,26 @@ public class TransactionalState implements IExternalState {
 
     @Override
     public void removeStorage(AionAddress address, byte[] key) {
-        Consumer<IExternalState> write = (externalState) -> {
-            externalState.removeStorage(address, key);
-        };
-        deletedStorageKeys.add(Pair.of(address, new ByteArrayWrapper(key)));
-        write.accept(writeCache);
-        writeLog.add(write);
+        ByteArrayWrapper wrappedKey = new ByteArrayWrapper(key);
+        this.deletedStorageKeys.add(Pair.of(address, wrappedKey));
+        this.writeCache.removeStorage(address, key);
+        // (null means the key was removed)
+        writesFor(address).storage.put(wrappedKey, null);
+        if (null != this.readWriteSet) {
+            this.readWriteSet.recordStorageWrite(address, key);
+        }
     }
 
     @Override
     public boolean destinationAddressIsSafeForThisVM(AionAddress address) {
         // We need to delegate to our parent externalState to apply whatever logic is defined there.
         // The only exception to this is cases where we already stored code in our cache so see if that is there.
-        return (null != this.writeCache.getTransformedCode(address)) || this.parent.destinationAddressIsSafeForThisVM(address);
+        boolean isSafe = (null != this.writeCache.getTransformedCode(address));
+        if (!isSafe) {
+            recordRead(address, StateKind.CODE);
+            isSafe = this.parent.destinationAddressIsSafeForThisVM(address);
+        }
+        return isSafe;
     }
 
     @Override
@@ -347,4 +405,87 @@ public class TransactionalState implements IExternalState {
     public AionAddress getMinerAddress() {
         return blockCoinbase;
     }
+
+    private AccountWrites writesFor(AionAddress address) {
+        return this.writeSet.computeIfAbsent(new ByteArrayWrapper(address.toByteArray()), (ignored) -> new AccountWrites(address));
+    }
+
+    private void recordRead(AionAddress address, StateKind kind) {
+        if (null != this.readWriteSet) {
+            this.readWriteSet.recordRead(address, kind);
+        }
+    }
+
+    private void recordWrite(AionAddress address, StateKind kind) {
+        if (null != this.readWriteSet) {
+            this.readWriteSet.recordWrite(address, kind);
+        }
+    }
+
+
+    /**
+     * What a transaction wrote to one account, reduced to what its commit needs to write to the parent.
+     */
+    private static final class AccountWrites {
+        public final AionAddress address;
+        // If the account was deleted, it is deleted in the parent before anything else is written (since everything before the delete was dropped).
+        public boolean isDeleted;
+        public boolean isCreated;
+        public byte[] code;
+        public byte[] transformedCode;
+        public byte[] graph;
+        // The last value written to each key (null if it was removed), in the order the keys were first written.
+        public final Map<ByteArrayWrapper, byte[]> storage;
+        // The sum of the adjustments (null if there were none, since even a zero adjustment lazily creates the account).
+        public BigInteger balanceDelta;
+        public long nonceIncrements;
+
+        public AccountWrites(AionAddress address) {
+            this.address = address;
+            this.storage = new LinkedHashMap<>();
+        }
+
+        public void delete() {
+            this.isDeleted = true;
+            this.isCreated = false;
+            this.code = null;
+            this.transformedCode = null;
+            this.graph = null;
+            this.storage.clear();
+            this.balanceDelta = null;
+            this.nonceIncrements = 0L;
+        }
+
+        public void commitTo(IExternalState target) {
+            if (this.isDeleted) {
+                target.deleteAccount(this.address);
+            }
+            if (this.isCreated) {
+                target.createAccount(this.address);
+            }
+            if (null != this.code) {
+                target.putCode(this.address, this.code);
+            }
+            if (null != this.transformedCode) {
+                target.setTransformedCode(this.address, this.transformedCode);
+            }
+            for (Map.Entry<ByteArrayWrapper, byte[]> entry : this.storage.entrySet()) {
+                byte[] value = entry.getValue();
+                if (null != value) {
+                    target.putStorage(this.address, entry.getKey().unwrap(), value);
+                } else {
+                    target.removeStorage(this.address, entry.getKey().unwrap());
+                }
+            }
+            if (null != this.graph) {
+                target.putObjectGraph(this.address, this.graph);
+            }
+            if (null != this.balanceDelta) {
+                target.adjustBalance(this.address, this.balanceDelta);
+            }
+            for (long i = 0L; i < this.nonceIncrements; ++i) {
+                target.incrementNonce(this.address);
+            }
+        }
+    }
 }
@@ -1,11 +1,15 @@
 package org.aion.parallel;
 
+import java.util.HashSet;
 import java.util.PriorityQueue;
+import java.util.Set;
 
 /**
  * A package private class represent resource from address.
  *
- * Each {@link AddressResource} keeps a {@link PriorityQueue} of tasks waiting to acquire the resource.
+ * Each {@link AddressResource} keeps a {@link PriorityQueue} of tasks waiting to acquire the resource, exclusively, and the set of
+ * tasks which are only reading it.
+ * All access must be done while holding the lock of its stripe.
  */
 
 class AddressResource {
@@ -21,15 +25,29 @@ class AddressResource {
 
     private TransactionTask ownedBy;
 
-    AddressResource(){
+    // The tasks sharing the resource to read it (see tryAddReader()).
+    private final Set<TransactionTask> readers;
+
+    // The stripe of the monitor whose lock guards this resource.
+    final AddressResourceMonitor.Stripe stripe;
+
+    AddressResource(AddressResourceMonitor.Stripe stripe){
+        this.stripe = stripe;
         this.waitingQueue = new PriorityQueue<>();
         this.isOwned = false;
         this.ownedBy = null;
+        this.readers = new HashSet<>();
     }
 
     boolean addToWaitingQueue(TransactionTask task){
         if (!waitingQueue.contains(task)) {
             waitingQueue.add(task);
+            // Any reader after this task, in the batch, must see what this task writes so it has to run again.
+            for (TransactionTask reader : readers) {
+                if (reader.getIndex() > task.getIndex()) {
+                    reader.setAbortState();
+                }
+            }
             if (isNextOwner(task) && null != ownedBy && task != ownedBy) {
                 ownedBy.setAbortState();
                 return true;
@@ -42,6 +60,28 @@ class AddressResource {
         waitingQueue.remove(task);
     }
 
+    /**
+     * Shares the resource with the given task, for reading, unless a task before it, in the batch, owns or is waiting for the
+     * resource (since that task may write it, so the reader must wait for it, like a writer would).
+     * A writer which comes later, but is before the reader in the batch, aborts the reader (see addToWaitingQueue()) so every read
+     * sees the same value as when the batch is run serially.
+     *
+     * @param task The reading task.
+     * @return True if the task is now a reader, false if it must acquire the resource exclusively.
+     */
+    boolean tryAddReader(TransactionTask task){
+        TransactionTask first = waitingQueue.peek();
+        boolean canRead = (null == first) || (first.getIndex() >= task.getIndex());
+        if (canRead) {
+            readers.add(task);
+        }
+        return canRead;
+    }
+
+    void removeReader(TransactionTask task){
+        readers.remove(task);
+    }
+
     boolean isOwned() {
         return isOwned;
     }
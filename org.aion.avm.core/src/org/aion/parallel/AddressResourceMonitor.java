@@ -3,35 +3,40 @@ package org.aion.parallel;
 import i.RuntimeAssertionError;
 
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
+
+import org.aion.avm.core.AvmImpl;
+import org.aion.avm.core.metrics.SpanKind;
 
 /**
  * Used by executor threads to communicate with each other.
  * Executor threads can only acquire/release {@link AddressResource}, commit result through this monitor.
  * A new monitor will be created for each batch of transactions.
+ *
+ * Tasks which only read an address (see acquireForRead()) share it, instead of owning it, unless a task before them, in the batch,
+ * may write it.
+ * The {@link AddressResource} instances are sharded across a fixed number of stripes, by address hash, each guarded by its own
+ * lock, so tasks touching unrelated addresses never contend.
+ * A task which can't yet take a resource parks its own thread and is only unparked when something it is waiting on changes:
+ * the resource is released, the task is aborted, or the task before it commits.
+ * The time each task waits for each address is recorded in the execution trace (see AvmImpl.getTracer()).
  */
-public class AddressResourceMonitor {
-    static boolean DEBUG = false;
-
-    // Map for resource retrieval
-    private HashMap<AddressWrapper, AddressResource> resources;
+public class AddressResourceMonitor implements IResourceMonitor {
+    // Must be a power of 2.
+    private static final int STRIPE_COUNT = 64;
 
-    // Ownership records for each task. It provide fast resource release.
-    private HashMap<TransactionTask, Set<AddressResource>> ownerships;
+    // Each stripe is its own lock, guarding the resources whose address hashes into it.
+    private final Stripe[] stripes;
 
-    // Private monitor for safety
-    private final Object sync;
-
-    // Commit counter used to serialize transaction commit
-    private int commitCounter;
+    // Serializes the transaction commits by task index.
+    private final CommitSequencer commitSequencer;
 
     public AddressResourceMonitor()
     {
-        this.resources = new HashMap<>();
-        this.ownerships = new HashMap<>();
-        this.sync = new Object();
-        this.commitCounter = 0;
+        this.stripes = new Stripe[STRIPE_COUNT];
+        for (int i = 0; i < STRIPE_COUNT; ++i) {
+            this.stripes[i] = new Stripe();
+        }
+        this.commitSequencer = new CommitSequencer();
     }
 
     /**
@@ -39,12 +44,19 @@ public class AddressResourceMonitor {
      * This method will be called for each batch of transaction request.
      *
      */
+    @Override
     public void clear(){
-        synchronized (sync) {
-            this.resources.clear();
-            this.ownerships.clear();
-            this.commitCounter = 0;
+        for (Stripe stripe : this.stripes) {
+            synchronized (stripe) {
+                stripe.resources.clear();
+            }
         }
+        this.commitSequencer.clear();
+    }
+
+    @Override
+    public void startTransaction(TransactionTask task) {
+        task.startNewTransaction();
     }
 
     /**
@@ -62,84 +74,91 @@ public class AddressResourceMonitor {
      * @param task The requester task.
      * @return true if the address was acquired by the task, false otherwise
      */
+    @Override
     public boolean acquire(byte[] address, TransactionTask task){
-        synchronized (sync) {
-            AddressWrapper addressWrapper = new AddressWrapper(address);
-            AddressResource resource = getResource(addressWrapper);
+        AddressWrapper addressWrapper = new AddressWrapper(address);
+        Stripe stripe = stripeFor(addressWrapper);
+        AddressResource resource;
 
-            // Add task to the waiting queue.
-            if (resource.addToWaitingQueue(task)) {
-                sync.notifyAll();
-            }
+        synchronized (stripe) {
+            resource = stripe.getResource(addressWrapper);
 
-            long startTime = 0;
-            long endTime = 0;
+            // Add task to the waiting queue (this aborts the current owner, waking it up, if we are now next in line).
+            resource.addToWaitingQueue(task);
+            task.queuedResources.add(resource);
+        }
 
-            if (DEBUG) {
-                int holder = null != resource.getOwnedBy() ? resource.getOwnedBy().getIndex() : -1;
-                int nextOwner = null != resource.getNextOwner() ? resource.getNextOwner().getIndex() : -1;
-                System.out.println("Request " + task.getIndex() + " " + resource.toString() + " hold by " + holder +
-                        " nextOwner " + nextOwner + " locked " + resource.isOwned() + " inAbortState " + task.inAbortState());
-                startTime = System.nanoTime();
-            }
+        long waitStart = System.nanoTime();
 
-            // Resource res is granted to task iff
-            // res is not hold by other task && task is the next owner
-            while ((resource.isOwned() || !resource.isNextOwner(task)) && task != resource.getOwnedBy()
-                    && !task.inAbortState()){
-                try {
-                    sync.wait();
-                }catch (InterruptedException e){
-                    RuntimeAssertionError.unreachable("Waiting executor thread received interruption: ACQUIRE");
-                }
-            }
+        // Resource res is granted to task iff
+        // res is not hold by other task && task is the next owner
+        AddressResource requested = resource;
+        task.parkWhile(() -> !tryGrant(stripe, requested, task), this);
 
-            boolean isAborted = task.inAbortState();
-            if (!isAborted) {
-                if (DEBUG) {
-                    endTime = System.nanoTime();
-                    System.out.println("Acquire " + task.getIndex() + " " + resource.toString()
-                            + " waitingTime " + (endTime - startTime)/1000 + " \u00B5s");
-                }
-                resource.setOwner(task);
-                recordOwnership(resource, task);
-            }else{
-                if (DEBUG) {
-                    endTime = System.nanoTime();
-                    System.out.println("Abort   " + task.getIndex() + " " + resource.toString()
-                            + " waitingTime " + (endTime - startTime)/1000 + " \u00B5s");
-                }
-            }
+        AvmImpl.getCurrentTraceRing().record(SpanKind.LOCK_WAIT, task.getIndex(), waitStart, System.nanoTime(), address);
+        return !task.inAbortState();
+    }
 
-            if (DEBUG) System.out.flush();
-            return !isAborted;
+    /**
+     * Acquire a resource, for given task, which it will only read.
+     * Called by executor thread before reading the balance or code size of an address.
+     *
+     * Unlike acquire(), this doesn't take ownership of the resource so any number of tasks can read it concurrently.  If a task before
+     * this one, in the batch, owns or is waiting for the resource, this waits for it exactly like acquire() does (since it may write).
+     * If such a task comes to want the resource later, this task is aborted (to run again and read what that task wrote).
+     *
+     * @param address The address requested.
+     * @param task The requester task.
+     * @return true if the address can be read by the task, false otherwise
+     */
+    @Override
+    public boolean acquireForRead(byte[] address, TransactionTask task){
+        AddressWrapper addressWrapper = new AddressWrapper(address);
+        Stripe stripe = stripeFor(addressWrapper);
+        boolean isShared;
+        synchronized (stripe) {
+            AddressResource resource = stripe.getResource(addressWrapper);
+            isShared = resource.tryAddReader(task);
+            if (isShared) {
+                task.readResources.add(resource);
+            }
         }
+        return isShared
+                ? !task.inAbortState()
+                : acquire(address, task);
     }
 
     /**
      * Release all resource holding by given task.
      * Called by executor thread when the task finished/need restart.
      *
-     * This method will not block.
+     * This method will not block (beyond the stripe locks) and only wakes the tasks which are next in line for the released resources.
      *
      * @param task The requesting task.
      */
     private void releaseResourcesForTask(TransactionTask task){
-        RuntimeAssertionError.assertTrue(Thread.holdsLock(sync));
-
-        Set<AddressResource> toRemove = ownerships.remove(task);
-        if (null != toRemove) {
-            for (AddressResource resource : toRemove) {
+        for (AddressResource resource : task.queuedResources) {
+            Stripe stripe = resource.stripe;
+            TransactionTask nextOwner;
+            synchronized (stripe) {
                 resource.removeFromWaitingQueue(task);
                 if (task == resource.getOwnedBy()) {
                     resource.setOwner(null);
                 }
-                if (DEBUG) {
-                    int nextOwner = null != resource.getNextOwner() ? resource.getNextOwner().getIndex() : -1;
-                    System.out.println("Release " + task.getIndex() + " " + resource.toString() + " nextOwner " + nextOwner);
-                }
+                nextOwner = resource.getNextOwner();
+            }
+            if (null != nextOwner) {
+                nextOwner.unpark();
+            }
+        }
+        task.queuedResources.clear();
+        // Nobody waits for readers so there is nothing to wake.
+        for (AddressResource resource : task.readResources) {
+            synchronized (resource.stripe) {
+                resource.removeReader(task);
             }
         }
+        task.readResources.clear();
     }
 
     /**
@@ -157,64 +176,69 @@ public class AddressResourceMonitor {
      *
      * @return True if commit is successful. False if task need to abort.
      */
+    @Override
     public boolean commitKernelForTask(TransactionTask task, boolean isRejected){
         boolean ret = false;
 
-        synchronized (sync){
-
-            while (this.commitCounter != task.getIndex() && !task.inAbortState()){
-                try {
-                    sync.wait();
-                }catch (InterruptedException e){
-                    RuntimeAssertionError.unreachable("Waiting executor thread received interruption: COMMIT");
-                }
+        if (this.commitSequencer.awaitTurn(task)) {
+            if (!isRejected) {
+                task.getThisTransactionalKernel().commit();
+                task.outputFlush();
             }
-
-            if (!task.inAbortState()){
-                if (!isRejected) {
-                    task.getThisTransactionalKernel().commit();
-                    task.outputFlush();
-                }
-                this.commitCounter++;
-                ret = true;
-            }
-
-            releaseResourcesForTask(task);
-
-            // Only wake up others when all resources are released
-            sync.notifyAll();
+            task.runPostCommitActions();
+            ret = true;
         }
 
-        return ret;
-    }
-
-    private AddressResource getResource(AddressWrapper addr){
-        RuntimeAssertionError.assertTrue(Thread.holdsLock(sync));
-
-        AddressResource ret = resources.get(addr);
-        if (null == ret){
-            ret = new AddressResource();
-            resources.put(addr, ret);
+        // Only hand over the turn once all resources are released.
+        releaseResourcesForTask(task);
+        if (ret) {
+            this.commitSequencer.advance(task);
         }
         return ret;
     }
 
-    private void recordOwnership(AddressResource res, TransactionTask task){
-        RuntimeAssertionError.assertTrue(Thread.holdsLock(sync));
+    private Stripe stripeFor(AddressWrapper addr) {
+        return this.stripes[addr.hashCode() & (STRIPE_COUNT - 1)];
+    }
 
-        Set<AddressResource> entry = ownerships.get(task);
-        if (null == entry){
-            entry = new HashSet<>();
-            ownerships.put(task, entry);
+    private static boolean tryGrant(Stripe stripe, AddressResource resource, TransactionTask task) {
+        boolean isDone;
+        synchronized (stripe) {
+            if (task == resource.getOwnedBy()) {
+                // Reentrant acquire.
+                isDone = true;
+            } else if (task.inAbortState()) {
+                isDone = true;
+            } else if (!resource.isOwned() && resource.isNextOwner(task)) {
+                resource.setOwner(task);
+                isDone = true;
+            } else {
+                isDone = false;
+            }
         }
-        entry.add(res);
+        return isDone;
     }
 
     void testReleaseResourcesForTask(TransactionTask task){
-        synchronized (sync) {
-            releaseResourcesForTask(task);
-            sync.notifyAll();
+        releaseResourcesForTask(task);
+    }
+
+
+    /**
+     * One shard of the resource map.  All access to the map and to the AddressResource instances in it is under this object's monitor.
+     */
+    static final class Stripe {
+        private final HashMap<AddressWrapper, AddressResource> resources = new HashMap<>();
+
+        private AddressResource getResource(AddressWrapper addr) {
+            RuntimeAssertionError.assertTrue(Thread.holdsLock(this));
+
+            AddressResource ret = this.resources.get(addr);
+            if (null == ret) {
+                ret = new AddressResource(this);
+                this.resources.put(addr, ret);
+            }
+            return ret;
         }
     }
 }
-
@@ -1,5 +1,7 @@
 package org.aion.parallel;
 
+import java.util.Arrays;
+
 /**
  * A package private class wraps address byte array.
  *
@@ -7,19 +9,21 @@ package org.aion.parallel;
  */
 class AddressWrapper {
 
-    private byte[] addr;
+    private final byte[] addr;
+
+    // Addresses are hashed once, up-front, since they are looked up repeatedly while held in the resource maps.
+    private final int hashCode;
 
     AddressWrapper(byte[] addr){
         this.addr = addr;
+        // Spread the higher bits of the polynomial hash into the lower ones since the stripe and bucket indices only use the lower bits.
+        int hash = Arrays.hashCode(addr);
+        this.hashCode = hash ^ (hash >>> 16);
     }
 
     @Override
     public int hashCode() {
-        int code = 0;
-        for (byte elt : this.addr) {
-            code += (int)elt;
-        }
-        return code;
+        return this.hashCode;
     }
 
     @Override
@@ -27,12 +31,7 @@ class AddressWrapper {
         boolean isEqual = this == obj;
         if (!isEqual && (obj instanceof AddressWrapper)) {
             AddressWrapper other = (AddressWrapper) obj;
-            if (this.addr.length == other.addr.length) {
-                isEqual = true;
-                for (int i = 0; isEqual && (i < other.addr.length); ++i) {
-                    isEqual = (this.addr[i] == other.addr[i]);
-                }
-            }
+            isEqual = (this.hashCode == other.hashCode) && Arrays.equals(this.addr, other.addr);
         }
         return isEqual;
     }
@@ -0,0 +1,70 @@
+package org.aion.parallel;
+
+import i.RuntimeAssertionError;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A package private class which serializes the commits of a batch of tasks by their index.
+ *
+ * A task waiting for its turn parks its own thread and is only unparked by the commit of the task immediately before it (or
+ * by being aborted), so a commit never wakes up any other waiting thread.
+ * Only the task whose turn it is can advance the sequencer, which is what makes the commit (and anything else done by the
+ * task between {@link #awaitTurn(TransactionTask)} and {@link #advance(TransactionTask)}) exclusive.
+ */
+class CommitSequencer {
+    // The index of the next task allowed to commit.  Written only by the task whose turn it is.
+    private volatile int nextToCommit;
+
+    // The tasks currently parked waiting for their turn, by index.
+    private final ConcurrentHashMap<Integer, TransactionTask> waiters;
+
+    CommitSequencer() {
+        this.nextToCommit = 0;
+        this.waiters = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Reset the sequencer for a new batch.  Must only be called when no tasks are running.
+     */
+    void clear() {
+        this.waiters.clear();
+        this.nextToCommit = 0;
+    }
+
+    /**
+     * @return The number of tasks in the batch which have committed.
+     */
+    int getCommittedCount() {
+        return this.nextToCommit;
+    }
+
+    /**
+     * Blocks until it is the given task's turn to commit or the task has been aborted.
+     *
+     * @param task The task waiting to commit.
+     * @return True if it is now the task's turn, false if it was aborted.
+     */
+    boolean awaitTurn(TransactionTask task) {
+        Integer index = task.getIndex();
+        this.waiters.put(index, task);
+        task.parkWhile(() -> (this.nextToCommit != task.getIndex()) && !task.inAbortState(), this);
+        this.waiters.remove(index);
+        return !task.inAbortState();
+    }
+
+    /**
+     * Called by the task whose turn it is, once it has finished committing, to hand the turn to the next task.
+     *
+     * @param task The task which has just committed.
+     */
+    void advance(TransactionTask task) {
+        RuntimeAssertionError.assertTrue(this.nextToCommit == task.getIndex());
+        int next = task.getIndex() + 1;
+        this.nextToCommit = next;
+        TransactionTask nextTask = this.waiters.get(next);
+        if (null != nextTask) {
+            nextTask.unpark();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.aion.parallel;
+
+/**
+ * The interface executor threads use to coordinate access to shared state and to serialize their commits.
+ * A single instance is used by the AVM, cleared before each batch of transactions.
+ */
+public interface IResourceMonitor {
+    /**
+     * Reset the state of the monitor.
+     * This method will be called for each batch of transaction request.
+     */
+    void clear();
+
+    /**
+     * Prepares the given task for a new attempt at running its transaction.
+     * Called by the executor thread before each attempt (including retries after abort).
+     *
+     * @param task The task about to run.
+     */
+    void startTransaction(TransactionTask task);
+
+    /**
+     * Acquire a resource for given task.
+     * Called by executor thread when access of a address is needed.
+     *
+     * @param address The address requested.
+     * @param task The requester task.
+     * @return true if the address can be used by the task, false if the task needs to abort.
+     */
+    boolean acquire(byte[] address, TransactionTask task);
+
+    /**
+     * Acquire a resource, for given task, which it will only read (such as to query its balance or code size).
+     * The task must still acquire() the resource before it writes it.
+     *
+     * @param address The address requested.
+     * @param task The requester task.
+     * @return true if the address can be read by the task, false if the task needs to abort.
+     */
+    boolean acquireForRead(byte[] address, TransactionTask task);
+
+    /**
+     * Try commit the task transactional kernel of the given task.
+     * The commit will be serialized as the index of the task.
+     *
+     * @param task The requesting task.
+     * @param isRejected True only if the transaction relating to this task was rejected.
+     * @return True if commit is successful. False if task need to abort.
+     */
+    boolean commitKernelForTask(TransactionTask task, boolean isRejected);
+}
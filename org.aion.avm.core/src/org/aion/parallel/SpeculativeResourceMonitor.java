@@ -0,0 +1,181 @@
+package org.aion.parallel;
+
+import org.aion.kernel.ReadWriteSet;
+import org.aion.kernel.ReadWriteSet.StateKey;
+import org.aion.kernel.ReadWriteSet.StateKind;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A resource monitor for optimistic (speculative) execution of a batch of transactions.
+ *
+ * Tasks never wait to use an address:  they run against the committed state of the batch, as of when they started, while
+ * their TransactionalState records what they read and wrote in a {@link ReadWriteSet}.
+ * Commits are still serialized by task index.  When it is a task's turn to commit, its read set is validated against the
+ * write sets of all the tasks which committed after it started.  If any of them wrote something the task read, the task is
+ * aborted and re-executed (by which point it is its turn so the retry always validates).
+ *
+ * When a task commits, any running higher-index task which already read something it wrote is aborted immediately, instead
+ * of being allowed to run to its own failed validation.
+ *
+ * The write history is only read or modified by the task whose turn it is to commit, so the {@link CommitSequencer} is the
+ * only synchronization it needs.
+ */
+public class SpeculativeResourceMonitor implements IResourceMonitor {
+    // The index of the committing task which last wrote each piece of state in this batch.
+    private final HashMap<StateKey, Integer> lastWriterByKey;
+
+    // The index of the committing task which last wrote anything to each address in this batch.
+    private final HashMap<AddressWrapper, Integer> lastWriterByAddress;
+
+    // The tasks which have started an attempt but not yet committed.
+    private final Set<TransactionTask> runningTasks;
+
+    // Serializes the transaction commits by task index.
+    private final CommitSequencer commitSequencer;
+
+    public SpeculativeResourceMonitor() {
+        this.lastWriterByKey = new HashMap<>();
+        this.lastWriterByAddress = new HashMap<>();
+        this.runningTasks = ConcurrentHashMap.newKeySet();
+        this.commitSequencer = new CommitSequencer();
+    }
+
+    @Override
+    public void clear() {
+        this.lastWriterByKey.clear();
+        this.lastWriterByAddress.clear();
+        this.runningTasks.clear();
+        this.commitSequencer.clear();
+    }
+
+    @Override
+    public void startTransaction(TransactionTask task) {
+        task.startNewTransaction(new ReadWriteSet());
+        // Everything below this count is already visible in the parent state so it can't invalidate what we read.
+        task.readVersion = this.commitSequencer.getCommittedCount();
+        this.runningTasks.add(task);
+    }
+
+    /**
+     * Speculative tasks don't need to own an address to use it, so this only reports whether the task still needs to run.
+     *
+     * @param address The address requested.
+     * @param task The requester task.
+     * @return true if the task has not been aborted.
+     */
+    @Override
+    public boolean acquire(byte[] address, TransactionTask task) {
+        return !task.inAbortState();
+    }
+
+    /**
+     * Speculative tasks record what they read, and validate it when they commit, so reads are the same as any other access.
+     *
+     * @param address The address requested.
+     * @param task The requester task.
+     * @return true if the task has not been aborted.
+     */
+    @Override
+    public boolean acquireForRead(byte[] address, TransactionTask task) {
+        return acquire(address, task);
+    }
+
+    /**
+     * Validates and commits the task transactional kernel of the given task, in index order.
+     *
+     * The executor thread of the task will block until it is the task's turn to commit or it is aborted.
+     * Note that rejected transactions are validated, too, since the rejection may have been based on a stale read.
+     *
+     * @param task The requesting task.
+     * @param isRejected True only if the transaction relating to this task was rejected.
+     * @return True if commit is successful. False if task need to abort and re-execute.
+     */
+    @Override
+    public boolean commitKernelForTask(TransactionTask task, boolean isRejected) {
+        boolean ret = false;
+
+        if (this.commitSequencer.awaitTurn(task) && isReadSetValid(task)) {
+            ReadWriteSet readWriteSet = task.getReadWriteSet();
+            if (!isRejected) {
+                task.getThisTransactionalKernel().commit();
+                task.outputFlush();
+                recordWrites(task.getIndex(), readWriteSet.getWrites());
+            }
+            task.runPostCommitActions();
+            this.runningTasks.remove(task);
+            if (!isRejected) {
+                abortInvalidatedTasks(task, readWriteSet.getWrites());
+            }
+            this.commitSequencer.advance(task);
+            ret = true;
+        } else {
+            task.setAbortState();
+            this.runningTasks.remove(task);
+        }
+
+        return ret;
+    }
+
+    private boolean isReadSetValid(TransactionTask task) {
+        boolean isValid = true;
+        for (StateKey read : task.getReadWriteSet().getReads()) {
+            if (!isValid) {
+                break;
+            }
+            isValid = !wasWrittenSince(this.lastWriterByKey.get(read), task.readVersion)
+                    && !wasWrittenSince(this.lastWriterByKey.get(read.accountKey()), task.readVersion);
+            if (isValid && (StateKind.ACCOUNT == read.kind)) {
+                isValid = !wasWrittenSince(this.lastWriterByAddress.get(new AddressWrapper(read.address)), task.readVersion);
+            }
+        }
+        return isValid;
+    }
+
+    private void recordWrites(int writerIndex, Set<StateKey> writes) {
+        for (StateKey write : writes) {
+            this.lastWriterByKey.put(write, writerIndex);
+            this.lastWriterByAddress.put(new AddressWrapper(write.address), writerIndex);
+        }
+    }
+
+    private void abortInvalidatedTasks(TransactionTask committer, Set<StateKey> writes) {
+        if (!writes.isEmpty()) {
+            Set<AddressWrapper> writtenAddresses = new HashSet<>();
+            Set<AddressWrapper> writtenAccounts = new HashSet<>();
+            for (StateKey write : writes) {
+                writtenAddresses.add(new AddressWrapper(write.address));
+                if (StateKind.ACCOUNT == write.kind) {
+                    writtenAccounts.add(new AddressWrapper(write.address));
+                }
+            }
+            for (TransactionTask running : this.runningTasks) {
+                if ((running.getIndex() > committer.getIndex()) && !running.inAbortState()
+                        && readsAnyOf(running.getReadWriteSet(), writes, writtenAddresses, writtenAccounts)) {
+                    running.setAbortState();
+                }
+            }
+        }
+    }
+
+    private static boolean readsAnyOf(ReadWriteSet readWriteSet, Set<StateKey> writes, Set<AddressWrapper> writtenAddresses, Set<AddressWrapper> writtenAccounts) {
+        boolean doesRead = false;
+        for (StateKey read : readWriteSet.getReads()) {
+            AddressWrapper address = new AddressWrapper(read.address);
+            doesRead = writes.contains(read)
+                    || writtenAccounts.contains(address)
+                    || ((StateKind.ACCOUNT == read.kind) && writtenAddresses.contains(address));
+            if (doesRead) {
+                break;
+            }
+        }
+        return doesRead;
+    }
+
+    private static boolean wasWrittenSince(Integer writerIndex, int readVersion) {
+        return (null != writerIndex) && (writerIndex >= readVersion);
+    }
+}
@@ -0,0 +1,169 @@
+package org.aion.parallel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.aion.avm.core.IExternalCapabilities;
+import org.aion.avm.core.IExternalState;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+
+
+/**
+ * A static prediction of the data hazards in a batch of transactions, built before any of them run.
+ *
+ * Each transaction is assumed to touch its sender and its target (the destination or, for a create, the address of the new
+ * contract).  A transaction depends on the most recent earlier transaction in the batch touching each of those addresses.
+ * This is only a prediction:  calls made by contracts can touch any address, and those hazards are still resolved at runtime
+ * by the resource monitor.  The graph is only used to avoid starting a transaction before the ones it obviously depends on
+ * have finished, which would otherwise just cause it to block or abort.
+ *
+ * The graph also marks the calls which are plain balance transfers:  the target has no code and is not deployed earlier in
+ * the batch, so running them can skip everything related to loading a DApp.
+ *
+ * Instances are not thread-safe:  the caller (HandoffMonitor) must serialize calls to {@link #markCompleted(int)}.
+ */
+public class TransactionDependencyGraph {
+    private final int[] pendingPredecessorCounts;
+    private final List<List<Integer>> successors;
+
+    /**
+     * The number of independent groups of transactions (connected components) in the batch.
+     */
+    public final int chainCount;
+
+    /**
+     * The number of transactions on the longest path of dependencies in the batch.
+     */
+    public final int criticalPathLength;
+
+    /**
+     * The number of transactions predicted to be plain balance transfers.
+     */
+    public final int balanceTransferCount;
+
+    private TransactionDependencyGraph(int[] pendingPredecessorCounts, List<List<Integer>> successors, int chainCount, int criticalPathLength, int balanceTransferCount) {
+        this.pendingPredecessorCounts = pendingPredecessorCounts;
+        this.successors = successors;
+        this.chainCount = chainCount;
+        this.criticalPathLength = criticalPathLength;
+        this.balanceTransferCount = balanceTransferCount;
+    }
+
+    /**
+     * Builds the dependency graph for the given tasks (which must be in index order) and marks those predicted to be balance transfers.
+     *
+     * @param kernel The state the batch will run against (only read, to check which targets have code).
+     * @param capabilities The capabilities used to derive the address of deployed contracts.
+     * @param tasks The tasks of the batch.
+     * @return The dependency graph.
+     */
+    public static TransactionDependencyGraph build(IExternalState kernel, IExternalCapabilities capabilities, TransactionTask[] tasks) {
+        int count = tasks.length;
+        int[] pendingPredecessorCounts = new int[count];
+        List<List<Integer>> successors = new ArrayList<>(count);
+        int[] pathLengths = new int[count];
+        int[] components = new int[count];
+        HashMap<AddressWrapper, Integer> lastTaskByAddress = new HashMap<>();
+        Set<AddressWrapper> createdInBatch = new HashSet<>();
+        int criticalPathLength = 0;
+        int balanceTransferCount = 0;
+
+        for (int i = 0; i < count; ++i) {
+            successors.add(new ArrayList<>());
+            components[i] = i;
+
+            Transaction tx = tasks[i].getTransaction();
+            AionAddress target = tx.isCreate
+                    ? capabilities.generateContractAddress(tx.senderAddress, tx.nonce)
+                    : tx.destinationAddress;
+            AddressWrapper senderWrapper = new AddressWrapper(tx.senderAddress.toByteArray());
+            AddressWrapper targetWrapper = new AddressWrapper(target.toByteArray());
+
+            if (tx.isCreate) {
+                createdInBatch.add(targetWrapper);
+            } else if (!createdInBatch.contains(targetWrapper) && (null == kernel.getCode(target))) {
+                tasks[i].isPredictedBalanceTransfer = true;
+                balanceTransferCount += 1;
+            }
+
+            Set<Integer> predecessors = new HashSet<>();
+            Integer senderPredecessor = lastTaskByAddress.put(senderWrapper, i);
+            if (null != senderPredecessor) {
+                predecessors.add(senderPredecessor);
+            }
+            Integer targetPredecessor = lastTaskByAddress.put(targetWrapper, i);
+            if ((null != targetPredecessor) && (i != targetPredecessor)) {
+                predecessors.add(targetPredecessor);
+            }
+
+            int pathLength = 1;
+            for (int predecessor : predecessors) {
+                successors.get(predecessor).add(i);
+                pendingPredecessorCounts[i] += 1;
+                pathLength = Math.max(pathLength, pathLengths[predecessor] + 1);
+                union(components, predecessor, i);
+            }
+            pathLengths[i] = pathLength;
+            criticalPathLength = Math.max(criticalPathLength, pathLength);
+        }
+
+        int chainCount = 0;
+        for (int i = 0; i < count; ++i) {
+            if (i == find(components, i)) {
+                chainCount += 1;
+            }
+        }
+        return new TransactionDependencyGraph(pendingPredecessorCounts, successors, chainCount, criticalPathLength, balanceTransferCount);
+    }
+
+    /**
+     * @param index The index of a task in the batch.
+     * @return True if the task has no predicted dependencies which haven't yet finished.
+     */
+    public boolean isReady(int index) {
+        return 0 == this.pendingPredecessorCounts[index];
+    }
+
+    /**
+     * Records that the task at the given index has finished (its result is final).
+     *
+     * @param index The index of the finished task.
+     * @return The indices of the tasks which became ready as a result.
+     */
+    public List<Integer> markCompleted(int index) {
+        List<Integer> nowReady = new ArrayList<>();
+        for (int successor : this.successors.get(index)) {
+            this.pendingPredecessorCounts[successor] -= 1;
+            if (0 == this.pendingPredecessorCounts[successor]) {
+                nowReady.add(successor);
+            }
+        }
+        return nowReady;
+    }
+
+    private static int find(int[] components, int index) {
+        int root = index;
+        while (components[root] != root) {
+            root = components[root];
+        }
+        // Compress the path we just walked.
+        while (components[index] != root) {
+            int next = components[index];
+            components[index] = root;
+            index = next;
+        }
+        return root;
+    }
+
+    private static void union(int[] components, int left, int right) {
+        int leftRoot = find(components, left);
+        int rightRoot = find(components, right);
+        if (leftRoot != rightRoot) {
+            components[Math.max(leftRoot, rightRoot)] = Math.min(leftRoot, rightRoot);
+        }
+    }
+}
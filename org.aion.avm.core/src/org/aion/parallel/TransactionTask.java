@@ -2,9 +2,13 @@ package org.aion.parallel;
 
 import avm.Address;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
 
 import org.aion.avm.core.ExecutionType;
 import org.aion.avm.core.IExternalState;
@@ -40,6 +44,18 @@ public class TransactionTask implements Comparable<TransactionTask>{
     private int depth;
     private Set<AionAddress> selfDestructedAddresses;
     private Set<Pair<AionAddress, ByteArrayWrapper>> resetStorageKeys;
+    private ReadWriteSet readWriteSet;
+    private List<Runnable> postCommitActions;
+    // The number of transactions in the batch which had committed when this attempt started (only used by speculative scheduling).
+    int readVersion;
+    // Every AddressResource this task is queued on (owned or still waiting), so they can all be released together.
+    final Set<AddressResource> queuedResources;
+    // Every AddressResource this task is only reading (it may also be in queuedResources, if the task later wrote it).
+    final Set<AddressResource> readResources;
+    // The thread currently parked on behalf of this task, if any.
+    private volatile Thread parkedThread;
+    // Set by the TransactionDependencyGraph if the target had no code when the batch was planned.
+    boolean isPredictedBalanceTransfer;
     public final ExecutionType executionType;
     public final long commonMainchainBlockNumber;
 
@@ -58,18 +74,40 @@ public class TransactionTask implements Comparable<TransactionTask>{
         this.sideEffectsStack.push(new SideEffects());
         this.selfDestructedAddresses = new HashSet<>();
         this.resetStorageKeys = new HashSet<>();
+        this.readWriteSet = null;
+        this.postCommitActions = new ArrayList<>();
+        this.queuedResources = new HashSet<>();
+        this.readResources = new HashSet<>();
+        this.parkedThread = null;
+        this.isPredictedBalanceTransfer = false;
         this.executionType = executionType;
         this.commonMainchainBlockNumber = commonMainchainBlockNumber;
     }
 
     public void startNewTransaction() {
+        startNewTransaction(null);
+    }
+
+    /**
+     * Resets the task for a new attempt at running its transaction, discarding anything left over from an aborted attempt.
+     * 
+     * @param readWriteSet If non-null, the accesses of the per task transactional kernel are recorded here.
+     */
+    public void startNewTransaction(ReadWriteSet readWriteSet) {
         this.abortState = false;
         this.threadOwningTask = null;
         this.reentrantDAppStack = new ReentrantDAppStack();
         this.outBuffer = new StringBuffer();
+        this.depth = 0;
+        this.sideEffectsStack = new Stack<>();
+        this.sideEffectsStack.push(new SideEffects());
+        this.selfDestructedAddresses = new HashSet<>();
+        this.resetStorageKeys = new HashSet<>();
+        this.readWriteSet = readWriteSet;
+        this.postCommitActions = new ArrayList<>();
         
         // All IO will be performed on an per task transactional kernel so we can abort the whole task in one go
-        this.thisTransactionKernel = new TransactionalState(this.parentKernel);
+        this.thisTransactionKernel = new TransactionalState(this.parentKernel, readWriteSet);
     }
 
     /**
@@ -93,12 +131,43 @@ public class TransactionTask implements Comparable<TransactionTask>{
     /**
      * Set the current task state to require abort.
      * If a helper is already attached to this task, set the helper abort state as well.
+     * If the task is parked waiting on a resource monitor, it is woken up so it can observe the abort.
      */
     public void setAbortState() {
         this.abortState = true;
         if (null != this.threadOwningTask){
             this.threadOwningTask.setAbortState();
         }
+        unpark();
+    }
+
+    /**
+     * Parks the calling thread, on behalf of this task, for as long as the condition holds.
+     * Anything which may change the condition must call {@link #unpark()} after doing so.
+     *
+     * @param condition The condition to wait on (re-evaluated after every wake-up).
+     * @param blocker The object responsible for the parking (for diagnostics).
+     */
+    void parkWhile(BooleanSupplier condition, Object blocker) {
+        // Publish the thread before checking the condition so a concurrent change to the condition is guaranteed to see it.
+        this.parkedThread = Thread.currentThread();
+        try {
+            while (condition.getAsBoolean()) {
+                LockSupport.park(blocker);
+            }
+        } finally {
+            this.parkedThread = null;
+        }
+    }
+
+    /**
+     * Wakes the thread parked on behalf of this task, if there is one.
+     */
+    void unpark() {
+        Thread parked = this.parkedThread;
+        if (null != parked) {
+            LockSupport.unpark(parked);
+        }
     }
 
     /**
@@ -137,6 +206,16 @@ public class TransactionTask implements Comparable<TransactionTask>{
         return externalTransaction;
     }
 
+    /**
+     * Check if the batch planner predicted this to be a plain balance transfer (a call to an address with no code).
+     * This is only a hint:  the target may still have gained code by the time the task runs.
+     *
+     * @return True if the task was predicted to be a balance transfer.
+     */
+    public boolean isPredictedBalanceTransfer() {
+        return this.isPredictedBalanceTransfer;
+    }
+
     /**
      * Get the per task transactional kernel of the current task.
      *
@@ -146,6 +225,32 @@ public class TransactionTask implements Comparable<TransactionTask>{
         return this.thisTransactionKernel;
     }
 
+    /**
+     * Get the read/write set of the current attempt.
+     *
+     * @return The read/write set or null if accesses are not being recorded.
+     */
+    public ReadWriteSet getReadWriteSet() {
+        return this.readWriteSet;
+    }
+
+    /**
+     * Registers an action to run only once this attempt has successfully committed (in index order, under the commit).
+     * Actions registered by an attempt which is aborted are discarded.
+     *
+     * @param action The action to run after commit.
+     */
+    public void addPostCommitAction(Runnable action) {
+        this.postCommitActions.add(action);
+    }
+
+    void runPostCommitActions() {
+        for (Runnable action : this.postCommitActions) {
+            action.run();
+        }
+        this.postCommitActions.clear();
+    }
+
     public void outputPrint(String toPrint){
         this.outBuffer.append(toPrint);
     }
@@ -6,6 +6,7 @@ import org.aion.types.AionAddress;
 import org.aion.types.Transaction;
 import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
 import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.metrics.MetricsRegistry;
 import org.aion.avm.core.util.Helpers;
 import org.aion.avm.userlib.CodeAndArguments;
 import org.aion.avm.userlib.abi.ABIStreamingEncoder;
@@ -120,6 +121,46 @@ public class AvmCoreStatsTest {
         Assert.assertTrue(runningNanos >= totalNanos);
     }
 
+    /**
+     * Run a deployment and some calls and observe that the metrics registry exposes the stats and the threads' histograms.
+     */
+    @Test
+    public void testMetricsExposition() {
+        byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(ReentrantCrossCallResource.class);
+        byte[] txData = new CodeAndArguments(jar, new byte[0]).encodeToBytes();
+        TestingState kernel = new TestingState(block);
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), new AvmConfiguration());
+        AvmCoreStats stats = avm.getStats();
+
+        Transaction create = createCreateTransaction(kernel, txData);
+        TransactionResult createResult = runSuccessfulBatch(kernel, avm, new Transaction[] {create})[0];
+        AionAddress contractAddress = new AionAddress(createResult.copyOfTransactionOutput().orElseThrow());
+        int calls = 3;
+        for (int i = 0; i < calls; ++i) {
+            Transaction transaction = createCallTransaction(contractAddress, kernel.getNonce(deployer), "getFar", false);
+            runSuccessfulBatch(kernel, avm, new Transaction[] {transaction});
+        }
+
+        String text = stats.metrics.toText();
+        Assert.assertTrue(text.contains("# TYPE avm_transactions_total counter\navm_transactions_total " + (calls + 1) + "\n"));
+        Assert.assertTrue(text.contains("# TYPE avm_call_main_nanoseconds summary\n"));
+        Assert.assertTrue(text.contains("avm_cache_hits_total{cache=\"dapp\"} "));
+        Assert.assertTrue(text.contains("avm_thread_transaction_aborts_total{thread=\"executor-0\"} 0\n"));
+        // Each thread has its own series so we add them up.
+        Assert.assertEquals(1L, sumOfSamples(stats, "avm_transformation_nanoseconds_count"));
+        // Each getFar() call reenters the DApp, once, and the reentrant call also loads the graph (from the caller's state).
+        Assert.assertEquals(2 * calls, sumOfSamples(stats, "avm_call_main_nanoseconds_count"));
+        Assert.assertEquals(2 * calls, sumOfSamples(stats, "avm_graph_load_nanoseconds_count"));
+        // The deployment and each call store the graph.
+        Assert.assertEquals(calls + 1, sumOfSamples(stats, "avm_graph_size_bytes_count"));
+        Assert.assertEquals(calls + 1, sumOfSamples(stats, "avm_commit_wait_nanoseconds_count"));
+
+        // Clearing the stats also clears the histograms.
+        stats.clear();
+        Assert.assertEquals(0L, sumOfSamples(stats, "avm_call_main_nanoseconds_count"));
+        avm.shutdown();
+    }
+
 
     private Transaction createCreateTransaction(IExternalState externalState, byte[] createData) {
         return AvmTransactionUtil.create(deployer, externalState.getNonce(deployer), BigInteger.ZERO, createData, ENERGY_LIMIT_DEPLOY, ENERGY_PRICE);
@@ -144,6 +185,16 @@ public class AvmCoreStatsTest {
         return results;
     }
 
+    private long sumOfSamples(AvmCoreStats stats, String name) {
+        long sum = 0L;
+        for (MetricsRegistry.Sample sample : stats.metrics.collect()) {
+            if (sample.name.equals(name)) {
+                sum += sample.value;
+            }
+        }
+        return sum;
+    }
+
     private int combineThreadTransactions(AvmCoreStats stats) {
         int total = 0;
         for (AvmThreadStats stat : stats.threadStats) {
@@ -180,4 +180,62 @@ public class AvmThreadStatsTest {
 
         avm.shutdown();
     }
+
+    @Test
+    public void testRetransformationsFromWarmup() {
+        TestingState kernel = new TestingState(block);
+        AvmConfiguration config = new AvmConfiguration();
+        config.warmupThreadCount = 2;
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+
+        byte[] code = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(TestContract.class);
+
+        int length = 6;
+        AionAddress[] user = new AionAddress[length];
+        Transaction[] ctx = new Transaction[length];
+        for (int i = 0; i < user.length; i++) {
+            user[i] = Helpers.randomAddress();
+            kernel.adjustBalance(user[i], BigInteger.TEN.pow(20));
+            ctx[i] = AvmTransactionUtil.create(user[i], BigInteger.ZERO, BigInteger.ZERO, new CodeAndArguments(code, null).encodeToBytes(), 5_000_000L, 1);
+        }
+
+        FutureResult[] results = avm.run(kernel, ctx, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1);
+        AionAddress[] contractAddresses = new AionAddress[results.length];
+        for (int i = 0; i < results.length; i++) {
+            contractAddresses[i] = new AionAddress(results[i].getResult().copyOfTransactionOutput().orElseThrow());
+            kernel.setTransformedCode(contractAddresses[i], null);
+        }
+
+        AvmCoreStats stats = avm.getStats();
+        stats.clear();
+
+        // None of these DApps are cached so the warm-up service prepares all of them before the executor threads need them.
+        Transaction[] tx = new Transaction[length];
+        for (int i = 0; i < length; i++) {
+            byte[] getCallCount = new ABIStreamingEncoder().encodeOneString("getCallCount").toBytes();
+            tx[i] = AvmTransactionUtil.call(user[i], contractAddresses[i], kernel.getNonce(user[i]), BigInteger.ZERO, getCallCount, 5_000_000, 1);
+        }
+        results = avm.run(kernel, tx, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1);
+        for (FutureResult f : results) {
+            Assert.assertEquals(0, new ABIDecoder(f.getResult().copyOfTransactionOutput().orElseThrow()).decodeOneInteger());
+        }
+
+        int retransformedByExecutors = 0;
+        int retransformationsFromWarmup = 0;
+        int dappLoadsFromWarmup = 0;
+        for (AvmThreadStats avmThreadStats : stats.threadStats) {
+            retransformedByExecutors += avmThreadStats.retransformationCount;
+            retransformationsFromWarmup += avmThreadStats.retransformationsFromWarmup;
+            dappLoadsFromWarmup += avmThreadStats.dappLoadsFromWarmup;
+        }
+        int retransformedByWarmup = 0;
+        for (AvmThreadStats avmThreadStats : stats.warmupThreadStats) {
+            retransformedByWarmup += avmThreadStats.retransformationCount;
+        }
+        Assert.assertEquals(0, retransformedByExecutors);
+        Assert.assertEquals(length, retransformedByWarmup);
+        Assert.assertEquals(length, retransformationsFromWarmup);
+        Assert.assertEquals(length, dappLoadsFromWarmup);
+        avm.shutdown();
+    }
 }
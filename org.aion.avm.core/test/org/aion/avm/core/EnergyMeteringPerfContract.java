@@ -0,0 +1,78 @@
+package org.aion.avm.core;
+
+import java.math.BigInteger;
+
+import avm.Blockchain;
+import org.aion.avm.userlib.abi.ABIDecoder;
+import org.aion.avm.userlib.abi.ABIEncoder;
+
+
+/**
+ * Compute-heavy workloads used by EnergyMeteringPerfTest to measure how quickly energy is consumed (that is, the cost of the code we
+ * bill for, including the billing itself).
+ * Each of these is deterministic, and only uses plain Java, so the test can also run them directly to check the result.
+ */
+public class EnergyMeteringPerfContract {
+    public static byte[] main() {
+        ABIDecoder decoder = new ABIDecoder(Blockchain.getData());
+        String methodName = decoder.decodeMethodName();
+        int iterations = decoder.decodeOneInteger();
+        byte[] result = null;
+        switch (methodName) {
+            case "branches":
+                result = ABIEncoder.encodeOneLong(branches(iterations));
+                break;
+            case "arrays":
+                result = ABIEncoder.encodeOneLong(arrays(iterations));
+                break;
+            case "bigIntegers":
+                result = ABIEncoder.encodeOneByteArray(bigIntegers(iterations));
+                break;
+        }
+        return result;
+    }
+
+    /**
+     * Mostly tiny basic blocks (so the energy charged at the start of each block dominates).
+     */
+    public static long branches(int iterations) {
+        long accumulator = 1L;
+        for (int i = 0; i < iterations; ++i) {
+            if (0 == (i & 1)) {
+                accumulator += i;
+            } else {
+                accumulator ^= (accumulator << 3);
+            }
+            if (0 == (i % 3)) {
+                accumulator -= 7;
+            }
+        }
+        return accumulator;
+    }
+
+    /**
+     * Longer straight-line blocks over a primitive array.
+     */
+    public static long arrays(int iterations) {
+        int[] values = new int[64];
+        long sum = 0L;
+        for (int i = 0; i < iterations; ++i) {
+            int index = i & 63;
+            values[index] = values[index] * 31 + i;
+            sum += values[index] + values[(index + 1) & 63] + values[(index + 2) & 63];
+        }
+        return sum;
+    }
+
+    /**
+     * Calls into the shadow JDK (which bills each call through the instrumentation attached to the thread).
+     */
+    public static byte[] bigIntegers(int iterations) {
+        BigInteger value = BigInteger.ONE;
+        BigInteger step = BigInteger.valueOf(3L);
+        for (int i = 0; i < iterations; ++i) {
+            value = value.add(step).multiply(step).mod(BigInteger.valueOf(1_000_000_007L));
+        }
+        return value.toByteArray();
+    }
+}
@@ -0,0 +1,104 @@
+package org.aion.avm.core;
+
+import java.math.BigInteger;
+
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.avm.userlib.abi.ABIDecoder;
+import org.aion.avm.userlib.abi.ABIStreamingEncoder;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * A micro-benchmark of energy metering:  it runs the compute-heavy workloads in EnergyMeteringPerfContract and reports how much energy
+ * each one consumes per unit of time (so the cost of the code being billed per energy unit).  Since the energy charged for a given
+ * block of code is fixed, any change in the cost of the metering, itself, shows up directly in these numbers.
+ */
+public class EnergyMeteringPerfTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private static final boolean REPORT = false;
+    private static final int ITERATIONS = REPORT ? 200_000 : 1_000;
+    private static final int ROUNDS = REPORT ? 20 : 2;
+
+    private AionAddress deployer = TestingState.PREMINED_ADDRESS;
+    private TestingState kernel;
+    private AvmImpl avm;
+    private AionAddress contract;
+
+    @Before
+    public void setup() {
+        TestingBlock block = new TestingBlock(new byte[32], 1, Helpers.randomAddress(), System.currentTimeMillis(), new byte[0]);
+        this.kernel = new TestingState(block);
+        this.avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), new AvmConfiguration());
+        byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(EnergyMeteringPerfContract.class);
+        Transaction create = AvmTransactionUtil.create(this.deployer, this.kernel.getNonce(this.deployer), BigInteger.ZERO, new CodeAndArguments(jar, new byte[0]).encodeToBytes(), 5_000_000L, 1L);
+        TransactionResult result = this.avm.run(this.kernel, new Transaction[] {create}, ExecutionType.ASSUME_MAINCHAIN, this.kernel.getBlockNumber() - 1)[0].getResult();
+        Assert.assertTrue(result.transactionStatus.isSuccess());
+        this.contract = new AionAddress(result.copyOfTransactionOutput().orElseThrow());
+    }
+
+    @After
+    public void tearDown() {
+        this.avm.shutdown();
+    }
+
+    @Test
+    public void branches() {
+        TransactionResult result = measure("branches");
+        Assert.assertEquals(EnergyMeteringPerfContract.branches(ITERATIONS), new ABIDecoder(result.copyOfTransactionOutput().orElseThrow()).decodeOneLong());
+    }
+
+    @Test
+    public void arrays() {
+        TransactionResult result = measure("arrays");
+        Assert.assertEquals(EnergyMeteringPerfContract.arrays(ITERATIONS), new ABIDecoder(result.copyOfTransactionOutput().orElseThrow()).decodeOneLong());
+    }
+
+    @Test
+    public void bigIntegers() {
+        TransactionResult result = measure("bigIntegers");
+        Assert.assertArrayEquals(EnergyMeteringPerfContract.bigIntegers(ITERATIONS), new ABIDecoder(result.copyOfTransactionOutput().orElseThrow()).decodeOneByteArray());
+    }
+
+
+    private TransactionResult measure(String methodName) {
+        byte[] data = new ABIStreamingEncoder().encodeOneString(methodName).encodeOneInteger(ITERATIONS).toBytes();
+        // The first call is just to warm up (including the DApp cache, since the others are each in a new block).
+        TransactionResult result = call(data);
+        long energyPerCall = result.energyUsed;
+        long totalNanos = 0L;
+        for (int i = 0; i < ROUNDS; ++i) {
+            this.kernel.generateBlock();
+            long start = System.nanoTime();
+            result = call(data);
+            totalNanos += (System.nanoTime() - start);
+            // The same call must always cost the same.
+            Assert.assertEquals(energyPerCall, result.energyUsed);
+        }
+        report(methodName, energyPerCall, totalNanos / ROUNDS);
+        return result;
+    }
+
+    private TransactionResult call(byte[] data) {
+        Transaction tx = AvmTransactionUtil.call(this.deployer, this.contract, this.kernel.getNonce(this.deployer), BigInteger.ZERO, data, 1_000_000_000L, 1L);
+        TransactionResult result = this.avm.run(this.kernel, new Transaction[] {tx}, ExecutionType.ASSUME_MAINCHAIN, this.kernel.getBlockNumber() - 1)[0].getResult();
+        Assert.assertTrue(result.transactionStatus.isSuccess());
+        return result;
+    }
+
+    private static void report(String methodName, long energyPerCall, long nanosPerCall) {
+        if (REPORT) {
+            System.out.println(methodName + ": " + energyPerCall + " energy in " + nanosPerCall + " ns per call (" + ((double) nanosPerCall / energyPerCall) + " ns per energy unit, " + ((1_000L * energyPerCall) / nanosPerCall) + " energy per microsecond)");
+        }
+    }
+}
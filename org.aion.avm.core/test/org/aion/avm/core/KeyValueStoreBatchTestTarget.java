@@ -0,0 +1,44 @@
+package org.aion.avm.core;
+
+import avm.Blockchain;
+import org.aion.avm.userlib.abi.ABIDecoder;
+
+public class KeyValueStoreBatchTestTarget {
+
+    public static byte[] testAvmGetStorage(byte[] key) {
+        return Blockchain.getStorage(key);
+    }
+
+    public static byte[] testAvmGetStorageBatch(byte[] keys) {
+        return Blockchain.getStorageBatch(keys);
+    }
+
+    public static void testAvmPutStorageBatch(byte[] keys, byte[] values) {
+        Blockchain.putStorageBatch(keys, values);
+    }
+
+    public static byte[] main() {
+        ABIDecoder decoder = new ABIDecoder(Blockchain.getData());
+        String methodName = decoder.decodeMethodName();
+
+        if (methodName == null) {
+            return new byte[0];
+        } else {
+            if (methodName.equals("testAvmGetStorage")) {
+                byte[] key = decoder.decodeOneByteArray();
+                return testAvmGetStorage(key);
+            } else if (methodName.equals("testAvmGetStorageBatch")) {
+                byte[] keys = decoder.decodeOneByteArray();
+                return testAvmGetStorageBatch(keys);
+            } else if (methodName.equals("testAvmPutStorageBatch")) {
+                byte[] keys = decoder.decodeOneByteArray();
+                byte[] values = decoder.decodeOneByteArray();
+                testAvmPutStorageBatch(keys, values);
+                return new byte[0];
+            }
+            else {
+                return new byte[0];
+            }
+        }
+    }
+}
@@ -5,12 +5,15 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigInteger;
+import java.util.Arrays;
 import org.aion.kernel.AvmWrappedTransactionResult.AvmInternalError;
 import org.aion.kernel.TestingState;
 import org.aion.types.AionAddress;
 import org.aion.types.Transaction;
 import org.aion.avm.RuntimeMethodFeeSchedule;
+import org.aion.avm.StorageBatchCodec;
 import org.aion.avm.StorageFees;
 import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
 import org.aion.avm.core.dappreading.UserlibJarBuilder;
@@ -32,6 +35,8 @@ public class KeyValueStoreTest {
 
     private static AionAddress deployer = TestingState.PREMINED_ADDRESS;
     private static AionAddress dappAddress;
+    // (the batch methods are in their own DApp so that they don't change the cost of calling the other one)
+    private static AionAddress batchDappAddress;
 
 
 
@@ -48,6 +53,12 @@ public class KeyValueStoreTest {
         TransactionResult txResult = avm.run(kernel, new Transaction[] {tx}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
         assertTrue(txResult.transactionStatus.isSuccess());
         dappAddress = new AionAddress(txResult.copyOfTransactionOutput().orElseThrow());
+
+        jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(KeyValueStoreBatchTestTarget.class);
+        tx = AvmTransactionUtil.create(deployer, kernel.getNonce(deployer), BigInteger.ZERO, new CodeAndArguments(jar, null).encodeToBytes(), energyLimit, energyPrice);
+        txResult = avm.run(kernel, new Transaction[] {tx}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+        assertTrue(txResult.transactionStatus.isSuccess());
+        batchDappAddress = new AionAddress(txResult.copyOfTransactionOutput().orElseThrow());
     }
 
     @AfterClass
@@ -222,6 +233,123 @@ public class KeyValueStoreTest {
         assertEquals(value.length * StorageFees.READ_PRICE_PER_BYTE, getStorageCost - getZeroCost);
     }
 
+    @Test
+    public void testStorageBatch() {
+        kernel.generateBlock();
+        byte[] key1 = Helpers.randomBytes(32);
+        byte[] key2 = Helpers.randomBytes(32);
+        byte[] key3 = Helpers.randomBytes(32);
+        byte[] value1 = Helpers.randomBytes(32);
+        byte[] value2 = Helpers.randomBytes(7);
+
+        // Write 2 keys and remove one which never existed.
+        TransactionResult txResult = call(encodeOptionalArgsMethodCall("testAvmPutStorageBatch", concat(key1, key2, key3), StorageBatchCodec.encodeValues(new byte[][] { value1, value2, null })));
+        assertTrue(txResult.transactionStatus.isSuccess());
+
+        // They read the same in a batch and one at a time.
+        txResult = call(encodeOptionalArgsMethodCall("testAvmGetStorageBatch", concat(key2, key3, key1), null));
+        assertTrue(txResult.transactionStatus.isSuccess());
+        assertArrayEquals(StorageBatchCodec.encodeValues(new byte[][] { value2, null, value1 }), txResult.copyOfTransactionOutput().orElseThrow());
+        txResult = call(encodeOptionalArgsMethodCall("testAvmGetStorage", key2, null));
+        assertArrayEquals(value2, txResult.copyOfTransactionOutput().orElseThrow());
+
+        // Remove one and replace the other.
+        txResult = call(encodeOptionalArgsMethodCall("testAvmPutStorageBatch", concat(key1, key2), StorageBatchCodec.encodeValues(new byte[][] { null, value1 })));
+        assertTrue(txResult.transactionStatus.isSuccess());
+        txResult = call(encodeOptionalArgsMethodCall("testAvmGetStorageBatch", concat(key1, key2), null));
+        assertArrayEquals(StorageBatchCodec.encodeValues(new byte[][] { null, value1 }), txResult.copyOfTransactionOutput().orElseThrow());
+    }
+
+    @Test
+    public void testStorageBatchInvalid() {
+        kernel.generateBlock();
+        byte[] key = Helpers.randomBytes(32);
+
+        // Keys which aren't 32 bytes each.
+        TransactionResult txResult = call(encodeOptionalArgsMethodCall("testAvmGetStorageBatch", Helpers.randomBytes(33), null));
+        assertEquals(AvmInternalError.FAILED_EXCEPTION.error, txResult.transactionStatus.causeOfError);
+
+        // Fewer values than keys.
+        txResult = call(encodeOptionalArgsMethodCall("testAvmPutStorageBatch", concat(key, key), StorageBatchCodec.encodeValues(new byte[][] { key })));
+        assertEquals(AvmInternalError.FAILED_EXCEPTION.error, txResult.transactionStatus.causeOfError);
+
+        // A value longer than what follows its length.
+        byte[] values = StorageBatchCodec.encodeValues(new byte[][] { key });
+        txResult = call(encodeOptionalArgsMethodCall("testAvmPutStorageBatch", key, Arrays.copyOf(values, values.length - 1)));
+        assertEquals(AvmInternalError.FAILED_EXCEPTION.error, txResult.transactionStatus.causeOfError);
+    }
+
+    @Test
+    public void testStorageBatchBilling() {
+        kernel.generateBlock();
+        byte[][] keys = new byte[3][];
+        byte[][] values = new byte[3][];
+        // (no zero bytes, since those make the transaction data cheaper)
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = new byte[32];
+            Arrays.fill(keys[i], (byte) (i + 1));
+            values[i] = new byte[32];
+            Arrays.fill(values[i], (byte) (i + 100));
+        }
+
+        // Writing new values, then replacing them, costs the same for each key (besides passing the key to the DApp).
+        long[] setCosts = new long[keys.length];
+        long[] replaceCosts = new long[keys.length];
+        for (int count = 1; count <= keys.length; ++count) {
+            byte[] batchKeys = concat(Arrays.copyOf(keys, count));
+            byte[] batchValues = StorageBatchCodec.encodeValues(Arrays.copyOf(values, count));
+            setCosts[count - 1] = successfulCall(encodeOptionalArgsMethodCall("testAvmPutStorageBatch", batchKeys, batchValues)).energyUsed;
+            replaceCosts[count - 1] = successfulCall(encodeOptionalArgsMethodCall("testAvmPutStorageBatch", batchKeys, batchValues)).energyUsed;
+            // (remove them again so the next batch sets them all, again)
+            successfulCall(encodeOptionalArgsMethodCall("testAvmPutStorageBatch", batchKeys, StorageBatchCodec.encodeValues(new byte[count][])));
+        }
+        assertEquals(setCosts[1] - setCosts[0], setCosts[2] - setCosts[1]);
+        assertEquals(replaceCosts[1] - replaceCosts[0], replaceCosts[2] - replaceCosts[1]);
+        for (int i = 0; i < keys.length; ++i) {
+            assertEquals((i + 1) * (long) (RuntimeMethodFeeSchedule.BlockchainRuntime_avm_setStorage - RuntimeMethodFeeSchedule.BlockchainRuntime_avm_resetStorage), setCosts[i] - replaceCosts[i]);
+        }
+
+        // Reading is linear in the number of keys and then pays for what it read.
+        long[] absentCosts = new long[keys.length];
+        long[] presentCosts = new long[keys.length];
+        for (int count = 1; count <= keys.length; ++count) {
+            byte[] batchKeys = concat(Arrays.copyOf(keys, count));
+            absentCosts[count - 1] = successfulCall(encodeOptionalArgsMethodCall("testAvmGetStorageBatch", batchKeys, null)).energyUsed;
+        }
+        successfulCall(encodeOptionalArgsMethodCall("testAvmPutStorageBatch", concat(keys), StorageBatchCodec.encodeValues(values)));
+        for (int count = 1; count <= keys.length; ++count) {
+            byte[] batchKeys = concat(Arrays.copyOf(keys, count));
+            presentCosts[count - 1] = successfulCall(encodeOptionalArgsMethodCall("testAvmGetStorageBatch", batchKeys, null)).energyUsed;
+        }
+        assertEquals(absentCosts[1] - absentCosts[0], absentCosts[2] - absentCosts[1]);
+        for (int i = 0; i < keys.length; ++i) {
+            // (the DApp also pays to return the values)
+            assertTrue((presentCosts[i] - absentCosts[i]) >= (i + 1) * 32L * StorageFees.READ_PRICE_PER_BYTE);
+        }
+        assertEquals(presentCosts[1] - presentCosts[0], presentCosts[2] - presentCosts[1]);
+    }
+
+
+    private static TransactionResult call(byte[] data) {
+        Transaction tx = AvmTransactionUtil.call(deployer, batchDappAddress, kernel.getNonce(deployer), BigInteger.ZERO, data, energyLimit, energyPrice);
+        TransactionResult txResult = avm.run(kernel, new Transaction[] {tx}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber()-1)[0].getResult();
+        kernel.generateBlock();
+        return txResult;
+    }
+
+    private static TransactionResult successfulCall(byte[] data) {
+        TransactionResult txResult = call(data);
+        assertTrue(txResult.transactionStatus.isSuccess());
+        return txResult;
+    }
+
+    private static byte[] concat(byte[]... arrays) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            stream.write(array, 0, array.length);
+        }
+        return stream.toByteArray();
+    }
 
     private static byte[] encodeOptionalArgsMethodCall(String methodName, byte[] key, byte[] value) {
         ABIStreamingEncoder encoder = new ABIStreamingEncoder().encodeOneString(methodName);
@@ -0,0 +1,211 @@
+package org.aion.avm.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.aion.avm.core.types.ClassHierarchy;
+import org.aion.avm.core.types.ClassInformation;
+import org.aion.avm.utilities.Utilities;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Tests the NodeEnvironmentSnapshot format and that a NodeEnvironment started from a snapshot is the same as one which generated everything.
+ * Since the NodeEnvironment is a singleton, each startup is measured in a new JVM (see StartupMain) and this also reports the startup time
+ * with and without the snapshot.
+ */
+public class NodeEnvironmentSnapshotTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private static final boolean REPORT = false;
+    private static final int STARTUPS = REPORT ? 10 : 1;
+
+    private File directory;
+
+    @Before
+    public void setup() throws IOException {
+        this.directory = Files.createTempDirectory("snapshot").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : this.directory.listFiles()) {
+            file.delete();
+        }
+        this.directory.delete();
+    }
+
+    @Test
+    public void roundTrip() {
+        File file = new File(this.directory, "snapshot");
+        byte[] fingerprint = fingerprint((byte) 1);
+        createSnapshot().write(file, fingerprint);
+
+        NodeEnvironmentSnapshot read = NodeEnvironmentSnapshot.readAndVerify(file, fingerprint);
+        Assert.assertNotNull(read);
+        Assert.assertEquals(1, read.sharedClasses.size());
+        Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, read.sharedClasses.get("H"));
+        Assert.assertEquals(Map.of("java/lang/Object", 8), read.preRenameRuntimeObjectSizeMap);
+        Assert.assertEquals(Map.of("s/java/lang/Object", 8), read.postRenameRuntimeObjectSizeMap);
+        Assert.assertEquals(Map.of("java/lang/Object", List.of("hashCode()I", "toString()Ljava/lang/String;")), read.shadowClassSlashNameMethodDescriptorMap);
+        Assert.assertEquals(createSnapshot().hierarchyClassInfos, read.hierarchyClassInfos);
+    }
+
+    @Test
+    public void rejectDifferentFingerprint() {
+        File file = new File(this.directory, "snapshot");
+        createSnapshot().write(file, fingerprint((byte) 1));
+        Assert.assertNull(NodeEnvironmentSnapshot.readAndVerify(file, fingerprint((byte) 2)));
+    }
+
+    @Test
+    public void rejectCorruptSnapshot() throws IOException {
+        File file = new File(this.directory, "snapshot");
+        byte[] fingerprint = fingerprint((byte) 1);
+        createSnapshot().write(file, fingerprint);
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            long last = raw.length() - 1;
+            raw.seek(last);
+            int value = raw.read();
+            raw.seek(last);
+            raw.write(value ^ 0xff);
+        }
+        Assert.assertNull(NodeEnvironmentSnapshot.readAndVerify(file, fingerprint));
+    }
+
+    @Test
+    public void rejectMissingSnapshot() {
+        Assert.assertNull(NodeEnvironmentSnapshot.readAndVerify(new File(this.directory, "missing"), fingerprint((byte) 1)));
+    }
+
+    @Test
+    public void startupFromSnapshot() throws Exception {
+        String snapshotPath = new File(this.directory, "snapshot").getAbsolutePath();
+
+        // Without a snapshot, as a baseline.
+        long generatingNanos = 0L;
+        String generatedEnvironment = null;
+        for (int i = 0; i < STARTUPS; ++i) {
+            String[] result = startNewJvm(null);
+            generatingNanos += Long.parseLong(result[0]);
+            generatedEnvironment = result[1];
+        }
+
+        // The first start with a snapshot file writes it.
+        String[] writing = startNewJvm(snapshotPath);
+        Assert.assertEquals(generatedEnvironment, writing[1]);
+        Assert.assertTrue(new File(snapshotPath).isFile());
+
+        // The rest read it.
+        long readingNanos = 0L;
+        for (int i = 0; i < STARTUPS; ++i) {
+            String[] result = startNewJvm(snapshotPath);
+            readingNanos += Long.parseLong(result[0]);
+            // The environment must be the same, whichever way it was created.
+            Assert.assertEquals(generatedEnvironment, result[1]);
+        }
+        report("NodeEnvironment startup, generating: " + (generatingNanos / STARTUPS / 1_000_000L) + " ms");
+        report("NodeEnvironment startup, writing the snapshot: " + (Long.parseLong(writing[0]) / 1_000_000L) + " ms");
+        report("NodeEnvironment startup, from the snapshot: " + (readingNanos / STARTUPS / 1_000_000L) + " ms");
+    }
+
+
+    private static NodeEnvironmentSnapshot createSnapshot() {
+        Map<String, byte[]> sharedClasses = new HashMap<>();
+        sharedClasses.put("H", new byte[] { 1, 2, 3 });
+        Map<String, List<String>> descriptors = new HashMap<>();
+        descriptors.put("java/lang/Object", List.of("hashCode()I", "toString()Ljava/lang/String;"));
+        Set<ClassInformation> infos = new HashSet<>();
+        infos.add(ClassInformation.postRenameInfoFor(false, "s.java.lang.Number", "s.java.lang.Object", new String[] { "s.java.io.Serializable" }));
+        infos.add(ClassInformation.postRenameInfoFor(true, "s.java.lang.Comparable", null, new String[] { "i.IObject" }));
+        return new NodeEnvironmentSnapshot(sharedClasses
+                , new HashMap<>(Map.of("java/lang/Object", 8))
+                , new HashMap<>(Map.of("s/java/lang/Object", 8))
+                , descriptors
+                , infos);
+    }
+
+    private static byte[] fingerprint(byte value) {
+        byte[] fingerprint = new byte[32];
+        Arrays.fill(fingerprint, value);
+        return fingerprint;
+    }
+
+    /**
+     * @return The startup time, in nanoseconds, and the description of the environment printed by StartupMain.
+     */
+    private static String[] startNewJvm(String snapshotPath) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        if (null != snapshotPath) {
+            command.add("-D" + NodeEnvironment.SNAPSHOT_PROPERTY + "=" + snapshotPath);
+        }
+        command.add(StartupMain.class.getName());
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line = reader.readLine();
+            while (null != line) {
+                lines.add(line);
+                line = reader.readLine();
+            }
+        }
+        Assert.assertEquals(String.join("\n", lines), 0, process.waitFor());
+        Assert.assertEquals(2, lines.size());
+        return lines.toArray(new String[2]);
+    }
+
+    private static void report(String output) {
+        if (REPORT) {
+            System.out.println(output);
+        }
+    }
+
+
+    /**
+     * Run in a new JVM to start the NodeEnvironment:  prints the startup time (in nanoseconds) and then a one-line description of the
+     * environment (its maps and the hierarchy around its classes) so that the environments of different runs can be compared.
+     */
+    public static class StartupMain {
+        public static void main(String[] args) {
+            long start = System.nanoTime();
+            NodeEnvironment environment = NodeEnvironment.singleton;
+            long nanos = System.nanoTime() - start;
+
+            StringBuilder description = new StringBuilder();
+            description.append(new TreeMap<>(environment.preRenameRuntimeObjectSizeMap));
+            description.append(new TreeMap<>(environment.postRenameRuntimeObjectSizeMap));
+            // (the order of each class's descriptors comes from reflection so it can differ between runs, and doesn't matter)
+            for (Map.Entry<String, List<String>> entry : new TreeMap<>(environment.shadowClassSlashNameMethodDescriptorMap).entrySet()) {
+                description.append(entry.getKey()).append(new TreeSet<>(entry.getValue()));
+            }
+            ClassHierarchy hierarchy = environment.deepCopyOfClassHierarchy();
+            description.append(hierarchy.size());
+            for (String slashName : new TreeMap<>(environment.postRenameRuntimeObjectSizeMap).keySet()) {
+                String dotName = Utilities.internalNameToFulllyQualifiedName(slashName);
+                if (hierarchy.contains(dotName)) {
+                    description.append(dotName).append(':').append(hierarchy.getConcreteSuperClassDotName(dotName)).append(hierarchy.postRenameTypeIsInterface(dotName));
+                }
+            }
+            System.out.println(nanos);
+            System.out.println(description);
+        }
+    }
+}
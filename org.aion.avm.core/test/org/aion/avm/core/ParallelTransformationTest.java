@@ -0,0 +1,156 @@
+package org.aion.avm.core;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.persistence.HotObjectContract;
+import org.aion.avm.core.testWallet.ByteArrayHelpers;
+import org.aion.avm.core.testWallet.ByteArrayWrapper;
+import org.aion.avm.core.testWallet.BytesKey;
+import org.aion.avm.core.testWallet.Daylimit;
+import org.aion.avm.core.testWallet.EventLogger;
+import org.aion.avm.core.testWallet.Multiowned;
+import org.aion.avm.core.testWallet.Operation;
+import org.aion.avm.core.testWallet.RequireFailedException;
+import org.aion.avm.core.testWallet.Wallet;
+import org.aion.avm.core.types.RawDappModule;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.avm.userlib.abi.ABIDecoder;
+import org.aion.avm.userlib.abi.ABIStreamingEncoder;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Tests that transforming the classes of a DApp concurrently produces exactly the same code as transforming them one at a time.
+ * The wallet DApp includes an exception (which causes a wrapper class to be generated) and interfaces with fields (which causes the
+ * sequential interface field pass to generate classes), so every part of the merge is covered.
+ */
+public class ParallelTransformationTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private static final boolean REPORT = false;
+    private static final AionAddress DEPLOYER = TestingState.PREMINED_ADDRESS;
+
+    private ForkJoinPool pool;
+    private byte[] code;
+
+    @Before
+    public void setup() {
+        this.pool = new ForkJoinPool(4);
+        this.code = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(Wallet.class
+                , Multiowned.class
+                , ByteArrayWrapper.class
+                , Operation.class
+                , ByteArrayHelpers.class
+                , BytesKey.class
+                , RequireFailedException.class
+                , Daylimit.class
+                , EventLogger.class
+                , InterfaceTestResource.class
+                , OuterInteface.class
+        );
+    }
+
+    @After
+    public void tearDown() {
+        this.pool.shutdown();
+    }
+
+    @Test
+    public void transformedClassesAreIdentical() {
+        Map<String, byte[]> sequential = transform(null);
+        Map<String, byte[]> parallel = transform(this.pool);
+
+        Assert.assertEquals(sequential.keySet(), parallel.keySet());
+        for (Map.Entry<String, byte[]> entry : sequential.entrySet()) {
+            Assert.assertArrayEquals(entry.getKey(), entry.getValue(), parallel.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void deployedCodeIsIdentical() {
+        byte[] txData = new CodeAndArguments(UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(HotObjectContract.class), new byte[0]).encodeToBytes();
+        TestingBlock block = new TestingBlock(new byte[32], 1, Helpers.randomAddress(), System.currentTimeMillis(), new byte[0]);
+
+        AvmConfiguration configuration = new AvmConfiguration();
+        TestingState sequentialKernel = new TestingState(block);
+        AvmImpl sequentialAvm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), configuration);
+        AionAddress sequentialAddress = deploy(sequentialAvm, sequentialKernel, txData);
+        sequentialAvm.shutdown();
+
+        configuration.transformationThreadCount = 2;
+        TestingState parallelKernel = new TestingState(block);
+        AvmImpl parallelAvm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), configuration);
+        AionAddress parallelAddress = deploy(parallelAvm, parallelKernel, txData);
+
+        Assert.assertEquals(sequentialAddress, parallelAddress);
+        Assert.assertArrayEquals(sequentialKernel.getTransformedCode(sequentialAddress), parallelKernel.getTransformedCode(parallelAddress));
+
+        // Force the code to be re-transformed, in the pool, and make sure the DApp still works.
+        parallelKernel.generateBlock();
+        parallelKernel.setTransformedCode(parallelAddress, null);
+        Assert.assertEquals(10, callDoubleStaticValue(parallelAvm, parallelKernel, parallelAddress));
+        Assert.assertEquals(20, callDoubleStaticValue(parallelAvm, parallelKernel, parallelAddress));
+        parallelAvm.shutdown();
+    }
+
+    @Test
+    public void compareTransformationTime() {
+        int iterations = 50;
+        // Warm up both paths before timing them.
+        timeTransformations(iterations, null);
+        timeTransformations(iterations, this.pool);
+
+        long sequentialNanos = timeTransformations(iterations, null);
+        long parallelNanos = timeTransformations(iterations, this.pool);
+        report("Sequential transformation: " + (sequentialNanos / iterations / 1000L) + " us per DApp");
+        report("Parallel transformation (4 threads): " + (parallelNanos / iterations / 1000L) + " us per DApp");
+    }
+
+
+    private Map<String, byte[]> transform(ForkJoinPool transformationPool) {
+        // We read the module each time since the transformation doesn't expect to be given the same hierarchy twice.
+        RawDappModule rawDapp = RawDappModule.readFromJar(this.code, false, false);
+        return DAppCreator.transformClasses(rawDapp.classes, rawDapp.classHierarchyForest, rawDapp.classHierarchy, rawDapp.classRenamer, false, transformationPool, false);
+    }
+
+    private long timeTransformations(int iterations, ForkJoinPool transformationPool) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; ++i) {
+            Assert.assertFalse(transform(transformationPool).isEmpty());
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static AionAddress deploy(AvmImpl avm, TestingState kernel, byte[] txData) {
+        Transaction tx = AvmTransactionUtil.create(DEPLOYER, kernel.getNonce(DEPLOYER), BigInteger.ZERO, txData, 5_000_000, 1);
+        TransactionResult result = avm.run(kernel, new Transaction[]{tx}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+        Assert.assertTrue(result.transactionStatus.isSuccess());
+        return new AionAddress(result.copyOfTransactionOutput().orElseThrow());
+    }
+
+    private static int callDoubleStaticValue(AvmImpl avm, TestingState kernel, AionAddress dappAddress) {
+        byte[] data = new ABIStreamingEncoder().encodeOneString("doubleStaticValue").toBytes();
+        Transaction tx = AvmTransactionUtil.call(DEPLOYER, dappAddress, kernel.getNonce(DEPLOYER), BigInteger.ZERO, data, 2_000_000, 1);
+        TransactionResult result = avm.run(kernel, new Transaction[]{tx}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+        Assert.assertTrue(result.transactionStatus.isSuccess());
+        return new ABIDecoder(result.copyOfTransactionOutput().orElseThrow()).decodeOneInteger();
+    }
+
+    private static void report(String output) {
+        if (REPORT) {
+            System.out.println(output);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.aion.avm.core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+import i.Helper;
+
+
+/**
+ * A benchmark of the per-DApp footprint of the classes we add to every DApp's class loader:  it deploys many copies of a contract,
+ * calls each of them, and then reports the metaspace used and how many methods the JIT has compiled (in total, and in the "H" helper
+ * class which the instrumented code calls).
+ * Since the loaded DApps are cached, this is the footprint a node has with that many DApps in its cache.
+ */
+public class SharedHelperFootprintTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private static final boolean REPORT = false;
+    private static final int DAPPS = REPORT ? 500 : 4;
+    private static final int CALLS_PER_DAPP = REPORT ? 20 : 1;
+    private static final AionAddress DEPLOYER = TestingState.PREMINED_ADDRESS;
+
+    @Test
+    public void reportFootprintOfCachedDApps() throws Exception {
+        TestingState kernel = new TestingState(new TestingBlock(new byte[32], 1, Helpers.randomAddress(), System.currentTimeMillis(), new byte[0]));
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), new AvmConfiguration());
+        long metaspaceBefore = usedMetaspace();
+
+        byte[] txData = new CodeAndArguments(UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(BasicPerfContract.class), new byte[0]).encodeToBytes();
+        List<AionAddress> dapps = new ArrayList<>();
+        for (int i = 0; i < DAPPS; ++i) {
+            TransactionResult result = run(avm, kernel, AvmTransactionUtil.create(DEPLOYER, kernel.getNonce(DEPLOYER), BigInteger.ZERO, txData, 5_000_000, 1));
+            dapps.add(new AionAddress(result.copyOfTransactionOutput().orElseThrow()));
+        }
+        for (int i = 0; i < CALLS_PER_DAPP; ++i) {
+            for (AionAddress dapp : dapps) {
+                run(avm, kernel, AvmTransactionUtil.call(DEPLOYER, dapp, kernel.getNonce(DEPLOYER), BigInteger.ZERO, new byte[0], 2_000_000, 1));
+            }
+        }
+
+        long metaspaceAfter = usedMetaspace();
+        String[] compiledMethods = compiledMethods();
+        int compiledHelperMethods = 0;
+        for (String method : compiledMethods) {
+            if (method.startsWith(Helper.RUNTIME_HELPER_NAME + ".")) {
+                compiledHelperMethods += 1;
+            }
+        }
+        report("DApps: " + DAPPS + " (" + CALLS_PER_DAPP + " calls each)");
+        report("Loaded classes: " + ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+        report("Metaspace used: " + ((metaspaceAfter - metaspaceBefore) / 1024L) + " KiB (" + ((metaspaceAfter - metaspaceBefore) / DAPPS) + " bytes/DApp)");
+        report("JIT-compiled methods: " + compiledMethods.length + " (" + compiledHelperMethods + " in " + Helper.RUNTIME_HELPER_NAME + ")");
+        avm.shutdown();
+    }
+
+
+    private static TransactionResult run(AvmImpl avm, TestingState kernel, Transaction tx) {
+        TransactionResult result = avm.run(kernel, new Transaction[]{tx}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+        Assert.assertTrue(result.transactionStatus.isSuccess());
+        // (the cached DApps are only valid in later blocks)
+        kernel.generateBlock();
+        return result;
+    }
+
+    private static long usedMetaspace() {
+        System.gc();
+        long used = 0L;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if ("Metaspace".equals(pool.getName())) {
+                used = pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * @return The names of the methods the JIT has compiled, as "class.method(descriptor)", one entry per compiled copy.
+     */
+    private static String[] compiledMethods() throws Exception {
+        // Each line of the code list is "<compile id> <level> <state> <method> [<addresses>]".
+        String codeList = (String) ManagementFactory.getPlatformMBeanServer().invoke(new ObjectName("com.sun.management:type=DiagnosticCommand")
+                , "compilerCodelist"
+                , new Object[] { null }
+                , new String[] { String[].class.getName() });
+        String[] lines = codeList.trim().split("\n");
+        String[] methods = new String[lines.length];
+        for (int i = 0; i < lines.length; ++i) {
+            methods[i] = lines[i].split(" ")[3];
+        }
+        return methods;
+    }
+
+    private static void report(String output) {
+        if (REPORT) {
+            System.out.println(output);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.aion.avm.core;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * A micro-benchmark of what a DApp's storage reads and writes allocate (the storage path shouldn't copy the keys and values more than
+ * once) and a check that they still cost the same energy.
+ */
+public class StorageAllocationTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private static final boolean REPORT = false;
+    private static final int ITERATIONS = REPORT ? 200 : 2;
+    private static final int OPERATIONS = 1_000;
+    private static final AionAddress DEPLOYER = TestingState.PREMINED_ADDRESS;
+    private static final byte MODE_READ = 2;
+    private static final byte MODE_WRITE = 3;
+
+    private TestingState kernel;
+    private AvmImpl avm;
+    private AionAddress contract;
+
+    @Before
+    public void setup() {
+        this.kernel = new TestingState(new TestingBlock(new byte[32], 1, Helpers.randomAddress(), System.currentTimeMillis(), new byte[0]));
+        this.avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), new AvmConfiguration());
+        byte[] txData = new CodeAndArguments(UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(StorageHeavyContract.class), new byte[0]).encodeToBytes();
+        TransactionResult deployment = run(AvmTransactionUtil.create(DEPLOYER, this.kernel.getNonce(DEPLOYER), BigInteger.ZERO, txData, 5_000_000L, 1L));
+        this.contract = new AionAddress(deployment.copyOfTransactionOutput().orElseThrow());
+        // Every key has a value, so the reads find something and the writes replace it.
+        call(MODE_WRITE, OPERATIONS);
+    }
+
+    @After
+    public void tearDown() {
+        this.avm.shutdown();
+    }
+
+    @Test
+    public void testEnergyIsUnchanged() {
+        // These are what these calls cost when each storage access copied the value an extra time (it must not change).
+        Assert.assertEquals(74_761L, call(MODE_READ, 100).energyUsed);
+        Assert.assertEquals(565_948L, call(MODE_WRITE, 100).energyUsed);
+    }
+
+    @Test
+    public void allocationsPerOperation() {
+        for (byte mode : new byte[] { MODE_READ, MODE_WRITE }) {
+            // Subtract what a call with no storage access allocates, to see what each access allocates.
+            long bytes = 0L;
+            long nanos = 0L;
+            for (int i = 0; i < ITERATIONS; ++i) {
+                long emptyBytes = allocatedBytesInAllThreads();
+                call(mode, 0);
+                emptyBytes = allocatedBytesInAllThreads() - emptyBytes;
+
+                long startBytes = allocatedBytesInAllThreads();
+                long start = System.nanoTime();
+                call(mode, OPERATIONS);
+                nanos += System.nanoTime() - start;
+                bytes += allocatedBytesInAllThreads() - startBytes - emptyBytes;
+            }
+            report(((MODE_READ == mode) ? "getStorage: " : "putStorage: ")
+                    + (bytes / ITERATIONS / OPERATIONS) + " bytes allocated/operation, " + (nanos / ITERATIONS / OPERATIONS) + " ns/operation (in a transaction of " + OPERATIONS + ")");
+        }
+    }
+
+
+    private TransactionResult call(byte mode, int operations) {
+        byte[] callData = new byte[] { mode, (byte) (operations >> 8), (byte) operations };
+        return run(AvmTransactionUtil.call(DEPLOYER, this.contract, this.kernel.getNonce(DEPLOYER), BigInteger.ZERO, callData, 20_000_000L, 1L));
+    }
+
+    private TransactionResult run(Transaction tx) {
+        TransactionResult result = this.avm.run(this.kernel, new Transaction[]{tx}, ExecutionType.ASSUME_MAINCHAIN, this.kernel.getBlockNumber() - 1)[0].getResult();
+        Assert.assertTrue(result.transactionStatus.toString(), result.transactionStatus.isSuccess());
+        this.kernel.generateBlock();
+        return result;
+    }
+
+    private static long allocatedBytesInAllThreads() {
+        // The transactions run on the AVM's threads so we need to count all of them.
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytes = 0L;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            bytes += Math.max(0L, allocated);
+        }
+        return bytes;
+    }
+
+    private static void report(String output) {
+        if (REPORT) {
+            System.out.println(output);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.aion.avm.core;
+
+import java.math.BigInteger;
+
+import avm.Blockchain;
+
+
+/**
+ * A contract which just writes storage:  the data is a mode byte and then a 2-byte count of writes, which are spread over 10 keys.
+ * Mode 0 does the writes directly while mode 1 does them in an internal call (to itself) so they pass through another level of state.
+ * Modes 2 and 3 instead read, or write, the keys reusing the same arrays (so the DApp itself allocates almost nothing).
+ */
+public class StorageHeavyContract {
+    private static final int KEYS = 10;
+
+    public static byte[] main() {
+        byte[] data = Blockchain.getData();
+        int writes = ((0xff & data[1]) << 8) | (0xff & data[2]);
+        if (1 == data[0]) {
+            byte[] callData = new byte[] { 0, data[1], data[2] };
+            Blockchain.require(Blockchain.call(Blockchain.getAddress(), BigInteger.ZERO, callData, Blockchain.getRemainingEnergy() - 100_000L).isSuccess());
+        } else if (2 == data[0]) {
+            byte[] key = new byte[32];
+            for (int i = 0; i < writes; ++i) {
+                key[0] = (byte) (i % KEYS);
+                Blockchain.getStorage(key);
+            }
+        } else if (3 == data[0]) {
+            byte[] key = new byte[32];
+            byte[] value = new byte[32];
+            for (int i = 0; i < writes; ++i) {
+                key[0] = (byte) (i % KEYS);
+                value[0] = (byte) i;
+                value[1] = (byte) (i >> 8);
+                Blockchain.putStorage(key, value);
+            }
+        } else {
+            for (int i = 0; i < writes; ++i) {
+                byte[] key = new byte[32];
+                key[0] = (byte) (i % KEYS);
+                byte[] value = new byte[32];
+                value[0] = (byte) i;
+                value[1] = (byte) (i >> 8);
+                Blockchain.putStorage(key, value);
+            }
+        }
+        return new byte[0];
+    }
+}
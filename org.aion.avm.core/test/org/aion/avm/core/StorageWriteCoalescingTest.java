@@ -0,0 +1,131 @@
+package org.aion.avm.core;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.aion.kernel.TransactionalState;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * A benchmark of what it costs to write the same storage keys (and balance) many times, since each level of TransactionalState must commit
+ * those writes to its parent:  first, directly against nested TransactionalState instances and then with a storage-heavy contract.
+ */
+public class StorageWriteCoalescingTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private static final boolean REPORT = false;
+    private static final int ITERATIONS = REPORT ? 2_000 : 2;
+    private static final int WRITES = 1_000;
+    private static final int KEYS = 10;
+    private static final AionAddress DEPLOYER = TestingState.PREMINED_ADDRESS;
+
+    @Test
+    public void nestedCommits() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        AionAddress contract = Helpers.randomAddress();
+        AionAddress sender = Helpers.randomAddress();
+        byte[][] keys = new byte[KEYS][];
+        for (int i = 0; i < KEYS; ++i) {
+            keys[i] = Helpers.randomBytes(32);
+        }
+
+        long commitNanos = 0L;
+        long commitBytes = 0L;
+        for (int iteration = 0; iteration < ITERATIONS; ++iteration) {
+            // The levels are:  the block's kernel, the transaction and an internal call.
+            TestingState kernel = new TestingState();
+            TransactionalState transaction = new TransactionalState(kernel);
+            TransactionalState internalCall = transaction.newChildExternalState();
+            byte[] lastValue = null;
+            for (int i = 0; i < WRITES; ++i) {
+                lastValue = Helpers.randomBytes(32);
+                internalCall.putStorage(contract, keys[i % KEYS], lastValue);
+                // A value transfer moves balance between the accounts.
+                internalCall.adjustBalance(sender, BigInteger.ONE.negate());
+                internalCall.adjustBalance(contract, BigInteger.ONE);
+            }
+            internalCall.removeStorage(contract, keys[0]);
+
+            long startBytes = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            internalCall.commit();
+            transaction.commit();
+            commitNanos += System.nanoTime() - start;
+            commitBytes += threads.getThreadAllocatedBytes(threadId) - startBytes;
+
+            Assert.assertNull(kernel.getStorage(contract, keys[0]));
+            Assert.assertArrayEquals(lastValue, kernel.getStorage(contract, keys[(WRITES - 1) % KEYS]));
+            Assert.assertEquals(BigInteger.valueOf(WRITES), kernel.getBalance(contract));
+            Assert.assertEquals(BigInteger.valueOf(-WRITES), kernel.getBalance(sender));
+        }
+        report("Commit of " + WRITES + " storage writes and " + (2 * WRITES) + " balance adjustments through 2 levels: "
+                + (commitNanos / ITERATIONS / 1000L) + " us, " + (commitBytes / ITERATIONS) + " bytes allocated");
+    }
+
+    @Test
+    public void storageHeavyContract() {
+        TestingState kernel = new TestingState(new TestingBlock(new byte[32], 1, Helpers.randomAddress(), System.currentTimeMillis(), new byte[0]));
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), new AvmConfiguration());
+        byte[] txData = new CodeAndArguments(UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(StorageHeavyContract.class), new byte[0]).encodeToBytes();
+        TransactionResult deployment = run(avm, kernel, AvmTransactionUtil.create(DEPLOYER, kernel.getNonce(DEPLOYER), BigInteger.ZERO, txData, 5_000_000L, 1L));
+        AionAddress contract = new AionAddress(deployment.copyOfTransactionOutput().orElseThrow());
+
+        for (int mode = 0; mode <= 1; ++mode) {
+            byte[] callData = new byte[] { (byte) mode, (byte) (WRITES >> 8), (byte) WRITES };
+            long nanos = 0L;
+            long bytes = 0L;
+            for (int i = 0; i < ITERATIONS; ++i) {
+                Transaction tx = AvmTransactionUtil.call(DEPLOYER, contract, kernel.getNonce(DEPLOYER), BigInteger.ZERO, callData, 20_000_000L, 1L);
+                long startBytes = allocatedBytesInAllThreads();
+                long start = System.nanoTime();
+                run(avm, kernel, tx);
+                nanos += System.nanoTime() - start;
+                bytes += allocatedBytesInAllThreads() - startBytes;
+            }
+            // The last write to each key is what we see.
+            byte[] key = new byte[32];
+            key[0] = (byte) ((WRITES - 1) % KEYS);
+            byte[] value = kernel.getStorage(contract, key);
+            Assert.assertEquals((byte) (WRITES - 1), value[0]);
+            Assert.assertEquals((byte) ((WRITES - 1) >> 8), value[1]);
+            report("Contract writing storage " + WRITES + " times" + ((1 == mode) ? " in an internal call: " : ": ")
+                    + (nanos / ITERATIONS / 1000L) + " us/tx, " + (bytes / ITERATIONS) + " bytes allocated/tx");
+        }
+        avm.shutdown();
+    }
+
+
+    private static TransactionResult run(AvmImpl avm, TestingState kernel, Transaction tx) {
+        TransactionResult result = avm.run(kernel, new Transaction[]{tx}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+        Assert.assertTrue(result.transactionStatus.toString(), result.transactionStatus.isSuccess());
+        kernel.generateBlock();
+        return result;
+    }
+
+    private static long allocatedBytesInAllThreads() {
+        // The transactions run on the AVM's threads so we need to count all of them.
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytes = 0L;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            bytes += Math.max(0L, allocated);
+        }
+        return bytes;
+    }
+
+    private static void report(String output) {
+        if (REPORT) {
+            System.out.println(output);
+        }
+    }
+}
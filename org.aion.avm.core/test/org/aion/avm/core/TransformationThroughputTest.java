@@ -0,0 +1,112 @@
+package org.aion.avm.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.persistence.HotObjectContract;
+import org.aion.avm.core.persistence.IncrementalGraphContract;
+import org.aion.avm.core.testBlake2b.Blake2b;
+import org.aion.avm.core.testWallet.ByteArrayHelpers;
+import org.aion.avm.core.testWallet.ByteArrayWrapper;
+import org.aion.avm.core.testWallet.BytesKey;
+import org.aion.avm.core.testWallet.Daylimit;
+import org.aion.avm.core.testWallet.EventLogger;
+import org.aion.avm.core.testWallet.Multiowned;
+import org.aion.avm.core.testWallet.Operation;
+import org.aion.avm.core.testWallet.RequireFailedException;
+import org.aion.avm.core.testWallet.Wallet;
+import org.aion.avm.core.types.RawDappModule;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * A benchmark of the deployment transformation:  it transforms a corpus of the test contracts and reports the throughput, in classes
+ * per second, and the bytes allocated per class.
+ * The corpus includes exceptions (which generate wrapper classes) and interfaces with fields (which generate FIELDS classes) so
+ * that every part of the transformation is exercised.
+ */
+public class TransformationThroughputTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private static final boolean REPORT = false;
+    private static final int WARMUP_ROUNDS = REPORT ? 50 : 1;
+    private static final int ROUNDS = REPORT ? 200 : 2;
+
+    @Test
+    public void transformCorpus() {
+        List<byte[]> corpus = buildCorpus();
+        for (int i = 0; i < WARMUP_ROUNDS; ++i) {
+            transformAll(readAll(corpus));
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long classes = 0L;
+        long nanos = 0L;
+        long allocatedBytes = 0L;
+        for (int i = 0; i < ROUNDS; ++i) {
+            // Reading the jars isn't part of what we are measuring.
+            List<RawDappModule> modules = readAll(corpus);
+            long startBytes = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            classes += transformAll(modules);
+            nanos += System.nanoTime() - start;
+            allocatedBytes += threads.getThreadAllocatedBytes(threadId) - startBytes;
+        }
+        report("Transformed " + classes + " classes in " + (nanos / 1_000_000L) + " ms");
+        report("Throughput: " + (classes * 1_000_000_000L / nanos) + " classes/sec");
+        report("Allocated: " + (allocatedBytes / classes) + " bytes/class");
+    }
+
+
+    private static List<byte[]> buildCorpus() {
+        List<byte[]> corpus = new ArrayList<>();
+        corpus.add(UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(Wallet.class
+                , Multiowned.class
+                , ByteArrayWrapper.class
+                , Operation.class
+                , ByteArrayHelpers.class
+                , BytesKey.class
+                , RequireFailedException.class
+                , Daylimit.class
+                , EventLogger.class
+        ));
+        corpus.add(UserlibJarBuilder.buildJarForMainAndClasses(org.aion.avm.core.testBlake2b.Main.class, Blake2b.class));
+        corpus.add(UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(InterfaceTestResource.class, OuterInteface.class));
+        corpus.add(UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(HotObjectContract.class));
+        corpus.add(UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(IncrementalGraphContract.class));
+        corpus.add(UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(BasicPerfContract.class));
+        corpus.add(UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(EnergyMeteringPerfContract.class));
+        return corpus;
+    }
+
+    private static List<RawDappModule> readAll(List<byte[]> corpus) {
+        List<RawDappModule> modules = new ArrayList<>();
+        for (byte[] jar : corpus) {
+            RawDappModule module = RawDappModule.readFromJar(jar, false, false);
+            Assert.assertNotNull(module);
+            modules.add(module);
+        }
+        return modules;
+    }
+
+    private static int transformAll(List<RawDappModule> modules) {
+        int classes = 0;
+        for (RawDappModule module : modules) {
+            Map<String, byte[]> transformed = DAppCreator.transformClasses(module.classes, module.classHierarchyForest, module.classHierarchy, module.classRenamer, false);
+            // Every input class is transformed, along with the constant class and any classes generated along the way.
+            Assert.assertTrue(transformed.size() > module.classes.size());
+            classes += module.classes.size();
+        }
+        return classes;
+    }
+
+    private static void report(String output) {
+        if (REPORT) {
+            System.out.println(output);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.aion.avm.core.blockchainruntime;
 
+import org.aion.avm.StorageBatchCodec;
 import org.aion.avm.core.IExternalState;
 import org.aion.types.AionAddress;
 import p.avm.Address;
@@ -171,6 +172,47 @@ public class TestingBlockchainRuntime implements IBlockchainRuntime {
             : null;
     }
 
+    @Override
+    public int avm_getStorageLength(ByteArray key) {
+        Objects.requireNonNull(key);
+        byte[] data = this.kernel.getStorage(address, key.getUnderlying());
+        return (null != data)
+            ? data.length
+            : -1;
+    }
+
+    @Override
+    public ByteArray avm_getStorageBatch(ByteArray keys) {
+        Objects.requireNonNull(keys);
+        byte[][] values = this.kernel.getStorageBatch(address, StorageBatchCodec.splitKeys(keys.getUnderlying()));
+        return new ByteArray(StorageBatchCodec.encodeValues(values));
+    }
+
+    @Override
+    public int[] avm_getStorageLengthBatch(ByteArray keys) {
+        Objects.requireNonNull(keys);
+        byte[][] values = this.kernel.getStorageBatch(address, StorageBatchCodec.splitKeys(keys.getUnderlying()));
+        int[] lengths = new int[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            lengths[i] = (null != values[i]) ? values[i].length : StorageBatchCodec.ABSENT_LENGTH;
+        }
+        return lengths;
+    }
+
+    @Override
+    public void avm_putStorageBatch(ByteArray keys, ByteArray values, boolean[] requiresRefund) {
+        Objects.requireNonNull(keys);
+        byte[][] splitKeys = StorageBatchCodec.splitKeys(keys.getUnderlying());
+        byte[][] splitValues = StorageBatchCodec.splitValues(values.getUnderlying(), splitKeys.length);
+        for (int i = 0; i < splitKeys.length; ++i) {
+            if (null == splitValues[i]) {
+                kernel.removeStorage(address, splitKeys[i]);
+            } else {
+                kernel.putStorage(address, splitKeys[i], splitValues[i]);
+            }
+        }
+    }
+
     @Override
     public BigInteger avm_getBalance(Address address) {
         Objects.requireNonNull(address);
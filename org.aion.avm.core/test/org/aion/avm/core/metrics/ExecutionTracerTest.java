@@ -0,0 +1,171 @@
+package org.aion.avm.core.metrics;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.aion.avm.core.AvmConfiguration;
+import org.aion.avm.core.AvmImpl;
+import org.aion.avm.core.AvmTransactionUtil;
+import org.aion.avm.core.CommonAvmFactory;
+import org.aion.avm.core.ExecutionType;
+import org.aion.avm.core.FutureResult;
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.avm.userlib.abi.ABIStreamingEncoder;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.aion.parallel.TestContract;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class ExecutionTracerTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private static final boolean REPORT = false;
+
+    private TestingBlock block = new TestingBlock(new byte[32], 1, Helpers.randomAddress(), System.currentTimeMillis(), new byte[0]);
+
+    @Test
+    public void testRingKeepsNewestSpans() {
+        TraceRing ring = new TraceRing(4);
+        for (int i = 0; i < 6; ++i) {
+            ring.record(SpanKind.EXECUTE, i, i, i + 1, null);
+        }
+        Assert.assertEquals(6L, ring.getWritten());
+
+        // The oldest slot is never read since it is the next one to be written.
+        List<Integer> visited = new ArrayList<>();
+        ring.forEachSince(0L, (kind, transactionIndex, startNanos, endNanos, subject) -> visited.add(transactionIndex));
+        Assert.assertEquals(List.of(3, 4, 5), visited);
+
+        visited.clear();
+        ring.forEachSince(5L, (kind, transactionIndex, startNanos, endNanos, subject) -> visited.add(transactionIndex));
+        Assert.assertEquals(List.of(5), visited);
+
+        TraceRing.DISABLED.record(SpanKind.EXECUTE, 0, 0L, 1L, null);
+        Assert.assertEquals(0L, TraceRing.DISABLED.getWritten());
+    }
+
+    @Test
+    public void testBatchTrace() {
+        TestingState kernel = new TestingState(block);
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), new AvmConfiguration());
+        AionAddress contract = deploy(kernel, avm);
+
+        // The calls all write the same DApp, so they wait for each other's locks, and commits.
+        int calls = 8;
+        Transaction[] batch = new Transaction[calls];
+        for (int i = 0; i < calls; ++i) {
+            AionAddress user = Helpers.randomAddress();
+            kernel.adjustBalance(user, BigInteger.TEN.pow(20));
+            batch[i] = AvmTransactionUtil.call(user, contract, BigInteger.ZERO, BigInteger.ZERO, encodeNoArgsMethodCall("addValue"), 2_000_000L, 1L);
+        }
+        runSuccessfulBatch(kernel, avm, batch);
+
+        String trace = avm.getTracer().getLastBatchTrace();
+        Assert.assertTrue(trace.startsWith("{\"traceEvents\":["));
+        Assert.assertTrue(trace.endsWith("]}\n"));
+        Assert.assertTrue(trace.contains("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":0,\"args\":{\"name\":\"AVM Executor Thread 0\"}}"));
+        // Every transaction is traced once (the aborted attempts are traced as aborts).
+        Assert.assertEquals(calls, countOccurrences(trace, "\"name\":\"transaction\""));
+        Assert.assertEquals(calls, countOccurrences(trace, "\"name\":\"queue wait\""));
+        Assert.assertEquals(calls, countOccurrences(trace, "\"name\":\"commit wait\""));
+        Assert.assertEquals(calls, countOccurrences(trace, "\"name\":\"serialize\""));
+        Assert.assertTrue(countOccurrences(trace, "\"name\":\"execute\",\"cat\":\"avm\",\"ph\":\"X\"") >= calls);
+        Assert.assertTrue(countOccurrences(trace, "\"name\":\"lock wait\"") >= calls);
+        Assert.assertTrue(trace.contains("\"address\":\"" + contract.toString() + "\""));
+
+        // The next batch replaces it.
+        Transaction single = AvmTransactionUtil.call(TestingState.PREMINED_ADDRESS, contract, kernel.getNonce(TestingState.PREMINED_ADDRESS), BigInteger.ZERO, encodeNoArgsMethodCall("addValue"), 2_000_000L, 1L);
+        runSuccessfulBatch(kernel, avm, new Transaction[] {single});
+        trace = avm.getTracer().getLastBatchTrace();
+        Assert.assertEquals(1, countOccurrences(trace, "\"name\":\"transaction\""));
+        report(trace);
+        avm.shutdown();
+    }
+
+    @Test
+    public void testMethodProfile() {
+        AvmConfiguration config = new AvmConfiguration();
+        config.methodProfileSampleInterval = 1;
+        TestingState kernel = new TestingState(block);
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        AionAddress contract = deploy(kernel, avm);
+        Transaction call = AvmTransactionUtil.call(TestingState.PREMINED_ADDRESS, contract, kernel.getNonce(TestingState.PREMINED_ADDRESS), BigInteger.ZERO, encodeNoArgsMethodCall("addValue"), 2_000_000L, 1L);
+        runSuccessfulBatch(kernel, avm, new Transaction[] {call});
+
+        Assert.assertEquals(List.of(contract), avm.getTracer().getProfiledDApps());
+        StringBuilder profile = new StringBuilder();
+        avm.getTracer().writeMethodProfile(contract, profile);
+        // Every method entry was sampled so we see main() and the call it made (as well as those into the userlib classes in the jar).
+        Assert.assertTrue(profile.toString().contains("TestContract.main 1\n"));
+        Assert.assertTrue(profile.toString().contains("TestContract.main;org.aion.parallel.TestContract.addValue 1\n"));
+        report(profile.toString());
+
+        avm.getTracer().clearMethodProfiles();
+        Assert.assertTrue(avm.getTracer().getProfiledDApps().isEmpty());
+        avm.shutdown();
+    }
+
+    /**
+     * Measures what recording a span costs, to show it is cheap enough to leave on.
+     */
+    @Test
+    public void recordingCost() {
+        int iterations = REPORT ? 100_000_000 : 1_000;
+        TraceRing ring = new TraceRing(16 * 1024);
+        Object subject = new byte[32];
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; ++i) {
+            ring.record(SpanKind.LOCK_WAIT, i, i, i + 1, subject);
+        }
+        long nanos = System.nanoTime() - start;
+        Assert.assertEquals(iterations, ring.getWritten());
+        report("TraceRing.record(): " + ((double) nanos / iterations) + " ns");
+    }
+
+
+    private AionAddress deploy(TestingState kernel, AvmImpl avm) {
+        byte[] code = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(TestContract.class);
+        Transaction create = AvmTransactionUtil.create(TestingState.PREMINED_ADDRESS, kernel.getNonce(TestingState.PREMINED_ADDRESS), BigInteger.ZERO, new CodeAndArguments(code, null).encodeToBytes(), 5_000_000L, 1L);
+        TransactionResult deployment = runSuccessfulBatch(kernel, avm, new Transaction[] {create})[0];
+        return new AionAddress(deployment.copyOfTransactionOutput().orElseThrow());
+    }
+
+    private static TransactionResult[] runSuccessfulBatch(TestingState kernel, AvmImpl avm, Transaction[] batch) {
+        FutureResult[] futures = avm.run(kernel, batch, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1);
+        TransactionResult[] results = new TransactionResult[futures.length];
+        for (int i = 0; i < futures.length; ++i) {
+            results[i] = futures[i].getResult();
+            Assert.assertTrue(results[i].transactionStatus.isSuccess());
+        }
+        kernel.generateBlock();
+        return results;
+    }
+
+    private static int countOccurrences(String text, String pattern) {
+        int count = 0;
+        for (int index = text.indexOf(pattern); index >= 0; index = text.indexOf(pattern, index + 1)) {
+            count += 1;
+        }
+        return count;
+    }
+
+    private static byte[] encodeNoArgsMethodCall(String methodName) {
+        return new ABIStreamingEncoder()
+                .encodeOneString(methodName)
+                .toBytes();
+    }
+
+    private static void report(String output) {
+        if (REPORT) {
+            System.out.println(output);
+        }
+    }
+}
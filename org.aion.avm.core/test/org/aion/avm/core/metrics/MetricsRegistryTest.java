@@ -0,0 +1,146 @@
+package org.aion.avm.core.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class MetricsRegistryTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private static final boolean REPORT = false;
+
+    @Test
+    public void testHistogramSmallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (long i = 1L; i <= 10L; ++i) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(10L, histogram.getCount());
+        Assert.assertEquals(55L, histogram.getSum());
+        Assert.assertEquals(10L, histogram.getMax());
+        Assert.assertEquals(5L, histogram.getValueAtQuantile(0.5));
+        Assert.assertEquals(9L, histogram.getValueAtQuantile(0.9));
+        Assert.assertEquals(10L, histogram.getValueAtQuantile(1.0));
+    }
+
+    @Test
+    public void testHistogramRelativeError() {
+        // Record a wide range of values and check that each quantile is within the bucket precision (1/16) of the exact answer.
+        Random random = new Random(42L);
+        long[] values = new long[100_000];
+        Histogram histogram = new Histogram();
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = (long) Math.pow(10.0, 9.0 * random.nextDouble());
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double quantile : new double[] { 0.1, 0.5, 0.9, 0.99, 0.999 }) {
+            long exact = values[(int) Math.ceil(quantile * values.length) - 1];
+            long reported = histogram.getValueAtQuantile(quantile);
+            Assert.assertTrue(reported >= exact);
+            Assert.assertTrue((reported - exact) <= (exact / 16L) + 1L);
+        }
+        Assert.assertEquals(values[values.length - 1], histogram.getMax());
+
+        // Very large (and negative) values still have somewhere to go.
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-1L);
+        Assert.assertEquals(Long.MAX_VALUE, histogram.getValueAtQuantile(1.0));
+        Assert.assertEquals(0L, histogram.getValueAtQuantile(0.0));
+    }
+
+    @Test
+    public void testHistogramAddAndClear() {
+        Histogram first = new Histogram();
+        Histogram second = new Histogram();
+        first.record(100L);
+        second.record(1_000L);
+        second.record(1_000L);
+        first.add(second);
+        Assert.assertEquals(3L, first.getCount());
+        Assert.assertEquals(2_100L, first.getSum());
+        Assert.assertEquals(1_000L, first.getMax());
+        Assert.assertEquals(2L, second.getCount());
+
+        first.clear();
+        Assert.assertEquals(0L, first.getCount());
+        Assert.assertEquals(0L, first.getValueAtQuantile(0.5));
+    }
+
+    @Test
+    public void testTextExposition() {
+        MetricsRegistry registry = new MetricsRegistry();
+        long[] counter = new long[] { 3L };
+        Histogram histogram = new Histogram();
+        histogram.record(10L);
+        registry.registerCounter("test_events_total", "Events seen.", "", () -> counter[0]);
+        registry.registerHistogram("test_latency_nanoseconds", "Latency.", MetricsRegistry.labels("thread", "executor-0"), histogram);
+        registry.registerHistogram("test_latency_nanoseconds", "Latency.", MetricsRegistry.labels("thread", "executor-1"), new Histogram());
+
+        // The metrics are read when they are pulled, not when registered.
+        counter[0] = 5L;
+        String expected = "# HELP test_events_total Events seen.\n"
+                + "# TYPE test_events_total counter\n"
+                + "test_events_total 5\n"
+                + "# HELP test_latency_nanoseconds Latency.\n"
+                + "# TYPE test_latency_nanoseconds summary\n"
+                + "test_latency_nanoseconds{thread=\"executor-0\",quantile=\"0.5\"} 10\n"
+                + "test_latency_nanoseconds{thread=\"executor-0\",quantile=\"0.9\"} 10\n"
+                + "test_latency_nanoseconds{thread=\"executor-0\",quantile=\"0.99\"} 10\n"
+                + "test_latency_nanoseconds{thread=\"executor-0\",quantile=\"0.999\"} 10\n"
+                + "test_latency_nanoseconds{thread=\"executor-0\",quantile=\"1.0\"} 10\n"
+                + "test_latency_nanoseconds_sum{thread=\"executor-0\"} 10\n"
+                + "test_latency_nanoseconds_count{thread=\"executor-0\"} 1\n"
+                + "test_latency_nanoseconds{thread=\"executor-1\",quantile=\"0.5\"} 0\n"
+                + "test_latency_nanoseconds{thread=\"executor-1\",quantile=\"0.9\"} 0\n"
+                + "test_latency_nanoseconds{thread=\"executor-1\",quantile=\"0.99\"} 0\n"
+                + "test_latency_nanoseconds{thread=\"executor-1\",quantile=\"0.999\"} 0\n"
+                + "test_latency_nanoseconds{thread=\"executor-1\",quantile=\"1.0\"} 0\n"
+                + "test_latency_nanoseconds_sum{thread=\"executor-1\"} 0\n"
+                + "test_latency_nanoseconds_count{thread=\"executor-1\"} 0\n";
+        Assert.assertEquals(expected, registry.toText());
+
+        List<MetricsRegistry.Sample> samples = registry.collect();
+        Assert.assertEquals(15, samples.size());
+        Assert.assertEquals("test_events_total", samples.get(0).name);
+        Assert.assertEquals(5L, samples.get(0).value);
+    }
+
+    @Test
+    public void testLabelEscaping() {
+        Assert.assertEquals("a=\"x\\\"y\",b=\"1\\\\2\"", MetricsRegistry.labels("a", "x\"y", "b", "1\\2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFamilyTypesMustMatch() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.registerCounter("test_metric", "A counter.", "", () -> 1L);
+        registry.registerGauge("test_metric", "A gauge.", "", () -> 1L);
+    }
+
+    /**
+     * Measures what recording a value costs, to show it is cheap enough for the executor threads' hot paths.
+     */
+    @Test
+    public void recordingCost() {
+        int iterations = REPORT ? 100_000_000 : 1_000;
+        Histogram histogram = new Histogram();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; ++i) {
+            histogram.record(i & 0xFFFFF);
+        }
+        long nanos = System.nanoTime() - start;
+        Assert.assertEquals(iterations, histogram.getCount());
+        report("Histogram.record(): " + ((double) nanos / iterations) + " ns");
+    }
+
+
+    private static void report(String output) {
+        if (REPORT) {
+            System.out.println(output);
+        }
+    }
+}
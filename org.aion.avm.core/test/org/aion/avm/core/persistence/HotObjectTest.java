@@ -18,6 +18,7 @@ import org.aion.types.TransactionResult;
 import org.junit.*;
 
 import java.math.BigInteger;
+import java.util.Arrays;
 
 import static org.junit.Assert.assertTrue;
 
@@ -636,6 +637,95 @@ public class HotObjectTest {
         return totalDuration / rounds;
     }
 
+    /**
+     * Demonstrates that the graph written by a DApp which stays in the cache (where any instance not touched by the call re-uses
+     * its cached encoding) is identical to the graph written after loading the DApp from storage, every time.
+     */
+    @Test
+    public void cachedGraphSerializesIdenticallyToLoadedGraph() {
+        byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(IncrementalGraphContract.class);
+        byte[] txData = new CodeAndArguments(jar, new byte[0]).encodeToBytes();
+        TestingState cachedKernel = new TestingState(block);
+        TestingState loadedKernel = new TestingState(block);
+        AionAddress cachedDapp = deploy(deployer, cachedKernel, txData);
+        AionAddress loadedDapp = deploy(deployer, loadedKernel, txData);
+
+        byte[][] calls = new byte[][] {
+                new ABIStreamingEncoder().encodeOneString("populate").encodeOneInteger(200).toBytes(),
+                new ABIStreamingEncoder().encodeOneString("bump").encodeOneInteger(17).toBytes(),
+                new ABIStreamingEncoder().encodeOneString("get").encodeOneInteger(42).toBytes(),
+                new ABIStreamingEncoder().encodeOneString("put").encodeOneInteger(3).encodeOneString("three").toBytes(),
+                new ABIStreamingEncoder().encodeOneString("link").encodeOneInteger(5).encodeOneInteger(150).toBytes(),
+                new ABIStreamingEncoder().encodeOneString("bump").encodeOneInteger(150).toBytes(),
+                new ABIStreamingEncoder().encodeOneString("remove").encodeOneInteger(99).toBytes(),
+                new ABIStreamingEncoder().encodeOneString("link").encodeOneInteger(150).encodeOneInteger(5).toBytes(),
+                new ABIStreamingEncoder().encodeOneString("put").encodeOneInteger(300).encodeOneString("new").toBytes(),
+                new ABIStreamingEncoder().encodeOneString("bump").encodeOneInteger(300).toBytes(),
+        };
+        for (byte[] data : calls) {
+            // Each call is in a new block so the cached DApp can use the graph it already has in memory.
+            cachedKernel.generateBlock();
+            loadedKernel.generateBlock();
+            Transaction cachedTx = AvmTransactionUtil.call(deployer, cachedDapp, cachedKernel.getNonce(deployer), BigInteger.ZERO, data, energyLimit, energyPrice);
+            TransactionResult cachedResult = avm.run(cachedKernel, new Transaction[]{cachedTx}, ExecutionType.ASSUME_MAINCHAIN, cachedKernel.getBlockNumber() - 1)[0].getResult();
+            // Deep side-chain execution never uses the DApp cache so this one always loads the graph from storage.
+            Transaction loadedTx = AvmTransactionUtil.call(deployer, loadedDapp, loadedKernel.getNonce(deployer), BigInteger.ZERO, data, energyLimit, energyPrice);
+            TransactionResult loadedResult = avm.run(loadedKernel, new Transaction[]{loadedTx}, ExecutionType.ASSUME_DEEP_SIDECHAIN, 0L)[0].getResult();
+
+            assertTrue(cachedResult.transactionStatus.isSuccess());
+            assertTrue(loadedResult.transactionStatus.isSuccess());
+            Assert.assertEquals(loadedResult.energyUsed, cachedResult.energyUsed);
+            Assert.assertArrayEquals(loadedKernel.getObjectGraph(loadedDapp), cachedKernel.getObjectGraph(cachedDapp));
+        }
+    }
+
+    /**
+     * Demonstrates that a call which loads a large graph from storage, but only reaches a few of its objects, only loads those (the
+     * others are left as stubs and are copied back into the graph it writes).
+     * Note that the graph size is limited to StorageFees.MAX_GRAPH_SIZE so this is about as large as a DApp's graph can get.
+     */
+    @Test
+    public void lazilyLoadedGraphOnlyLoadsReachedObjects() {
+        byte[] jar = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(IncrementalGraphContract.class);
+        byte[] txData = new CodeAndArguments(jar, new byte[0]).encodeToBytes();
+        TestingState kernel = new TestingState(block);
+        AionAddress dappAddress = deploy(deployer, kernel, txData);
+
+        int nodeCount = 2_000;
+        for (int i = 0; i < nodeCount; i += 500) {
+            callDappInSameBlock(kernel, dappAddress, new ABIStreamingEncoder().encodeOneString("populate").encodeOneInteger(500).toBytes());
+        }
+        byte[] graph = kernel.getObjectGraph(dappAddress);
+
+        // We stay in the same block so every call loads the graph from storage.
+        TransactionResult result = callDappInSameBlock(kernel, dappAddress, new ABIStreamingEncoder().encodeOneString("get").encodeOneInteger(1234).toBytes());
+        Assert.assertEquals(1234, new ABIDecoder(result.copyOfTransactionOutput().orElseThrow()).decodeOneInteger());
+        // Only the next hashcode (at the start of the graph) can change since we only read the graph.
+        Assert.assertArrayEquals(Arrays.copyOfRange(graph, 4, graph.length), Arrays.copyOfRange(kernel.getObjectGraph(dappAddress), 4, graph.length));
+
+        result = callDappInSameBlock(kernel, dappAddress, new ABIStreamingEncoder().encodeOneString("sum").toBytes());
+        Assert.assertEquals((nodeCount * (nodeCount - 1)) / 2, new ABIDecoder(result.copyOfTransactionOutput().orElseThrow()).decodeOneInteger());
+        Assert.assertArrayEquals(Arrays.copyOfRange(graph, 4, graph.length), Arrays.copyOfRange(kernel.getObjectGraph(dappAddress), 4, graph.length));
+
+        int rounds = 20;
+        long fewObjectsResult = 0L;
+        long allObjectsResult = 0L;
+        for (int i = 0; i < rounds; ++i) {
+            long start = System.nanoTime();
+            callDappInSameBlock(kernel, dappAddress, new ABIStreamingEncoder().encodeOneString("getFirst").toBytes());
+            fewObjectsResult += (System.nanoTime() - start);
+            start = System.nanoTime();
+            callDappInSameBlock(kernel, dappAddress, new ABIStreamingEncoder().encodeOneString("sum").toBytes());
+            allObjectsResult += (System.nanoTime() - start);
+        }
+        fewObjectsResult /= rounds;
+        allObjectsResult /= rounds;
+
+        if (REPORT) {
+            System.out.println("Avg execution time (" + graph.length + " serialized bytes, " + nodeCount + " nodes) reaching one node: " + fewObjectsResult + ", reaching every node: " + allObjectsResult + "(ns). all/one ratio: " + (double) allObjectsResult / fewObjectsResult);
+        }
+    }
+
     private static AionAddress deploy(AionAddress deployer, TestingState kernel, byte[] txData) {
         Transaction tx1 = AvmTransactionUtil.create(deployer, kernel.getNonce(deployer), BigInteger.ZERO, txData, 5_000_000, energyPrice);
         TransactionResult result = avm.run(kernel, new Transaction[]{tx1}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
@@ -643,6 +733,14 @@ public class HotObjectTest {
         return new AionAddress(result.copyOfTransactionOutput().orElseThrow());
     }
 
+    private static TransactionResult callDappInSameBlock(TestingState kernel, AionAddress dappAddress, byte[] data) {
+        // Reading and writing a graph close to the maximum size costs more than the usual energyLimit.
+        Transaction tx = AvmTransactionUtil.call(deployer, dappAddress, kernel.getNonce(deployer), BigInteger.ZERO, data, 5_000_000L, energyPrice);
+        TransactionResult result = avm.run(kernel, new Transaction[]{tx}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+        assertTrue(result.transactionStatus.isSuccess());
+        return result;
+    }
+
     private static TransactionResult callDapp(TestingState kernel, AionAddress sender, AionAddress dappAddress, String methodName, Object... args) {
         ABIStreamingEncoder encoder = new ABIStreamingEncoder().encodeOneString(methodName);
         for (Object arg : args) {
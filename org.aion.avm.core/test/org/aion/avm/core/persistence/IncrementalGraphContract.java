@@ -0,0 +1,97 @@
+package org.aion.avm.core.persistence;
+
+import avm.Blockchain;
+import org.aion.avm.userlib.AionMap;
+import org.aion.avm.userlib.abi.ABIDecoder;
+import org.aion.avm.userlib.abi.ABIEncoder;
+
+/**
+ * Used within HotObjectTest to modify (or read) small parts of a large graph, which stays in the hot DApp cache or is loaded lazily.
+ */
+public class IncrementalGraphContract {
+    private static AionMap<Integer, Node> nodes = new AionMap<>();
+    private static Node first;
+
+    public static byte[] main() {
+        ABIDecoder decoder = new ABIDecoder(Blockchain.getData());
+        String methodName = decoder.decodeMethodName();
+        if (methodName == null) {
+            return new byte[0];
+        } else {
+            switch (methodName) {
+                case "populate":
+                    populate(decoder.decodeOneInteger());
+                    break;
+                case "put":
+                    put(decoder.decodeOneInteger(), decoder.decodeOneString());
+                    break;
+                case "bump":
+                    bump(decoder.decodeOneInteger());
+                    break;
+                case "link":
+                    link(decoder.decodeOneInteger(), decoder.decodeOneInteger());
+                    break;
+                case "remove":
+                    remove(decoder.decodeOneInteger());
+                    break;
+                case "get":
+                    return ABIEncoder.encodeOneInteger(get(decoder.decodeOneInteger()));
+                case "getFirst":
+                    return ABIEncoder.encodeOneInteger(first.value);
+                case "sum":
+                    return ABIEncoder.encodeOneInteger(sum());
+            }
+            return null;
+        }
+    }
+
+    public static void populate(int count) {
+        // (this appends to what is already there so a large graph can be populated over several calls)
+        int start = nodes.size();
+        for (int i = start; i < start + count; i++) {
+            nodes.put(i, new Node(i, "node" + i));
+        }
+        first = nodes.get(0);
+    }
+
+    public static void put(int key, String label) {
+        nodes.put(key, new Node(key, label));
+    }
+
+    public static void bump(int key) {
+        nodes.get(key).value += 1;
+    }
+
+    public static void link(int from, int to) {
+        nodes.get(from).next = nodes.get(to);
+        first = nodes.get(to);
+    }
+
+    public static void remove(int key) {
+        nodes.remove(key);
+    }
+
+    public static int get(int key) {
+        Node node = nodes.get(key);
+        return (null != node) ? node.value : -1;
+    }
+
+    public static int sum() {
+        int total = 0;
+        for (Node node : nodes.values()) {
+            total += node.value;
+        }
+        return total;
+    }
+
+    public static class Node {
+        public int value;
+        public String label;
+        public Node next;
+
+        public Node(int value, String label) {
+            this.value = value;
+            this.label = label;
+        }
+    }
+}
@@ -343,6 +343,65 @@ public class SerializerTest {
         report("Deserialized in " + deltaNanosPer + " ns");
     }
 
+    @Test
+    public void testPerfObjectTree() throws Exception {
+        // The larger graphs are only worth the time when someone is looking at the numbers.
+        int[] objectCounts = REPORT
+                ? new int[] {10_000, 100_000, 1_000_000}
+                : new int[] {10_000};
+        int samples = 10;
+        for (int objectCount : objectCounts) {
+            // A binary tree, so the traversal has to follow the automatically-serialized fields.
+            TargetLeaf[] nodes = new TargetLeaf[objectCount];
+            for (int i = 0; i < objectCount; ++i) {
+                nodes[i] = new TargetLeaf();
+                nodes[i].counter = i;
+            }
+            for (int i = 0; i < objectCount; ++i) {
+                int left = (2 * i) + 1;
+                int right = (2 * i) + 2;
+                nodes[i].left = (left < objectCount) ? nodes[left] : null;
+                nodes[i].right = (right < objectCount) ? nodes[right] : null;
+            }
+            TargetRoot.root = nodes[0];
+            
+            int nextHashCode = 1;
+            Class<?>[] sortedRoots = new Class<?>[] {TargetRoot.class, TargetLeaf.class};
+            TestGlobalResolver resolver = new TestGlobalResolver();
+            TestNameMapper classNameMapper = new TestNameMapper();
+            ByteBuffer serializationBuffer = ByteBuffer.allocate(32 * objectCount);
+            
+            // Do the serialization (the first pass is just to warm up).
+            Serializer.serializeEntireGraph(serializationBuffer, null, null, resolver, this.cache, classNameMapper, nextHashCode, sortedRoots, EmptyConstantClass.class);
+            long start = System.nanoTime();
+            for (int i = 0; i < samples; ++i) {
+                serializationBuffer.clear();
+                Serializer.serializeEntireGraph(serializationBuffer, null, null, resolver, this.cache, classNameMapper, nextHashCode, sortedRoots, EmptyConstantClass.class);
+            }
+            long end = System.nanoTime();
+            byte[] finalBytes = new byte[serializationBuffer.position()];
+            System.arraycopy(serializationBuffer.array(), 0, finalBytes, 0, finalBytes.length);
+            report("ObjectTree(" + objectCount + ") serialized size: " + finalBytes.length);
+            report("Serialized in " + ((end - start) / samples) + " ns");
+            
+            // Do the deserialization.
+            ByteBuffer deserializationBuffer = ByteBuffer.wrap(finalBytes);
+            Deserializer.deserializeEntireGraphAndNextHashCode(deserializationBuffer, null, resolver, this.cache, classNameMapper, sortedRoots, EmptyConstantClass.class);
+            start = System.nanoTime();
+            for (int i = 0; i < samples; ++i) {
+                deserializationBuffer.clear();
+                Deserializer.deserializeEntireGraphAndNextHashCode(deserializationBuffer, null, resolver, this.cache, classNameMapper, sortedRoots, EmptyConstantClass.class);
+            }
+            end = System.nanoTime();
+            report("Deserialized in " + ((end - start) / samples) + " ns");
+            
+            // The tree must have survived the round-trip.
+            TargetLeaf root = (TargetLeaf) TargetRoot.root;
+            Assert.assertEquals(0, root.counter);
+            Assert.assertEquals(objectCount - 1, walkTo(root, objectCount - 1).counter);
+        }
+    }
+
     @Test
     public void TestCleanClassStatics() throws Exception {
         int nextHashCode = 1;
@@ -422,6 +481,15 @@ public class SerializerTest {
         }
     }
 
+    private static TargetLeaf walkTo(TargetLeaf root, int index) {
+        TargetLeaf node = root;
+        if (index > 0) {
+            TargetLeaf parent = walkTo(root, (index - 1) / 2);
+            node = (TargetLeaf) ((1 == (index % 2)) ? parent.left : parent.right);
+        }
+        return node;
+    }
+
     private static final class EmptyConstantClass {
     }
 
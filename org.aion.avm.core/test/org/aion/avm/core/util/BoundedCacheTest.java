@@ -0,0 +1,89 @@
+package org.aion.avm.core.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class BoundedCacheTest {
+    @Test
+    public void testCheckoutCheckin() {
+        BoundedCache<String, byte[]> cache = new BoundedCache<>(4, 1024L, (value) -> value.length, new CacheStats());
+        byte[] element1 = new byte[16];
+        cache.checkin("element1", element1);
+        Assert.assertEquals(16L, cache.sizeInBytes());
+        Assert.assertSame(element1, cache.checkout("element1"));
+        Assert.assertNull(cache.checkout("element1"));
+        Assert.assertEquals(0L, cache.sizeInBytes());
+
+        Assert.assertEquals(1L, cache.getStats().getHitCount());
+        Assert.assertEquals(1L, cache.getStats().getMissCount());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedByCount() {
+        BoundedCache<String, byte[]> cache = new BoundedCache<>(2, 1024L, (value) -> value.length, new CacheStats());
+        cache.checkin("a", new byte[1]);
+        cache.checkin("b", new byte[1]);
+        // Using "a" makes "b" the least-recently used.
+        cache.checkin("a", cache.checkout("a"));
+        cache.checkin("c", new byte[1]);
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(1L, cache.getStats().getEvictionCount());
+        Assert.assertNull(cache.checkout("b"));
+        Assert.assertNotNull(cache.checkout("a"));
+        Assert.assertNotNull(cache.checkout("c"));
+    }
+
+    @Test
+    public void testEvictsBySize() {
+        BoundedCache<String, byte[]> cache = new BoundedCache<>(100, 100L, (value) -> value.length, new CacheStats());
+        cache.checkin("a", new byte[40]);
+        cache.checkin("b", new byte[40]);
+        cache.checkin("c", new byte[40]);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(80L, cache.sizeInBytes());
+        Assert.assertNull(cache.checkout("a"));
+
+        // Something larger than the whole cache is never admitted.
+        cache.checkin("huge", new byte[101]);
+        Assert.assertEquals(1L, cache.getStats().getRejectionCount());
+        Assert.assertNull(cache.checkout("huge"));
+    }
+
+    @Test
+    public void testFrequentEntriesSurviveScan() {
+        BoundedCache<String, byte[]> cache = new BoundedCache<>(4, 1024L, (value) -> value.length, new CacheStats());
+        String[] hot = { "hot0", "hot1", "hot2", "hot3" };
+        for (String key : hot) {
+            cache.checkin(key, new byte[1]);
+        }
+        // Use the hot entries a few times.
+        for (int round = 0; round < 3; ++round) {
+            for (String key : hot) {
+                cache.checkin(key, cache.checkout(key));
+            }
+        }
+        // A scan of keys only seen once must not displace them.
+        for (int i = 0; i < 100; ++i) {
+            String key = "cold" + i;
+            Assert.assertNull(cache.checkout(key));
+            cache.checkin(key, new byte[1]);
+        }
+        for (String key : hot) {
+            Assert.assertNotNull(cache.checkout(key));
+        }
+        Assert.assertEquals(100L, cache.getStats().getRejectionCount());
+    }
+
+    @Test
+    public void testRemoveValueIf() {
+        BoundedCache<String, byte[]> cache = new BoundedCache<>(4, 1024L, (value) -> value.length, new CacheStats());
+        cache.checkin("small", new byte[1]);
+        cache.checkin("large", new byte[100]);
+        cache.removeValueIf((value) -> value.length > 10);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(1L, cache.sizeInBytes());
+        Assert.assertNull(cache.checkout("large"));
+    }
+}
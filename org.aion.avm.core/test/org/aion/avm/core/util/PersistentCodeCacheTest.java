@@ -0,0 +1,78 @@
+package org.aion.avm.core.util;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class PersistentCodeCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSurvivesRestart() throws Exception {
+        File directory = folder.newFolder();
+        byte[] code = new byte[] { 1, 2, 3, 4 };
+        byte[] transformed = new byte[] { 5, 6, 7, 8, 9 };
+
+        PersistentCodeCache cache = new PersistentCodeCache(directory, 1, new CacheStats());
+        cache.startup();
+        Assert.assertNull(cache.load(code, false));
+        cache.storeAsynchronously(code, false, transformed);
+        cache.shutdown();
+
+        CacheStats stats = new CacheStats();
+        PersistentCodeCache restarted = new PersistentCodeCache(directory, 1, stats);
+        restarted.startup();
+        Assert.assertArrayEquals(transformed, restarted.load(code, false));
+        // The debuggability flag and transformation version are part of the key.
+        Assert.assertNull(restarted.load(code, true));
+        restarted.shutdown();
+        Assert.assertEquals(1L, stats.getHitCount());
+        Assert.assertEquals(1L, stats.getMissCount());
+
+        PersistentCodeCache nextVersion = new PersistentCodeCache(directory, 2, new CacheStats());
+        nextVersion.startup();
+        Assert.assertNull(nextVersion.load(code, false));
+        nextVersion.shutdown();
+    }
+
+    @Test
+    public void testCorruptEntryIsDiscarded() throws Exception {
+        File directory = folder.newFolder();
+        byte[] code = new byte[] { 1, 2, 3, 4 };
+        byte[] transformed = new byte[] { 5, 6, 7, 8, 9 };
+
+        PersistentCodeCache cache = new PersistentCodeCache(directory, 1, new CacheStats());
+        cache.startup();
+        cache.storeAsynchronously(code, false, transformed);
+        cache.shutdown();
+
+        // Flip the last byte of the payload.
+        File[] entries = directory.listFiles();
+        Assert.assertEquals(1, entries.length);
+        try (RandomAccessFile file = new RandomAccessFile(entries[0], "rw")) {
+            file.seek(file.length() - 1);
+            file.write(0xFF);
+        }
+
+        CacheStats stats = new CacheStats();
+        PersistentCodeCache restarted = new PersistentCodeCache(directory, 1, stats);
+        restarted.startup();
+        Assert.assertNull(restarted.load(code, false));
+        Assert.assertEquals(1L, stats.getEvictionCount());
+        Assert.assertEquals(0, directory.listFiles().length);
+
+        // It can then be written again.
+        restarted.storeAsynchronously(code, false, transformed);
+        restarted.shutdown();
+        PersistentCodeCache reloaded = new PersistentCodeCache(directory, 1, new CacheStats());
+        reloaded.startup();
+        Assert.assertArrayEquals(transformed, reloaded.load(code, false));
+        reloaded.shutdown();
+    }
+}
@@ -0,0 +1,184 @@
+package org.aion.avm.core.verification;
+
+import java.math.BigInteger;
+import java.util.Map;
+
+import org.aion.avm.core.AvmConfiguration;
+import org.aion.avm.core.AvmImpl;
+import org.aion.avm.core.AvmTransactionUtil;
+import org.aion.avm.core.CommonAvmFactory;
+import org.aion.avm.core.ExecutionType;
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.persistence.HotObjectContract;
+import org.aion.avm.core.rejection.RejectedClassException;
+import org.aion.avm.core.testWallet.ByteArrayHelpers;
+import org.aion.avm.core.testWallet.ByteArrayWrapper;
+import org.aion.avm.core.testWallet.BytesKey;
+import org.aion.avm.core.testWallet.Daylimit;
+import org.aion.avm.core.testWallet.EventLogger;
+import org.aion.avm.core.testWallet.Multiowned;
+import org.aion.avm.core.testWallet.Operation;
+import org.aion.avm.core.testWallet.RequireFailedException;
+import org.aion.avm.core.testWallet.Wallet;
+import org.aion.avm.core.types.RawDappModule;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import i.UncaughtException;
+
+
+/**
+ * Tests the analysis done by Verifier.verifyUntrustedClass(), against loading the classes (which is how they used to be verified),
+ * and compares the deployment latency with and without the class loading cross-check.
+ */
+public class AnalyzingVerifierTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private static final boolean REPORT = false;
+    private static final AionAddress DEPLOYER = TestingState.PREMINED_ADDRESS;
+
+    @Test
+    public void analysisAcceptsWallet() {
+        RawDappModule rawDapp = RawDappModule.readFromJar(buildWalletJar(), false, false);
+        Assert.assertTrue(analyzeAll(rawDapp));
+        Assert.assertTrue(loadAll(rawDapp));
+    }
+
+    @Test
+    public void analysisAcceptsInterfaceAssignment() {
+        // (any reference can be passed as an interface, as far as the JVM's verifier is concerned)
+        RawDappModule rawDapp = RawDappModule.readFromJar(buildJarForMethod("(Ljava/lang/Object;)Ljava/lang/Comparable;"), false, false);
+        Assert.assertTrue(analyzeAll(rawDapp));
+        Assert.assertTrue(loadAll(rawDapp));
+    }
+
+    @Test
+    public void analysisRejectsInvalidReturn() {
+        // Returning an Object from a method declared to return a String requires the hierarchy to know the relationship.
+        // Note that loading the class doesn't notice this since it doesn't link the class (which is when the JVM verifies it).
+        RawDappModule rawDapp = RawDappModule.readFromJar(buildJarForMethod("(Ljava/lang/Object;)Ljava/lang/String;"), false, false);
+        Assert.assertFalse(analyzeAll(rawDapp));
+        Assert.assertTrue(loadAll(rawDapp));
+    }
+
+    @Test
+    public void compareDeploymentLatency() {
+        byte[] walletJar = buildWalletJar();
+        byte[] txData = new CodeAndArguments(UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(HotObjectContract.class), new byte[0]).encodeToBytes();
+        int iterations = REPORT ? 200 : 2;
+
+        // First, just the verification of the wallet.
+        long analysisNanos = 0L;
+        long loadingNanos = 0L;
+        for (int i = 0; i < iterations; ++i) {
+            RawDappModule rawDapp = RawDappModule.readFromJar(walletJar, false, false);
+            long start = System.nanoTime();
+            Assert.assertTrue(analyzeAll(rawDapp));
+            analysisNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            Assert.assertTrue(loadAll(rawDapp));
+            loadingNanos += System.nanoTime() - start;
+        }
+        report("Wallet verification by analysis: " + (analysisNanos / iterations / 1000L) + " us");
+        report("Wallet verification by loading: " + (loadingNanos / iterations / 1000L) + " us");
+
+        // Then, the whole deployment, with and without the cross-check (which verifies by loading, as well).
+        AvmConfiguration configuration = new AvmConfiguration();
+        long analyzedDeploymentNanos = timeDeployments(configuration, txData, iterations);
+        configuration.crossCheckVerification = true;
+        long crossCheckedDeploymentNanos = timeDeployments(configuration, txData, iterations);
+        report("Deployment with analysis: " + (analyzedDeploymentNanos / iterations / 1000L) + " us");
+        report("Deployment with analysis and cross-check: " + (crossCheckedDeploymentNanos / iterations / 1000L) + " us");
+    }
+
+
+    private static boolean analyzeAll(RawDappModule rawDapp) {
+        boolean didVerify = true;
+        try {
+            for (Map.Entry<String, byte[]> entry : rawDapp.classes.entrySet()) {
+                Verifier.verifyUntrustedClass(entry.getKey(), entry.getValue(), rawDapp.classHierarchy, rawDapp.classRenamer);
+            }
+        } catch (RejectedClassException e) {
+            didVerify = false;
+        }
+        return didVerify;
+    }
+
+    private static boolean loadAll(RawDappModule rawDapp) {
+        boolean didVerify = true;
+        try {
+            Verifier.verifyUntrustedClasses(rawDapp.classes);
+        } catch (UncaughtException e) {
+            didVerify = false;
+        }
+        return didVerify;
+    }
+
+    private static long timeDeployments(AvmConfiguration configuration, byte[] txData, int iterations) {
+        TestingState kernel = new TestingState(new TestingBlock(new byte[32], 1, Helpers.randomAddress(), System.currentTimeMillis(), new byte[0]));
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), configuration);
+        // Warm up before timing.
+        for (int i = 0; i < iterations; ++i) {
+            deploy(avm, kernel, txData);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; ++i) {
+            deploy(avm, kernel, txData);
+        }
+        long nanos = System.nanoTime() - start;
+        avm.shutdown();
+        return nanos;
+    }
+
+    private static void deploy(AvmImpl avm, TestingState kernel, byte[] txData) {
+        Transaction tx = AvmTransactionUtil.create(DEPLOYER, kernel.getNonce(DEPLOYER), BigInteger.ZERO, txData, 5_000_000, 1);
+        TransactionResult result = avm.run(kernel, new Transaction[]{tx}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+        Assert.assertTrue(result.transactionStatus.isSuccess());
+    }
+
+    private static byte[] buildWalletJar() {
+        return UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(Wallet.class
+                , Multiowned.class
+                , ByteArrayWrapper.class
+                , Operation.class
+                , ByteArrayHelpers.class
+                , BytesKey.class
+                , RequireFailedException.class
+                , Daylimit.class
+                , EventLogger.class
+        );
+    }
+
+    /**
+     * Builds a jar with a single class with a static method of the given descriptor which just returns its argument.
+     */
+    private static byte[] buildJarForMethod(String descriptor) {
+        String className = "Target";
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V10, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, "java/lang/Object", null);
+        MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "identity", descriptor, null, null);
+        method.visitCode();
+        method.visitVarInsn(Opcodes.ALOAD, 0);
+        method.visitInsn(Opcodes.ARETURN);
+        method.visitMaxs(1, 1);
+        method.visitEnd();
+        writer.visitEnd();
+        return UserlibJarBuilder.buildJarForExplicitClassNameAndBytecode(className, writer.toByteArray());
+    }
+
+    private static void report(String output) {
+        if (REPORT) {
+            System.out.println(output);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package org.aion.avm.kernel;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.aion.avm.core.AvmConfiguration;
+import org.aion.avm.core.AvmImpl;
+import org.aion.avm.core.AvmTransactionUtil;
+import org.aion.avm.core.CommonAvmFactory;
+import org.aion.avm.core.ExecutionType;
+import org.aion.avm.core.FutureResult;
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.util.CacheStats;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.avm.userlib.abi.ABIDecoder;
+import org.aion.avm.userlib.abi.ABIStreamingEncoder;
+import org.aion.kernel.BlockCachingState;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.aion.kernel.TransactionalState;
+import org.aion.parallel.TestContract;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class BlockCachingStateTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private static final boolean REPORT = false;
+
+    private TestingBlock block = new TestingBlock(new byte[32], 1, Helpers.randomAddress(), System.currentTimeMillis(), new byte[0]);
+
+    @Test
+    public void testReadsAreCached() {
+        SlowState kernel = new SlowState(block, 0L);
+        AionAddress address = Helpers.randomAddress();
+        byte[] code = Helpers.randomBytes(100);
+        kernel.setTransformedCode(address, code);
+        kernel.adjustBalance(address, BigInteger.TEN);
+
+        BlockCachingState cache = new BlockCachingState(kernel);
+        for (int i = 0; i < 10; ++i) {
+            Assert.assertTrue(Arrays.equals(code, cache.getTransformedCode(address)));
+            Assert.assertEquals(BigInteger.TEN, cache.getBalance(address));
+            // That there is no graph is also cached.
+            Assert.assertNull(cache.getObjectGraph(address));
+        }
+        Assert.assertEquals(3, kernel.reads.get());
+        CacheStats stats = cache.getStats();
+        Assert.assertEquals(3, stats.getMissCount());
+        Assert.assertEquals(27, stats.getHitCount());
+    }
+
+    @Test
+    public void testWritesUpdateCache() {
+        SlowState kernel = new SlowState(block, 0L);
+        AionAddress address = Helpers.randomAddress();
+        BlockCachingState cache = new BlockCachingState(kernel);
+        Assert.assertEquals(BigInteger.ZERO, cache.getBalance(address));
+        Assert.assertEquals(BigInteger.ZERO, cache.getNonce(address));
+        Assert.assertNull(cache.getObjectGraph(address));
+
+        // Commit a transaction over the cache, as the executor threads do.
+        TransactionalState transaction = new TransactionalState(cache);
+        byte[] graph = Helpers.randomBytes(64);
+        transaction.adjustBalance(address, BigInteger.TEN);
+        transaction.incrementNonce(address);
+        transaction.putObjectGraph(address, graph);
+        transaction.commit();
+
+        int readsBefore = kernel.reads.get();
+        Assert.assertEquals(BigInteger.TEN, cache.getBalance(address));
+        Assert.assertEquals(BigInteger.ONE, cache.getNonce(address));
+        Assert.assertTrue(Arrays.equals(graph, cache.getObjectGraph(address)));
+        Assert.assertEquals(readsBefore, kernel.reads.get());
+        // The writes went through to the kernel.
+        Assert.assertEquals(BigInteger.TEN, kernel.getBalance(address));
+        Assert.assertTrue(Arrays.equals(graph, kernel.getObjectGraph(address)));
+
+        // Deleting the account is seen through the cache.
+        cache.deleteAccount(address);
+        Assert.assertEquals(BigInteger.ZERO, cache.getBalance(address));
+        Assert.assertNull(cache.getObjectGraph(address));
+    }
+
+    @Test
+    public void testBlockResultsMatchWithoutCache() {
+        int callers = 10;
+        TestingState plain = new TestingState(block);
+        TestingState cached = new TestingState(block);
+        AionAddress[] users = new AionAddress[callers];
+        for (int i = 0; i < callers; ++i) {
+            users[i] = Helpers.randomAddress();
+            plain.adjustBalance(users[i], BigInteger.TEN.pow(20));
+            cached.adjustBalance(users[i], BigInteger.TEN.pow(20));
+        }
+        TransactionResult[] plainResults = runBlockOfCalls(plain, users, false, null);
+        CacheStats stats = new CacheStats();
+        TransactionResult[] cachedResults = runBlockOfCalls(cached, users, true, stats);
+
+        for (int i = 0; i < callers; ++i) {
+            Assert.assertEquals(plainResults[i].transactionStatus, cachedResults[i].transactionStatus);
+            Assert.assertEquals(plainResults[i].energyUsed, cachedResults[i].energyUsed);
+            Assert.assertEquals(plain.getBalance(users[i]), cached.getBalance(users[i]));
+            Assert.assertEquals(plain.getNonce(users[i]), cached.getNonce(users[i]));
+        }
+        Assert.assertTrue(stats.getHitCount() > 0L);
+    }
+
+    /**
+     * Runs the same block of calls to one contract over a kernel whose reads are slow (as a database's would be), with and without the
+     * block's state cache.
+     */
+    @Test
+    public void compareBlockWithSlowKernel() {
+        int callers = REPORT ? 200 : 10;
+        int blocks = REPORT ? 20 : 1;
+        long readNanos = 50_000L;
+        long[] nanos = new long[2];
+        int[] reads = new int[2];
+        CacheStats stats = new CacheStats();
+        for (int pass = 0; pass < 2; ++pass) {
+            boolean useCache = (1 == pass);
+            SlowState kernel = new SlowState(block, readNanos);
+            AionAddress[] users = new AionAddress[callers];
+            for (int i = 0; i < callers; ++i) {
+                users[i] = Helpers.randomAddress();
+                kernel.adjustBalance(users[i], BigInteger.TEN.pow(20));
+            }
+            for (int i = 0; i < blocks; ++i) {
+                int readsBefore = kernel.reads.get();
+                long start = System.nanoTime();
+                runBlockOfCalls(kernel, users, useCache, useCache ? stats : null);
+                nanos[pass] += System.nanoTime() - start;
+                reads[pass] += kernel.reads.get() - readsBefore;
+            }
+        }
+        long hits = stats.getHitCount();
+        long misses = stats.getMissCount();
+        report("Block of " + callers + " calls (deploy + calls to one contract), kernel reads taking " + (readNanos / 1000L) + " us:");
+        report(" - without cache: " + (nanos[0] / blocks / 1_000_000L) + " ms/block, " + (reads[0] / blocks) + " kernel reads/block");
+        report(" - with cache: " + (nanos[1] / blocks / 1_000_000L) + " ms/block, " + (reads[1] / blocks) + " kernel reads/block, hit rate "
+                + ((100L * hits) / (hits + misses)) + "%");
+    }
+
+
+    private TransactionResult[] runBlockOfCalls(TestingState kernel, AionAddress[] users, boolean useCache, CacheStats stats) {
+        AvmConfiguration config = new AvmConfiguration();
+        config.enableBlockStateCache = useCache;
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        byte[] code = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(TestContract.class);
+        Transaction create = AvmTransactionUtil.create(TestingState.PREMINED_ADDRESS, kernel.getNonce(TestingState.PREMINED_ADDRESS), BigInteger.ZERO, new CodeAndArguments(code, null).encodeToBytes(), 5_000_000L, 1L);
+        TransactionResult deployment = avm.run(kernel, new Transaction[] {create}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+        Assert.assertTrue(deployment.transactionStatus.isSuccess());
+        AionAddress contract = new AionAddress(deployment.copyOfTransactionOutput().orElseThrow());
+        kernel.generateBlock();
+
+        Transaction[] batch = new Transaction[users.length];
+        for (int i = 0; i < users.length; ++i) {
+            batch[i] = AvmTransactionUtil.call(users[i], contract, kernel.getNonce(users[i]), BigInteger.ZERO, encodeNoArgsMethodCall("addValue"), 2_000_000L, 1L);
+        }
+        FutureResult[] futures = avm.run(kernel, batch, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1);
+        TransactionResult[] results = new TransactionResult[futures.length];
+        for (int i = 0; i < futures.length; ++i) {
+            results[i] = futures[i].getResult();
+            Assert.assertTrue(results[i].transactionStatus.isSuccess());
+        }
+        if (null != stats) {
+            CacheStats blockStats = avm.getStats().lastBatchStateCacheStats;
+            for (long i = 0L; i < blockStats.getHitCount(); ++i) {
+                stats.recordHit();
+            }
+            for (long i = 0L; i < blockStats.getMissCount(); ++i) {
+                stats.recordMiss();
+            }
+        }
+
+        // Every call was applied.
+        Transaction get = AvmTransactionUtil.call(users[0], contract, kernel.getNonce(users[0]), BigInteger.ZERO, encodeNoArgsMethodCall("getValue"), 2_000_000L, 1L);
+        TransactionResult result = avm.run(kernel, new Transaction[] {get}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+        Assert.assertEquals(users.length, new ABIDecoder(result.copyOfTransactionOutput().orElseThrow()).decodeOneInteger());
+        kernel.generateBlock();
+        avm.shutdown();
+        return results;
+    }
+
+    private static byte[] encodeNoArgsMethodCall(String methodName) {
+        return new ABIStreamingEncoder()
+                .encodeOneString(methodName)
+                .toBytes();
+    }
+
+    private static void report(String output) {
+        if (REPORT) {
+            System.out.println(output);
+        }
+    }
+
+
+    /**
+     * A TestingState which counts the reads a cache can serve and makes each of them take some time, as a database read would.
+     */
+    private static class SlowState extends TestingState {
+        public final AtomicInteger reads = new AtomicInteger();
+        private final long readNanos;
+
+        public SlowState(TestingBlock block, long readNanos) {
+            super(block);
+            this.readNanos = readNanos;
+        }
+
+        @Override
+        public BigInteger getBalance(AionAddress address) {
+            read();
+            return super.getBalance(address);
+        }
+
+        @Override
+        public BigInteger getNonce(AionAddress address) {
+            read();
+            return super.getNonce(address);
+        }
+
+        @Override
+        public byte[] getCode(AionAddress address) {
+            read();
+            return super.getCode(address);
+        }
+
+        @Override
+        public byte[] getTransformedCode(AionAddress address) {
+            read();
+            return super.getTransformedCode(address);
+        }
+
+        @Override
+        public byte[] getObjectGraph(AionAddress address) {
+            read();
+            return super.getObjectGraph(address);
+        }
+
+        private void read() {
+            this.reads.incrementAndGet();
+            long end = System.nanoTime() + this.readNanos;
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
@@ -154,4 +154,77 @@ public class TransactionalStateTest {
         Assert.assertEquals(BigInteger.TWO, base.getNonce(nonceOne));
         Assert.assertEquals(BigInteger.ONE, base.getNonce(nonceZero));
     }
-}
+
+    @Test
+    public void testRepeatedWritesCommitLastValue() {
+        IExternalState base = new TestingState();
+        AionAddress address = Helpers.randomAddress();
+        byte[] key1 = Helpers.randomBytes(32);
+        byte[] key2 = Helpers.randomBytes(32);
+        base.putStorage(address, key2, Helpers.randomBytes(32));
+
+        // Nest the transactions so that the writes are committed through 2 levels.
+        TransactionalState transaction = new TransactionalState(base);
+        TransactionalState child = transaction.newChildExternalState();
+        byte[] lastValue = null;
+        for (int i = 0; i < 100; ++i) {
+            lastValue = Helpers.randomBytes(32);
+            child.putStorage(address, key1, lastValue);
+            child.adjustBalance(address, BigInteger.TEN);
+            child.adjustBalance(address, BigInteger.ONE.negate());
+        }
+        // Removing a key, writing it and removing it again leaves it removed.
+        child.removeStorage(address, key2);
+        child.putStorage(address, key2, Helpers.randomBytes(32));
+        child.removeStorage(address, key2);
+        child.incrementNonce(address);
+        child.incrementNonce(address);
+        child.commit();
+        Assert.assertTrue(Arrays.equals(lastValue, transaction.getStorage(address, key1)));
+        Assert.assertNull(transaction.getStorage(address, key2));
+        Assert.assertNotNull(base.getStorage(address, key2));
+
+        transaction.commit();
+        Assert.assertTrue(Arrays.equals(lastValue, base.getStorage(address, key1)));
+        Assert.assertNull(base.getStorage(address, key2));
+        Assert.assertEquals(BigInteger.valueOf(900L), base.getBalance(address));
+        Assert.assertEquals(BigInteger.TWO, base.getNonce(address));
+    }
+
+    @Test
+    public void testCommitDeleteDropsEarlierWrites() {
+        IExternalState base = new TestingState();
+        AionAddress address = Helpers.randomAddress();
+        byte[] key = Helpers.randomBytes(32);
+        base.createAccount(address);
+        base.putStorage(address, key, Helpers.randomBytes(32));
+
+        TransactionalState transaction = new TransactionalState(base);
+        transaction.putStorage(address, key, Helpers.randomBytes(32));
+        transaction.incrementNonce(address);
+        transaction.deleteAccount(address);
+        // Only what is written after the delete survives it.
+        byte[] otherKey = Helpers.randomBytes(32);
+        byte[] otherValue = Helpers.randomBytes(32);
+        transaction.putStorage(address, otherKey, otherValue);
+
+        transaction.commit();
+        Assert.assertNull(base.getStorage(address, key));
+        Assert.assertTrue(Arrays.equals(otherValue, base.getStorage(address, otherKey)));
+        Assert.assertEquals(BigInteger.ZERO, base.getNonce(address));
+    }
+
+    @Test
+    public void testZeroNetAdjustmentCreatesAccount() {
+        // Adjustments which sum to zero still create the account, in the parent, as the individual adjustments would have.
+        IExternalState base = new TestingState();
+        AionAddress address = Helpers.randomAddress();
+        TransactionalState transaction = new TransactionalState(base);
+        transaction.adjustBalance(address, BigInteger.ONE);
+        transaction.adjustBalance(address, BigInteger.ONE.negate());
+
+        transaction.commit();
+        Assert.assertTrue(base.hasAccountState(address));
+        Assert.assertEquals(BigInteger.ZERO, base.getBalance(address));
+    }
+}
\ No newline at end of file
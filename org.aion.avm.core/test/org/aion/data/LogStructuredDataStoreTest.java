@@ -0,0 +1,296 @@
+package org.aion.data;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import org.aion.avm.core.util.ByteArrayWrapper;
+import org.aion.avm.core.util.Helpers;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.aion.types.AionAddress;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+
+
+public class LogStructuredDataStoreTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private static final boolean REPORT = false;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSmallAccount() throws Exception {
+        File storage = folder.newFolder();
+        LogStructuredDataStore store = new LogStructuredDataStore(storage);
+
+        byte[] address1 = Helpers.randomBytes(32);
+        byte[] code1 = Helpers.randomBytes(100);
+        BigInteger balance1 = BigInteger.ONE;
+        long nonce1 = 2L;
+        byte[] key1 = Helpers.randomBytes(32);
+        byte[] value1 = Helpers.randomBytes(100);
+        IAccountStore account1 = store.createAccount(address1);
+        Assert.assertNull(store.createAccount(address1));
+        account1.setTransformedCode(code1);
+        account1.setBalance(BigInteger.ONE);
+        account1.setNonce(2L);
+        account1.setData(key1, value1);
+
+        account1 = store.openAccount(address1);
+        Assert.assertTrue(Arrays.equals(code1, account1.getTransformedCode()));
+        Assert.assertNull(account1.getCode());
+        Assert.assertEquals(balance1, account1.getBalance());
+        Assert.assertEquals(nonce1, account1.getNonce());
+        Assert.assertTrue(Arrays.equals(value1, account1.getData(key1)));
+
+        // Overwrite a key to see that we can observe the update.
+        byte[] value1_2 = Helpers.randomBytes(100);
+        account1.setData(key1, value1_2);
+        Assert.assertTrue(Arrays.equals(value1_2, account1.getData(key1)));
+
+        // Add another key and see that we can read all of these from the account testing method.
+        byte[] key2 = Helpers.randomBytes(32);
+        byte[] value2 = Helpers.randomBytes(50);
+        account1.setData(key2, value2);
+        Map<ByteArrayWrapper, byte[]> testing = account1.getStorageEntries();
+        Assert.assertEquals(2, testing.size());
+        Assert.assertTrue(Arrays.equals(value1_2, testing.get(new ByteArrayWrapper(key1))));
+        Assert.assertTrue(Arrays.equals(value2, testing.get(new ByteArrayWrapper(key2))));
+
+        // Removing a key removes it from the entries.
+        account1.removeData(key1);
+        Assert.assertNull(account1.getData(key1));
+        Assert.assertEquals(1, account1.getStorageEntries().size());
+
+        // Make sure that the cleanup works correctly.
+        store.deleteAccount(address1);
+        Assert.assertNull(store.openAccount(address1));
+        store.close();
+    }
+
+    @Test
+    public void testReopenRecoversCommitted() throws Exception {
+        File storage = folder.newFolder();
+        byte[] address = Helpers.randomBytes(32);
+        byte[] key = Helpers.randomBytes(32);
+        byte[] committedValue = Helpers.randomBytes(64);
+
+        LogStructuredDataStore store = new LogStructuredDataStore(storage);
+        IAccountStore account = store.createAccount(address);
+        account.setData(key, committedValue);
+        account.setNonce(5L);
+        store.commit();
+        // These are never committed so they must be gone when we reopen.
+        account.setData(key, Helpers.randomBytes(64));
+        account.setData(Helpers.randomBytes(32), Helpers.randomBytes(64));
+        store.createAccount(Helpers.randomBytes(32));
+        store.close();
+
+        store = new LogStructuredDataStore(storage);
+        account = store.openAccount(address);
+        Assert.assertTrue(Arrays.equals(committedValue, account.getData(key)));
+        Assert.assertEquals(5L, account.getNonce());
+        Assert.assertEquals(1, account.getStorageEntries().size());
+        store.close();
+    }
+
+    @Test
+    public void testCrashDiscardsUncommitted() throws Exception {
+        File storage = folder.newFolder();
+        byte[] address = Helpers.randomBytes(32);
+        byte[] key = Helpers.randomBytes(32);
+        byte[] committedValue = Helpers.randomBytes(64);
+
+        LogStructuredDataStore store = new LogStructuredDataStore(storage);
+        IAccountStore account = store.createAccount(address);
+        account.setData(key, committedValue);
+        store.commit();
+        account.setData(key, Helpers.randomBytes(64));
+        account.removeData(key);
+
+        // Opening another store on the log without closing this one is what a restart after a crash sees (the uncommitted records are in the file).
+        LogStructuredDataStore recovered = new LogStructuredDataStore(storage);
+        Assert.assertTrue(Arrays.equals(committedValue, recovered.openAccount(address).getData(key)));
+
+        // We can keep writing after the recovery and see those writes, once committed.
+        byte[] newValue = Helpers.randomBytes(64);
+        recovered.openAccount(address).setData(key, newValue);
+        recovered.commit();
+        recovered.close();
+        recovered = new LogStructuredDataStore(storage);
+        Assert.assertTrue(Arrays.equals(newValue, recovered.openAccount(address).getData(key)));
+        recovered.close();
+    }
+
+    @Test
+    public void testCorruptCommitIsDiscarded() throws Exception {
+        File storage = folder.newFolder();
+        byte[] address = Helpers.randomBytes(32);
+        byte[] key = Helpers.randomBytes(32);
+        byte[] firstValue = Helpers.randomBytes(64);
+
+        LogStructuredDataStore store = new LogStructuredDataStore(storage);
+        IAccountStore account = store.createAccount(address);
+        account.setData(key, firstValue);
+        store.commit();
+        account.setData(key, Helpers.randomBytes(64));
+        store.commit();
+        store.close();
+
+        // Corrupt the last byte of the log (which is in the second commit record) so that its CRC fails.
+        File log = new File(storage, "data.log");
+        try (RandomAccessFile raw = new RandomAccessFile(log, "rw")) {
+            long last = raw.length() - 1;
+            raw.seek(last);
+            int value = raw.read();
+            raw.seek(last);
+            raw.write(value ^ 0xff);
+        }
+
+        store = new LogStructuredDataStore(storage);
+        Assert.assertTrue(Arrays.equals(firstValue, store.openAccount(address).getData(key)));
+        store.close();
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        File storage = folder.newFolder();
+        byte[] address = Helpers.randomBytes(32);
+        byte[] liveKey = Helpers.randomBytes(32);
+        byte[] liveValue = Helpers.randomBytes(100);
+
+        LogStructuredDataStore store = new LogStructuredDataStore(storage);
+        IAccountStore account = store.createAccount(address);
+        account.setData(liveKey, liveValue);
+        // Overwrite the same few keys until we have written far more than the compaction threshold, all of it dead.
+        byte[][] keys = new byte[10][];
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = Helpers.randomBytes(32);
+        }
+        int maximumSize = 0;
+        byte[] lastValue = null;
+        for (int i = 0; i < 40_000; ++i) {
+            lastValue = Helpers.randomBytes(1024);
+            account.setData(keys[i % keys.length], lastValue);
+            if (0 == (i % 1000)) {
+                store.commit();
+                maximumSize = Math.max(maximumSize, store.getLogSize());
+            }
+        }
+        account.removeData(keys[0]);
+        store.commit();
+
+        // The log never grew much beyond the threshold, even though we wrote about 40 MiB.
+        Assert.assertTrue(maximumSize < (20 * 1024 * 1024));
+        Assert.assertTrue(Arrays.equals(liveValue, account.getData(liveKey)));
+        Assert.assertTrue(Arrays.equals(lastValue, account.getData(keys[(40_000 - 1) % keys.length])));
+        store.close();
+        Assert.assertFalse(new File(storage, "data.log.compact").exists());
+
+        // Check that the compacted log is what we read when we reopen it.
+        store = new LogStructuredDataStore(storage);
+        account = store.openAccount(address);
+        Assert.assertTrue(Arrays.equals(liveValue, account.getData(liveKey)));
+        Assert.assertTrue(Arrays.equals(lastValue, account.getData(keys[(40_000 - 1) % keys.length])));
+        Assert.assertNull(account.getData(keys[0]));
+        Assert.assertEquals(keys.length, account.getStorageEntries().size());
+        store.close();
+    }
+
+    @Test
+    public void testBlockCommitThroughTestingState() throws Exception {
+        File storage = folder.newFolder();
+        TestingBlock block = new TestingBlock(new byte[32], 1, Helpers.randomAddress(), System.currentTimeMillis(), new byte[0]);
+        AionAddress address = Helpers.randomAddress();
+        byte[] key = Helpers.randomBytes(32);
+        byte[] value = Helpers.randomBytes(32);
+
+        LogStructuredDataStore store = new LogStructuredDataStore(storage);
+        TestingState kernel = new TestingState(store, block);
+        kernel.putStorage(address, key, value);
+        kernel.adjustBalance(address, BigInteger.TEN);
+        // Generating the block commits what was written in it.
+        kernel.generateBlock();
+        kernel.putStorage(address, key, Helpers.randomBytes(32));
+        kernel.adjustBalance(address, BigInteger.TEN);
+        store.close();
+
+        store = new LogStructuredDataStore(storage);
+        kernel = new TestingState(store, block);
+        Assert.assertTrue(Arrays.equals(value, kernel.getStorage(address, key)));
+        Assert.assertEquals(BigInteger.TEN, kernel.getBalance(address));
+        Assert.assertEquals(TestingState.PREMINED_AMOUNT, kernel.getBalance(TestingState.PREMINED_ADDRESS));
+        store.close();
+    }
+
+    /**
+     * Replays the same storage writes against the DirectoryBackedDataStore and the LogStructuredDataStore, committing every "block".
+     */
+    @Test
+    public void compareWithDirectoryBackedStore() throws Exception {
+        int writes = REPORT ? 300_000 : 3_000;
+        int writesPerBlock = 1_000;
+
+        DirectoryBackedDataStore directoryStore = new DirectoryBackedDataStore(folder.newFolder());
+        long directoryNanos = replayWrites(directoryStore, writes, writesPerBlock);
+
+        LogStructuredDataStore logStore = new LogStructuredDataStore(folder.newFolder());
+        long logNanos = replayWrites(logStore, writes, writesPerBlock);
+        report("Log size after " + writes + " writes: " + (logStore.getLogSize() / 1024) + " KiB");
+        logStore.close();
+
+        report("DirectoryBackedDataStore: " + (directoryNanos / 1_000_000L) + " ms (" + (directoryNanos / writes) + " ns/operation)");
+        report("LogStructuredDataStore: " + (logNanos / 1_000_000L) + " ms (" + (logNanos / writes) + " ns/operation)");
+    }
+
+
+    private static long replayWrites(IDataStore store, int writes, int writesPerBlock) {
+        // The same (seeded) sequence for each store:  100 accounts, each with up to 1000 keys, mostly written but sometimes read or removed.
+        Random random = new Random(42L);
+        byte[][] addresses = new byte[100][];
+        for (int i = 0; i < addresses.length; ++i) {
+            addresses[i] = new byte[32];
+            random.nextBytes(addresses[i]);
+        }
+        long start = System.nanoTime();
+        IAccountStore[] accounts = new IAccountStore[addresses.length];
+        for (int i = 0; i < addresses.length; ++i) {
+            accounts[i] = store.createAccount(addresses[i]);
+        }
+        for (int i = 0; i < writes; ++i) {
+            IAccountStore account = accounts[random.nextInt(accounts.length)];
+            byte[] key = new byte[32];
+            key[0] = (byte) random.nextInt(4);
+            key[1] = (byte) random.nextInt(250);
+            int operation = random.nextInt(10);
+            if (operation < 7) {
+                byte[] value = new byte[32];
+                random.nextBytes(value);
+                account.setData(key, value);
+            } else if (operation < 9) {
+                account.getData(key);
+            } else {
+                account.removeData(key);
+            }
+            if (0 == ((i + 1) % writesPerBlock)) {
+                store.commit();
+            }
+        }
+        store.commit();
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String output) {
+        if (REPORT) {
+            System.out.println(output);
+        }
+    }
+}
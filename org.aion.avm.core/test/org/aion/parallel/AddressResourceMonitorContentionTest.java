@@ -0,0 +1,105 @@
+package org.aion.parallel;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.aion.avm.core.ExecutionType;
+import org.aion.avm.core.util.Helpers;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * A contention benchmark for the AddressResourceMonitor, sweeping the number of executor threads and the fraction of
+ * transactions which touch a shared "hot" address.
+ * Each simulated transaction acquires a sender and a target, holds them for a short amount of work, and commits in order.
+ */
+public class AddressResourceMonitorContentionTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private static final boolean REPORT = false;
+
+    private static final int[] THREAD_COUNTS = REPORT ? new int[] {1, 2, 4, 8, 16, 32} : new int[] {1, 4};
+    private static final double[] CONFLICT_RATIOS = REPORT ? new double[] {0.0, 0.1, 0.25, 0.5, 1.0} : new double[] {0.0, 0.5, 1.0};
+    private static final int TASKS_PER_BATCH = REPORT ? 2_000 : 200;
+    private static final int BATCHES = REPORT ? 10 : 1;
+    private static final int WORK_ITERATIONS = 2_000;
+
+    private final TestingState kernel = new TestingState(new TestingBlock(new byte[32], 1, Helpers.randomAddress(), System.currentTimeMillis(), new byte[0]));
+
+    @Test
+    public void sweepThreadsAndConflictRatio() throws InterruptedException {
+        for (int threads : THREAD_COUNTS) {
+            for (double ratio : CONFLICT_RATIOS) {
+                AddressResourceMonitor monitor = new AddressResourceMonitor();
+                long nanos = 0L;
+                int aborts = 0;
+                for (int batch = 0; batch < BATCHES; ++batch) {
+                    long start = System.nanoTime();
+                    aborts += runBatch(monitor, threads, ratio, new Random(batch));
+                    nanos += System.nanoTime() - start;
+                }
+                if (REPORT) {
+                    long totalTasks = (long) TASKS_PER_BATCH * BATCHES;
+                    System.out.printf("threads=%2d conflict=%.2f: %8d tasks/s, %6d aborts\n", threads, ratio, (totalTasks * 1_000_000_000L) / nanos, aborts);
+                }
+            }
+        }
+    }
+
+    private int runBatch(AddressResourceMonitor monitor, int threadCount, double conflictRatio, Random random) throws InterruptedException {
+        monitor.clear();
+        byte[] hotAddress = Helpers.randomAddress().toByteArray();
+        byte[][] senders = new byte[TASKS_PER_BATCH][];
+        byte[][] targets = new byte[TASKS_PER_BATCH][];
+        TransactionTask[] tasks = new TransactionTask[TASKS_PER_BATCH];
+        for (int i = 0; i < TASKS_PER_BATCH; ++i) {
+            senders[i] = Helpers.randomAddress().toByteArray();
+            targets[i] = (random.nextDouble() < conflictRatio) ? hotAddress : Helpers.randomAddress().toByteArray();
+            tasks[i] = new TransactionTask(this.kernel, null, i, Helpers.ZERO_ADDRESS, ExecutionType.ASSUME_MAINCHAIN, 0);
+        }
+
+        AtomicInteger nextTask = new AtomicInteger(0);
+        AtomicInteger aborts = new AtomicInteger(0);
+        AtomicInteger committed = new AtomicInteger(0);
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; ++t) {
+            threads[t] = new Thread(() -> {
+                int index = nextTask.getAndIncrement();
+                while (index < TASKS_PER_BATCH) {
+                    TransactionTask task = tasks[index];
+                    boolean isCommitted;
+                    do {
+                        monitor.startTransaction(task);
+                        if (monitor.acquire(senders[index], task) && monitor.acquire(targets[index], task)) {
+                            simulateWork();
+                        }
+                        isCommitted = monitor.commitKernelForTask(task, false);
+                        if (!isCommitted) {
+                            aborts.incrementAndGet();
+                        }
+                    } while (!isCommitted);
+                    committed.incrementAndGet();
+                    index = nextTask.getAndIncrement();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(TASKS_PER_BATCH, committed.get());
+        return aborts.get();
+    }
+
+    private static volatile long sink;
+
+    private static void simulateWork() {
+        long value = 0;
+        for (int i = 0; i < WORK_ITERATIONS; ++i) {
+            value += (value * 31) ^ i;
+        }
+        sink = value;
+    }
+}
@@ -0,0 +1,35 @@
+package org.aion.parallel;
+
+import avm.Address;
+import avm.Blockchain;
+import org.aion.avm.userlib.abi.ABIDecoder;
+import org.aion.avm.userlib.abi.ABIEncoder;
+
+
+/**
+ * Only reads the balance and code size of the given address (as a DApp checking a treasury or exchange would).
+ */
+public class BalanceReaderContract {
+    public static byte[] main() {
+        ABIDecoder decoder = new ABIDecoder(Blockchain.getData());
+        String methodName = decoder.decodeMethodName();
+        if ("readBalance".equals(methodName)) {
+            Address target = decoder.decodeOneAddress();
+            // Read it a few times, with some work between, as a DApp might.
+            long balance = 0L;
+            int work = 0;
+            for (int i = 0; i < 10; ++i) {
+                balance = Blockchain.getBalance(target).longValue();
+                Blockchain.getCodeSize(target);
+                Blockchain.getBalanceOfThisContract();
+                for (int j = 0; j < 10_000; ++j) {
+                    work = (31 * work) + j;
+                }
+            }
+            Blockchain.require(0 != work);
+            return ABIEncoder.encodeOneLong(balance);
+        } else {
+            return new byte[0];
+        }
+    }
+}
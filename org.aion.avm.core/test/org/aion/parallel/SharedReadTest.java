@@ -0,0 +1,224 @@
+package org.aion.parallel;
+
+import java.math.BigInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.aion.avm.core.AvmConfiguration;
+import org.aion.avm.core.AvmImpl;
+import org.aion.avm.core.AvmTransactionUtil;
+import org.aion.avm.core.CommonAvmFactory;
+import org.aion.avm.core.ExecutionType;
+import org.aion.avm.core.FutureResult;
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.metrics.SpanKind;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.avm.userlib.abi.ABIDecoder;
+import org.aion.avm.userlib.abi.ABIStreamingEncoder;
+import org.aion.kernel.TestingBlock;
+import org.aion.kernel.TestingState;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests the shared read ownership of the AddressResourceMonitor (used for balance and code size queries).
+ */
+public class SharedReadTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private static final boolean REPORT = false;
+
+    private final byte[] address = Helpers.randomAddress().toByteArray();
+    private TestingBlock block = new TestingBlock(new byte[32], 1, Helpers.randomAddress(), System.currentTimeMillis(), new byte[0]);
+
+    @Test
+    public void testReadersShareAddress() {
+        AddressResourceMonitor monitor = new AddressResourceMonitor();
+        TransactionTask first = newTask(0);
+        TransactionTask second = newTask(1);
+        // Neither blocks, in either order.
+        Assert.assertTrue(monitor.acquireForRead(this.address, second));
+        Assert.assertTrue(monitor.acquireForRead(this.address, first));
+        Assert.assertFalse(first.inAbortState());
+        Assert.assertFalse(second.inAbortState());
+
+        // A later writer doesn't disturb them.
+        TransactionTask third = newTask(2);
+        Assert.assertTrue(monitor.acquire(this.address, third));
+        Assert.assertFalse(first.inAbortState());
+        Assert.assertFalse(second.inAbortState());
+    }
+
+    @Test
+    public void testEarlierWriterAbortsLaterReader() {
+        AddressResourceMonitor monitor = new AddressResourceMonitor();
+        TransactionTask writer = newTask(0);
+        TransactionTask reader = newTask(1);
+        Assert.assertTrue(monitor.acquireForRead(this.address, reader));
+
+        // The reader would have read the value from before the write so it must run again.
+        Assert.assertTrue(monitor.acquire(this.address, writer));
+        Assert.assertTrue(reader.inAbortState());
+        Assert.assertFalse(writer.inAbortState());
+    }
+
+    @Test
+    public void testReadWaitsForEarlierWriter() throws InterruptedException {
+        AddressResourceMonitor monitor = new AddressResourceMonitor();
+        TransactionTask writer = newTask(0);
+        TransactionTask reader = newTask(1);
+        Assert.assertTrue(monitor.acquire(this.address, writer));
+
+        AtomicBoolean didRead = new AtomicBoolean(false);
+        Thread readerThread = new Thread(() -> {
+            didRead.set(monitor.acquireForRead(this.address, reader));
+        });
+        readerThread.start();
+        readerThread.join(100L);
+        Assert.assertTrue(readerThread.isAlive());
+
+        // Once the writer is done, the reader can go ahead.
+        monitor.testReleaseResourcesForTask(writer);
+        readerThread.join();
+        Assert.assertTrue(didRead.get());
+    }
+
+    @Test
+    public void testReadsSeeEarlierWrites() {
+        int readers = 8;
+        TestingState kernel = new TestingState(block);
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), new AvmConfiguration());
+        AionAddress[] contracts = deployReaders(kernel, avm, readers);
+        AionAddress treasury = Helpers.randomAddress();
+
+        // The first reader runs before the deposit, in the batch, and the rest after it.
+        Transaction[] batch = new Transaction[readers + 1];
+        batch[0] = readBalanceTransaction(kernel, contracts[0], treasury);
+        batch[1] = AvmTransactionUtil.call(TestingState.PREMINED_ADDRESS, treasury, kernel.getNonce(TestingState.PREMINED_ADDRESS), BigInteger.valueOf(1_000L), new byte[0], 2_000_000L, 1L);
+        for (int i = 1; i < readers; ++i) {
+            batch[i + 1] = readBalanceTransaction(kernel, contracts[i], treasury);
+        }
+        TransactionResult[] results = runSuccessfulBatch(kernel, avm, batch);
+        Assert.assertEquals(0L, new ABIDecoder(results[0].copyOfTransactionOutput().orElseThrow()).decodeOneLong());
+        for (int i = 2; i < results.length; ++i) {
+            Assert.assertEquals(1_000L, new ABIDecoder(results[i].copyOfTransactionOutput().orElseThrow()).decodeOneLong());
+        }
+        avm.shutdown();
+    }
+
+    /**
+     * Runs blocks where every transaction calls its own DApp, which reads the balance of one common address, and compares them with
+     * blocks where each reads a different address (so there can be no contention).
+     */
+    @Test
+    public void readOneCommonBalance() {
+        int transactions = REPORT ? 64 : 8;
+        int blocks = REPORT ? 20 : 1;
+        AvmConfiguration config = new AvmConfiguration();
+        TestingState kernel = new TestingState(block);
+        AvmImpl avm = CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+        AionAddress[] contracts = deployReaders(kernel, avm, transactions);
+        AionAddress treasury = Helpers.randomAddress();
+        kernel.adjustBalance(treasury, BigInteger.valueOf(5L));
+
+        long[] nanos = new long[2];
+        long[] lockWaitNanos = new long[2];
+        // (the first block only warms up)
+        for (int i = -1; i < blocks; ++i) {
+            for (int pass = 0; pass < 2; ++pass) {
+                boolean common = (0 == pass);
+                Transaction[] batch = new Transaction[transactions];
+                for (int j = 0; j < transactions; ++j) {
+                    batch[j] = readBalanceTransaction(kernel, contracts[j], common ? treasury : Helpers.randomAddress());
+                }
+                long start = System.nanoTime();
+                TransactionResult[] results = runSuccessfulBatch(kernel, avm, batch);
+                if (i >= 0) {
+                    nanos[pass] += System.nanoTime() - start;
+                    lockWaitNanos[pass] += sumLastBatchLockWaits(avm, config.threadCount);
+                }
+                if (common) {
+                    Assert.assertEquals(5L, new ABIDecoder(results[transactions - 1].copyOfTransactionOutput().orElseThrow()).decodeOneLong());
+                }
+            }
+        }
+        report("Block of " + transactions + " transactions (" + config.threadCount + " threads), each reading a balance:");
+        report(" - one common balance: " + (nanos[0] / blocks / 1000L) + " us/block (waiting for locks: " + (lockWaitNanos[0] / blocks / 1000L) + " us/block)");
+        report(" - distinct balances: " + (nanos[1] / blocks / 1000L) + " us/block (waiting for locks: " + (lockWaitNanos[1] / blocks / 1000L) + " us/block)");
+        report(" - aborts: " + countAborts(avm));
+        avm.shutdown();
+    }
+
+
+    private static TransactionTask newTask(int index) {
+        return new TransactionTask(null, null, index, Helpers.ZERO_ADDRESS, ExecutionType.ASSUME_MAINCHAIN, 0);
+    }
+
+    private static AionAddress[] deployReaders(TestingState kernel, AvmImpl avm, int count) {
+        byte[] code = new CodeAndArguments(UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(BalanceReaderContract.class), null).encodeToBytes();
+        Transaction[] batch = new Transaction[count];
+        BigInteger nonce = kernel.getNonce(TestingState.PREMINED_ADDRESS);
+        for (int i = 0; i < count; ++i) {
+            batch[i] = AvmTransactionUtil.create(TestingState.PREMINED_ADDRESS, nonce.add(BigInteger.valueOf(i)), BigInteger.ZERO, code, 5_000_000L, 1L);
+        }
+        TransactionResult[] results = runSuccessfulBatch(kernel, avm, batch);
+        AionAddress[] contracts = new AionAddress[count];
+        for (int i = 0; i < count; ++i) {
+            contracts[i] = new AionAddress(results[i].copyOfTransactionOutput().orElseThrow());
+        }
+        return contracts;
+    }
+
+    private static Transaction readBalanceTransaction(TestingState kernel, AionAddress contract, AionAddress target) {
+        // Each transaction is sent by a new account so they are only related through the address they read.
+        AionAddress sender = Helpers.randomAddress();
+        kernel.adjustBalance(sender, BigInteger.TEN.pow(18));
+        byte[] data = new ABIStreamingEncoder()
+                .encodeOneString("readBalance")
+                .encodeOneAddress(new avm.Address(target.toByteArray()))
+                .toBytes();
+        return AvmTransactionUtil.call(sender, contract, BigInteger.ZERO, BigInteger.ZERO, data, 10_000_000L, 1L);
+    }
+
+    private static TransactionResult[] runSuccessfulBatch(TestingState kernel, AvmImpl avm, Transaction[] batch) {
+        FutureResult[] futures = avm.run(kernel, batch, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1);
+        TransactionResult[] results = new TransactionResult[futures.length];
+        for (int i = 0; i < futures.length; ++i) {
+            results[i] = futures[i].getResult();
+            Assert.assertTrue(results[i].transactionStatus.isSuccess());
+        }
+        kernel.generateBlock();
+        return results;
+    }
+
+    private static long sumLastBatchLockWaits(AvmImpl avm, int threadCount) {
+        long[] sum = new long[1];
+        for (int i = 0; i < threadCount; ++i) {
+            // The ring holds far more spans than one of these batches records.
+            avm.getTracer().getRing(i).forEachSince(0L, (kind, transactionIndex, startNanos, endNanos, subject) -> {
+                if ((SpanKind.LOCK_WAIT == kind) && (startNanos >= avm.getTracer().getBatchStartNanos())) {
+                    sum[0] += endNanos - startNanos;
+                }
+            });
+        }
+        return sum[0];
+    }
+
+    private static int countAborts(AvmImpl avm) {
+        int aborts = 0;
+        for (int i = 0; i < avm.getStats().threadStats.length; ++i) {
+            aborts += avm.getStats().threadStats[i].transactionsAborted;
+        }
+        return aborts;
+    }
+
+    private static void report(String output) {
+        if (REPORT) {
+            System.out.println(output);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.aion.parallel;
+
+import java.math.BigInteger;
+
+import org.aion.avm.core.*;
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.avm.userlib.abi.ABIDecoder;
+import org.aion.avm.userlib.abi.ABIStreamingEncoder;
+import org.aion.kernel.*;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Runs the same contended batches through both schedulers and verifies that they produce the same state.
+ */
+public class SpeculativeSchedulerTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private static final boolean REPORT = false;
+
+    private AionAddress preminedAddress = TestingState.PREMINED_ADDRESS;
+
+    private TestingBlock block = new TestingBlock(new byte[32], 1, Helpers.randomAddress(), System.currentTimeMillis(), new byte[0]);
+
+    @Test
+    public void balanceTransferChain() {
+        for (SchedulerType type : SchedulerType.values()) {
+            TestingState kernel = new TestingState(block);
+            AvmImpl avm = buildAvm(type);
+
+            // Each transfer depends on the one before it, so the speculative scheduler must re-execute most of them.
+            int length = 20;
+            AionAddress[] users = new AionAddress[length];
+            Transaction[] batch = new Transaction[length];
+            users[0] = preminedAddress;
+            for (int i = 1; i < length; ++i) {
+                users[i] = Helpers.randomAddress();
+            }
+            BigInteger nonce = kernel.getNonce(preminedAddress);
+            batch[0] = AvmTransactionUtil.call(preminedAddress, users[1], nonce, BigInteger.valueOf(100_000_000L), new byte[0], 100_000L, 1L);
+            for (int i = 1; i < length - 1; ++i) {
+                batch[i] = AvmTransactionUtil.call(users[i], users[i + 1], BigInteger.ZERO, BigInteger.valueOf(100_000_000L - (i * 1_000_000L)), new byte[0], 100_000L, 1L);
+            }
+            batch[length - 1] = AvmTransactionUtil.call(preminedAddress, users[1], nonce.add(BigInteger.ONE), BigInteger.ONE, new byte[0], 100_000L, 1L);
+
+            FutureResult[] results = avm.run(kernel, batch, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1);
+            for (FutureResult f : results) {
+                Assert.assertTrue(f.getResult().transactionStatus.isSuccess());
+            }
+            Assert.assertEquals(BigInteger.valueOf(100_000_000L - ((length - 2) * 1_000_000L)), kernel.getBalance(users[length - 1]));
+            avm.shutdown();
+        }
+    }
+
+    @Test
+    public void contendedContractCalls() {
+        for (SchedulerType type : SchedulerType.values()) {
+            TestingState kernel = new TestingState(block);
+            AvmImpl avm = buildAvm(type);
+
+            int callers = 16;
+            AionAddress[] users = fundUsers(kernel, callers);
+            AionAddress contract = deploy(avm, kernel);
+
+            // All of these calls update the same static, so every call after the first observes a value written in this batch.
+            Transaction[] batch = new Transaction[callers];
+            for (int i = 0; i < callers; ++i) {
+                batch[i] = AvmTransactionUtil.call(users[i], contract, kernel.getNonce(users[i]), BigInteger.ZERO, encodeNoArgsMethodCall("addValue"), 2_000_000L, 1L);
+            }
+            FutureResult[] results = avm.run(kernel, batch, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1);
+            for (FutureResult f : results) {
+                Assert.assertTrue(f.getResult().transactionStatus.isSuccess());
+            }
+
+            Transaction get = AvmTransactionUtil.call(users[0], contract, kernel.getNonce(users[0]), BigInteger.ZERO, encodeNoArgsMethodCall("getValue"), 2_000_000L, 1L);
+            TransactionResult result = avm.run(kernel, new Transaction[] {get}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+            Assert.assertEquals(callers, new ABIDecoder(result.copyOfTransactionOutput().orElseThrow()).decodeOneInteger());
+            avm.shutdown();
+        }
+    }
+
+    @Test
+    public void compareContendedThroughput() {
+        int callers = 200;
+        for (SchedulerType type : SchedulerType.values()) {
+            TestingState kernel = new TestingState(block);
+            AvmImpl avm = buildAvm(type);
+            AionAddress[] users = fundUsers(kernel, callers);
+            AionAddress contract = deploy(avm, kernel);
+
+            // Half of the batch hits the hot contract while the other half are independent transfers.
+            Transaction[] batch = new Transaction[callers];
+            for (int i = 0; i < callers; ++i) {
+                batch[i] = (0 == (i % 2))
+                        ? AvmTransactionUtil.call(users[i], contract, kernel.getNonce(users[i]), BigInteger.ZERO, encodeNoArgsMethodCall("addValue"), 2_000_000L, 1L)
+                        : AvmTransactionUtil.call(users[i], Helpers.randomAddress(), kernel.getNonce(users[i]), BigInteger.ONE, new byte[0], 100_000L, 1L);
+            }
+            long start = System.nanoTime();
+            FutureResult[] results = avm.run(kernel, batch, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1);
+            for (FutureResult f : results) {
+                Assert.assertTrue(f.getResult().transactionStatus.isSuccess());
+            }
+            long end = System.nanoTime();
+            if (REPORT) {
+                System.out.println(type + ": " + callers + " transactions in " + ((end - start) / 1_000) + " µs");
+            }
+            avm.shutdown();
+        }
+    }
+
+
+    private AvmImpl buildAvm(SchedulerType type) {
+        AvmConfiguration config = new AvmConfiguration();
+        config.schedulerType = type;
+        return CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+    }
+
+    private AionAddress[] fundUsers(TestingState kernel, int count) {
+        AionAddress[] users = new AionAddress[count];
+        for (int i = 0; i < count; ++i) {
+            users[i] = Helpers.randomAddress();
+            kernel.adjustBalance(users[i], BigInteger.TEN.pow(20));
+        }
+        return users;
+    }
+
+    private AionAddress deploy(AvmImpl avm, TestingState kernel) {
+        byte[] code = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(TestContract.class);
+        Transaction create = AvmTransactionUtil.create(preminedAddress, kernel.getNonce(preminedAddress), BigInteger.ZERO, new CodeAndArguments(code, null).encodeToBytes(), 5_000_000L, 1L);
+        TransactionResult result = avm.run(kernel, new Transaction[] {create}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+        Assert.assertTrue(result.transactionStatus.isSuccess());
+        return new AionAddress(result.copyOfTransactionOutput().orElseThrow());
+    }
+
+    private static byte[] encodeNoArgsMethodCall(String methodName) {
+        return new ABIStreamingEncoder()
+                .encodeOneString(methodName)
+                .toBytes();
+    }
+}
@@ -0,0 +1,180 @@
+package org.aion.parallel;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import org.aion.avm.core.*;
+import org.aion.avm.core.blockchainruntime.EmptyCapabilities;
+import org.aion.avm.core.dappreading.UserlibJarBuilder;
+import org.aion.avm.core.util.Helpers;
+import org.aion.avm.userlib.CodeAndArguments;
+import org.aion.avm.userlib.abi.ABIDecoder;
+import org.aion.avm.userlib.abi.ABIStreamingEncoder;
+import org.aion.kernel.*;
+import org.aion.types.AionAddress;
+import org.aion.types.Transaction;
+import org.aion.types.TransactionResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests the shape of the predicted dependency graph and that planned batches produce the same results as unplanned ones.
+ */
+public class TransactionDependencyGraphTest {
+    private AionAddress preminedAddress = TestingState.PREMINED_ADDRESS;
+
+    private TestingBlock block = new TestingBlock(new byte[32], 1, Helpers.randomAddress(), System.currentTimeMillis(), new byte[0]);
+
+    @Test
+    public void independentTransfers() {
+        TestingState kernel = new TestingState(block);
+        AionAddress[] users = fundUsers(kernel, 4);
+        Transaction[] batch = new Transaction[users.length];
+        for (int i = 0; i < users.length; ++i) {
+            batch[i] = AvmTransactionUtil.call(users[i], Helpers.randomAddress(), BigInteger.ZERO, BigInteger.ONE, new byte[0], 100_000L, 1L);
+        }
+        TransactionTask[] tasks = buildTasks(kernel, batch);
+        TransactionDependencyGraph graph = TransactionDependencyGraph.build(kernel, new EmptyCapabilities(), tasks);
+
+        Assert.assertEquals(4, graph.chainCount);
+        Assert.assertEquals(1, graph.criticalPathLength);
+        Assert.assertEquals(4, graph.balanceTransferCount);
+        for (int i = 0; i < tasks.length; ++i) {
+            Assert.assertTrue(graph.isReady(i));
+            Assert.assertTrue(tasks[i].isPredictedBalanceTransfer());
+        }
+    }
+
+    @Test
+    public void chainAndFork() {
+        TestingState kernel = new TestingState(block);
+        AionAddress[] users = fundUsers(kernel, 5);
+        // 0: a->b, 1: b->c, 2: c->d (a chain through the targets), 3: a->e (depends on 0 through the sender), 4: independent.
+        Transaction[] batch = new Transaction[] {
+                AvmTransactionUtil.call(users[0], users[1], BigInteger.ZERO, BigInteger.ONE, new byte[0], 100_000L, 1L),
+                AvmTransactionUtil.call(users[1], users[2], BigInteger.ZERO, BigInteger.ONE, new byte[0], 100_000L, 1L),
+                AvmTransactionUtil.call(users[2], users[3], BigInteger.ZERO, BigInteger.ONE, new byte[0], 100_000L, 1L),
+                AvmTransactionUtil.call(users[0], users[4], BigInteger.ONE, BigInteger.ONE, new byte[0], 100_000L, 1L),
+                AvmTransactionUtil.call(Helpers.randomAddress(), Helpers.randomAddress(), BigInteger.ZERO, BigInteger.ONE, new byte[0], 100_000L, 1L),
+        };
+        TransactionTask[] tasks = buildTasks(kernel, batch);
+        TransactionDependencyGraph graph = TransactionDependencyGraph.build(kernel, new EmptyCapabilities(), tasks);
+
+        Assert.assertEquals(2, graph.chainCount);
+        Assert.assertEquals(3, graph.criticalPathLength);
+        Assert.assertTrue(graph.isReady(0));
+        Assert.assertFalse(graph.isReady(1));
+        Assert.assertFalse(graph.isReady(2));
+        Assert.assertFalse(graph.isReady(3));
+        Assert.assertTrue(graph.isReady(4));
+
+        List<Integer> nowReady = graph.markCompleted(0);
+        Assert.assertEquals(List.of(1, 3), nowReady);
+        Assert.assertEquals(List.of(2), graph.markCompleted(1));
+    }
+
+    @Test
+    public void contractTargetsAreNotTransfers() {
+        TestingState kernel = new TestingState(block);
+        AvmImpl avm = buildAvm(SchedulerType.ADDRESS_LOCK, false);
+        AionAddress contract = deploy(avm, kernel);
+        avm.shutdown();
+
+        AionAddress[] users = fundUsers(kernel, 2);
+        Transaction[] batch = new Transaction[] {
+                AvmTransactionUtil.call(users[0], contract, BigInteger.ZERO, BigInteger.ZERO, encodeNoArgsMethodCall("addValue"), 2_000_000L, 1L),
+                AvmTransactionUtil.call(users[1], contract, BigInteger.ZERO, BigInteger.ZERO, encodeNoArgsMethodCall("addValue"), 2_000_000L, 1L),
+        };
+        TransactionTask[] tasks = buildTasks(kernel, batch);
+        TransactionDependencyGraph graph = TransactionDependencyGraph.build(kernel, new EmptyCapabilities(), tasks);
+
+        Assert.assertEquals(1, graph.chainCount);
+        Assert.assertEquals(2, graph.criticalPathLength);
+        Assert.assertEquals(0, graph.balanceTransferCount);
+        Assert.assertFalse(tasks[0].isPredictedBalanceTransfer());
+    }
+
+    @Test
+    public void plannedBatchMatchesUnplanned() {
+        for (SchedulerType type : SchedulerType.values()) {
+            TestingState kernel = new TestingState(block);
+            AvmImpl avm = buildAvm(type, true);
+            int callers = 20;
+            AionAddress[] users = fundUsers(kernel, callers);
+            AionAddress contract = deploy(avm, kernel);
+
+            // Half of the batch is a single chain through the contract while the other half are independent transfers.
+            AionAddress[] recipients = new AionAddress[callers];
+            Transaction[] batch = new Transaction[callers];
+            for (int i = 0; i < callers; ++i) {
+                recipients[i] = Helpers.randomAddress();
+                batch[i] = (0 == (i % 2))
+                        ? AvmTransactionUtil.call(users[i], contract, kernel.getNonce(users[i]), BigInteger.ZERO, encodeNoArgsMethodCall("addValue"), 2_000_000L, 1L)
+                        : AvmTransactionUtil.call(users[i], recipients[i], kernel.getNonce(users[i]), BigInteger.TEN, new byte[0], 100_000L, 1L);
+            }
+            avm.getStats().clear();
+            FutureResult[] results = avm.run(kernel, batch, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1);
+            for (FutureResult f : results) {
+                Assert.assertTrue(f.getResult().transactionStatus.isSuccess());
+            }
+
+            AvmCoreStats stats = avm.getStats();
+            Assert.assertEquals((callers / 2) + 1, stats.lastBatchDependencyChains);
+            Assert.assertEquals(callers / 2, stats.lastBatchCriticalPathLength);
+            Assert.assertEquals(callers / 2, stats.lastBatchPredictedBalanceTransfers);
+            int fastTracked = 0;
+            for (AvmThreadStats threadStats : stats.threadStats) {
+                fastTracked += threadStats.balanceTransfersFastTracked;
+            }
+            Assert.assertEquals(callers / 2, fastTracked);
+
+            for (int i = 1; i < callers; i += 2) {
+                Assert.assertEquals(BigInteger.TEN, kernel.getBalance(recipients[i]));
+            }
+            Transaction get = AvmTransactionUtil.call(users[0], contract, kernel.getNonce(users[0]), BigInteger.ZERO, encodeNoArgsMethodCall("getValue"), 2_000_000L, 1L);
+            TransactionResult result = avm.run(kernel, new Transaction[] {get}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+            Assert.assertEquals(callers / 2, new ABIDecoder(result.copyOfTransactionOutput().orElseThrow()).decodeOneInteger());
+            avm.shutdown();
+        }
+    }
+
+
+    private TransactionTask[] buildTasks(TestingState kernel, Transaction[] batch) {
+        TransactionTask[] tasks = new TransactionTask[batch.length];
+        for (int i = 0; i < batch.length; ++i) {
+            tasks[i] = new TransactionTask(kernel, batch[i], i, batch[i].senderAddress, ExecutionType.ASSUME_MAINCHAIN, 0);
+        }
+        return tasks;
+    }
+
+    private AvmImpl buildAvm(SchedulerType type, boolean enableDependencyPlanning) {
+        AvmConfiguration config = new AvmConfiguration();
+        config.schedulerType = type;
+        config.enableDependencyPlanning = enableDependencyPlanning;
+        return CommonAvmFactory.buildAvmInstanceForConfiguration(new EmptyCapabilities(), config);
+    }
+
+    private AionAddress[] fundUsers(TestingState kernel, int count) {
+        AionAddress[] users = new AionAddress[count];
+        for (int i = 0; i < count; ++i) {
+            users[i] = Helpers.randomAddress();
+            kernel.adjustBalance(users[i], BigInteger.TEN.pow(20));
+        }
+        return users;
+    }
+
+    private AionAddress deploy(AvmImpl avm, TestingState kernel) {
+        byte[] code = UserlibJarBuilder.buildJarForMainAndClassesAndUserlib(TestContract.class);
+        Transaction create = AvmTransactionUtil.create(preminedAddress, kernel.getNonce(preminedAddress), BigInteger.ZERO, new CodeAndArguments(code, null).encodeToBytes(), 5_000_000L, 1L);
+        TransactionResult result = avm.run(kernel, new Transaction[] {create}, ExecutionType.ASSUME_MAINCHAIN, kernel.getBlockNumber() - 1)[0].getResult();
+        Assert.assertTrue(result.transactionStatus.isSuccess());
+        return new AionAddress(result.copyOfTransactionOutput().orElseThrow());
+    }
+
+    private static byte[] encodeNoArgsMethodCall(String methodName) {
+        return new ABIStreamingEncoder()
+                .encodeOneString(methodName)
+                .toBytes();
+    }
+}
@@ -0,0 +1,22 @@
+package org.aion.avm.embed.abi;
+
+import org.aion.avm.tooling.abi.Callable;
+
+// "Aa", "BB" and "C#" all have the same hashCode(), so the generated main() must compare the names of the callables with that hash.
+public class DAppHashCollisionTarget {
+
+    @Callable()
+    public static int Aa() {
+        return 1;
+    }
+
+    @Callable()
+    public static int BB() {
+        return 2;
+    }
+
+    @Callable()
+    public static int other() {
+        return 3;
+    }
+}
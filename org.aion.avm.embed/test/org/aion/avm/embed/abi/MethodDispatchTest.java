@@ -0,0 +1,104 @@
+package org.aion.avm.embed.abi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import avm.Address;
+import org.aion.avm.embed.AvmRule;
+import org.aion.avm.embed.benchmark.ManyCallablesContract;
+import org.aion.avm.tooling.ABIUtil;
+import org.aion.avm.userlib.abi.ABIDecoder;
+import org.aion.types.TransactionResult;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+
+/**
+ * Tests the dispatch of the main() which the ABICompiler generates:  it switches on the hash of the method name, so finding the
+ * callable shouldn't depend on how many there are.
+ */
+public class MethodDispatchTest {
+    // NOTE:  Output is ONLY produced if REPORT is set to true.
+    private static final boolean REPORT = false;
+
+    @ClassRule
+    public static AvmRule avmRule = new AvmRule(false);
+
+    private static final long ENERGY_LIMIT = 3_500_000L;
+    private static final long ENERGY_PRICE = 1L;
+
+    @Test
+    public void testHashCollisions() {
+        Address dapp = deploy(avmRule.getDappBytes(DAppHashCollisionTarget.class, new byte[0]));
+
+        assertEquals(1, new ABIDecoder(callSuccessfully(dapp, "Aa").copyOfTransactionOutput().orElseThrow()).decodeOneInteger());
+        assertEquals(2, new ABIDecoder(callSuccessfully(dapp, "BB").copyOfTransactionOutput().orElseThrow()).decodeOneInteger());
+        assertEquals(3, new ABIDecoder(callSuccessfully(dapp, "other").copyOfTransactionOutput().orElseThrow()).decodeOneInteger());
+
+        // This has the same hash but it isn't a callable (and there is no fallback).
+        assertTrue(call(dapp, "C#").transactionStatus.isReverted());
+    }
+
+    /**
+     * Calls each of the 100 callables of the ManyCallablesContract, checking that they all cost the same, and reports how long it takes
+     * to call the first and the last ones.
+     */
+    @Test
+    public void callManyCallables() {
+        int callables = 100;
+        int iterations = REPORT ? 1_000 : 1;
+        Address dapp = deploy(avmRule.getDappBytes(ManyCallablesContract.class, new byte[0]));
+
+        long firstEnergy = 0L;
+        for (int i = 0; i < callables; ++i) {
+            TransactionResult result = callSuccessfully(dapp, callableName(i), 1_000);
+            assertEquals(1_000 + i, new ABIDecoder(result.copyOfTransactionOutput().orElseThrow()).decodeOneInteger());
+            if (0 == i) {
+                firstEnergy = result.energyUsed;
+            }
+            assertEquals(firstEnergy, result.energyUsed);
+        }
+        report("Calling any of " + callables + " callables: " + firstEnergy + " energy");
+
+        long[] nanos = new long[2];
+        for (int i = 0; i < iterations; ++i) {
+            for (int which = 0; which < 2; ++which) {
+                String methodName = callableName((0 == which) ? 0 : (callables - 1));
+                long start = System.nanoTime();
+                callSuccessfully(dapp, methodName, i);
+                nanos[which] += System.nanoTime() - start;
+            }
+        }
+        report(" - first callable: " + (nanos[0] / iterations / 1000L) + " us/call");
+        report(" - last callable: " + (nanos[1] / iterations / 1000L) + " us/call");
+    }
+
+
+    private static String callableName(int index) {
+        return String.format("callable%03d", index);
+    }
+
+    private static Address deploy(byte[] jar) {
+        TransactionResult createResult = avmRule.deploy(avmRule.getPreminedAccount(), BigInteger.ZERO, jar, ENERGY_LIMIT, ENERGY_PRICE).getTransactionResult();
+        assertTrue(createResult.transactionStatus.isSuccess());
+        return new Address(createResult.copyOfTransactionOutput().orElseThrow());
+    }
+
+    private static TransactionResult call(Address dapp, String methodName, Object... arguments) {
+        byte[] argData = ABIUtil.encodeMethodArguments(methodName, arguments);
+        return avmRule.call(avmRule.getPreminedAccount(), dapp, BigInteger.ZERO, argData, ENERGY_LIMIT, ENERGY_PRICE).getTransactionResult();
+    }
+
+    private static TransactionResult callSuccessfully(Address dapp, String methodName, Object... arguments) {
+        TransactionResult result = call(dapp, methodName, arguments);
+        assertTrue(result.transactionStatus.isSuccess());
+        return result;
+    }
+
+    private static void report(String output) {
+        if (REPORT) {
+            System.out.println(output);
+        }
+    }
+}
@@ -43,6 +43,7 @@ public class BenchmarkTest {
         System.out.println("Outputing test resources to: \"" + outputPath + "\"");
         outputResourcesForTestClass(outputPath, CallContract.class);
         outputResourcesForTestClass(outputPath, CPUIntensiveOperations.class);
+        outputResourcesForTestClass(outputPath, ManyCallablesContract.class);
         outputResourcesForTestClass(outputPath, MemoryUsage.class);
         outputResourcesForTestClass(outputPath, SimpleContractWithABI.class);
         outputResourcesForTestClass(outputPath, SimpleContractWithoutABI.class);
@@ -82,7 +83,7 @@ public class BenchmarkTest {
         byte[] args = new ABIStreamingEncoder().encodeOneString("sqrt").encodeOneInteger(1247).encodeOneDouble(2.0D).toBytes();
         TransactionResult result = RULE.call(FROM, target, BigInteger.ZERO, args).getTransactionResult();
         Assert.assertTrue(result.transactionStatus.isSuccess());
-        Assert.assertEquals(1999542L, result.energyUsed);
+        Assert.assertEquals(1999725L, result.energyUsed);
         
         args = new ABIStreamingEncoder().encodeOneString("sqrt").encodeOneInteger(1248).encodeOneDouble(2.0D).toBytes();
         result = RULE.call(FROM, target, BigInteger.ZERO, args).getTransactionResult();
@@ -137,7 +138,7 @@ public class BenchmarkTest {
         ResultWrapper result = RULE.call(FROM, target, BigInteger.ZERO, args);
         Assert.assertTrue(result.getTransactionResult().transactionStatus.isSuccess());
         Assert.assertEquals(0, ((Integer) result.getDecodedReturnData()).intValue());
-        Assert.assertEquals(29447L, result.getTransactionResult().energyUsed);
+        Assert.assertEquals(29247L, result.getTransactionResult().energyUsed);
 
         
         // Add 1000 elements, 1 at a time, watching how this grows in cost as the graph grows.
@@ -145,7 +146,7 @@ public class BenchmarkTest {
             args = new ABIStreamingEncoder().encodeOneString("insert").encodeOneInteger(1).toBytes();
             result = RULE.call(FROM, target, BigInteger.ZERO, args);
             Assert.assertTrue(result.getTransactionResult().transactionStatus.isSuccess());
-            long cost = 26347L + (i * 280L);
+            long cost = 26540L + (i * 280L);
             Assert.assertEquals(cost, result.getTransactionResult().energyUsed);
         }
         
@@ -154,7 +155,7 @@ public class BenchmarkTest {
         result = RULE.call(FROM, target, BigInteger.ZERO, args);
         Assert.assertTrue(result.getTransactionResult().transactionStatus.isSuccess());
         Assert.assertEquals(500500, ((Integer) result.getDecodedReturnData()).intValue());
-        Assert.assertEquals(765447L, result.getTransactionResult().energyUsed);
+        Assert.assertEquals(765247L, result.getTransactionResult().energyUsed);
     }
 
     @Test
@@ -166,7 +167,7 @@ public class BenchmarkTest {
         byte[] args = new ABIStreamingEncoder().encodeOneString("myFunction").toBytes();
         ResultWrapper result = RULE.call(FROM, target, BigInteger.ZERO, args);
         Assert.assertTrue(result.getTransactionResult().transactionStatus.isSuccess());
-        Assert.assertEquals(24727L, result.getTransactionResult().energyUsed);
+        Assert.assertEquals(24940L, result.getTransactionResult().energyUsed);
     }
 
     @Test
@@ -189,55 +190,55 @@ public class BenchmarkTest {
         byte[] args = new ABIStreamingEncoder().encodeOneString("getMyInt").toBytes();
         ResultWrapper result = RULE.call(FROM, target, BigInteger.ZERO, args);
         Assert.assertTrue(result.getTransactionResult().transactionStatus.isSuccess());
-        Assert.assertEquals(28918L, result.getTransactionResult().energyUsed);
+        Assert.assertEquals(28315L, result.getTransactionResult().energyUsed);
         Assert.assertEquals(703, ((Integer) result.getDecodedReturnData()).intValue());
         
         args = new ABIStreamingEncoder().encodeOneString("getMyString").toBytes();
         result = RULE.call(FROM, target, BigInteger.ZERO, args);
         Assert.assertTrue(result.getTransactionResult().transactionStatus.isSuccess());
-        Assert.assertEquals(30488L, result.getTransactionResult().energyUsed);
+        Assert.assertEquals(29477L, result.getTransactionResult().energyUsed);
         Assert.assertEquals("Benchmark Testing", (String) result.getDecodedReturnData());
         
         args = new ABIStreamingEncoder().encodeOneString("getMyInt1DArray").toBytes();
         result = RULE.call(FROM, target, BigInteger.ZERO, args);
         Assert.assertTrue(result.getTransactionResult().transactionStatus.isSuccess());
-        Assert.assertEquals(31877L, result.getTransactionResult().energyUsed);
+        Assert.assertEquals(30468L, result.getTransactionResult().energyUsed);
         Assert.assertArrayEquals(new int[] {0,1,2,3,4,5}, (int[]) result.getDecodedReturnData());
         
         // Basic graph map interactions.
         args = new ABIStreamingEncoder().encodeOneString("getMap").encodeOneInteger(1).toBytes();
         result = RULE.call(FROM, target, BigInteger.ZERO, args);
         Assert.assertTrue(result.getTransactionResult().transactionStatus.isSuccess());
-        Assert.assertEquals(32878L, result.getTransactionResult().energyUsed);
+        Assert.assertEquals(30713L, result.getTransactionResult().energyUsed);
         Assert.assertEquals("one", (String) result.getDecodedReturnData());
         
         args = new ABIStreamingEncoder().encodeOneString("putMap").encodeOneInteger(1).encodeOneString("Testing").toBytes();
         result = RULE.call(FROM, target, BigInteger.ZERO, args);
         Assert.assertTrue(result.getTransactionResult().transactionStatus.isSuccess());
-        Assert.assertEquals(33799L, result.getTransactionResult().energyUsed);
+        Assert.assertEquals(32027L, result.getTransactionResult().energyUsed);
         
         args = new ABIStreamingEncoder().encodeOneString("getMap").encodeOneInteger(1).toBytes();
         result = RULE.call(FROM, target, BigInteger.ZERO, args);
         Assert.assertTrue(result.getTransactionResult().transactionStatus.isSuccess());
-        Assert.assertEquals(33042L, result.getTransactionResult().energyUsed);
+        Assert.assertEquals(30877L, result.getTransactionResult().energyUsed);
         Assert.assertEquals("Testing", (String) result.getDecodedReturnData());
         
         // Basic key-value store interactions.
         args = new ABIStreamingEncoder().encodeOneString("getStorage").encodeOneString("key").toBytes();
         result = RULE.call(FROM, target, BigInteger.ZERO, args);
         Assert.assertTrue(result.getTransactionResult().transactionStatus.isSuccess());
-        Assert.assertEquals(32064L, result.getTransactionResult().energyUsed);
+        Assert.assertEquals(31864L, result.getTransactionResult().energyUsed);
         Assert.assertEquals(null, (String) result.getDecodedReturnData());
         
         args = new ABIStreamingEncoder().encodeOneString("putStorage").encodeOneString("key").encodeOneString("value").toBytes();
         result = RULE.call(FROM, target, BigInteger.ZERO, args);
         Assert.assertTrue(result.getTransactionResult().transactionStatus.isSuccess());
-        Assert.assertEquals(53919L, result.getTransactionResult().energyUsed);
+        Assert.assertEquals(54132L, result.getTransactionResult().energyUsed);
         
         args = new ABIStreamingEncoder().encodeOneString("getStorage").encodeOneString("key").toBytes();
         result = RULE.call(FROM, target, BigInteger.ZERO, args);
         Assert.assertTrue(result.getTransactionResult().transactionStatus.isSuccess());
-        Assert.assertEquals(33397L, result.getTransactionResult().energyUsed);
+        Assert.assertEquals(33197L, result.getTransactionResult().energyUsed);
         Assert.assertEquals("value", (String) result.getDecodedReturnData());
     }
 
@@ -251,21 +252,21 @@ public class BenchmarkTest {
         byte[] args = new ABIStreamingEncoder().encodeOneString("writeToObjectArray").encodeOneInteger(size).encodeOneInteger(size).toBytes();
         ResultWrapper result = RULE.call(FROM, target, BigInteger.ZERO, args);
         Assert.assertTrue(result.getTransactionResult().transactionStatus.isSuccess());
-        Assert.assertEquals(27047L, result.getTransactionResult().energyUsed);
+        Assert.assertEquals(27300L, result.getTransactionResult().energyUsed);
         
         // Something just below the max.
         size = 280;
         args = new ABIStreamingEncoder().encodeOneString("writeToObjectArray").encodeOneInteger(size).encodeOneInteger(size).toBytes();
         result = RULE.call(FROM, target, BigInteger.ZERO, args);
         Assert.assertTrue(result.getTransactionResult().transactionStatus.isSuccess());
-        Assert.assertEquals(1992918L, result.getTransactionResult().energyUsed);
+        Assert.assertEquals(1993171L, result.getTransactionResult().energyUsed);
         
         // Clear this.
         size = 0;
         args = new ABIStreamingEncoder().encodeOneString("writeToObjectArray").encodeOneInteger(size).encodeOneInteger(size).toBytes();
         result = RULE.call(FROM, target, BigInteger.ZERO, args);
         Assert.assertTrue(result.getTransactionResult().transactionStatus.isSuccess());
-        Assert.assertEquals(345158L, result.getTransactionResult().energyUsed);
+        Assert.assertEquals(345411L, result.getTransactionResult().energyUsed);
         
         // Just above the max.
         size = 281;
@@ -0,0 +1,510 @@
+package org.aion.avm.embed.benchmark;
+
+import org.aion.avm.tooling.abi.Callable;
+
+
+/**
+ * A contract with 100 callables (and no main(), so the ABICompiler generates it), to measure what it costs to find the one called.
+ * They all have names of the same length, and the same signature, so calling any one of them should cost the same.
+ */
+public class ManyCallablesContract {
+    @Callable
+    public static int callable000(int value) {
+        return value + 0;
+    }
+
+    @Callable
+    public static int callable001(int value) {
+        return value + 1;
+    }
+
+    @Callable
+    public static int callable002(int value) {
+        return value + 2;
+    }
+
+    @Callable
+    public static int callable003(int value) {
+        return value + 3;
+    }
+
+    @Callable
+    public static int callable004(int value) {
+        return value + 4;
+    }
+
+    @Callable
+    public static int callable005(int value) {
+        return value + 5;
+    }
+
+    @Callable
+    public static int callable006(int value) {
+        return value + 6;
+    }
+
+    @Callable
+    public static int callable007(int value) {
+        return value + 7;
+    }
+
+    @Callable
+    public static int callable008(int value) {
+        return value + 8;
+    }
+
+    @Callable
+    public static int callable009(int value) {
+        return value + 9;
+    }
+
+    @Callable
+    public static int callable010(int value) {
+        return value + 10;
+    }
+
+    @Callable
+    public static int callable011(int value) {
+        return value + 11;
+    }
+
+    @Callable
+    public static int callable012(int value) {
+        return value + 12;
+    }
+
+    @Callable
+    public static int callable013(int value) {
+        return value + 13;
+    }
+
+    @Callable
+    public static int callable014(int value) {
+        return value + 14;
+    }
+
+    @Callable
+    public static int callable015(int value) {
+        return value + 15;
+    }
+
+    @Callable
+    public static int callable016(int value) {
+        return value + 16;
+    }
+
+    @Callable
+    public static int callable017(int value) {
+        return value + 17;
+    }
+
+    @Callable
+    public static int callable018(int value) {
+        return value + 18;
+    }
+
+    @Callable
+    public static int callable019(int value) {
+        return value + 19;
+    }
+
+    @Callable
+    public static int callable020(int value) {
+        return value + 20;
+    }
+
+    @Callable
+    public static int callable021(int value) {
+        return value + 21;
+    }
+
+    @Callable
+    public static int callable022(int value) {
+        return value + 22;
+    }
+
+    @Callable
+    public static int callable023(int value) {
+        return value + 23;
+    }
+
+    @Callable
+    public static int callable024(int value) {
+        return value + 24;
+    }
+
+    @Callable
+    public static int callable025(int value) {
+        return value + 25;
+    }
+
+    @Callable
+    public static int callable026(int value) {
+        return value + 26;
+    }
+
+    @Callable
+    public static int callable027(int value) {
+        return value + 27;
+    }
+
+    @Callable
+    public static int callable028(int value) {
+        return value + 28;
+    }
+
+    @Callable
+    public static int callable029(int value) {
+        return value + 29;
+    }
+
+    @Callable
+    public static int callable030(int value) {
+        return value + 30;
+    }
+
+    @Callable
+    public static int callable031(int value) {
+        return value + 31;
+    }
+
+    @Callable
+    public static int callable032(int value) {
+        return value + 32;
+    }
+
+    @Callable
+    public static int callable033(int value) {
+        return value + 33;
+    }
+
+    @Callable
+    public static int callable034(int value) {
+        return value + 34;
+    }
+
+    @Callable
+    public static int callable035(int value) {
+        return value + 35;
+    }
+
+    @Callable
+    public static int callable036(int value) {
+        return value + 36;
+    }
+
+    @Callable
+    public static int callable037(int value) {
+        return value + 37;
+    }
+
+    @Callable
+    public static int callable038(int value) {
+        return value + 38;
+    }
+
+    @Callable
+    public static int callable039(int value) {
+        return value + 39;
+    }
+
+    @Callable
+    public static int callable040(int value) {
+        return value + 40;
+    }
+
+    @Callable
+    public static int callable041(int value) {
+        return value + 41;
+    }
+
+    @Callable
+    public static int callable042(int value) {
+        return value + 42;
+    }
+
+    @Callable
+    public static int callable043(int value) {
+        return value + 43;
+    }
+
+    @Callable
+    public static int callable044(int value) {
+        return value + 44;
+    }
+
+    @Callable
+    public static int callable045(int value) {
+        return value + 45;
+    }
+
+    @Callable
+    public static int callable046(int value) {
+        return value + 46;
+    }
+
+    @Callable
+    public static int callable047(int value) {
+        return value + 47;
+    }
+
+    @Callable
+    public static int callable048(int value) {
+        return value + 48;
+    }
+
+    @Callable
+    public static int callable049(int value) {
+        return value + 49;
+    }
+
+    @Callable
+    public static int callable050(int value) {
+        return value + 50;
+    }
+
+    @Callable
+    public static int callable051(int value) {
+        return value + 51;
+    }
+
+    @Callable
+    public static int callable052(int value) {
+        return value + 52;
+    }
+
+    @Callable
+    public static int callable053(int value) {
+        return value + 53;
+    }
+
+    @Callable
+    public static int callable054(int value) {
+        return value + 54;
+    }
+
+    @Callable
+    public static int callable055(int value) {
+        return value + 55;
+    }
+
+    @Callable
+    public static int callable056(int value) {
+        return value + 56;
+    }
+
+    @Callable
+    public static int callable057(int value) {
+        return value + 57;
+    }
+
+    @Callable
+    public static int callable058(int value) {
+        return value + 58;
+    }
+
+    @Callable
+    public static int callable059(int value) {
+        return value + 59;
+    }
+
+    @Callable
+    public static int callable060(int value) {
+        return value + 60;
+    }
+
+    @Callable
+    public static int callable061(int value) {
+        return value + 61;
+    }
+
+    @Callable
+    public static int callable062(int value) {
+        return value + 62;
+    }
+
+    @Callable
+    public static int callable063(int value) {
+        return value + 63;
+    }
+
+    @Callable
+    public static int callable064(int value) {
+        return value + 64;
+    }
+
+    @Callable
+    public static int callable065(int value) {
+        return value + 65;
+    }
+
+    @Callable
+    public static int callable066(int value) {
+        return value + 66;
+    }
+
+    @Callable
+    public static int callable067(int value) {
+        return value + 67;
+    }
+
+    @Callable
+    public static int callable068(int value) {
+        return value + 68;
+    }
+
+    @Callable
+    public static int callable069(int value) {
+        return value + 69;
+    }
+
+    @Callable
+    public static int callable070(int value) {
+        return value + 70;
+    }
+
+    @Callable
+    public static int callable071(int value) {
+        return value + 71;
+    }
+
+    @Callable
+    public static int callable072(int value) {
+        return value + 72;
+    }
+
+    @Callable
+    public static int callable073(int value) {
+        return value + 73;
+    }
+
+    @Callable
+    public static int callable074(int value) {
+        return value + 74;
+    }
+
+    @Callable
+    public static int callable075(int value) {
+        return value + 75;
+    }
+
+    @Callable
+    public static int callable076(int value) {
+        return value + 76;
+    }
+
+    @Callable
+    public static int callable077(int value) {
+        return value + 77;
+    }
+
+    @Callable
+    public static int callable078(int value) {
+        return value + 78;
+    }
+
+    @Callable
+    public static int callable079(int value) {
+        return value + 79;
+    }
+
+    @Callable
+    public static int callable080(int value) {
+        return value + 80;
+    }
+
+    @Callable
+    public static int callable081(int value) {
+        return value + 81;
+    }
+
+    @Callable
+    public static int callable082(int value) {
+        return value + 82;
+    }
+
+    @Callable
+    public static int callable083(int value) {
+        return value + 83;
+    }
+
+    @Callable
+    public static int callable084(int value) {
+        return value + 84;
+    }
+
+    @Callable
+    public static int callable085(int value) {
+        return value + 85;
+    }
+
+    @Callable
+    public static int callable086(int value) {
+        return value + 86;
+    }
+
+    @Callable
+    public static int callable087(int value) {
+        return value + 87;
+    }
+
+    @Callable
+    public static int callable088(int value) {
+        return value + 88;
+    }
+
+    @Callable
+    public static int callable089(int value) {
+        return value + 89;
+    }
+
+    @Callable
+    public static int callable090(int value) {
+        return value + 90;
+    }
+
+    @Callable
+    public static int callable091(int value) {
+        return value + 91;
+    }
+
+    @Callable
+    public static int callable092(int value) {
+        return value + 92;
+    }
+
+    @Callable
+    public static int callable093(int value) {
+        return value + 93;
+    }
+
+    @Callable
+    public static int callable094(int value) {
+        return value + 94;
+    }
+
+    @Callable
+    public static int callable095(int value) {
+        return value + 95;
+    }
+
+    @Callable
+    public static int callable096(int value) {
+        return value + 96;
+    }
+
+    @Callable
+    public static int callable097(int value) {
+        return value + 97;
+    }
+
+    @Callable
+    public static int callable098(int value) {
+        return value + 98;
+    }
+
+    @Callable
+    public static int callable099(int value) {
+        return value + 99;
+    }
+}
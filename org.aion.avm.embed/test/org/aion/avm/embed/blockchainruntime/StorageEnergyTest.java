@@ -39,7 +39,7 @@ public class StorageEnergyTest {
         txDataMethodArguments = ABIUtil.encodeMethodArguments("resetStorage");
         resultWrapper = avmRule.call(from, dappAddr, BigInteger.ZERO, txDataMethodArguments, energyLimit, energyPrice);
         Assert.assertTrue(resultWrapper.getReceiptStatus().isSuccess());
-        Assert.assertEquals(52437 - 52437 / 2, resultWrapper.getTransactionResult().energyUsed);
+        Assert.assertEquals(52247 - 52247 / 2, resultWrapper.getTransactionResult().energyUsed);
     }
 
     /**
@@ -54,7 +54,7 @@ public class StorageEnergyTest {
         txDataMethodArguments = ABIUtil.encodeMethodArguments("resetStorageSelfDestruct");
         resultWrapper = avmRule.call(from, dappAddr, BigInteger.ZERO, txDataMethodArguments, energyLimit, energyPrice);
         Assert.assertTrue(resultWrapper.getReceiptStatus().isSuccess());
-        Assert.assertEquals(58942 - 58942 / 2, resultWrapper.getTransactionResult().energyUsed);
+        Assert.assertEquals(58389 - 58389 / 2, resultWrapper.getTransactionResult().energyUsed);
     }
 
     /**
@@ -65,7 +65,7 @@ public class StorageEnergyTest {
         byte[] txDataMethodArguments = ABIUtil.encodeMethodArguments("putStorageSameKey");
         AvmRule.ResultWrapper resultWrapper = avmRule.call(from, dappAddr, BigInteger.ZERO, txDataMethodArguments, energyLimit, energyPrice);
         Assert.assertTrue(resultWrapper.getReceiptStatus().isSuccess());
-        Assert.assertEquals(28790L + 74 * 5 +
+        Assert.assertEquals(27754L + 74 * 5 +
                 RuntimeMethodFeeSchedule.BlockchainRuntime_avm_setStorage +
                 4 * RuntimeMethodFeeSchedule.BlockchainRuntime_avm_resetStorage + 500, resultWrapper.getTransactionResult().energyUsed);
     }
@@ -85,7 +85,7 @@ public class StorageEnergyTest {
         resultWrapper = avmRule.call(from, dappAddr, BigInteger.ZERO, txDataMethodArguments, energyLimit, energyPrice);
         Assert.assertTrue(resultWrapper.getReceiptStatus().isSuccess());
         // cost before the refund is processed
-        Assert.assertEquals(30460L + 29 * 5
+        Assert.assertEquals(28976L + 29 * 5
                 + 5 * RuntimeMethodFeeSchedule.BlockchainRuntime_avm_resetStorage
                 - RuntimeMethodFeeSchedule.BlockchainRuntime_avm_deleteStorage_refund, resultWrapper.getTransactionResult().energyUsed);
     }
@@ -105,7 +105,7 @@ public class StorageEnergyTest {
         resultWrapper = avmRule.call(from, dappAddr, BigInteger.ZERO, txDataMethodArguments, energyLimit, energyPrice);
         Assert.assertTrue(resultWrapper.getReceiptStatus().isSuccess());
         // cost before the refund is processed
-        long executionCost = 45794L + 29 * 5 +
+        long executionCost = 43299L + 29 * 5 +
                 5 * RuntimeMethodFeeSchedule.BlockchainRuntime_avm_resetStorage;
         Assert.assertEquals(executionCost - executionCost / 2, resultWrapper.getTransactionResult().energyUsed);
     }
@@ -119,7 +119,7 @@ public class StorageEnergyTest {
         byte[] txDataMethodArguments = ABIUtil.encodeMethodArguments("reentrantCallAfterPut", dappAddr, data);
         AvmRule.ResultWrapper resultWrapper = avmRule.call(from, dappAddr, BigInteger.ZERO, txDataMethodArguments, energyLimit, energyPrice);
         Assert.assertTrue(resultWrapper.getReceiptStatus().isSuccess());
-        long costWithoutResettingStorage = 148112;
+        long costWithoutResettingStorage = 145139;
         long executionCost = costWithoutResettingStorage + 29 * 5 +
                 5 * RuntimeMethodFeeSchedule.BlockchainRuntime_avm_resetStorage;
         Assert.assertEquals(executionCost - 5 * RuntimeMethodFeeSchedule.BlockchainRuntime_avm_deleteStorage_refund, resultWrapper.getTransactionResult().energyUsed);
@@ -155,7 +155,7 @@ public class StorageEnergyTest {
         txDataMethodArguments = ABIUtil.encodeMethodArguments("reentrantReset", newContract, data);
         resultWrapper = avmRule.call(from, dappAddr, BigInteger.ZERO, txDataMethodArguments, energyLimit, energyPrice);
         Assert.assertTrue(resultWrapper.getTransactionResult().transactionStatus.isSuccess());
-        Assert.assertEquals(97767 - 97767 / 2, resultWrapper.getTransactionResult().energyUsed);
+        Assert.assertEquals(93978 - 93978 / 2, resultWrapper.getTransactionResult().energyUsed);
     }
 
     @Test
@@ -32,8 +32,8 @@ public class GraphReachabilityIntegrationTest {
     private static final int GRAPH_SIZE_INITIAL = 1045;
     private static final int GRAPH_SIZE_BEFORE = 1464;
     private static final int GRAPH_SIZE_AFTER  = 1460;
-    private static final int JAR_SIZE_JDK10 = 4069;
-    private static final int JAR_SIZE_JDK11 = 4067;
+    private static final int JAR_SIZE_JDK10 = 4195;
+    private static final int JAR_SIZE_JDK11 = 4193;
 
     @Rule
     public AvmRule avmRule = new AvmRule(false);
@@ -88,14 +88,14 @@ public class GraphReachabilityIntegrationTest {
         long storageReadCost = GRAPH_SIZE_BEFORE * StorageFees.READ_PRICE_PER_BYTE;
         long main = cost_mainPreamble();
         long decodeMethodName = cost_decodeMethodNamePre() + 78L + 100L + 126L + cost_decodeMethodNamePost("run249_reentrant_notLoaded");
-        long main2 = (63 + 340 + 63 + 340 + 63 + 430) + 94L;
+        long main2 = cost_mainDispatch("run249_reentrant_notLoaded") + 94L;
         long run249_reentrant_notLoaded = 88L + 134L + 29L + 223L + 645L + 36L + 100L + 109L + 26L + 100L + 5000L;
         
         long nested_storageReadCost = GRAPH_SIZE_BEFORE * StorageFees.READ_PRICE_PER_BYTE;
         long nested_modify249 = getCost_modify249();
         long nested_storageWriteCost = GRAPH_SIZE_AFTER * StorageFees.WRITE_PRICE_PER_BYTE;
         long nestedCost = nested_storageReadCost + nested_modify249 + nested_storageWriteCost;
-        Assert.assertEquals(11547L, nestedCost);
+        Assert.assertEquals(8909L, nestedCost);
         
         long newResult = 300L;
         long run249_reentrant_notLoaded2 = 60L + 100L + 23L + 29L + 23L;
@@ -131,14 +131,14 @@ public class GraphReachabilityIntegrationTest {
         long storageReadCost = GRAPH_SIZE_BEFORE * StorageFees.READ_PRICE_PER_BYTE;
         long main = cost_mainPreamble();
         long decodeMethodName = cost_decodeMethodNamePre() + 69L + 100L + 123L + cost_decodeMethodNamePost("run249_reentrant_loaded");
-        long main2 = (63 + 340 + 63 + 340 + 63 + 415 + 63 + 415) + 94L;
+        long main2 = cost_mainDispatch("run249_reentrant_loaded") + 94L;
         long run249_reentrant_loaded = 65L + 29L + 88L + 134L + 29L + 223L + 645L + 36L + 100L + 109L + 26L + 100L + 5000L;
         
         long nested_storageReadCost = GRAPH_SIZE_BEFORE * StorageFees.READ_PRICE_PER_BYTE;
         long nested_modify249 = getCost_modify249();
         long nested_storageWriteCost = GRAPH_SIZE_AFTER * StorageFees.WRITE_PRICE_PER_BYTE;
         long nestedCost = nested_storageReadCost + nested_modify249 + nested_storageWriteCost;
-        Assert.assertEquals(11547L, nestedCost);
+        Assert.assertEquals(8909L, nestedCost);
         
         long newResult = 300L;
         long run249_reentrant_loaded2 = 60L + 100L + 23L + 29L + 23L;
@@ -189,11 +189,11 @@ public class GraphReachabilityIntegrationTest {
         long storageReadCost = GRAPH_SIZE_BEFORE * StorageFees.READ_PRICE_PER_BYTE;
         long main = cost_mainPreamble();
         long decodeMethodName = cost_decodeMethodNamePre() + 75L + 100L + 125L + cost_decodeMethodNamePost("runNewInstance_reentrant2");
-        long main2 = (63 + 340 + 63 + 340 + 63 + 425 + 63 + 415 + 63 + 420 + 63 + 425) + 94L;
+        long main2 = cost_mainDispatch("runNewInstance_reentrant2") + 94L;
         long runNewInstance_reentrant = 134L + 29L + 223L + 720L + 81L + 100L + 124L + 26L + 100L + 5000L;
         
         long nestedCost = getCost_runNewInstance_reentrant(0, "runNewInstance_reentrant", "modifyNewInstance");
-        Assert.assertEquals(29832L, nestedCost);
+        Assert.assertEquals(25147L, nestedCost);
         
         long newResult = 300L;
         long runNewInstance_reentrant2 = 60L + 100L + 23L;
@@ -236,11 +236,11 @@ public class GraphReachabilityIntegrationTest {
         // Check that the deployment cost is what we expected.
         // The first three numbers here are: basic cost of tx, processing cost and storage cost
         long basicCost = BillingRules.getBasicTransactionCost(txData);
-        long expectedTransactionCost = isNewManifest ? 266920L : 267048;
+        long expectedTransactionCost = isNewManifest ? 274744L : 274872;
         Assert.assertEquals(expectedTransactionCost, basicCost);
         int numberOfClasses = 4;
         long codeInstantiationOfDeploymentFee = BillingRules.getDeploymentFee(numberOfClasses, optimizedJar.length);
-        long expectedDeploymentFee = isNewManifest ? 208067L : 208069;
+        long expectedDeploymentFee = isNewManifest ? 208193L : 208195;
         Assert.assertEquals(expectedDeploymentFee, codeInstantiationOfDeploymentFee);
         long clinit = 60L;
         long assertionStatus = 100L;
@@ -284,7 +284,7 @@ public class GraphReachabilityIntegrationTest {
         long storageReadCost = graphSize * StorageFees.READ_PRICE_PER_BYTE;
         long main = cost_mainPreamble();
         long decodeMethodName = cost_decodeMethodNamePre() + 24L + 100L + 108L + cost_decodeMethodNamePost("check249");
-        long main2 = 63L + 340L + 63L + 340L + 140L;
+        long main2 = cost_mainDispatch("check249") + 140L;
         long decodeOneInteger = 79L + 37L + 39L + 23L + 76L + 49L + 258L;
         long main3 = 65L + 29L + 50L;
         long main4 = before
@@ -307,7 +307,7 @@ public class GraphReachabilityIntegrationTest {
         long checkNullEmptyData = 37L + 39L + 23L;
         long checkMinLengthForObject = 53L + 23L;
         long decodeMethodName = 76L + 53L + 82L + 148L + 256L + 24L + 100L + 108L + cost_decodeMethodNamePost("setup249");
-        long main2 = 63L + 340L + 94L;
+        long main2 = cost_mainDispatch("setup249") + 94L;
         long setup249 = 896L + (5 * 63L);
         long main3 = cost_mainPostamble();
         long storageWriteCost = GRAPH_SIZE_BEFORE * StorageFees.WRITE_PRICE_PER_BYTE;
@@ -321,7 +321,7 @@ public class GraphReachabilityIntegrationTest {
     private long getCost_modify249() {
         long main = cost_mainPreamble();
         long decodeMethodName = cost_decodeMethodNamePre() + 27L + 100L + 109L + cost_decodeMethodNamePost("modify249");
-        long main2 = (63 + 340 + 63 + 340 + 63 + 345 + 63 + 345 + 63 + 345 + 63 + 345 + 63 + 345 + 63 + 345) + 94L;
+        long main2 = cost_mainDispatch("modify249") + 94L;
         long modify249 = 65L + 29L + 85L;
         long main3 = cost_mainPostamble();
         return main + decodeMethodName + main2 + modify249 + main3;
@@ -330,7 +330,7 @@ public class GraphReachabilityIntegrationTest {
     private long getCost_nestedReentrantMethod(String methodName) {
         long main = cost_mainPreamble();
         long decodeMethodName = cost_decodeMethodNamePre() + 51L + 100L + 117L + cost_decodeMethodNamePost(methodName);
-        long main2 = (63 + 340 + 63 + 340 + 63 + 385 + 63 + 385 + 63 + 385 + 63 + 385 + 63 + 380 + 63 + 345 + 63 + 385) + 94L;
+        long main2 = cost_mainDispatch(methodName) + 94L;
         long modifyNewInstance = 230L + 63L;
         long main3 = cost_mainPostamble();
         return main + decodeMethodName + main2 + modifyNewInstance + main3;
@@ -340,14 +340,14 @@ public class GraphReachabilityIntegrationTest {
         long storageReadCost = GRAPH_SIZE_BEFORE * StorageFees.READ_PRICE_PER_BYTE;
         long main = cost_mainPreamble();
         long decodeMethodName = cost_decodeMethodNamePre() + 72L + 100L + 124L + cost_decodeMethodNamePost(methodName);
-        long main2 = (63 + 340 + 63 + 340 + 63 + 420 + 63 + 415 + 63 + 420) + 94L;
+        long main2 = cost_mainDispatch(methodName) + 94L;
         long runNewInstance_reentrant = 134L + 29L + 223L + 685L + 60L + 100L + 117L + 26L + 100L + 5000L;
         
         long nested_storageReadCost = GRAPH_SIZE_BEFORE * StorageFees.READ_PRICE_PER_BYTE;
         long nested_reeentrant_method = getCost_nestedReentrantMethod(reentrantMethodName);
         long nested_storageWriteCost = GRAPH_SIZE_AFTER * StorageFees.WRITE_PRICE_PER_BYTE;
         long nestedCost = nested_storageReadCost + nested_reeentrant_method + nested_storageWriteCost;
-        Assert.assertEquals(12376L, nestedCost);
+        Assert.assertEquals(9175L, nestedCost);
         
         long newResult = 300L;
         long runNewInstance_reentrant2 = 60L + 100L + 23L;
@@ -365,7 +365,7 @@ public class GraphReachabilityIntegrationTest {
         long check_storageReadCost = GRAPH_SIZE_AFTER * StorageFees.READ_PRICE_PER_BYTE;
         long check_main = cost_mainPreamble();
         long check_decodeMethodName = cost_decodeMethodNamePre() + 48L + 100L + 116L + cost_decodeMethodNamePost("checkNewInstance");
-        long check_main2 = (63 + 340 + 63 + 340 + 63 + 380 + 63 + 380 + 63 + 380 + 63 + 380 + 63 + 380) + 69L;
+        long check_main2 = cost_mainDispatch("checkNewInstance") + 69L;
         long checkNewInstance = 63L;
         long check_main3 = 212L + 15L + 100L;
         long check_storageWriteCost = GRAPH_SIZE_AFTER * StorageFees.WRITE_PRICE_PER_BYTE;
@@ -387,6 +387,12 @@ public class GraphReachabilityIntegrationTest {
         return 300L + (methodName.getBytes().length * RuntimeMethodFeeSchedule.RT_METHOD_FEE_FACTOR_LEVEL_2) + 26L + 26L;
     }
 
+    // (the hash of the method name is switched on and then the name is compared to the callable with that hash)
+    private static long cost_mainDispatch(String methodName) {
+        long linearCost = methodName.getBytes().length * RuntimeMethodFeeSchedule.RT_METHOD_FEE_FACTOR_LEVEL_2;
+        return 63L + 100L + linearCost + 63L + 300L + linearCost;
+    }
+
     private static long cost_mainPostamble() {
         return 0L + 100L;
     }
@@ -0,0 +1,37 @@
+package i;
+
+
+/**
+ * The ThreadLocal behind IInstrumentation.attachedThreadInstrumentation.
+ * If the current thread is an InstrumentedThread, the instrumentation is stored in the thread, itself, so looking it up doesn't need to
+ * hash into the thread's map of ThreadLocal values.
+ */
+final class AttachedInstrumentation extends ThreadLocal<IInstrumentation> {
+    @Override
+    public IInstrumentation get() {
+        Thread current = Thread.currentThread();
+        return (current instanceof InstrumentedThread)
+                ? ((InstrumentedThread) current).attachedInstrumentation
+                : super.get();
+    }
+
+    @Override
+    public void set(IInstrumentation value) {
+        Thread current = Thread.currentThread();
+        if (current instanceof InstrumentedThread) {
+            ((InstrumentedThread) current).attachedInstrumentation = value;
+        } else {
+            super.set(value);
+        }
+    }
+
+    @Override
+    public void remove() {
+        Thread current = Thread.currentThread();
+        if (current instanceof InstrumentedThread) {
+            ((InstrumentedThread) current).attachedInstrumentation = null;
+        } else {
+            super.remove();
+        }
+    }
+}
@@ -12,8 +12,15 @@ public class CommonInstrumentation implements IInstrumentation {
     private FrameState currentFrame;
     private final Stack<FrameState> callerFrames;
 
+    // The energy left and forced exit state of the currentFrame, which chargeEnergy() reads and writes at the start of every block, are
+    // kept here instead of in the FrameState (they are saved into it while it is a caller frame).
+    private long energyLeft;
+    private AvmThrowable forceExitState;
+
     // State which applies to the entire stack.
     private boolean abortState;
+    // Installed in the StackWatcher of every new frame (null unless the node is profiling DApps).
+    private IMethodSampler methodSampler;
 
     public CommonInstrumentation() {
         this.callerFrames = new Stack<>();
@@ -24,8 +31,6 @@ public class CommonInstrumentation implements IInstrumentation {
         RuntimeAssertionError.assertTrue(null != contractLoader);
         FrameState newFrame = new FrameState();
         newFrame.lateLoader = contractLoader;
-
-        newFrame.energyLeft = energyLeft;
         newFrame.nextHashCode = nextHashCode;
 
         // Reset our interning state.
@@ -42,21 +47,41 @@ public class CommonInstrumentation implements IInstrumentation {
         newFrame.stackWatcher.setPolicy(StackWatcher.POLICY_SIZE | StackWatcher.POLICY_DEPTH);
         newFrame.stackWatcher.setMaxStackDepth(512);
         newFrame.stackWatcher.setMaxStackSize(16 * 1024);
+        newFrame.stackWatcher.setSampler(this.methodSampler);
         
         // Install the frame.
         if (null != this.currentFrame) {
+            this.currentFrame.energyLeft = this.energyLeft;
+            this.currentFrame.forceExitState = this.forceExitState;
             this.callerFrames.push(this.currentFrame);
         }
         this.currentFrame = newFrame;
+        this.energyLeft = energyLeft;
+        this.forceExitState = null;
+    }
+
+    /**
+     * Sets the sampler notified on every method entry, in the frames entered after this call (null to disable).
+     * 
+     * @param methodSampler The sampler.
+     */
+    public void setMethodSampler(IMethodSampler methodSampler) {
+        this.methodSampler = methodSampler;
     }
 
     public void exitCurrentFrame() {
         // Remove the frame, potentially falling back to the caller.
         FrameState returningFrame = null;
+        long returningEnergyLeft = 0L;
+        AvmThrowable returningForceExitState = null;
         if (!this.callerFrames.isEmpty()) {
             returningFrame = this.callerFrames.pop();
+            returningEnergyLeft = returningFrame.energyLeft;
+            returningForceExitState = returningFrame.forceExitState;
         }
         this.currentFrame = returningFrame;
+        this.energyLeft = returningEnergyLeft;
+        this.forceExitState = returningForceExitState;
     }
 
     @SuppressWarnings("unchecked")
@@ -97,7 +122,7 @@ public class CommonInstrumentation implements IInstrumentation {
                     // -create our fatal exception
                     JvmError error = new JvmError((VirtualMachineError)t);
                     // -store it in forceExitState
-                    this.currentFrame.forceExitState = error;
+                    this.forceExitState = error;
                     // -throw it
                     throw error;
                 }
@@ -148,34 +173,46 @@ public class CommonInstrumentation implements IInstrumentation {
 
     @Override
     public void chargeEnergy(int cost) throws OutOfEnergyException {
-        // This is called at the beginning of a block so see if we are being asked to exit.
-        if (null != this.currentFrame.forceExitState) {
-            throw this.currentFrame.forceExitState;
+        // This is called at the beginning of every block so we bill for it, first, and then check all the reasons we might need to exit (or
+        // that the cost is invalid) at once, since none of them happen in the common case.
+        long remaining = this.energyLeft - cost;
+        this.energyLeft = remaining;
+        if (((cost >>> 30) != 0) | (remaining < 0L) | this.abortState | (null != this.forceExitState)) {
+            // Undo the bill and check these in the order they must be reported.
+            this.energyLeft += cost;
+            chargeEnergyOrExit(cost);
+        }
+    }
+
+    private void chargeEnergyOrExit(int cost) throws OutOfEnergyException {
+        // See if we are being asked to exit.
+        if (null != this.forceExitState) {
+            throw this.forceExitState;
         }
 
         RuntimeAssertionError.assertTrue(cost >= 0);
-        RuntimeAssertionError.assertTrue(cost < Math.pow(2, 30));
+        RuntimeAssertionError.assertTrue(cost < (1 << 30));
 
         // Bill for the block.
-        this.currentFrame.energyLeft -= cost;
-        if (this.currentFrame.energyLeft < 0) {
+        this.energyLeft -= cost;
+        if (this.energyLeft < 0) {
             // Note that this is a reason to force the exit so set this.
             OutOfEnergyException error = new OutOfEnergyException();
-            this.currentFrame.forceExitState = error;
+            this.forceExitState = error;
             throw error;
         }
 
         // Check if we are in abort state.
         if (abortState){
             EarlyAbortException error = new EarlyAbortException();
-            this.currentFrame.forceExitState = error;
+            this.forceExitState = error;
             throw error;
         }
     }
 
     @Override
     public long energyLeft() {
-        return this.currentFrame.energyLeft;
+        return this.energyLeft;
     }
 
     @Override
@@ -207,42 +244,42 @@ public class CommonInstrumentation implements IInstrumentation {
     @Override
     public void enterMethod(int frameSize) {
         // may be redundant with class metering
-        if (null != this.currentFrame.forceExitState) {
-            throw this.currentFrame.forceExitState;
+        if (null != this.forceExitState) {
+            throw this.forceExitState;
         }
 
         try {
             this.currentFrame.stackWatcher.enterMethod(frameSize);
         } catch (OutOfStackException ex) {
-            this.currentFrame.forceExitState = ex;
+            this.forceExitState = ex;
         }
     }
 
     @Override
     public void exitMethod(int frameSize) {
         // may be redundant with class metering
-        if (null != this.currentFrame.forceExitState) {
-            throw this.currentFrame.forceExitState;
+        if (null != this.forceExitState) {
+            throw this.forceExitState;
         }
 
         try {
             this.currentFrame.stackWatcher.exitMethod(frameSize);
         } catch (OutOfStackException ex) {
-            this.currentFrame.forceExitState = ex;
+            this.forceExitState = ex;
         }
     }
 
     @Override
     public void enterCatchBlock(int depth, int size) {
         // may be redundant with class metering
-        if (null != this.currentFrame.forceExitState) {
-            throw this.currentFrame.forceExitState;
+        if (null != this.forceExitState) {
+            throw this.forceExitState;
         }
 
         try {
             this.currentFrame.stackWatcher.enterCatchBlock(depth, size);
         } catch (OutOfStackException ex) {
-            this.currentFrame.forceExitState = ex;
+            this.forceExitState = ex;
         }
     }
 
@@ -296,6 +333,7 @@ public class CommonInstrumentation implements IInstrumentation {
         public StackWatcher stackWatcher;
 
         private ClassLoader lateLoader;
+        // (only used while this is a caller frame - see CommonInstrumentation.energyLeft)
         private long energyLeft;
         private int nextHashCode;
 
@@ -314,6 +352,7 @@ public class CommonInstrumentation implements IInstrumentation {
         private InternedClasses internedClassWrappers;
 
         // Set forceExitState to non-null to re-throw at the entry to every block (forces the contract to exit).
+        // (only used while this is a caller frame - see CommonInstrumentation.forceExitState)
         private AvmThrowable forceExitState;
     }
 }
@@ -4,20 +4,18 @@ package i;
 /**
  * The common instrumentation support class.  Our instrumentation changes to the user's code assume that they can statically call these functions
  * on a class named RUNTIME_HELPER_NAME so this is installed to address that need.
- * However, this is merely a callout point to the real implementation, accessed via the "target" static variable.
- * Note that there is a copy of this class loaded into every DApp class loader.
- * Each Helper class can only be attached to the instrumentation of a specific thread at any point.  To maintain the simplicity of this design,
- * each thread also can only expose its instrumentation to a single Helper at any point.  This maintains a sort of symmetry where entering a DApp,
- * either for the first time, or reentrantly, always has the same assumption:  it is not currently attached to anyone.
+ * However, this is merely a callout point to the real implementation, which is the instrumentation attached to the current thread.
+ * Since it has no state of its own, a single copy of this class is loaded into the shared class loader, as the parent of every DApp class
+ * loader (so it is linked and JIT-compiled once, no matter how many DApps are loaded).
+ * Attaching and detaching a DApp's IRuntimeSetup is still how the DApp is entered and exited but this only verifies that the thread has the
+ * instrumentation being attached:  the thread, not the Helper, is what determines which instrumentation the DApp calls into.
  */
 public class Helper implements IRuntimeSetup {
     public static final String RUNTIME_HELPER_NAME = "H";
 
-    private static IInstrumentation target;
-
 
     public static <T> s.java.lang.Class<T> wrapAsClass(Class<T> input) {
-        return target.wrapAsClass(input);
+        return IInstrumentation.attachedThreadInstrumentation.get().wrapAsClass(input);
     }
 
     /**
@@ -28,49 +26,47 @@ public class Helper implements IRuntimeSetup {
      * @return The interned shadow String wrapper.
      */
     public static s.java.lang.String wrapAsString(String input) {
-        return target.wrapAsString(input);
+        return IInstrumentation.attachedThreadInstrumentation.get().wrapAsString(input);
     }
 
     public static s.java.lang.Object unwrapThrowable(Throwable t) {
-        return target.unwrapThrowable(t);
+        return IInstrumentation.attachedThreadInstrumentation.get().unwrapThrowable(t);
     }
 
     public static Throwable wrapAsThrowable(s.java.lang.Object arg) {
-        return target.wrapAsThrowable(arg);
+        return IInstrumentation.attachedThreadInstrumentation.get().wrapAsThrowable(arg);
     }
 
     public static void chargeEnergy(int cost) throws OutOfEnergyException {
-        target.chargeEnergy(cost);
+        IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(cost);
     }
 
     public static int getCurStackSize(){
-        return target.getCurStackSize();
+        return IInstrumentation.attachedThreadInstrumentation.get().getCurStackSize();
     }
 
     public static int getCurStackDepth(){
-        return target.getCurStackDepth();
+        return IInstrumentation.attachedThreadInstrumentation.get().getCurStackDepth();
     }
 
     public static void enterMethod(int frameSize) {
-        target.enterMethod(frameSize);
+        IInstrumentation.attachedThreadInstrumentation.get().enterMethod(frameSize);
     }
 
     public static void exitMethod(int frameSize) {
-        target.exitMethod(frameSize);
+        IInstrumentation.attachedThreadInstrumentation.get().exitMethod(frameSize);
     }
 
     public static void enterCatchBlock(int depth, int size) {
-        target.enterCatchBlock(depth, size);
+        IInstrumentation.attachedThreadInstrumentation.get().enterCatchBlock(depth, size);
     }
 
     @Override
     public void attach(IInstrumentation instrumentation) {
-        RuntimeAssertionError.assertTrue(null == target);
-        target = instrumentation;
+        RuntimeAssertionError.assertTrue(instrumentation == IInstrumentation.attachedThreadInstrumentation.get());
     }
     @Override
     public void detach(IInstrumentation instrumentation) {
-        RuntimeAssertionError.assertTrue(instrumentation == target);
-        target = null;
+        RuntimeAssertionError.assertTrue(instrumentation == IInstrumentation.attachedThreadInstrumentation.get());
     }
 }
@@ -115,6 +115,40 @@ public interface IBlockchainRuntime {
      */
     ByteArray avm_getStorage(ByteArray key) throws IllegalArgumentException;
 
+    /**
+     * Returns the length of the storage value, without copying it (used to compute the cost of replacing it).
+     *
+     * @param key of the key-value pair
+     * @return the length of the value in storage associated to the given key, or -1 if there is no such value
+     */
+    int avm_getStorageLength(ByteArray key) throws IllegalArgumentException;
+
+    /**
+     * Returns the storage values of many keys, read at once.
+     *
+     * @param keys the keys, in the format of StorageBatchCodec
+     * @return the values, in the format of StorageBatchCodec
+     */
+    ByteArray avm_getStorageBatch(ByteArray keys) throws IllegalArgumentException;
+
+    /**
+     * Returns the lengths of the storage values of many keys, read at once, without copying them (used to compute the cost of
+     * replacing them).
+     *
+     * @param keys the keys, in the format of StorageBatchCodec
+     * @return the length of each value, in the order of the keys, or -1 where there is no value
+     */
+    int[] avm_getStorageLengthBatch(ByteArray keys) throws IllegalArgumentException;
+
+    /**
+     * Puts the storage values of many keys at once.
+     *
+     * @param keys the keys, in the format of StorageBatchCodec
+     * @param values the values, in the format of StorageBatchCodec (no value means the key is removed)
+     * @param requiresRefund for each key, whether its value is being removed (so the removal is refunded)
+     */
+    void avm_putStorageBatch(ByteArray keys, ByteArray values, boolean[] requiresRefund) throws IllegalArgumentException;
+
     /**
      * Returns the balance of an account.
      *
@@ -0,0 +1,15 @@
+package i;
+
+
+/**
+ * Installed (as its cachedSerializedForm) on an instance which was left as a stub when its graph was deserialized, so that
+ * lazyLoad() can load its state the first time it is accessed.
+ */
+public interface IDeferredInstanceLoader {
+    /**
+     * Loads the state of the given stub from the graph it was read from.
+     *
+     * @param instance The stub to load (it is no longer a stub, once this returns).
+     */
+    void loadInstance(s.java.lang.Object instance);
+}
@@ -9,7 +9,8 @@ package i;
  */
 public interface IInstrumentation {
     // The instrumentation instance associated with the given thread and also installed into the Helper of the currently-running DApp.
-    public static final ThreadLocal<IInstrumentation> attachedThreadInstrumentation = new ThreadLocal<>();
+    // (this is stored directly in the thread, if it is an InstrumentedThread)
+    public static final ThreadLocal<IInstrumentation> attachedThreadInstrumentation = new AttachedInstrumentation();
 
     void enterNewFrame(ClassLoader contractLoader, long energyLeft, int nextHashCode, InternedClasses classWrappers);
     void exitCurrentFrame();
@@ -0,0 +1,11 @@
+package i;
+
+
+/**
+ * Notified by the StackWatcher on every method entry, when installed (see CommonInstrumentation.setMethodSampler()), so that the node
+ * can build a sampled profile of the methods a DApp runs.
+ * This is only for observing the DApp:  it must not change the DApp's state or throw.
+ */
+public interface IMethodSampler {
+    void onMethodEnter();
+}
@@ -0,0 +1,21 @@
+package i;
+
+
+/**
+ * A thread which holds its attached IInstrumentation in a field, instead of in its ThreadLocal map.
+ * The shadow JDK looks up the attached instrumentation on nearly every call (to bill for it), through
+ * IInstrumentation.attachedThreadInstrumentation, so the threads which run DApps extend this to make that lookup a field load.
+ * Other threads (tests, for example) still work, since they fall back to a normal ThreadLocal (see AttachedInstrumentation).
+ */
+public class InstrumentedThread extends Thread {
+    // Only accessed through AttachedInstrumentation.
+    IInstrumentation attachedInstrumentation;
+
+    public InstrumentedThread(String name) {
+        super(name);
+    }
+
+    public InstrumentedThread(Runnable target, String name) {
+        super(target, name);
+    }
+}
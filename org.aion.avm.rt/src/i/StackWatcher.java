@@ -25,6 +25,9 @@ public class StackWatcher {
     private int curDepth = 0;
     private int curSize  = 0;
 
+    // Optional:  notified on every method entry, for profiling.
+    private IMethodSampler sampler = null;
+
     /**
      * Set the policy of current stack watcher
      * @param policy A policy mask. See AVMStackWatcher.POLICY_DEPTH and AVMStackWatcher.POLICY_Size.
@@ -34,6 +37,14 @@ public class StackWatcher {
         checkSize  = (policy & POLICY_SIZE)  == POLICY_SIZE;
     }
 
+    /**
+     * Set the sampler notified on every method entry (null to disable).
+     * @param sampler The sampler.
+     */
+    public void setSampler(IMethodSampler sampler){
+        this.sampler = sampler;
+    }
+
     public void reset(){
         curDepth = 0;
         curSize = 0;
@@ -102,6 +113,10 @@ public class StackWatcher {
         if (checkSize && ( (curSize = curSize + frameSize) > maxStackSize)){
             abortCurrentContract();
         }
+
+        if (null != sampler){
+            sampler.onMethodEnter();
+        }
     }
 
     /**
@@ -316,6 +316,10 @@ public class RuntimeMethodFeeSchedule {
     public static final int BlockchainRuntime_avm_setStorage = 20000; // Paid for a putStorage operation when the storage value is set to non-zero from zero;
     public static final int BlockchainRuntime_avm_resetStorage = 5000; // Paid for a putStorage operation when the storage value's zeroness is unchanged or is set to 0;
     public static final int BlockchainRuntime_avm_deleteStorage_refund = 15000; // Refund given when the storage value is set to zero from non-zero.
+    // The batched storage calls pay their base once and then for each key (a write pays the same per key as a putStorage operation).
+    public static final int BlockchainRuntime_avm_getStorageBatch = 200;
+    public static final int BlockchainRuntime_avm_getStorageBatch_per_key = 100;
+    public static final int BlockchainRuntime_avm_putStorageBatch = 200;
     public static final int BlockchainRuntime_avm_getBalance = RT_METHOD_FEE_LEVEL_2; // totalCost - 122;
     public static final int BlockchainRuntime_avm_getBalanceOfThisContract = RT_METHOD_FEE_LEVEL_2;
     public static final int BlockchainRuntime_avm_getCodeSize = RT_METHOD_FEE_LEVEL_1; // totalCost - 122;
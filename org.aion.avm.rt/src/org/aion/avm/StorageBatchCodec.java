@@ -0,0 +1,127 @@
+package org.aion.avm;
+
+/**
+ * The format of the batched storage calls (see avm.Blockchain.getStorageBatch() and putStorageBatch()):  the keys are 32-byte keys,
+ * one after the other, and the values are, in the same order, each preceded by its length as a 4-byte big-endian int (just -1, with
+ * no bytes, stands for no value).
+ *
+ * Any malformed argument is reported as an IllegalArgumentException, as the single-key storage calls report theirs.
+ */
+public class StorageBatchCodec {
+    public static final int KEY_SIZE = 32;
+    public static final int ABSENT_LENGTH = -1;
+    private static final int LENGTH_SIZE = Integer.BYTES;
+
+    /**
+     * @param keys The keys.
+     * @return The number of keys.
+     */
+    public static int countKeys(byte[] keys) {
+        if (null == keys) {
+            throw new IllegalArgumentException("Keys can't be NULL");
+        }
+        if (0 != (keys.length % KEY_SIZE)) {
+            throw new IllegalArgumentException("Keys must be 32 bytes each");
+        }
+        return keys.length / KEY_SIZE;
+    }
+
+    /**
+     * @param keys The keys.
+     * @return A copy of each key.
+     */
+    public static byte[][] splitKeys(byte[] keys) {
+        byte[][] split = new byte[countKeys(keys)][];
+        for (int i = 0; i < split.length; ++i) {
+            split[i] = new byte[KEY_SIZE];
+            System.arraycopy(keys, i * KEY_SIZE, split[i], 0, KEY_SIZE);
+        }
+        return split;
+    }
+
+    /**
+     * @param values The values.
+     * @param count The number of values expected (the number of keys).
+     * @return The length of each value (ABSENT_LENGTH if there is no value).
+     */
+    public static int[] decodeValueLengths(byte[] values, int count) {
+        if (null == values) {
+            throw new IllegalArgumentException("Values can't be NULL");
+        }
+        int[] lengths = new int[count];
+        int offset = 0;
+        for (int i = 0; i < count; ++i) {
+            if ((values.length - offset) < LENGTH_SIZE) {
+                throw new IllegalArgumentException("Missing the length of value " + i);
+            }
+            int length = readInt(values, offset);
+            offset += LENGTH_SIZE;
+            if ((length < ABSENT_LENGTH) || ((length > 0) && ((values.length - offset) < length))) {
+                throw new IllegalArgumentException("Invalid length of value " + i);
+            }
+            lengths[i] = length;
+            offset += Math.max(0, length);
+        }
+        if (offset != values.length) {
+            throw new IllegalArgumentException("Values must be as many as the keys");
+        }
+        return lengths;
+    }
+
+    /**
+     * @param values The values.
+     * @param count The number of values expected (the number of keys).
+     * @return A copy of each value (null where there is no value).
+     */
+    public static byte[][] splitValues(byte[] values, int count) {
+        int[] lengths = decodeValueLengths(values, count);
+        byte[][] split = new byte[count][];
+        int offset = 0;
+        for (int i = 0; i < count; ++i) {
+            offset += LENGTH_SIZE;
+            if (ABSENT_LENGTH != lengths[i]) {
+                split[i] = new byte[lengths[i]];
+                System.arraycopy(values, offset, split[i], 0, lengths[i]);
+                offset += lengths[i];
+            }
+        }
+        return split;
+    }
+
+    /**
+     * @param values The values (null where there is no value).
+     * @return The values, in this format.
+     */
+    public static byte[] encodeValues(byte[][] values) {
+        int size = 0;
+        for (byte[] value : values) {
+            size += LENGTH_SIZE + ((null != value) ? value.length : 0);
+        }
+        byte[] encoded = new byte[size];
+        int offset = 0;
+        for (byte[] value : values) {
+            writeInt(encoded, offset, (null != value) ? value.length : ABSENT_LENGTH);
+            offset += LENGTH_SIZE;
+            if (null != value) {
+                System.arraycopy(value, 0, encoded, offset, value.length);
+                offset += value.length;
+            }
+        }
+        return encoded;
+    }
+
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xff) << 24)
+                | ((bytes[offset + 1] & 0xff) << 16)
+                | ((bytes[offset + 2] & 0xff) << 8)
+                | (bytes[offset + 3] & 0xff);
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >> 24);
+        bytes[offset + 1] = (byte) (value >> 16);
+        bytes[offset + 2] = (byte) (value >> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
@@ -1,5 +1,7 @@
 package p.avm;
 
+import org.aion.avm.EnergyCalculator;
+import org.aion.avm.StorageBatchCodec;
 import org.aion.avm.StorageFees;
 import a.ByteArray;
 import i.IBlockchainRuntime;
@@ -88,16 +90,17 @@ public final class Blockchain extends Object {
     public static void avm_putStorage(ByteArray key, ByteArray value) {
         boolean requiresRefund =  false;
         int valueSize = value != null ? value.length() : 0;
-        ByteArray storage = blockchainRuntime.avm_getStorage(key);
-        if (storage == null && value != null) {
+        // We only need to know if there is a value to replace so we don't need a copy of it.
+        boolean hasStorage = blockchainRuntime.avm_getStorageLength(key) >= 0;
+        if (!hasStorage && value != null) {
             // zero to nonzero
             IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(
                 RuntimeMethodFeeSchedule.BlockchainRuntime_avm_setStorage + StorageFees.WRITE_PRICE_PER_BYTE * valueSize);
-        } else if (storage != null && value == null) {
+        } else if (hasStorage && value == null) {
             // nonzero to zero
             IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.BlockchainRuntime_avm_resetStorage);
             requiresRefund = true;
-        } else if (storage == null && value == null) {
+        } else if (!hasStorage && value == null) {
             // zero to zero
             IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.BlockchainRuntime_avm_resetStorage);
         } else {
@@ -117,6 +120,43 @@ public final class Blockchain extends Object {
         return value;
     }
 
+    public static ByteArray avm_getStorageBatch(ByteArray keys) {
+        IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.BlockchainRuntime_avm_getStorageBatch);
+        int keyCount = StorageBatchCodec.countKeys((null != keys) ? keys.getUnderlying() : null);
+        IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiply(RuntimeMethodFeeSchedule.BlockchainRuntime_avm_getStorageBatch_per_key, keyCount));
+        ByteArray values = blockchainRuntime.avm_getStorageBatch(keys);
+        // As with getStorage, the linear portion of the read is charged after it happens (the lengths aren't charged).
+        int valueBytes = values.length() - (Integer.BYTES * keyCount);
+        IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(EnergyCalculator.multiply(StorageFees.READ_PRICE_PER_BYTE, valueBytes));
+        return values;
+    }
+
+    public static void avm_putStorageBatch(ByteArray keys, ByteArray values) {
+        IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.BlockchainRuntime_avm_putStorageBatch);
+        int[] storedLengths = blockchainRuntime.avm_getStorageLengthBatch(keys);
+        int[] valueLengths = StorageBatchCodec.decodeValueLengths((null != values) ? values.getUnderlying() : null, storedLengths.length);
+        boolean[] requiresRefund = new boolean[storedLengths.length];
+        // Each key is charged as avm_putStorage() would charge it.
+        for (int i = 0; i < storedLengths.length; ++i) {
+            boolean hasStorage = StorageBatchCodec.ABSENT_LENGTH != storedLengths[i];
+            boolean hasValue = StorageBatchCodec.ABSENT_LENGTH != valueLengths[i];
+            int valueSize = hasValue ? valueLengths[i] : 0;
+            if (!hasStorage && hasValue) {
+                IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(
+                    RuntimeMethodFeeSchedule.BlockchainRuntime_avm_setStorage + StorageFees.WRITE_PRICE_PER_BYTE * valueSize);
+            } else if (hasStorage && !hasValue) {
+                IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.BlockchainRuntime_avm_resetStorage);
+                requiresRefund[i] = true;
+            } else if (!hasStorage && !hasValue) {
+                IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.BlockchainRuntime_avm_resetStorage);
+            } else {
+                IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(
+                    RuntimeMethodFeeSchedule.BlockchainRuntime_avm_resetStorage + StorageFees.WRITE_PRICE_PER_BYTE * valueSize);
+            }
+        }
+        blockchainRuntime.avm_putStorageBatch(keys, values, requiresRefund);
+    }
+
     public static BigInteger avm_getBalance(Address address) {
         IInstrumentation.attachedThreadInstrumentation.get().chargeEnergy(RuntimeMethodFeeSchedule.BlockchainRuntime_avm_getBalance);
         return blockchainRuntime.avm_getBalance(address);
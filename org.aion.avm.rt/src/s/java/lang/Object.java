@@ -20,6 +20,11 @@ public class Object extends java.lang.Object implements IObject {
     // The readIndex is only used in cases of reentrant calls (this is the serialization index of the instance in the caller frame when serialized for the reentrant call).
     public final int readIndex;
 
+    // The serialized form of this instance, cached by the persistence layer so that an untouched instance doesn't need to be re-encoded.
+    // Anything which could change this instance clears it:  any field access goes through lazyLoad() and deserialization replaces the state.
+    // If this instance is a stub, which hasn't been loaded, this is instead the IDeferredInstanceLoader which can load it.
+    public java.lang.Object cachedSerializedForm;
+
     public Object() {
         this.hashCode = IInstrumentation.attachedThreadInstrumentation.get().getNextHashCodeAndIncrement();
         this.readIndex = NEW_INSTANCE_READ_INDEX;
@@ -50,6 +55,7 @@ public class Object extends java.lang.Object implements IObject {
      * @return The identity hash of the instance.
      */
     public int getIdentityHashCode() {
+        lazyLoad();
         return this.hashCode;
     }
 
@@ -103,11 +109,22 @@ public class Object extends java.lang.Object implements IObject {
      * Note that this is final since the protected "deserializeSelf" should be over-ridden.
      */
     public final void lazyLoad() {
-        // This now does nothing - will be removed later if we are certain we don't want the lazy loading.
-        // It was originally how the lazy loading system worked when we had the incremental loading design.
+        // This is called before any field access so we use it to invalidate the cached serialized form (we can't distinguish reads from
+        // writes, here, so this is conservative).
+        // If this instance is still a stub, this is also where we load it (the loader is held in the same field since a stub has no other
+        // serialized form).
+        if (null != this.cachedSerializedForm) {
+            java.lang.Object form = this.cachedSerializedForm;
+            this.cachedSerializedForm = null;
+            if (form instanceof IDeferredInstanceLoader) {
+                ((IDeferredInstanceLoader) form).loadInstance(this);
+            }
+        }
     }
 
     public void deserializeSelf(java.lang.Class<?> firstRealImplementation, IObjectDeserializer deserializer) {
+        // Whatever we had serialized before no longer describes this instance.
+        this.cachedSerializedForm = null;
         // We only operate on our hashCode.
         this.hashCode = deserializer.readInt();
         
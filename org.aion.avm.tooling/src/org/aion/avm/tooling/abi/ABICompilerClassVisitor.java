@@ -4,7 +4,9 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import avm.Address;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
@@ -200,110 +202,48 @@ public class ABICompilerClassVisitor extends ClassVisitor {
 
         methodVisitor.visitLabel(methodNameNotNullLabel);
 
-        Label latestLabel = new Label();
-
+        // switch on methodName.hashCode() and only compare methodName to the names of the callables with that hash (normally, one)
+        // so that finding the callable costs the same however many there are
+        Label fallbackLabel = new Label();
+        Map<Integer, List<ABICompilerMethodVisitor>> callablesByHash = new TreeMap<>();
         for (ABICompilerMethodVisitor callableMethod : this.getCallableMethodVisitors()) {
-
-            // latestLabel is the goto label of the preceding if condition
-            methodVisitor.visitLabel(latestLabel);
-            methodVisitor.visitVarInsn(ALOAD, 1);
-            methodVisitor.visitLdcInsn(callableMethod.getMethodName());
-            methodVisitor.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z", false);
-            latestLabel = new Label();
-            methodVisitor.visitJumpInsn(IFEQ, latestLabel);
-
-            // load the various arguments as indicated by the function signature
-            Type[] argTypes = Type.getArgumentTypes(callableMethod.getDescriptor());
-
-            if (argTypes.length > 0) {
-                methodVisitor.visitVarInsn(ALOAD, 0);
-            }
-
-            for (int i = 0; i < argTypes.length; i++) {
-                methodVisitor.visitInsn(DUP);
-                callTheDecoder(methodVisitor, argTypes[i]);
-                visitSwap(methodVisitor, argTypes[i]);
-            }
-
-            if (argTypes.length > 0) {
-                methodVisitor.visitInsn(POP);
+            callablesByHash.computeIfAbsent(callableMethod.getMethodName().hashCode(), (hash) -> new ArrayList<>()).add(callableMethod);
+        }
+        if (!callablesByHash.isEmpty()) {
+            // (the keys of a lookupswitch must be sorted, which the TreeMap does)
+            int[] hashes = new int[callablesByHash.size()];
+            Label[] hashLabels = new Label[callablesByHash.size()];
+            int index = 0;
+            for (Integer hash : callablesByHash.keySet()) {
+                hashes[index] = hash;
+                hashLabels[index] = new Label();
+                index += 1;
             }
-            // if void return type, invoke function and return empty byte array,
-            // else call ABIEncoder for the appropriate element type
-            methodVisitor.visitMethodInsn(INVOKESTATIC, className, callableMethod.getMethodName(), callableMethod.getDescriptor(), false);
-            Type returnType = Type.getReturnType(callableMethod.getDescriptor());
-            if (returnType != Type.VOID_TYPE) {
-                if (returnType == Type.BYTE_TYPE) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneByte","(B)[B", false);
-                } else if (returnType == Type.BOOLEAN_TYPE) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneBoolean","(Z)[B", false);
-                } else if (returnType == Type.CHAR_TYPE) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneCharacter","(C)[B", false);
-                } else if (returnType == Type.SHORT_TYPE) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneShort","(S)[B", false);
-                } else if (returnType == Type.INT_TYPE) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneInteger","(I)[B", false);
-                } else if (returnType == Type.LONG_TYPE) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneLong","(J)[B", false);
-                } else if (returnType == Type.FLOAT_TYPE) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneFloat","(F)[B", false);
-                } else if (returnType == Type.DOUBLE_TYPE) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneDouble","(D)[B", false);
-                } else if (isArrayOfTypeAndDimensions(returnType, Type.BYTE_TYPE, 1)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneByteArray","([B)[B", false);
-                } else if (isArrayOfTypeAndDimensions(returnType, Type.BOOLEAN_TYPE, 1)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneBooleanArray", "([Z)[B", false);
-                } else if (isArrayOfTypeAndDimensions(returnType, Type.CHAR_TYPE, 1)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneCharacterArray", "([C)[B", false);
-                } else if (isArrayOfTypeAndDimensions(returnType, Type.SHORT_TYPE, 1)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneShortArray", "([S)[B", false);
-                } else if (isArrayOfTypeAndDimensions(returnType, Type.INT_TYPE, 1)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneIntegerArray", "([I)[B", false);
-                } else if (isArrayOfTypeAndDimensions(returnType, Type.LONG_TYPE, 1)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneLongArray", "([J)[B", false);
-                } else if (isArrayOfTypeAndDimensions(returnType, Type.FLOAT_TYPE, 1)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneFloatArray", "([F)[B", false);
-                } else if (isArrayOfTypeAndDimensions(returnType, Type.DOUBLE_TYPE, 1)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneDoubleArray", "([D)[B", false);
-                } else if (isString(returnType)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneString", "(Ljava/lang/String;)[B", false);
-                } else if (isAddress(returnType)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneAddress", "(Lavm/Address;)[B", false);
-                } else if (isBigInteger(returnType)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneBigInteger", "(Ljava/math/BigInteger;)[B", false);
-                } else if (isArrayOfTypeAndDimensions(returnType, Type.BYTE_TYPE, 2)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOne2DByteArray", "([[B)[B", false);
-                } else if (isArrayOfTypeAndDimensions(returnType, Type.BOOLEAN_TYPE, 2)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOne2DBooleanArray", "([[Z)[B", false);
-                } else if (isArrayOfTypeAndDimensions(returnType, Type.CHAR_TYPE, 2)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOne2DCharacterArray", "([[C)[B", false);
-                } else if (isArrayOfTypeAndDimensions(returnType, Type.SHORT_TYPE, 2)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOne2DShortArray", "([[S)[B", false);
-                } else if (isArrayOfTypeAndDimensions(returnType, Type.INT_TYPE, 2)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOne2DIntegerArray", "([[I)[B", false);
-                } else if (isArrayOfTypeAndDimensions(returnType, Type.FLOAT_TYPE, 2)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOne2DFloatArray", "([[F)[B", false);
-                } else if (isArrayOfTypeAndDimensions(returnType, Type.LONG_TYPE, 2)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOne2DLongArray", "([[J)[B", false);
-                } else if (isArrayOfTypeAndDimensions(returnType, Type.DOUBLE_TYPE, 2)) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOne2DDoubleArray", "([[D)[B", false);
-                } else if (returnType.getSort() == Type.ARRAY && returnType.getDimensions() == 1 && isString(returnType.getElementType())) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneStringArray", "([Ljava/lang/String;)[B", false);
-                } else if (returnType.getSort() == Type.ARRAY && returnType.getDimensions() == 1 && isAddress(returnType.getElementType())) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneAddressArray", "([Lavm/Address;)[B", false);
-                } else if (returnType.getSort() == Type.ARRAY && returnType.getDimensions() == 1 && isBigInteger(returnType.getElementType())) {
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneBigIntegerArray", "([Ljava/math/BigInteger;)[B", false);
+            methodVisitor.visitVarInsn(ALOAD, 1);
+            methodVisitor.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "hashCode", "()I", false);
+            methodVisitor.visitLookupSwitchInsn(fallbackLabel, hashes, hashLabels);
+
+            index = 0;
+            for (List<ABICompilerMethodVisitor> callablesWithHash : callablesByHash.values()) {
+                methodVisitor.visitLabel(hashLabels[index]);
+                for (ABICompilerMethodVisitor callableMethod : callablesWithHash) {
+                    // nextLabel is where we go if the name is only a hash collision
+                    Label nextLabel = new Label();
+                    methodVisitor.visitVarInsn(ALOAD, 1);
+                    methodVisitor.visitLdcInsn(callableMethod.getMethodName());
+                    methodVisitor.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z", false);
+                    methodVisitor.visitJumpInsn(IFEQ, nextLabel);
+                    callMethodAndReturn(methodVisitor, callableMethod);
+                    methodVisitor.visitLabel(nextLabel);
                 }
-            } else {
-                methodVisitor.visitInsn(ICONST_0);
-                methodVisitor.visitIntInsn(NEWARRAY, T_BYTE);
+                methodVisitor.visitJumpInsn(GOTO, fallbackLabel);
+                index += 1;
             }
-            methodVisitor.visitInsn(ARETURN);
         }
 
-        // this latestLabel is the catch-all else, we call the fallback() if it exists,
+        // this fallbackLabel is the catch-all else, we call the fallback() if it exists,
         // else we revert the transaction
-        methodVisitor.visitLabel(latestLabel);
+        methodVisitor.visitLabel(fallbackLabel);
         methodVisitor.visitFrame(Opcodes.F_APPEND, 3, new Object[]{"[B", "java/lang/String", "[Ljava/lang/Object;"}, 0, null);
         if (hasFallback()) {
             methodVisitor.visitMethodInsn(
@@ -321,6 +261,97 @@ public class ABICompilerClassVisitor extends ClassVisitor {
         methodVisitor.visitEnd();
     }
 
+    // Emits the code which decodes the arguments of the callable, calls it and returns its encoded result (the decoder is in local 0).
+    private void callMethodAndReturn(MethodVisitor methodVisitor, ABICompilerMethodVisitor callableMethod) {
+        // load the various arguments as indicated by the function signature
+        Type[] argTypes = Type.getArgumentTypes(callableMethod.getDescriptor());
+
+        if (argTypes.length > 0) {
+            methodVisitor.visitVarInsn(ALOAD, 0);
+        }
+
+        for (int i = 0; i < argTypes.length; i++) {
+            methodVisitor.visitInsn(DUP);
+            callTheDecoder(methodVisitor, argTypes[i]);
+            visitSwap(methodVisitor, argTypes[i]);
+        }
+
+        if (argTypes.length > 0) {
+            methodVisitor.visitInsn(POP);
+        }
+        // if void return type, invoke function and return empty byte array,
+        // else call ABIEncoder for the appropriate element type
+        methodVisitor.visitMethodInsn(INVOKESTATIC, className, callableMethod.getMethodName(), callableMethod.getDescriptor(), false);
+        Type returnType = Type.getReturnType(callableMethod.getDescriptor());
+        if (returnType != Type.VOID_TYPE) {
+            if (returnType == Type.BYTE_TYPE) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneByte","(B)[B", false);
+            } else if (returnType == Type.BOOLEAN_TYPE) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneBoolean","(Z)[B", false);
+            } else if (returnType == Type.CHAR_TYPE) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneCharacter","(C)[B", false);
+            } else if (returnType == Type.SHORT_TYPE) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneShort","(S)[B", false);
+            } else if (returnType == Type.INT_TYPE) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneInteger","(I)[B", false);
+            } else if (returnType == Type.LONG_TYPE) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneLong","(J)[B", false);
+            } else if (returnType == Type.FLOAT_TYPE) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneFloat","(F)[B", false);
+            } else if (returnType == Type.DOUBLE_TYPE) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneDouble","(D)[B", false);
+            } else if (isArrayOfTypeAndDimensions(returnType, Type.BYTE_TYPE, 1)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneByteArray","([B)[B", false);
+            } else if (isArrayOfTypeAndDimensions(returnType, Type.BOOLEAN_TYPE, 1)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneBooleanArray", "([Z)[B", false);
+            } else if (isArrayOfTypeAndDimensions(returnType, Type.CHAR_TYPE, 1)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneCharacterArray", "([C)[B", false);
+            } else if (isArrayOfTypeAndDimensions(returnType, Type.SHORT_TYPE, 1)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneShortArray", "([S)[B", false);
+            } else if (isArrayOfTypeAndDimensions(returnType, Type.INT_TYPE, 1)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneIntegerArray", "([I)[B", false);
+            } else if (isArrayOfTypeAndDimensions(returnType, Type.LONG_TYPE, 1)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneLongArray", "([J)[B", false);
+            } else if (isArrayOfTypeAndDimensions(returnType, Type.FLOAT_TYPE, 1)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneFloatArray", "([F)[B", false);
+            } else if (isArrayOfTypeAndDimensions(returnType, Type.DOUBLE_TYPE, 1)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneDoubleArray", "([D)[B", false);
+            } else if (isString(returnType)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneString", "(Ljava/lang/String;)[B", false);
+            } else if (isAddress(returnType)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneAddress", "(Lavm/Address;)[B", false);
+            } else if (isBigInteger(returnType)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneBigInteger", "(Ljava/math/BigInteger;)[B", false);
+            } else if (isArrayOfTypeAndDimensions(returnType, Type.BYTE_TYPE, 2)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOne2DByteArray", "([[B)[B", false);
+            } else if (isArrayOfTypeAndDimensions(returnType, Type.BOOLEAN_TYPE, 2)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOne2DBooleanArray", "([[Z)[B", false);
+            } else if (isArrayOfTypeAndDimensions(returnType, Type.CHAR_TYPE, 2)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOne2DCharacterArray", "([[C)[B", false);
+            } else if (isArrayOfTypeAndDimensions(returnType, Type.SHORT_TYPE, 2)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOne2DShortArray", "([[S)[B", false);
+            } else if (isArrayOfTypeAndDimensions(returnType, Type.INT_TYPE, 2)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOne2DIntegerArray", "([[I)[B", false);
+            } else if (isArrayOfTypeAndDimensions(returnType, Type.FLOAT_TYPE, 2)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOne2DFloatArray", "([[F)[B", false);
+            } else if (isArrayOfTypeAndDimensions(returnType, Type.LONG_TYPE, 2)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOne2DLongArray", "([[J)[B", false);
+            } else if (isArrayOfTypeAndDimensions(returnType, Type.DOUBLE_TYPE, 2)) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOne2DDoubleArray", "([[D)[B", false);
+            } else if (returnType.getSort() == Type.ARRAY && returnType.getDimensions() == 1 && isString(returnType.getElementType())) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneStringArray", "([Ljava/lang/String;)[B", false);
+            } else if (returnType.getSort() == Type.ARRAY && returnType.getDimensions() == 1 && isAddress(returnType.getElementType())) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneAddressArray", "([Lavm/Address;)[B", false);
+            } else if (returnType.getSort() == Type.ARRAY && returnType.getDimensions() == 1 && isBigInteger(returnType.getElementType())) {
+                methodVisitor.visitMethodInsn(INVOKESTATIC, "org/aion/avm/userlib/abi/ABIEncoder", "encodeOneBigIntegerArray", "([Ljava/math/BigInteger;)[B", false);
+            }
+        } else {
+            methodVisitor.visitInsn(ICONST_0);
+            methodVisitor.visitIntInsn(NEWARRAY, T_BYTE);
+        }
+        methodVisitor.visitInsn(ARETURN);
+    }
+
     // This helper method assumes that the decoder is the top element on the stack.
     // After it has callefd INVOKEVIRTUAL, the decoder will no longer be on top, it is the responsibility of the caller to push it back on if needed.
     private void callTheDecoder(MethodVisitor methodVisitor, Type type) {